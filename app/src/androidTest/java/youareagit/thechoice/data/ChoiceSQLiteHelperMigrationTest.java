@@ -0,0 +1,236 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.test.RenamingDelegatingContext;
+
+/**
+ * Upgrades seeded databases of older versions with the <code>ChoiceSQLiteHelper</code> and checks
+ * that no row got lost and that the migrated schema works. The databases are created with a
+ * prefixed name, so the data of the installed app is not touched.
+ */
+public class ChoiceSQLiteHelperMigrationTest extends AndroidTestCase {
+    /** The schema of database version 1 as it was released (it must not change with the tables). */
+    private static final String[] VERSION_1_SCHEMA = {
+            "CREATE TABLE items (_id integer primary key autoincrement, name TEXT, CONSTRAINT unq UNIQUE (name));",
+            "CREATE TABLE item_lists (_id integer primary key autoincrement, list_name TEXT, CONSTRAINT unq UNIQUE (list_name));",
+            "CREATE TABLE item_lists_items (_itemListId INTEGER NOT NULL REFERENCES item_lists (_id) ON DELETE CASCADE, "
+                    + "_itemId INTEGER NOT NULL REFERENCES items (_id) ON DELETE CASCADE, weight REAL NOT NULL DEFAULT 1.0, "
+                    + "skill REAL NOT NULL DEFAULT 0.0, attributes TEXT, PRIMARY KEY (_itemListId, _itemId));",
+            "CREATE INDEX item_lists_items__itemId ON item_lists_items (_itemId);",
+            "CREATE TABLE item_list_states (_itemListId INTEGER NOT NULL REFERENCES item_lists (_id) ON DELETE CASCADE, "
+                    + "kind TEXT NOT NULL, state BLOB, PRIMARY KEY (_itemListId, kind));",
+            "CREATE TABLE settings (_id integer primary key autoincrement, name TEXT, value TEXT,  CONSTRAINT unq UNIQUE (name) );" };
+
+    /** The number of seeded items, more than one migration batch. */
+    private static final int NUMBER_OF_ITEMS = 500;
+    /** The number of seeded item lists, more than one migration batch. */
+    private static final int NUMBER_OF_ITEMLISTS = SchemaMigrations.BATCH_SIZE + 50;
+
+    /** The context with prefixed database names. */
+    private Context context;
+    /** The helper under test. */
+    private ChoiceSQLiteHelper helper;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = new RenamingDelegatingContext(getContext(), "migration_test_");
+        deleteDatabases();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (helper != null) {
+            helper.close();
+        }
+        deleteDatabases();
+        super.tearDown();
+    }
+
+    private void deleteDatabases() {
+        context.deleteDatabase(ChoiceSQLiteHelper.DATABASE_NAME);
+        context.deleteDatabase(ItemsTable.LEGACY_DATABASE_NAME);
+        context.deleteDatabase(ItemListsTable.LEGACY_DATABASE_NAME);
+        context.deleteDatabase(ItemListsItemsTable.LEGACY_DATABASE_NAME);
+    }
+
+    public void testUpgradeFromVersion1KeepsAllRows() {
+        seedVersion1Database();
+
+        helper = new ChoiceSQLiteHelper(context);
+        final SQLiteDatabase database = helper.getWritableDatabase();
+        assertEquals(SchemaMigrations.getLatestVersion(), database.getVersion());
+        // Finish the row migrations which otherwise run in the background
+        SchemaMigrations.migrateBatches(database, SchemaMigrations.BATCH_SIZE);
+
+        assertEquals(NUMBER_OF_ITEMS, count(database, "SELECT COUNT(*) FROM " + ItemsTable.TABLE_ITEMS));
+        assertEquals(NUMBER_OF_ITEMLISTS, count(database, "SELECT COUNT(*) FROM " + ItemListsTable.TABLE_ITEMLISTS));
+        assertEquals(getNumberOfSeededMemberships(), count(database, "SELECT COUNT(*) FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS));
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM " + ItemListStatesTable.TABLE_ITEMLIST_STATES));
+        // The membership values are kept
+        Cursor cursor = database.rawQuery("SELECT " + ItemListsItemsTable.COLUMN_WEIGHT + ", "
+                + ItemListsItemsTable.COLUMN_ATTRIBUTES + " FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS
+                + " WHERE " + ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = 7 AND "
+                + ItemListsItemsTable.COLUMN_ITEM_ID + " = 3", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(2.5, cursor.getDouble(0));
+        assertEquals("vegetarian,cheap", cursor.getString(1));
+        cursor.close();
+
+        assertItemCountsAreCorrect(database);
+    }
+
+    public void testItemCountsFollowTheMemberships() {
+        seedVersion1Database();
+        helper = new ChoiceSQLiteHelper(context);
+        final SQLiteDatabase database = helper.getWritableDatabase();
+        SchemaMigrations.migrateBatches(database, SchemaMigrations.BATCH_SIZE);
+
+        // A new item list starts with 0 items
+        final ContentValues itemList = new ContentValues();
+        itemList.put(ItemListsTable.COLUMN_LISTNAME, "new list");
+        final long itemListId = database.insertOrThrow(ItemListsTable.TABLE_ITEMLISTS, null, itemList);
+        final ContentValues membership = new ContentValues();
+        membership.put(ItemListsItemsTable.COLUMN_ITEMLIST_ID, itemListId);
+        membership.put(ItemListsItemsTable.COLUMN_ITEM_ID, 1);
+        database.insertOrThrow(ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, null, membership);
+        // Deleting an item deletes its memberships in all item lists
+        database.delete(ItemsTable.TABLE_ITEMS, ItemsTable.COLUMN_ID + " = 2", null);
+        database.delete(ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = 5", null);
+
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS
+                + " WHERE " + ItemListsItemsTable.COLUMN_ITEM_ID + " = 2"));
+        assertItemCountsAreCorrect(database);
+    }
+
+    public void testMigrationsCanBeRepeated() {
+        seedVersion1Database();
+        helper = new ChoiceSQLiteHelper(context);
+        final SQLiteDatabase database = helper.getWritableDatabase();
+        SchemaMigrations.migrateBatches(database, SchemaMigrations.BATCH_SIZE);
+
+        // An interrupted migration is repeated, so every step has to be idempotent
+        SchemaMigrations.migrate(database, SchemaMigrations.INITIAL_VERSION, SchemaMigrations.getLatestVersion());
+        assertEquals(0, SchemaMigrations.migrateBatches(database, SchemaMigrations.BATCH_SIZE));
+        assertEquals(getNumberOfSeededMemberships(), count(database, "SELECT COUNT(*) FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS));
+        assertItemCountsAreCorrect(database);
+    }
+
+    public void testLegacyDatabasesAreImported() {
+        // Before the single database every table had its own file, the memberships of version 1
+        // had no weight column yet
+        SQLiteDatabase legacyDatabase = context.openOrCreateDatabase(ItemsTable.LEGACY_DATABASE_NAME, Context.MODE_PRIVATE, null);
+        legacyDatabase.execSQL("CREATE TABLE items (_id integer primary key autoincrement, name TEXT, CONSTRAINT unq UNIQUE (name));");
+        legacyDatabase.execSQL("INSERT INTO items (name) VALUES ('pizza'), ('sushi'), ('deleted later');");
+        legacyDatabase.close();
+        legacyDatabase = context.openOrCreateDatabase(ItemListsTable.LEGACY_DATABASE_NAME, Context.MODE_PRIVATE, null);
+        legacyDatabase.execSQL("CREATE TABLE item_lists (_id integer primary key autoincrement, list_name TEXT, CONSTRAINT unq UNIQUE (list_name));");
+        legacyDatabase.execSQL("INSERT INTO item_lists (list_name) VALUES ('lunch');");
+        legacyDatabase.close();
+        legacyDatabase = context.openOrCreateDatabase(ItemListsItemsTable.LEGACY_DATABASE_NAME, Context.MODE_PRIVATE, null);
+        legacyDatabase.execSQL("CREATE TABLE item_lists_items (_itemListId INTEGER NOT NULL, _itemId INTEGER NOT NULL, PRIMARY KEY (_itemListId, _itemId));");
+        // The membership of item 4 refers to an item which was deleted
+        legacyDatabase.execSQL("INSERT INTO item_lists_items VALUES (1, 1), (1, 2), (1, 4);");
+        legacyDatabase.close();
+
+        helper = new ChoiceSQLiteHelper(context);
+        final SQLiteDatabase database = helper.getWritableDatabase();
+        SchemaMigrations.migrateBatches(database, SchemaMigrations.BATCH_SIZE);
+
+        assertEquals(3, count(database, "SELECT COUNT(*) FROM " + ItemsTable.TABLE_ITEMS));
+        assertEquals(2, count(database, "SELECT COUNT(*) FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS
+                + " WHERE " + ItemListsItemsTable.COLUMN_WEIGHT + " = " + ItemListsItemsTable.WEIGHT_DEFAULT));
+        assertEquals(2, count(database, "SELECT " + ItemListsTable.COLUMN_ITEM_COUNT + " FROM " + ItemListsTable.TABLE_ITEMLISTS));
+        // The legacy files are deleted after the import
+        assertFalse(context.getDatabasePath(ItemsTable.LEGACY_DATABASE_NAME).exists());
+        assertFalse(context.getDatabasePath(ItemListsItemsTable.LEGACY_DATABASE_NAME).exists());
+    }
+
+    /**
+     * Create a database of version 1 with items, item lists of different sizes, a state and a setting.
+     */
+    private void seedVersion1Database() {
+        final SQLiteDatabase database = context.openOrCreateDatabase(ChoiceSQLiteHelper.DATABASE_NAME, Context.MODE_PRIVATE, null);
+        database.beginTransaction();
+        try {
+            for (String createStatement : VERSION_1_SCHEMA) {
+                database.execSQL(createStatement);
+            }
+            for (int item = 1; item <= NUMBER_OF_ITEMS; item++) {
+                database.execSQL("INSERT INTO items (_id, name) VALUES (" + item + ", 'item " + item + "');");
+            }
+            for (int itemList = 1; itemList <= NUMBER_OF_ITEMLISTS; itemList++) {
+                database.execSQL("INSERT INTO item_lists (_id, list_name) VALUES (" + itemList + ", 'list " + itemList + "');");
+                for (int item = 1; item <= getNumberOfSeededMembers(itemList); item++) {
+                    database.execSQL("INSERT INTO item_lists_items (_itemListId, _itemId) VALUES (" + itemList + ", " + item + ");");
+                }
+            }
+            database.execSQL("UPDATE item_lists_items SET weight = 2.5, attributes = 'vegetarian,cheap' WHERE _itemListId = 7 AND _itemId = 3;");
+            database.execSQL("INSERT INTO item_list_states VALUES (7, 'SHUFFLE_BAG', x'0102');");
+            database.execSQL("INSERT INTO settings (name, value) VALUES ('CHOICEMETHOD', 'FROM_LIST');");
+            database.setVersion(1);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        database.close();
+    }
+
+    /** The number of seeded members of the given item list, between 0 and 30. */
+    private static int getNumberOfSeededMembers(int itemList) {
+        return itemList % 31;
+    }
+
+    private static int getNumberOfSeededMemberships() {
+        int numberOfMemberships = 0;
+        for (int itemList = 1; itemList <= NUMBER_OF_ITEMLISTS; itemList++) {
+            numberOfMemberships += getNumberOfSeededMembers(itemList);
+        }
+        return numberOfMemberships;
+    }
+
+    private static void assertItemCountsAreCorrect(SQLiteDatabase database) {
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM " + ItemListsTable.TABLE_ITEMLISTS + " l WHERE l."
+                + ItemListsTable.COLUMN_ITEM_COUNT + " IS NULL OR l." + ItemListsTable.COLUMN_ITEM_COUNT
+                + " != (SELECT COUNT(*) FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + " m WHERE m."
+                + ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = l." + ItemListsTable.COLUMN_ID + ")"));
+    }
+
+    private static int count(SQLiteDatabase database, String query) {
+        final Cursor cursor = database.rawQuery(query, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
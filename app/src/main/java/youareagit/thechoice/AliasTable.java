@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * Walker's alias table (in Vose's numerically stable variant) for choosing an index proportionally
+ * to its weight in O(1) per draw after building the table once in O(n).
+ */
+final class AliasTable {
+    /** The scale of the integer thresholds (2^53, the precision of a <code>double</code>). */
+    private static final double THRESHOLD_SCALE = 0x1.0p53;
+
+    /** The threshold (scaled to [0 ... 2^53]) below which the column itself is chosen. */
+    private final long[] thresholds;
+    /** The alternative index of each column which is chosen above its threshold. */
+    private final int[] aliases;
+
+    /**
+     * Builds the alias table for the given weights.
+     * @param weights The weights which have to be non-negative, finite and not all zero.
+     * @throws IllegalArgumentException is thrown if the weights are empty, negative, not finite or
+     * all zero.
+     */
+    AliasTable(double[] weights) throws IllegalArgumentException {
+        final int size = weights.length;
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("The weights have to be finite numbers equal to or greater than zero but one was: " + weight);
+            }
+            sum += weight;
+        }
+        if (!(sum > 0) || Double.isInfinite(sum)) {
+            throw new IllegalArgumentException("The sum of the weights has to be a finite number greater than zero but it was: " + sum);
+        }
+
+        thresholds = new long[size];
+        aliases = new int[size];
+        // Scale the weights so that their average is 1 and split them into a stack of small
+        // (below average) and a stack of large columns, both stored in one array
+        final double[] scaledWeights = new double[size];
+        final int[] stacks = new int[size];
+        int smallCount = 0;
+        int largeStart = size;
+        for (int i = 0; i < size; i++) {
+            scaledWeights[i] = weights[i] * size / sum;
+            if (scaledWeights[i] < 1.0) {
+                stacks[smallCount++] = i;
+            } else {
+                stacks[--largeStart] = i;
+            }
+        }
+        // Fill up every small column with a part of a large column
+        while (smallCount > 0 && largeStart < size) {
+            final int small = stacks[--smallCount];
+            final int large = stacks[largeStart++];
+            thresholds[small] = (long) (scaledWeights[small] * THRESHOLD_SCALE);
+            aliases[small] = large;
+            scaledWeights[large] = (scaledWeights[large] + scaledWeights[small]) - 1.0;
+            if (scaledWeights[large] < 1.0) {
+                stacks[smallCount++] = large;
+            } else {
+                stacks[--largeStart] = large;
+            }
+        }
+        // The remaining columns are (up to rounding errors) full
+        while (largeStart < size) {
+            final int large = stacks[largeStart++];
+            thresholds[large] = (long) THRESHOLD_SCALE;
+            aliases[large] = large;
+        }
+        while (smallCount > 0) {
+            final int small = stacks[--smallCount];
+            thresholds[small] = (long) THRESHOLD_SCALE;
+            aliases[small] = small;
+        }
+    }
+
+    /**
+     * Choose an index proportionally to its weight.
+     * @param randomSource The <code>RandomSource</code> to use.
+     * @return The chosen index in the range [0 ... size - 1] as an <code>int</code>.
+     */
+    int next(RandomSource randomSource) {
+        final int column = randomSource.nextInt(thresholds.length);
+        // Compare 53 random bits with the threshold of the column
+        return (randomSource.nextLong() >>> 11) < thresholds[column] ? column : aliases[column];
+    }
+
+    /**
+     * The number of weights (columns) of the table.
+     * @return The number of weights as an <code>int</code>.
+     */
+    int size() {
+        return thresholds.length;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the next few results of the currently selected choice precomputed on a background thread,
+ * so that a shake only has to take the next result from a <code>PrefetchRing</code> instead of
+ * querying the database.<br />
+ * Every selection (e.g. choice method and item list name) is identified by a key. Selecting
+ * another key or clearing the prefetcher abandons the ring with all its results, the background
+ * thread notices it before producing the next result. As every ring is only filled by the single
+ * background thread and only emptied by the thread which calls <code>poll</code> (the UI thread),
+ * the rings need no locks.<br />
+ * Hint: Only choices without a state may be prefetched, e.g. not a shuffle bag whose results would
+ * be taken out of the bag even if they are never shown.
+ */
+final class ChoicePrefetcher {
+    /** The number of results which are kept ready. */
+    static final int PREFETCH_CAPACITY = 8;
+
+    /** The background thread which produces the results (shared by all prefetchers). */
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ChoicePrefetcher");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Produces the results of one selection on the background thread. It must not use anything
+     * which the UI thread uses at the same time (e.g. the data sources), but only immutable
+     * snapshots and thread-safe random sources.
+     */
+    interface Producer {
+        /**
+         * Produce the next result.
+         * @return The next result or <code>null</code> if there is none (e.g. an empty item list).
+         */
+        String produce();
+    }
+
+    /**
+     * The prefetched results of one selection.
+     */
+    private static final class Selection implements Runnable {
+        final String key;
+        final Producer producer;
+        final PrefetchRing<String> results = new PrefetchRing<>(PREFETCH_CAPACITY);
+        /** Whether a refill is scheduled or running, so that at most one is queued at a time. */
+        final AtomicBoolean refilling = new AtomicBoolean();
+        /** The prefetcher which has to still use this selection for the refill to continue. */
+        final ChoicePrefetcher prefetcher;
+
+        Selection(String key, Producer producer, ChoicePrefetcher prefetcher) {
+            this.key = key;
+            this.producer = producer;
+            this.prefetcher = prefetcher;
+        }
+
+        /**
+         * Schedule a refill on the background thread unless one is already pending.
+         */
+        void refill() {
+            if (refilling.compareAndSet(false, true)) {
+                PREFETCH_EXECUTOR.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Fill the ring as long as the selection is still the current one
+                while (prefetcher.selection == this && !results.isFull()) {
+                    final String result = producer.produce();
+                    if (result == null || result.isEmpty()) {
+                        // Nothing to prefetch, the caller chooses directly and shows the hint
+                        break;
+                    }
+                    results.offer(result);
+                }
+            } catch (RuntimeException rE) {
+                // E.g. the database was closed in the meantime, the next poll starts a new refill
+                Log.w(ChoicePrefetcher.class.getName(), "Prefetching the choice results of " + key + " failed", rE);
+            } finally {
+                refilling.set(false);
+            }
+        }
+    }
+
+    /** The current selection or <code>null</code> if there is none. */
+    private volatile Selection selection = null;
+
+    /**
+     * Take the next prefetched result of the given selection and start refilling its results in
+     * the background. If the selection changed no result is available yet and the prefetching
+     * of the new selection is started. Must always be called from the same thread.
+     * @param key The key of the selection, e.g. the choice method and the item list name.
+     * @param producer The producer of the results of the selection which is called on the
+     *                 background thread.
+     * @return The next result or <code>null</code> if none is ready, then the caller has to
+     * choose directly.
+     */
+    String poll(String key, Producer producer) {
+        Selection currentSelection = selection;
+        if (currentSelection == null || !currentSelection.key.equals(key)) {
+            currentSelection = new Selection(key, producer, this);
+            selection = currentSelection;
+        }
+        final String result = currentSelection.results.poll();
+        currentSelection.refill();
+        return result;
+    }
+
+    /**
+     * Start prefetching the results of the given selection if it is not the current one yet, e.g.
+     * as soon as an item list gets selected.
+     * @param key The key of the selection.
+     * @param producer The producer of the results of the selection.
+     */
+    void prepare(String key, Producer producer) {
+        final Selection currentSelection = selection;
+        if (currentSelection == null || !currentSelection.key.equals(key)) {
+            final Selection newSelection = new Selection(key, producer, this);
+            selection = newSelection;
+            newSelection.refill();
+        }
+    }
+
+    /**
+     * Abandon all prefetched results, e.g. because the items or the random source changed.
+     */
+    void clear() {
+        selection = null;
+    }
+}
@@ -21,25 +21,109 @@
  SOFTWARE. */
 package youareagit.thechoice;
 
+import android.os.AsyncTask;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import youareagit.thechoice.data.ChoiceMethod;
 import youareagit.thechoice.data.Item;
 import youareagit.thechoice.data.ItemList;
-import youareagit.thechoice.data.ItemListItem;
+import youareagit.thechoice.data.ItemListMembers;
+import youareagit.thechoice.data.ItemListStatesDataSource;
 import youareagit.thechoice.data.ItemListsDataSource;
 import youareagit.thechoice.data.ItemListsItemsDataSource;
 import youareagit.thechoice.data.ItemsDataSource;
 import youareagit.thechoice.data.settings.DefaultSetting;
 import youareagit.thechoice.data.settings.Setting;
 import youareagit.thechoice.data.settings.SettingsDataSource;
+import youareagit.thechoice.random.RandomSource;
+import youareagit.thechoice.random.RandomSourceType;
 
 class ChooserDatabaseHandler {
     /** The choice method default value which on startup is used for activating the radio button. */
     static final ChoiceMethod CHOICE_METHOD_DEFAULT = ChoiceMethod.THROW_COIN;
+    /** The default number of distinct items which are chosen at once from an item list. */
+    static final int ITEM_LIST_PICK_COUNT_DEFAULT = 3;
+
+    /** The background thread which opens the database connections, loads the entries and stores the
+     * settings in order, so the UI thread never waits for the database (shared by all handlers). */
+    private static final ExecutorService DATABASE_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ChooserDatabaseHandler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Is notified when the database connections are open and the entries are loaded.
+     */
+    interface OnLoadedListener {
+        /**
+         * Called on the UI thread as soon as the entries are loaded.
+         */
+        void onLoaded();
+    }
+
+    /**
+     * The entries which are loaded on the database thread and then taken over by the UI thread.
+     */
+    private static final class LoadedEntries {
+        List<ItemList> itemLists;
+        Setting customDiceMaximumRangeValueDefault;
+        Setting choiceMethodDefault;
+        Setting listNameDefault;
+        Setting randomSourceTypeDefault;
+        Setting diceExpressionDefault;
+        Setting seededSessionDefault;
+        Setting itemListPickCountDefault;
+        Setting numberRangeDefault;
+        Setting itemListFilterDefault;
+    }
+
+    /**
+     * Opens the database connections and loads the entries on the database thread and hands them
+     * to the UI thread.
+     */
+    private class LoadTask extends AsyncTask<Void, Void, LoadedEntries> {
+        /** The listener to notify, it is replaced if the entries are requested again in the meantime. */
+        private OnLoadedListener onLoadedListener;
+        /** The time when the load was started, for logging how long the start waits for the database. */
+        private final long startTimeInMilliseconds = SystemClock.elapsedRealtime();
+
+        LoadTask(OnLoadedListener onLoadedListener) {
+            this.onLoadedListener = onLoadedListener;
+        }
+
+        @Override
+        protected LoadedEntries doInBackground(Void... params) {
+            return openDatabaseConnectionsAndLoadEntries();
+        }
+
+        @Override
+        protected void onPostExecute(LoadedEntries loadedEntries) {
+            // Ignore a load whose connections were closed in the meantime
+            if (loadTask != this) {
+                return;
+            }
+            loadTask = null;
+            applyLoadedEntries(loadedEntries);
+            Log.d(ChooserDatabaseHandler.class.getName(), "Loaded the entries in "
+                    + (SystemClock.elapsedRealtime() - startTimeInMilliseconds) + " ms");
+            onLoadedListener.onLoaded();
+        }
+    }
 
     /** The ChooserLogic object which is responsible for doing the random choices. */
     private final ChooserLogic chooserLogic;
@@ -47,21 +131,38 @@ class ChooserDatabaseHandler {
     // Values for handling the database connection and entries
     /** Data source for the items. */
     private ItemsDataSource itemsDataSource = null;
-    /** The item entries for the selected item list. */
-    private List<Item> itemDatabaseValues = null;
     /** Data source for the item lists */
     private ItemListsDataSource itemListsDataSource = null;
 
-    /** The item list entries. */
-    private List<ItemList> itemListDatabaseValues = null;
+    /** The item list entries. They are loaded together with the settings on the database thread
+     * and handed over to the UI thread, see <code>openDatabaseConnectionsAndLoadOrCreateDefaultEntries</code>.
+     * The list is only read on the UI thread (e.g. the prefetch producers get the resolved item list
+     * id instead) and it is only replaced as a whole, never modified, so a reader on another thread
+     * would still see a complete list. */
+    private volatile List<ItemList> itemListDatabaseValues = null;
     /** Data source for the item lists */
     private ItemListsItemsDataSource itemListsItemsDataSource = null;
-    /** The item list item entries. */
-    private List<ItemListItem> itemListItemsDatabaseValues = null;
+    /** The cache of the alias tables for choosing items proportionally to their weights. */
+    private ItemListAliasTableCache itemListAliasTableCache = null;
+    /** Data source for the states of the choice methods per item list, e.g. the shuffle bags. */
+    private ItemListStatesDataSource itemListStatesDataSource = null;
+    /** The shuffle bags which were used since the start by item list id. */
+    private final Map<Long, ShuffleBag> shuffleBags = new HashMap<>();
+    /** The fair selectors which were used since the start by item list id. */
+    private final Map<Long, FairSelector> fairSelectors = new HashMap<>();
+    /** The tournament brackets which were used since the start by item list id. */
+    private final Map<Long, TournamentBracket> tournamentBrackets = new HashMap<>();
+    /** The group votes which were used since the start by item list id. */
+    private final Map<Long, GroupVote> groupVotes = new HashMap<>();
     /** Data source for storing the settings */
     private SettingsDataSource settingsDataSource = null;
-    /** The setting entries. */
-    private List<Setting> settingDatabaseValues = null;
+    /** Whether the database connections are open or being opened, so opening them again does
+     * nothing (only used on the UI thread). */
+    private boolean databaseConnectionsOpen = false;
+    /** Whether the entries are loaded and taken over by the UI thread (only used on the UI thread). */
+    private boolean entriesLoaded = false;
+    /** The running load or <code>null</code> if there is none (only used on the UI thread). */
+    private LoadTask loadTask = null;
 
     // Create the different Settings objects without initialized values
     /** The default choice method (e.g. throw coin). The value will be set later, e.g.
@@ -74,6 +175,20 @@ class ChooserDatabaseHandler {
     //TODO: Store the value in a database entry if a user selected one
     /** Default list name for the choice method from list. */
     private Setting listNameDefault = new Setting(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString());
+    /** The random source type <code>Setting</code> which selects the generator used for all choices. */
+    private Setting randomSourceTypeDefault = new Setting(DefaultSetting.RANDOM_SOURCE_TYPE.toString(), RandomSourceType.DEFAULT.toString());
+    /** The last valid dice notation expression <code>Setting</code> (e.g. "4d6kh3+2"). */
+    private Setting diceExpressionDefault = new Setting(DefaultSetting.DICE_EXPRESSION.toString());
+    /** The exported seeded session <code>Setting</code> (seed, stream, position and result history)
+     * which is used for continuing the reproducible choices after a restart. */
+    private Setting seededSessionDefault = new Setting(DefaultSetting.SEEDED_SESSION.toString());
+    /** The number of distinct items <code>Setting</code> which are chosen at once from an item list
+     * (or the number of teams an item list is split into). */
+    private Setting itemListPickCountDefault = new Setting(DefaultSetting.ITEM_LIST_PICK_COUNT.toString(), Integer.toString(ITEM_LIST_PICK_COUNT_DEFAULT));
+    /** The last valid number range <code>Setting</code> (e.g. "-5..5"). */
+    private Setting numberRangeDefault = new Setting(DefaultSetting.NUMBER_RANGE.toString());
+    /** The last valid attribute filter <code>Setting</code> for the item list choices (e.g. "vegetarian !fastfood"). */
+    private Setting itemListFilterDefault = new Setting(DefaultSetting.ITEM_LIST_FILTER.toString());
 
     /**
      * Constructor for the <code>ChooserDatabaseHandler</code> object.
@@ -88,129 +203,690 @@ class ChooserDatabaseHandler {
         itemsDataSource = new ItemsDataSource(appCompatActivity);
         // Acquire the database connection for the items
         itemListsItemsDataSource = new ItemListsItemsDataSource(appCompatActivity);
+        // The cache builds its tables with its own data sources on its background thread
+        itemListAliasTableCache = new ItemListAliasTableCache(appCompatActivity);
+        // Acquire the database connection for the item list states
+        itemListStatesDataSource = new ItemListStatesDataSource(appCompatActivity);
         // Acquire the database connection for the Settings
         settingsDataSource = new SettingsDataSource(appCompatActivity);
-        // Open and load all entries for the database connections
-        openDatabaseConnectionsAndLoadOrCreateDefaultEntries();
+        // The database connections are opened and the entries are loaded in the background, see
+        // openDatabaseConnectionsAndLoadOrCreateDefaultEntries
     }
 
     /**
-     * Choose an item and return its text.
+     * Choose an item proportionally to its weight in the item list and return its text.
      * @param itemListName The name of the list to choose an item from.
      * @return The text of the chosen item or <code>null</code> if there were no entries in the database.
      */
     String chooseFromItemList(String itemListName) {
-        String chosenResultValue = null;
+        // Resolve the item list id via the loaded item lists instead of querying the database
+        final ItemList itemList = getLoadedItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+
+        // Choose via the cached alias table of the item list. If it is not up to date wait for its
+        // rebuild on the background thread (which the selection of the item list already started)
+        // instead of reading every row here
+        final ItemListAliasTableCache.Entry entry = itemListAliasTableCache.getEntry(itemList.getId(), true);
+        if (entry != null) {
+            return entry.chooseItemName(chooserLogic.getRandomSource());
+        }
+
+        // Only if the rebuild failed choose uniformly with a single statement which resolves the
+        // list, counts its items and returns only the chosen item name (a random 32 bit number
+        // selects the position, the few biased ones are rejected)
+        return itemListsItemsDataSource.pickItemName(itemListName, chooserLogic.getRandomSource());
+    }
+
+    /**
+     * Returns the loaded item list with the given name.
+     * @param itemListName The name of the item list.
+     * @return The <code>ItemList</code> or <code>null</code> if there is none with that name.
+     */
+    private ItemList getLoadedItemList(String itemListName) {
+        for (ItemList itemListEntry : getLoadedItemLists()) {
+            if (itemListEntry.getListName().equals(itemListName)) {
+                return itemListEntry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Choose an item uniformly among the items of the item list matching the attribute filter and
+     * return its text. The matches are taken from the attribute bitsets of the item list, so that
+     * no item has to be loaded or checked one by one.
+     * @param itemListName The name of the list to choose an item from.
+     * @param filter The attribute filter or <code>null</code> for choosing from all items.
+     * @return The text of the chosen item or <code>null</code> if there is no such item list or no
+     * item matches the filter.
+     */
+    String chooseFromItemList(String itemListName, ItemAttributeFilter filter) {
+        if (filter == null) {
+            return chooseFromItemList(itemListName);
+        }
+        // Resolve the item list via the loaded item lists instead of querying the database
+        final ItemList itemList = getLoadedItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+
+        // Choose via the cached attribute index of the item list if it is up to date (a seeded
+        // session has to be reproducible, so there the background rebuild is awaited)
+        final boolean isReproducible = chooserLogic.getRandomSourceType() == RandomSourceType.SEEDED;
+        final ItemListAliasTableCache.Entry entry = itemListAliasTableCache.getEntry(itemList.getId(), isReproducible);
+        if (entry != null) {
+            return entry.chooseFilteredItemName(filter, chooserLogic.getRandomSource());
+        }
+        // Otherwise (the index is still being built in the background) count the matching items
+        // and pick one of them with a single statement
+        return itemListsItemsDataSource.pickFilteredItemName(itemList.getId(), filter.getRequiredAttributes(),
+                filter.getExcludedAttributes(), chooserLogic.getRandomSource());
+    }
+
+    /**
+     * Creates the producer which chooses from the given item list on the prefetch thread. It only
+     * takes results from the current snapshot of the item list in the alias table cache (and starts
+     * its rebuild if there is none), so it never touches the data sources or the loaded item lists
+     * of this handler. Must be called from the UI thread.
+     * @param itemListName The name of the item list.
+     * @param filter The attribute filter or <code>null</code>.
+     * @return The <code>ChoicePrefetcher.Producer</code> for the item list.
+     */
+    ChoicePrefetcher.Producer createItemListPrefetchProducer(String itemListName, final ItemAttributeFilter filter) {
+        // Resolve the item list and the random source now instead of on the prefetch thread
+        final ItemList itemList = getLoadedItemList(itemListName);
+        final long itemListId = itemList != null ? itemList.getId() : -1;
+        final RandomSource randomSource = chooserLogic.getRandomSource();
+        return new ChoicePrefetcher.Producer() {
+            @Override
+            public String produce() {
+                final ItemListAliasTableCache.Entry entry = itemListId != -1 ? itemListAliasTableCache.getEntry(itemListId, false) : null;
+                if (entry == null) {
+                    // Nothing to prefetch until the snapshot is built, the UI thread chooses directly
+                    return null;
+                }
+                return filter == null ? entry.chooseItemName(randomSource) : entry.chooseFilteredItemName(filter, randomSource);
+            }
+        };
+    }
+
+    /**
+     * Draw an item from the shuffle bag of the item list and return its text. No item is chosen
+     * twice before all other items of the item list were chosen. The bag is stored after every draw
+     * so it continues after a restart.
+     * @param itemListName The name of the list to choose an item from.
+     * @return The text of the chosen item or <code>null</code> if there were no entries in the database.
+     */
+    String chooseFromItemListShuffleBag(String itemListName) {
         // Resolve the item list via the item list name
         ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+        final long itemListId = itemList.getId();
+        final ShuffleBag shuffleBag = getShuffleBag(itemListId);
 
-        // Search all item IDs belonging to the item list
-        List<Long> itemIds = itemListsItemsDataSource.getItemIds(itemList.getId());
-        // Check if there are entries in the database under the item list name
-        if (itemIds != null
-                && itemIds.size() > 0) {
-            // Get a random index of the current item list entry in the database
-            // (updated in the onResume() method)
-            int randomItemIndex = chooserLogic.getRandomNumberInRange(itemIds.size());
+        // Merge the membership changes since the last draw (or the restart) into the bag
+        if (shuffleBag.getMembersVersion() != ItemListsItemsDataSource.getItemListVersion(itemListId)) {
+            ItemListMembers itemListMembers = itemListsItemsDataSource.getItemListMembers(itemListId);
+            shuffleBag.merge(itemListMembers.getItemIds(), itemListMembers.getVersion());
+        }
 
-            // Resolve the item id of that entry and query the database for that item
-            final long itemId = itemIds.get(randomItemIndex);
-            final Item item = itemsDataSource.getItem(itemId);
-            // Set the result to the item name
-            chosenResultValue = item.getName();
+        // Draw until an existing item is found (the items themselves might have been deleted)
+        Item item = null;
+        for (int attempt = 0; item == null && attempt < shuffleBag.size(); attempt++) {
+            item = itemsDataSource.getItem(shuffleBag.next(chooserLogic.getRandomSource()));
         }
-        return chosenResultValue;
+        // Store the new state of the bag (one row)
+        itemListStatesDataSource.storeState(itemListId, ShuffleBag.STATE_KIND, shuffleBag.toState());
+        return item != null ? item.getName() : null;
+    }
+
+    /**
+     * Choose an item proportionally to its weight in the item list, but with a lower probability
+     * the more recently it was chosen, and return its text. A draw costs O(log n).
+     * @param itemListName The name of the list to choose an item from.
+     * @return The text of the chosen item or <code>null</code> if there were no entries in the database.
+     */
+    String chooseFromItemListFair(String itemListName) {
+        // Resolve the item list via the item list name
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+        final long itemListId = itemList.getId();
+        FairSelector fairSelector = fairSelectors.get(itemListId);
+
+        // Rebuild the selector if the membership changed but keep the recent picks
+        if (fairSelector == null
+                || fairSelector.getMembersVersion() != ItemListsItemsDataSource.getItemListVersion(itemListId)) {
+            FairSelector newFairSelector = new FairSelector(itemListsItemsDataSource.getItemListMembers(itemListId));
+            if (fairSelector != null) {
+                newFairSelector.takeOverRecentPicks(fairSelector);
+            }
+            fairSelector = newFairSelector;
+            fairSelectors.put(itemListId, fairSelector);
+        }
+
+        // Draw until an existing item is found (the items themselves might have been deleted)
+        Item item = null;
+        for (int attempt = 0; item == null && attempt < FairSelector.RECENT_PICKS_CAPACITY; attempt++) {
+            final long itemId = fairSelector.next(chooserLogic.getRandomSource());
+            if (itemId == FairSelector.NO_ITEM_ID) {
+                break;
+            }
+            item = itemsDataSource.getItem(itemId);
+        }
+        return item != null ? item.getName() : null;
+    }
+
+    /**
+     * Choose the given number of distinct items uniformly from the item list and return their
+     * texts, e.g. 3 restaurants to vote on or 6 of 49. Only the item count and the chosen rows are
+     * read (one single row query per chosen item instead of loading all item ids) and the names
+     * are resolved with one query.
+     * @param itemListName The name of the list to choose the items from.
+     * @param count The number of distinct items to choose, it is limited to the item list size.
+     * @return The texts of the chosen items in a random order or <code>null</code> if there were no
+     * entries in the database.
+     */
+    List<String> chooseManyFromItemList(String itemListName, int count) {
+        // Resolve the item list via the item list name
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null || count <= 0) {
+            return null;
+        }
+        final int itemCount = itemListsItemsDataSource.getItemCount(itemList.getId());
+        if (itemCount == 0) {
+            return null;
+        }
+
+        // Choose distinct positions with Floyd's algorithm and read only their rows
+        final int[] positions = chooserLogic.chooseDistinctIndices(itemCount, Math.min(count, itemCount));
+        final long[] itemIds = itemListsItemsDataSource.getItemIdsAtPositions(itemList.getId(), positions);
+        final String[] itemNames = itemsDataSource.getItemNames(itemIds);
+
+        List<String> chosenItemNames = new ArrayList<>(itemNames.length);
+        for (String itemName : itemNames) {
+            // Skip items which were deleted in the meantime
+            if (itemName != null) {
+                chosenItemNames.add(itemName);
+            }
+        }
+        return chosenItemNames.isEmpty() ? null : chosenItemNames;
+    }
+
+    /**
+     * Split the items of the item list into the given number of random teams of near-equal size.
+     * If skills are set for the items, the teams are balanced by the sums of their skills.
+     * @param itemListName The name of the list to split.
+     * @param numberOfTeams The number of teams, it has to be greater than 0.
+     * @return The texts of the items of every team or <code>null</code> if there were no entries in
+     * the database.
+     */
+    List<List<String>> splitItemListIntoTeams(String itemListName, int numberOfTeams) {
+        // Resolve the item list via the item list name
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null || numberOfTeams <= 0) {
+            return null;
+        }
+        final ItemListMembers itemListMembers = itemListsItemsDataSource.getItemListMembers(itemList.getId());
+        if (itemListMembers.size() == 0) {
+            return null;
+        }
+        final long[][] teams = TeamSplitter.split(itemListMembers.getItemIds(), itemListMembers.getSkills(),
+                numberOfTeams, chooserLogic.getRandomSource());
+
+        // Resolve the names of all members with batched queries
+        final long[] teamItemIds = new long[itemListMembers.size()];
+        int index = 0;
+        for (long[] team : teams) {
+            System.arraycopy(team, 0, teamItemIds, index, team.length);
+            index += team.length;
+        }
+        final String[] teamItemNames = itemsDataSource.getItemNames(teamItemIds);
+
+        List<List<String>> teamNames = new ArrayList<>(teams.length);
+        index = 0;
+        for (long[] team : teams) {
+            List<String> names = new ArrayList<>(team.length);
+            for (int i = 0; i < team.length; i++, index++) {
+                // Skip items which were deleted in the meantime
+                if (teamItemNames[index] != null) {
+                    names.add(teamItemNames[index]);
+                }
+            }
+            teamNames.add(names);
+        }
+        return teamNames;
+    }
+
+    /**
+     * Returns the tournament bracket of the item list from the memory or the database, or seeds a
+     * new one with all items of the item list via the random source of the <code>ChooserLogic</code>.
+     * @param itemListName The name of the item list.
+     * @param startNew Whether to seed a new bracket even if one exists.
+     * @return The <code>TournamentBracket</code> of the item list or <code>null</code> if there were
+     * no entries in the database.
+     */
+    TournamentBracket getTournamentBracket(String itemListName, boolean startNew) {
+        // Resolve the item list via the item list name
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+        final long itemListId = itemList.getId();
+        TournamentBracket tournamentBracket = startNew ? null : tournamentBrackets.get(itemListId);
+        if (tournamentBracket == null && !startNew) {
+            // Resume the stored bracket with a single row read
+            byte[] state = itemListStatesDataSource.getState(itemListId, TournamentBracket.STATE_KIND);
+            if (state != null) {
+                try {
+                    tournamentBracket = TournamentBracket.fromState(state);
+                } catch (IllegalArgumentException iAE) {
+                    // Seed a new bracket for a malformed or outdated state
+                    iAE.printStackTrace();
+                }
+            }
+        }
+        if (tournamentBracket == null) {
+            final long[] itemIds = itemListsItemsDataSource.getItemListMembers(itemListId).getItemIds();
+            if (itemIds.length == 0) {
+                return null;
+            }
+            tournamentBracket = TournamentBracket.seed(itemIds, chooserLogic.getRandomSource());
+            itemListStatesDataSource.storeState(itemListId, TournamentBracket.STATE_KIND, tournamentBracket.toState());
+        }
+        tournamentBrackets.put(itemListId, tournamentBracket);
+        return tournamentBracket;
+    }
+
+    /**
+     * Store the state of the tournament bracket of the item list (one row), e.g. after a match was
+     * decided or undone, so it continues after a restart.
+     * @param itemListName The name of the item list.
+     * @param tournamentBracket The tournament bracket of the item list.
+     */
+    void storeTournamentBracket(String itemListName, TournamentBracket tournamentBracket) {
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList != null) {
+            itemListStatesDataSource.storeState(itemList.getId(), TournamentBracket.STATE_KIND, tournamentBracket.toState());
+        }
+    }
+
+    /**
+     * Returns the group vote of the item list from the memory or the database, or starts a new one
+     * on all items of the item list with a tie-break order drawn via the random source of the
+     * <code>ChooserLogic</code>.
+     * @param itemListName The name of the item list.
+     * @param startNew Whether to start a new vote even if one exists.
+     * @return The <code>GroupVote</code> of the item list or <code>null</code> if there were no
+     * entries in the database.
+     */
+    GroupVote getGroupVote(String itemListName, boolean startNew) {
+        // Resolve the item list via the item list name
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+        final long itemListId = itemList.getId();
+        GroupVote groupVote = startNew ? null : groupVotes.get(itemListId);
+        if (groupVote == null && !startNew) {
+            // Resume the stored ballots with a single row read
+            byte[] state = itemListStatesDataSource.getState(itemListId, GroupVote.STATE_KIND);
+            if (state != null) {
+                try {
+                    groupVote = GroupVote.fromState(state);
+                } catch (IllegalArgumentException iAE) {
+                    // Start a new vote for a malformed or outdated state
+                    iAE.printStackTrace();
+                }
+            }
+        }
+        if (groupVote == null) {
+            final long[] itemIds = itemListsItemsDataSource.getItemListMembers(itemListId).getItemIds();
+            if (itemIds.length == 0) {
+                return null;
+            }
+            groupVote = GroupVote.start(itemIds, chooserLogic.getRandomSource());
+            itemListStatesDataSource.storeState(itemListId, GroupVote.STATE_KIND, groupVote.toState());
+        }
+        groupVotes.put(itemListId, groupVote);
+        return groupVote;
+    }
+
+    /**
+     * Store the state of the group vote of the item list (one row), e.g. after a ballot was added
+     * or undone, so it continues after a restart.
+     * @param itemListName The name of the item list.
+     * @param groupVote The group vote of the item list.
+     */
+    void storeGroupVote(String itemListName, GroupVote groupVote) {
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList != null) {
+            itemListStatesDataSource.storeState(itemList.getId(), GroupVote.STATE_KIND, groupVote.toState());
+        }
+    }
+
+    /**
+     * Returns the names of the items with the given ids via one batched query.
+     * @param itemIds The ids of the items.
+     * @return The names in the same order as the ids, the name of a deleted item is <code>null</code>.
+     */
+    String[] getItemNames(long... itemIds) {
+        return itemsDataSource.getItemNames(itemIds);
+    }
+
+    /**
+     * Returns the shuffle bag of the item list from the memory, the database or a new empty one.
+     * @param itemListId The id of the item list.
+     * @return The <code>ShuffleBag</code> of the item list.
+     */
+    private ShuffleBag getShuffleBag(long itemListId) {
+        ShuffleBag shuffleBag = shuffleBags.get(itemListId);
+        if (shuffleBag == null) {
+            // Resume the stored bag with a single row read
+            byte[] state = itemListStatesDataSource.getState(itemListId, ShuffleBag.STATE_KIND);
+            if (state != null) {
+                try {
+                    shuffleBag = ShuffleBag.fromState(state);
+                } catch (IllegalArgumentException iAE) {
+                    // Start with a new bag for a malformed or outdated state
+                    iAE.printStackTrace();
+                }
+            }
+            if (shuffleBag == null) {
+                shuffleBag = new ShuffleBag();
+            }
+            shuffleBags.put(itemListId, shuffleBag);
+        }
+        return shuffleBag;
+    }
+
+    /**
+     * Start preparing the structures for choosing from the given item list in the background, e.g.
+     * as soon as it gets selected, so that the first choice does not have to fall back.
+     * @param itemListName The name of the item list.
+     */
+    void prepareItemList(String itemListName) {
+        // Resolve the item list via the loaded item lists, so the UI thread does not query the database
+        ItemList itemList = getLoadedItemList(itemListName);
+        if (itemList != null) {
+            itemListAliasTableCache.prepare(itemList.getId());
+        }
+    }
+
+    /**
+     * Creates the model for simulating choices from the given item list with the given choice method.
+     * @param itemListName The name of the item list.
+     * @param choiceMethod The item list choice method.
+     * @return The <code>MonteCarloSimulation.Model</code> of the item list or <code>null</code> if
+     * there is no such item list.
+     * @throws IllegalArgumentException If the item list can not be simulated, e.g. it is empty.
+     */
+    MonteCarloSimulation.Model createItemListSimulationModel(String itemListName, ChoiceMethod choiceMethod)
+            throws IllegalArgumentException {
+        ItemList itemList = itemListsDataSource.getItemList(itemListName);
+        if (itemList == null) {
+            return null;
+        }
+        final ItemListMembers itemListMembers = itemListsItemsDataSource.getItemListMembers(itemList.getId());
+        final long[] itemIds = itemListMembers.getItemIds();
+
+        // Resolve the names of the members only with batched queries
+        final String[] itemNames = itemsDataSource.getItemNames(itemIds);
+        for (int i = 0; i < itemIds.length; i++) {
+            // Fall back to the id of an item which was deleted in the meantime
+            if (itemNames[i] == null) {
+                itemNames[i] = String.valueOf(itemIds[i]);
+            }
+        }
+        return MonteCarloSimulation.createItemListModel(itemListMembers, itemNames, choiceMethod);
     }
 
     /**
      * Open all relevant database connections, e.g. the one for settings and load all entries (or
      * create default entries if they did not exist and load them) into the corresponding list
-     * variables.
+     * variables. The database is opened (and possibly created or upgraded) and the entries are
+     * loaded on the database thread, the UI thread only takes over the loaded entries. Until then
+     * <code>isLoaded()</code> returns <code>false</code> and nothing else may be called.
+     * @param onLoadedListener Is notified on the UI thread as soon as the entries are loaded (right
+     *                         away if they already are). Must be called from the UI thread.
+     */
+    void openDatabaseConnectionsAndLoadOrCreateDefaultEntries(OnLoadedListener onLoadedListener) {
+        // Nothing changed since the last call if the connections were not closed in the meantime
+        if (databaseConnectionsOpen) {
+            if (entriesLoaded) {
+                onLoadedListener.onLoaded();
+            } else {
+                loadTask.onLoadedListener = onLoadedListener;
+            }
+            return;
+        }
+        databaseConnectionsOpen = true;
+        loadTask = new LoadTask(onLoadedListener);
+        loadTask.executeOnExecutor(DATABASE_EXECUTOR);
+    }
+
+    /**
+     * Checks whether the database connections are open and the entries are loaded, so choices can
+     * be made and the settings can be read and changed.
+     * @return <code>true</code> if the entries are loaded.
      */
-    void openDatabaseConnectionsAndLoadOrCreateDefaultEntries() {
+    boolean isLoaded() {
+        return entriesLoaded;
+    }
+
+    /**
+     * Opens the database connections and loads the entries on the database thread.
+     * @return The loaded entries.
+     */
+    private LoadedEntries openDatabaseConnectionsAndLoadEntries() {
+        final LoadedEntries loadedEntries = new LoadedEntries();
         // Open the database connection for the ItemLists
         itemListsDataSource.open();
-        // Update the list of items
-        itemListDatabaseValues = itemListsDataSource.getAllItemLists();
-        // Open the database connection for the Items
+        // The item lists might have been edited in the meantime, so load them again
+        loadedEntries.itemLists = itemListsDataSource.getAllItemLists();
+        // Open the database connection for the Items (the items and the item list items are not
+        // loaded here, the choices only read the rows they need)
         itemsDataSource.open();
-        // Update the list of items
-        itemDatabaseValues = itemsDataSource.getAllItems();
         // Open the database connection for the ItemListItems
         itemListsItemsDataSource.open();
-        // Update the list of items
-        itemListItemsDatabaseValues = itemListsItemsDataSource.getAllItemListsItems();
+        // Open the database connection for the ItemListStates
+        itemListStatesDataSource.open();
         // Open the database connection for the Settings
         settingsDataSource.open();
         // Get a list of the settings from the database
-        settingDatabaseValues = settingsDataSource.getAllSettings();
+        final List<Setting> settingDatabaseValues = settingsDataSource.getAllSettings();
         // Create all necessary settings if they have not been already stored in the database
         if(settingDatabaseValues == null || settingDatabaseValues.isEmpty()){
             // Create the Setting for the custom dice maximum range value
-            customDiceMaximumRangeValueDefault = settingsDataSource.createSetting(DefaultSetting.CUSTOM_DICE_MAXIMUM_RANGE_VALUE.toString(), Integer.toString(ChooserLogic.CUSTOM_DICE_MAXIMUM_RANGE_VALUE_DEFAULT));
+            loadedEntries.customDiceMaximumRangeValueDefault = settingsDataSource.createSetting(DefaultSetting.CUSTOM_DICE_MAXIMUM_RANGE_VALUE.toString(), Integer.toString(ChooserLogic.CUSTOM_DICE_MAXIMUM_RANGE_VALUE_DEFAULT));
             // Create the Setting for the default choice method
-            choiceMethodDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD.toString(), CHOICE_METHOD_DEFAULT.toString());
+            loadedEntries.choiceMethodDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD.toString(), CHOICE_METHOD_DEFAULT.toString());
             //TODO: Initialize default list name value with a correct value, null might not be the best idea...
             // Create the Setting for the default list name entry
-            listNameDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString(), null);
-            // Reload the Settings entries from the database because they should be added now
-            settingDatabaseValues = settingsDataSource.getAllSettings();
+            loadedEntries.listNameDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString(), null);
+            // Create the Setting for the random source type
+            loadedEntries.randomSourceTypeDefault = settingsDataSource.createSetting(DefaultSetting.RANDOM_SOURCE_TYPE.toString(), RandomSourceType.DEFAULT.toString());
+            // Create the Setting for the dice expression
+            loadedEntries.diceExpressionDefault = settingsDataSource.createSetting(DefaultSetting.DICE_EXPRESSION.toString(), null);
+            // Create the Setting for the seeded session
+            loadedEntries.seededSessionDefault = settingsDataSource.createSetting(DefaultSetting.SEEDED_SESSION.toString(), null);
+            // Create the Setting for the item list pick count
+            loadedEntries.itemListPickCountDefault = settingsDataSource.createSetting(DefaultSetting.ITEM_LIST_PICK_COUNT.toString(), Integer.toString(ITEM_LIST_PICK_COUNT_DEFAULT));
+            // Create the Setting for the number range
+            loadedEntries.numberRangeDefault = settingsDataSource.createSetting(DefaultSetting.NUMBER_RANGE.toString(), null);
+            // Create the Setting for the item list filter
+            loadedEntries.itemListFilterDefault = settingsDataSource.createSetting(DefaultSetting.ITEM_LIST_FILTER.toString(), null);
         } else { // Old settings where stored in the settings database
+            // Index the loaded settings by name instead of querying every single one again
+            Map<String, Setting> storedSettings = new HashMap<>();
+            for (Setting setting : settingDatabaseValues) {
+                storedSettings.put(setting.getName(), setting);
+            }
             // Link the correct Setting object to the corresponding variable
-            customDiceMaximumRangeValueDefault = settingsDataSource.getSetting(DefaultSetting.CUSTOM_DICE_MAXIMUM_RANGE_VALUE.toString());
-            choiceMethodDefault = settingsDataSource.getSetting(DefaultSetting.CHOICEMETHOD.toString());
-            listNameDefault = settingsDataSource.getSetting(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString());
+            loadedEntries.customDiceMaximumRangeValueDefault = storedSettings.get(DefaultSetting.CUSTOM_DICE_MAXIMUM_RANGE_VALUE.toString());
+            loadedEntries.choiceMethodDefault = storedSettings.get(DefaultSetting.CHOICEMETHOD.toString());
+            loadedEntries.listNameDefault = storedSettings.get(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString());
+            loadedEntries.randomSourceTypeDefault = storedSettings.get(DefaultSetting.RANDOM_SOURCE_TYPE.toString());
+            loadedEntries.diceExpressionDefault = storedSettings.get(DefaultSetting.DICE_EXPRESSION.toString());
+            loadedEntries.seededSessionDefault = storedSettings.get(DefaultSetting.SEEDED_SESSION.toString());
+            loadedEntries.itemListPickCountDefault = storedSettings.get(DefaultSetting.ITEM_LIST_PICK_COUNT.toString());
+            loadedEntries.numberRangeDefault = storedSettings.get(DefaultSetting.NUMBER_RANGE.toString());
+            loadedEntries.itemListFilterDefault = storedSettings.get(DefaultSetting.ITEM_LIST_FILTER.toString());
 
             // Avoid a possible null values due to old incompatible database values
             //  for the custom dice maximum range value
-            if (customDiceMaximumRangeValueDefault == null) {
+            if (loadedEntries.customDiceMaximumRangeValueDefault == null) {
                 // Create the Setting for the custom dice maximum range value
-                customDiceMaximumRangeValueDefault = settingsDataSource.createSetting(DefaultSetting.CUSTOM_DICE_MAXIMUM_RANGE_VALUE.toString(), Integer.toString(ChooserLogic.CUSTOM_DICE_MAXIMUM_RANGE_VALUE_DEFAULT));
+                loadedEntries.customDiceMaximumRangeValueDefault = settingsDataSource.createSetting(DefaultSetting.CUSTOM_DICE_MAXIMUM_RANGE_VALUE.toString(), Integer.toString(ChooserLogic.CUSTOM_DICE_MAXIMUM_RANGE_VALUE_DEFAULT));
             }
             //  for the choice method default value
-            if (choiceMethodDefault == null) {
+            if (loadedEntries.choiceMethodDefault == null) {
                 // Create the Setting for the default choice method
-                choiceMethodDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD.toString(), CHOICE_METHOD_DEFAULT.toString());
+                loadedEntries.choiceMethodDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD.toString(), CHOICE_METHOD_DEFAULT.toString());
             }
             //  for the list_listname
-            if (listNameDefault == null) {
+            if (loadedEntries.listNameDefault == null) {
                 //TODO: Initialize default list name value with a correct value, null might not be the best idea...
                 // Create the Setting for the default list name entry
-                listNameDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString(), null);
+                loadedEntries.listNameDefault = settingsDataSource.createSetting(DefaultSetting.CHOICEMETHOD_FROM_LIST_LISTNAME.toString(), null);
+            }
+            //  for the random source type
+            if (loadedEntries.randomSourceTypeDefault == null) {
+                // Create the Setting for the random source type
+                loadedEntries.randomSourceTypeDefault = settingsDataSource.createSetting(DefaultSetting.RANDOM_SOURCE_TYPE.toString(), RandomSourceType.DEFAULT.toString());
+            }
+            //  for the dice expression
+            if (loadedEntries.diceExpressionDefault == null) {
+                // Create the Setting for the dice expression
+                loadedEntries.diceExpressionDefault = settingsDataSource.createSetting(DefaultSetting.DICE_EXPRESSION.toString(), null);
+            }
+            //  for the seeded session
+            if (loadedEntries.seededSessionDefault == null) {
+                // Create the Setting for the seeded session
+                loadedEntries.seededSessionDefault = settingsDataSource.createSetting(DefaultSetting.SEEDED_SESSION.toString(), null);
+            }
+            //  for the item list pick count
+            if (loadedEntries.itemListPickCountDefault == null) {
+                // Create the Setting for the item list pick count
+                loadedEntries.itemListPickCountDefault = settingsDataSource.createSetting(DefaultSetting.ITEM_LIST_PICK_COUNT.toString(), Integer.toString(ITEM_LIST_PICK_COUNT_DEFAULT));
+            }
+            //  for the number range
+            if (loadedEntries.numberRangeDefault == null) {
+                // Create the Setting for the number range
+                loadedEntries.numberRangeDefault = settingsDataSource.createSetting(DefaultSetting.NUMBER_RANGE.toString(), null);
+            }
+            //  for the item list filter
+            if (loadedEntries.itemListFilterDefault == null) {
+                // Create the Setting for the item list filter
+                loadedEntries.itemListFilterDefault = settingsDataSource.createSetting(DefaultSetting.ITEM_LIST_FILTER.toString(), null);
+            }
+        }
+        return loadedEntries;
+    }
+
+    /**
+     * Take over the loaded entries on the UI thread and let the ChooserLogic use the loaded settings.
+     * @param loadedEntries The loaded entries.
+     */
+    private void applyLoadedEntries(LoadedEntries loadedEntries) {
+        itemListDatabaseValues = loadedEntries.itemLists;
+        customDiceMaximumRangeValueDefault = loadedEntries.customDiceMaximumRangeValueDefault;
+        choiceMethodDefault = loadedEntries.choiceMethodDefault;
+        listNameDefault = loadedEntries.listNameDefault;
+        randomSourceTypeDefault = loadedEntries.randomSourceTypeDefault;
+        diceExpressionDefault = loadedEntries.diceExpressionDefault;
+        seededSessionDefault = loadedEntries.seededSessionDefault;
+        itemListPickCountDefault = loadedEntries.itemListPickCountDefault;
+        numberRangeDefault = loadedEntries.numberRangeDefault;
+        itemListFilterDefault = loadedEntries.itemListFilterDefault;
+        // Continue the stored seeded session if the ChooserLogic does not use one yet (restoring
+        // the position draws all values before it, so it is not repeated on every resume)
+        if (getRandomSourceTypeDefault() == RandomSourceType.SEEDED
+                && chooserLogic.getRandomSourceType() != RandomSourceType.SEEDED
+                && seededSessionDefault.getValue() != null) {
+            try {
+                chooserLogic.importSeededSession(seededSessionDefault.getValue());
+            } catch (IllegalArgumentException iAE) {
+                // Start a new seeded session for a malformed stored value
+                iAE.printStackTrace();
             }
-            // Reload the Settings entries from the database because they should be added now
-            settingDatabaseValues = settingsDataSource.getAllSettings();
         }
+        // Let the ChooserLogic use the stored random source type (it keeps its current random source
+        // if the type did not change)
+        chooserLogic.setRandomSourceType(getRandomSourceTypeDefault());
+        // Let the ChooserLogic object know the last dice expression so it can be persisted correctly
+        chooserLogic.setLastDiceExpression(diceExpressionDefault.getValue());
+        // Let the ChooserLogic object know the last number range so it can be persisted correctly
+        chooserLogic.setLastNumberRange(numberRangeDefault.getValue());
+        entriesLoaded = true;
     }
 
     /**
-     * Store all setting which are set in the database.
+     * Update all settings with the current values and return copies of them for storing them in
+     * the database (the copies are not changed by the UI thread while they are stored).
+     * @return The settings to store.
      */
-    private void storeSettingsInDatabase(){
+    private Setting[] getSettingsToStore(){
         // Get the newest custom dice maximum range value and save it in the corresponding setting
         customDiceMaximumRangeValueDefault.setValue(Integer.toString(chooserLogic.getLastCustomDiceMaximumRangeValue()));
+        // Get the newest dice expression and save it in the corresponding setting
+        diceExpressionDefault.setValue(chooserLogic.getLastDiceExpression());
+        // Get the newest number range and save it in the corresponding setting
+        numberRangeDefault.setValue(chooserLogic.getLastNumberRange());
+        // Get the current seeded session (if one is used) and save it in the corresponding setting
+        final String exportedSeededSession = chooserLogic.exportSeededSession();
+        if (exportedSeededSession != null) {
+            seededSessionDefault.setValue(exportedSeededSession);
+        }
 
-        // Update the setting for the default custom dice maximum value range
-        settingsDataSource.updateSetting(customDiceMaximumRangeValueDefault);
-        // Update the setting for the default choice method
-        settingsDataSource.updateSetting(choiceMethodDefault);
-        // Update the setting for the default list name
-        settingsDataSource.updateSetting(listNameDefault);
+        final Setting[] settings = { customDiceMaximumRangeValueDefault, choiceMethodDefault, listNameDefault,
+                randomSourceTypeDefault, diceExpressionDefault, seededSessionDefault, itemListPickCountDefault,
+                numberRangeDefault, itemListFilterDefault };
+        final Setting[] settingsToStore = new Setting[settings.length];
+        for (int i = 0; i < settings.length; i++) {
+            settingsToStore[i] = new Setting(settings[i].getName(), settings[i].getValue());
+            settingsToStore[i].setId(settings[i].getId());
+        }
+        return settingsToStore;
     }
 
     /**
-     * Close all database connections.
+     * Close all database connections. The settings are stored and the connections are released on
+     * the database thread after a possibly running load, whose entries are then ignored.
      */
     void closeDatabaseConnections(){
-        // Store the Settings in the database
-        storeSettingsInDatabase();
-        // TODO: The closing of the database somehow seems to cause a problem when the application is destroyed because the storeSettingsInDatabase method seems to do some work in parallel when the database is already getting closed by the commented line below
-        //settingsDataSource.close();
-
-        // Close all database connections after the Settings where saved
-        itemListsDataSource.close();
-        itemsDataSource.close();
-        itemListsItemsDataSource.close();
+        // The connections were already closed (e.g. in onPause before onDestroy)
+        if (!databaseConnectionsOpen) {
+            return;
+        }
+        // Store the Settings unless they were not even loaded yet
+        final Setting[] settingsToStore = entriesLoaded ? getSettingsToStore() : null;
+        // Load everything again when the connections get opened the next time
+        databaseConnectionsOpen = false;
+        entriesLoaded = false;
+        loadTask = null;
+        DATABASE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (settingsToStore != null) {
+                    for (Setting setting : settingsToStore) {
+                        settingsDataSource.updateSetting(setting);
+                    }
+                }
+                // Release all database connections after the Settings where saved (the shared
+                // connection is only closed when no activity uses it anymore)
+                settingsDataSource.close();
+                itemListsDataSource.close();
+                itemsDataSource.close();
+                itemListsItemsDataSource.close();
+                itemListStatesDataSource.close();
+            }
+        });
     }
 
     /**
@@ -221,7 +897,7 @@ class ChooserDatabaseHandler {
     List<String> getItemListNames() {
         List<String> itemListNames = new ArrayList<>();
         // Walk over all found database values for itemlists and add only the list names to the returned list
-        for (ItemList itemListEntry:itemListDatabaseValues) {
+        for (ItemList itemListEntry:getLoadedItemLists()) {
             itemListNames.add(itemListEntry.getListName());
         }
         return itemListNames;
@@ -232,7 +908,17 @@ class ChooserDatabaseHandler {
      * @return The item list entries as a <code>List<ItemList></code>.
      */
     List<ItemList> getItemLists() {
-        return itemListDatabaseValues;
+        return getLoadedItemLists();
+    }
+
+    /**
+     * Returns the loaded item list entries. Must be called from the UI thread.
+     * @return The item list entries as a <code>List<ItemList></code> (empty until the first load
+     * is finished).
+     */
+    private List<ItemList> getLoadedItemLists() {
+        final List<ItemList> itemLists = itemListDatabaseValues;
+        return itemLists != null ? itemLists : Collections.<ItemList>emptyList();
     }
 
     /**
@@ -245,6 +931,24 @@ class ChooserDatabaseHandler {
         return customDiceMaximumRangeValueDefault.getValue();
     }
 
+    /**
+     * Returns the last valid dice notation expression or <code>null</code> if none was used yet.
+     * @return The last valid dice notation expression as a <code>String</code> or
+     * <code>null</code> if none was used yet.
+     */
+    String getDiceExpressionDefault() {
+        return chooserLogic.getLastDiceExpression();
+    }
+
+    /**
+     * Returns the last valid number range or <code>null</code> if none was used yet.
+     * @return The last valid number range as a <code>String</code> (e.g. "-5..5") or
+     * <code>null</code> if none was used yet.
+     */
+    String getNumberRangeDefault() {
+        return chooserLogic.getLastNumberRange();
+    }
+
     /**
      * Returns the stored default choice method or <code>null</code> if none was set.
      * @return The stored default choice method as a <code>ChoiceMethod</code>
@@ -268,4 +972,98 @@ class ChooserDatabaseHandler {
     void setChoiceMethodDefault(ChoiceMethod choiceMethodDefault){
         this.choiceMethodDefault.setValue(choiceMethodDefault.toString());
     }
+
+    /**
+     * Returns the stored random source type or the default type if none or an unknown one was set.
+     * @return The stored random source type as a <code>RandomSourceType</code>.
+     */
+    RandomSourceType getRandomSourceTypeDefault() {
+        RandomSourceType randomSourceType = RandomSourceType.DEFAULT;
+        String randomSourceTypeAsString = randomSourceTypeDefault.getValue();
+        // Check if the stored value is not null and try to convert it to a RandomSourceType enum value
+        if (randomSourceTypeAsString != null) {
+            try {
+                randomSourceType = RandomSourceType.valueOf(randomSourceTypeAsString);
+            } catch (IllegalArgumentException iAE) {
+                // Keep the default value for an unknown (e.g. outdated) stored value
+                iAE.printStackTrace();
+            }
+        }
+        return randomSourceType;
+    }
+
+    /**
+     * Set the value of the random source type setting so that it can be stored in the database
+     * when closing the app and let the ChooserLogic object use a random source of that type.
+     * @param randomSourceType The random source type to use as a <code>RandomSourceType</code>.
+     */
+    void setRandomSourceTypeDefault(RandomSourceType randomSourceType) {
+        this.randomSourceTypeDefault.setValue(randomSourceType.toString());
+        chooserLogic.setRandomSourceType(randomSourceType);
+    }
+
+    /**
+     * Import an exported seeded session, continue its reproducible choices from now on and store
+     * the <code>SEEDED</code> random source type as setting.
+     * @param exportedSeededSession The exported seeded session.
+     * @throws IllegalArgumentException is thrown if the exported seeded session is malformed.
+     */
+    void importSeededSession(String exportedSeededSession) throws IllegalArgumentException {
+        chooserLogic.importSeededSession(exportedSeededSession);
+        this.randomSourceTypeDefault.setValue(RandomSourceType.SEEDED.toString());
+        this.seededSessionDefault.setValue(chooserLogic.exportSeededSession());
+    }
+
+    /**
+     * Export the current seeded session, e.g. for proving that the choices were fair.
+     * @return The exported seeded session as a <code>String</code> or <code>null</code> if the
+     * random source type is not <code>SEEDED</code>.
+     */
+    String exportSeededSession() {
+        return chooserLogic.exportSeededSession();
+    }
+
+    /**
+     * Returns the stored number of distinct items which are chosen at once from an item list.
+     * @return The stored pick count as an <code>int</code> or the default if none was stored.
+     */
+    int getItemListPickCountDefault() {
+        try {
+            final int itemListPickCount = Integer.parseInt(itemListPickCountDefault.getValue());
+            if (itemListPickCount > 0) {
+                return itemListPickCount;
+            }
+        } catch (NumberFormatException nfe) {
+            nfe.printStackTrace();
+        }
+        return ITEM_LIST_PICK_COUNT_DEFAULT;
+    }
+
+    /**
+     * Sets the number of distinct items which are chosen at once from an item list. The setting
+     * is stored in the database when the app is paused.
+     * @param itemListPickCount The pick count, it has to be greater than 0.
+     */
+    void setItemListPickCountDefault(int itemListPickCount) {
+        if (itemListPickCount > 0) {
+            this.itemListPickCountDefault.setValue(Integer.toString(itemListPickCount));
+        }
+    }
+
+    /**
+     * Returns the stored attribute filter for the item list choices.
+     * @return The stored filter as a <code>String</code> or <code>null</code> if none was stored.
+     */
+    String getItemListFilterDefault() {
+        return itemListFilterDefault.getValue();
+    }
+
+    /**
+     * Sets the attribute filter for the item list choices. The setting is stored in the database
+     * when the app is paused.
+     * @param itemListFilter The (valid) filter or <code>null</code> for choosing from all items.
+     */
+    void setItemListFilterDefault(ItemAttributeFilter itemListFilter) {
+        this.itemListFilterDefault.setValue(itemListFilter != null ? itemListFilter.toString() : null);
+    }
 }
@@ -23,7 +23,19 @@
  */
 package youareagit.thechoice;
 
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import youareagit.thechoice.random.RandomSource;
+import youareagit.thechoice.random.RandomSourceType;
+import youareagit.thechoice.random.SeededRandomSource;
 
 /**
  * This class bundles the logic and
@@ -31,13 +43,43 @@ import java.util.Random;
 class ChooserLogic {
     // Values for the normal dice and custom dice
     /** The default maximum range value a normal dice (D6). */
-    private static final int NORMAL_DICE_MAXIMUM_RANGE_VALUE = 6;
+    static final int NORMAL_DICE_MAXIMUM_RANGE_VALUE = 6;
     /** The default custom dice maximum range value. */
     static final int CUSTOM_DICE_MAXIMUM_RANGE_VALUE_DEFAULT = 20;
 
     /** The last used custom dice maximum range value. */
     private int lastCustomDiceMaximumRangeValue = CUSTOM_DICE_MAXIMUM_RANGE_VALUE_DEFAULT;
 
+    /** The last used valid dice notation expression or <code>null</code> if none was used yet. */
+    private String lastDiceExpression = null;
+    /** The raw text of the last rolled dice expression, so rolling it again skips the normalization. */
+    private String lastRolledDiceExpressionText = null;
+    /** The compiled expression of <code>lastRolledDiceExpressionText</code>. */
+    private DiceExpression lastRolledDiceExpression = null;
+    /** The last used valid number range (e.g. "-5..5") or <code>null</code> if none was used yet. */
+    private NumberRange lastNumberRange = null;
+    /** The scratch buffer of each thread for evaluating dice expressions without allocations. */
+    private final ThreadLocal<long[]> diceExpressionScratch = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[0];
+        }
+    };
+
+    /** The type of the currently used random source. */
+    private volatile RandomSourceType randomSourceType;
+    /** The random source which is used for all random choices during the lifetime of this object. */
+    private volatile RandomSource randomSource;
+    /** The reproducible session if the random source type is <code>SEEDED</code> or otherwise <code>null</code>. */
+    private volatile SeededSession seededSession;
+
+    /**
+     * Constructor for a <code>ChooserLogic</code> object which uses the default random source type.
+     */
+    ChooserLogic() {
+        setRandomSourceType(RandomSourceType.DEFAULT);
+    }
+
     /**
      * Gets a random number in the range [0 ... "given maximum range value - 1" if the
      * specified maximum value is greater than zero. Otherwise it will return 0.
@@ -52,7 +94,7 @@ class ChooserLogic {
 
         // Get a random number in the range 0 ... given maximum range value
         if (isMaximumRangeValueValid(maximumValue)) {
-            randomNumber = new Random().nextInt(maximumValue);
+            randomNumber = randomSource.nextInt(maximumValue);
         }
         return randomNumber;
     }
@@ -115,6 +157,322 @@ class ChooserLogic {
         return ruleCustomDice(NORMAL_DICE_MAXIMUM_RANGE_VALUE);
     }
 
+    /**
+     * Rule the dice of the given dice notation expression (e.g. <code>4d6kh3+2</code>) and return
+     * the result as a <code>String</code>. If the expression is not valid <code>null</code> will be
+     * returned. Every expression is only parsed once and then executed from a cached plan.
+     *
+     * @param diceExpressionText The dice notation expression.
+     * @return The result of the roll as a <code>String</code> or <code>null</code> if the
+     * expression was invalid.
+     */
+    String ruleDiceExpression(String diceExpressionText) {
+        // Buffer for the result text
+        String choiceResult = null;
+
+        try {
+            // Get the compiled expression (the same text as the last roll is looked up without
+            // normalizing it again) and roll it
+            if (lastRolledDiceExpression == null || !lastRolledDiceExpressionText.equals(diceExpressionText)) {
+                lastRolledDiceExpression = DiceExpression.compile(diceExpressionText);
+                lastRolledDiceExpressionText = diceExpressionText;
+            }
+            final DiceExpression diceExpression = lastRolledDiceExpression;
+            choiceResult = String.valueOf(rollDiceExpression(diceExpression));
+
+            // The expression was valid so buffer it for storing it later in the settings database
+            lastDiceExpression = diceExpression.getSource();
+        } catch (IllegalArgumentException iAE) {
+            iAE.printStackTrace();
+        }
+        return choiceResult;
+    }
+
+    /**
+     * Choose a uniformly distributed value of the given inclusive number range (e.g.
+     * <code>-5..5</code> or <code>1..1000000000000</code>) and return it as a <code>String</code>.
+     * Any <code>long</code> bounds are supported without a bias. If the range is not valid
+     * <code>null</code> will be returned.
+     *
+     * @param numberRangeText The number range in the notation <code>min..max</code>.
+     * @return The chosen value as a <code>String</code> or <code>null</code> if the range was
+     * invalid.
+     */
+    String ruleNumberRange(String numberRangeText) {
+        // Buffer for the result text
+        String choiceResult = null;
+
+        try {
+            final NumberRange numberRange = NumberRange.parse(numberRangeText);
+            choiceResult = String.valueOf(randomSource.nextLong(numberRange.getMinimum(), numberRange.getMaximum()));
+
+            // The range was valid so buffer it for storing it later in the settings database
+            lastNumberRange = numberRange;
+        } catch (IllegalArgumentException iAE) {
+            iAE.printStackTrace();
+        }
+        return choiceResult;
+    }
+
+    /**
+     * Returns the probability that a value of the last used valid number range is the given value
+     * or a higher one.
+     * @param value The smallest value to include.
+     * @return The probability in the range [0 ... 1] as a <code>double</code> or 0 if no number
+     * range was used yet.
+     */
+    double getNumberRangeProbabilityAtLeast(long value) {
+        return lastNumberRange != null ? lastNumberRange.probabilityAtLeast(value) : 0;
+    }
+
+    /**
+     * Returns the exact distribution of the sums of the given dice notation expression.
+     * @param diceExpressionText The dice notation expression.
+     * @return The <code>DiceDistribution</code> of the expression or <code>null</code> if the
+     * expression is invalid or its distribution is not supported (e.g. for keep modifiers).
+     */
+    DiceDistribution getDiceExpressionDistribution(String diceExpressionText) {
+        DiceDistribution diceDistribution = null;
+        try {
+            diceDistribution = DiceDistribution.of(DiceExpression.compile(diceExpressionText));
+        } catch (IllegalArgumentException iAE) {
+            // No distribution available for this expression
+        }
+        return diceDistribution;
+    }
+
+    /**
+     * Returns the probability that a roll of the custom dice with the last used valid maximum range
+     * value shows the given value or a higher one.
+     * @param value The smallest value to include.
+     * @return The probability in the range [0 ... 1] as a <code>double</code>.
+     */
+    double getCustomDiceProbabilityAtLeast(long value) {
+        return DiceDistribution.probabilityAtLeast(lastCustomDiceMaximumRangeValue, value);
+    }
+
+    /**
+     * Roll the dice of the given compiled dice expression.
+     * @param diceExpression The compiled dice expression to roll.
+     * @return The result of the roll as a <code>long</code>.
+     */
+    long rollDiceExpression(DiceExpression diceExpression) {
+        long[] scratch = diceExpressionScratch.get();
+        // Only grow the scratch buffer of the current thread if the expression needs more space
+        if (scratch.length < diceExpression.getScratchSize()) {
+            scratch = new long[diceExpression.getScratchSize()];
+            diceExpressionScratch.set(scratch);
+        }
+        return diceExpression.roll(randomSource, scratch);
+    }
+
+    /**
+     * Rule a dice with the specified number of sides <code>count</code> times, store the results in
+     * the given array and return a histogram of the results.<br />
+     * In contrast to <code>ruleCustomDice(int)</code> the parameters are validated only once for the
+     * whole batch and no <code>String</code> or boxed value is created per result.
+     *
+     * @param sides The number of sides (maximum range value) of the dice.
+     * @param count The number of rolls.
+     * @param results The array for the results (each in the range [1 ... sides]) which has to have
+     *                space for at least <code>count</code> values.
+     * @return The histogram of the results as a <code>long</code> array with <code>sides</code>
+     * entries, the number of rolls with the result <code>n</code> is stored at index <code>n - 1</code>.
+     * @throws IllegalArgumentException is thrown if the number of sides is equal to or less than 0,
+     * the count is negative or the results array is too small.
+     */
+    long[] rollMany(int sides, int count, int[] results) throws IllegalArgumentException {
+        // Check the number of sides before allocating the histogram
+        isMaximumRangeValueValid(sides);
+        final long[] histogram = new long[sides];
+        rollMany(sides, count, results, histogram);
+        return histogram;
+    }
+
+    /**
+     * Rule a dice with the specified number of sides <code>count</code> times, store the results in
+     * the given array and add them to the given histogram if it is not <code>null</code>.<br />
+     * Hint: Pass <code>null</code> as histogram for dice with a huge number of sides.
+     *
+     * @param sides The number of sides (maximum range value) of the dice.
+     * @param count The number of rolls.
+     * @param results The array for the results (each in the range [1 ... sides]) which has to have
+     *                space for at least <code>count</code> values.
+     * @param histogram The histogram to add the results to (the number of rolls with the result
+     *                  <code>n</code> is added at index <code>n - 1</code>) or <code>null</code>.
+     * @throws IllegalArgumentException is thrown if the number of sides is equal to or less than 0,
+     * the count is negative or one of the arrays is too small.
+     */
+    void rollMany(int sides, int count, int[] results, long[] histogram) throws IllegalArgumentException {
+        // Validate all parameters once for the whole batch
+        isMaximumRangeValueValid(sides);
+        isBatchCountValid(count, results.length);
+        if (histogram != null && histogram.length < sides) {
+            throw new IllegalArgumentException("The histogram needs " + sides + " entries but it only has: " + histogram.length);
+        }
+
+        // Draw all values in the range [0 ... sides - 1] at once
+        randomSource.nextInts(sides, results, 0, count);
+        // Shift them into the range [1 ... sides] and count them
+        if (histogram != null) {
+            for (int i = 0; i < count; i++) {
+                histogram[results[i]]++;
+                results[i]++;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                results[i]++;
+            }
+        }
+    }
+
+    /**
+     * Throw a coin <code>count</code> times, store the results as bits (64 per <code>long</code>,
+     * starting with the least significant bit of the first value) and return a histogram of the
+     * results. A set bit corresponds to a <code>true</code> result of <code>throwCoin()</code>,
+     * unused bits of the last value are cleared.
+     *
+     * @param count The number of coin throws.
+     * @param bits The array for the result bits which has to have space for at least
+     *             <code>count</code> bits.
+     * @return The histogram of the results as a <code>long</code> array with the number of
+     * <code>false</code> results at index 0 and the number of <code>true</code> results at index 1.
+     * @throws IllegalArgumentException is thrown if the count is negative or the bits array is too
+     * small.
+     */
+    long[] flipMany(int count, long[] bits) throws IllegalArgumentException {
+        // Reject a negative count before it is converted into a number of values
+        if (count < 0) {
+            throw new IllegalArgumentException("The count has to be equal to or greater than zero but it was: " + count);
+        }
+        // Every long value holds the results of 64 coin throws
+        final int numberOfWords = (int) ((count + 63L) >>> 6);
+        isBatchCountValid(numberOfWords, bits.length);
+
+        // Draw all bits at once
+        randomSource.nextLongs(bits, 0, numberOfWords);
+        // Clear the unused bits of the last value
+        final int usedBitsOfLastWord = count & 63;
+        if (usedBitsOfLastWord != 0) {
+            bits[numberOfWords - 1] &= (1L << usedBitsOfLastWord) - 1;
+        }
+        // Count the "true" results
+        long numberOfSetBits = 0;
+        for (int i = 0; i < numberOfWords; i++) {
+            numberOfSetBits += Long.bitCount(bits[i]);
+        }
+        return new long[] { count - numberOfSetBits, numberOfSetBits };
+    }
+
+    /**
+     * Flip a coin <code>count</code> times without storing the results and return the number of
+     * "Heads" and "Tails" results and their longest streaks. Every drawn <code>long</code> value
+     * provides 64 flips.
+     *
+     * @param count The number of coin flips, e.g. 1,000,000.
+     * @return The totals of the flips as <code>CoinFlips</code>.
+     * @throws IllegalArgumentException is thrown if the count is negative.
+     */
+    CoinFlips flipCoins(long count) throws IllegalArgumentException {
+        final CoinFlips coinFlips = new CoinFlips();
+        coinFlips.flip(randomSource, count);
+        return coinFlips;
+    }
+
+    /**
+     * Flip a coin <code>count</code> times split across the given number of worker threads and
+     * return the merged totals. Every worker flips a contiguous part with its own random source
+     * (for a seeded session its own substream, so the result is reproducible for the same number
+     * of workers).
+     *
+     * @param count The number of coin flips.
+     * @param numberOfWorkers The number of worker threads, e.g. the number of available cores.
+     * @return The totals of the flips as <code>CoinFlips</code>.
+     * @throws IllegalArgumentException is thrown if the count is negative or the number of
+     * workers is not positive.
+     */
+    CoinFlips flipCoins(long count, int numberOfWorkers) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("The number of coin flips cannot be negative: " + count);
+        }
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("The number of workers has to be positive: " + numberOfWorkers);
+        }
+        if (numberOfWorkers == 1) {
+            return flipCoins(count);
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(numberOfWorkers);
+        try {
+            final List<Future<CoinFlips>> futures = new ArrayList<>(numberOfWorkers);
+            for (int worker = 0; worker < numberOfWorkers; worker++) {
+                // Whole 64 bit values per worker, the last one flips the remainder
+                final long start = count / numberOfWorkers * worker & ~63L;
+                final long end = worker == numberOfWorkers - 1 ? count : count / numberOfWorkers * (worker + 1) & ~63L;
+                final RandomSource workerRandomSource = createWorkerRandomSource(worker);
+                futures.add(executorService.submit(new Callable<CoinFlips>() {
+                    @Override
+                    public CoinFlips call() {
+                        final CoinFlips coinFlips = new CoinFlips();
+                        coinFlips.flip(workerRandomSource, end - start);
+                        return coinFlips;
+                    }
+                }));
+            }
+            // Merge the parts in their order, so the streaks across their borders are found
+            final CoinFlips coinFlips = new CoinFlips();
+            for (Future<CoinFlips> future : futures) {
+                coinFlips.merge(future.get());
+            }
+            return coinFlips;
+        } catch (InterruptedException iE) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The coin flips were interrupted", iE);
+        } catch (ExecutionException eE) {
+            throw new IllegalStateException("A coin flip worker failed", eE.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Choose <code>count</code> distinct indices in the range [0 ... numberOfIndices - 1] with
+     * Floyd's algorithm, e.g. for drawing 6 of 49. It costs O(count) time and memory regardless of
+     * the number of indices, every subset is equally likely and the chosen indices are returned in
+     * a random order.
+     *
+     * @param numberOfIndices The number of indices to choose from.
+     * @param count The number of distinct indices to choose.
+     * @return The chosen indices as an <code>int</code> array with <code>count</code> values.
+     * @throws IllegalArgumentException is thrown if the count is negative or greater than the
+     * number of indices.
+     */
+    int[] chooseDistinctIndices(int numberOfIndices, int count) throws IllegalArgumentException {
+        if (count < 0 || count > numberOfIndices) {
+            throw new IllegalArgumentException("Cannot choose " + count + " distinct of " + numberOfIndices + " indices");
+        }
+        final int[] chosenIndices = new int[count];
+        final Set<Integer> chosenIndexSet = new HashSet<>(count * 2);
+        // Floyd: for every upper bound j take a random index below it, or j itself if it was taken
+        int chosenCount = 0;
+        for (int j = numberOfIndices - count; j < numberOfIndices; j++) {
+            int index = randomSource.nextInt(j + 1);
+            if (!chosenIndexSet.add(index)) {
+                // j can not have been taken before as all former upper bounds are smaller
+                index = j;
+                chosenIndexSet.add(index);
+            }
+            chosenIndices[chosenCount++] = index;
+        }
+        // The subset is uniform but the later indices tend to be larger, so shuffle the order
+        for (int i = count - 1; i > 0; i--) {
+            final int other = randomSource.nextInt(i + 1);
+            final int swap = chosenIndices[i];
+            chosenIndices[i] = chosenIndices[other];
+            chosenIndices[other] = swap;
+        }
+        return chosenIndices;
+    }
+
     /**
      * Sets the last custom dice maximum range value if it is valid (greater than zero).
      * @param maximumValue The custom dice maximum range value to set as an <code>int</code>.
@@ -142,6 +500,121 @@ class ChooserLogic {
             throw new IllegalArgumentException("The maximum range value for getting a random number cannot be equal to or less than zero but it was: " + maximumValue);
         }
     }
+    /**
+     * Checks if the given batch count is valid (not negative and not greater than the available
+     * space) and returns <code>true</code> or otherwise an <code>IllegalArgumentException</code> is
+     * thrown.
+     * @param count The batch count to validate as an <code>int</code>.
+     * @param capacity The available space as an <code>int</code>.
+     * @return If the validation was successful <code>true</code> else the mentioned exception is thrown.
+     * @throws IllegalArgumentException is thrown if the count is negative or greater than the capacity.
+     */
+    private boolean isBatchCountValid(int count, int capacity) throws IllegalArgumentException {
+        if (count >= 0 && count <= capacity) {
+            return true;
+        } else {
+            throw new IllegalArgumentException("The batch count has to be in the range 0 ... " + capacity + " but it was: " + count);
+        }
+    }
+
+    /**
+     * Sets the type of the random source and creates a new one of that type if it differs from the
+     * currently used type.
+     * @param randomSourceType The <code>RandomSourceType</code> to use. If it is <code>null</code>
+     *                         the default type is used.
+     */
+    synchronized void setRandomSourceType(RandomSourceType randomSourceType) {
+        // Fall back to the default type for missing values
+        if (randomSourceType == null) {
+            randomSourceType = RandomSourceType.DEFAULT;
+        }
+        // Only create a new random source if the type changed so that the current one is kept
+        if (randomSourceType != this.randomSourceType) {
+            final RandomSource newRandomSource = randomSourceType.createRandomSource();
+            // A new seeded random source starts a new session with an empty history
+            this.seededSession = newRandomSource instanceof SeededRandomSource
+                    ? new SeededSession((SeededRandomSource) newRandomSource) : null;
+            this.randomSource = newRandomSource;
+            this.randomSourceType = randomSourceType;
+        }
+    }
+
+    /**
+     * Import a seeded session exported by <code>exportSeededSession()</code> and use its random
+     * source from now on, so the following choices are the same as after the export.
+     * @param exportedSeededSession The exported seeded session.
+     * @throws IllegalArgumentException is thrown if the exported seeded session is malformed.
+     */
+    synchronized void importSeededSession(String exportedSeededSession) throws IllegalArgumentException {
+        final SeededSession importedSeededSession = SeededSession.parse(exportedSeededSession);
+        this.seededSession = importedSeededSession;
+        this.randomSource = importedSeededSession.getRandomSource();
+        this.randomSourceType = RandomSourceType.SEEDED;
+    }
+
+    /**
+     * Export the seed, stream, position and result history of the seeded session.
+     * @return The exported seeded session as a <code>String</code> or <code>null</code> if the
+     * random source type is not <code>SEEDED</code>.
+     */
+    String exportSeededSession() {
+        final SeededSession currentSeededSession = seededSession;
+        return currentSeededSession != null ? currentSeededSession.export() : null;
+    }
+
+    /**
+     * Mark the start of a choice whose result is recorded via <code>recordChoiceResult</code>.
+     * @return The position of the seeded random source before the choice or -1 if the random
+     * source type is not <code>SEEDED</code>.
+     */
+    long markChoice() {
+        final SeededSession currentSeededSession = seededSession;
+        return currentSeededSession != null ? currentSeededSession.getRandomSource().getPosition() : -1;
+    }
+
+    /**
+     * Record the result of a choice in the history of the seeded session (if there is one).
+     * @param position The position returned by <code>markChoice()</code> before the choice.
+     * @param choiceResult The result text of the choice.
+     */
+    void recordChoiceResult(long position, String choiceResult) {
+        final SeededSession currentSeededSession = seededSession;
+        if (currentSeededSession != null && position >= 0 && choiceResult != null) {
+            currentSeededSession.recordResult(position, choiceResult);
+        }
+    }
+
+    /**
+     * Creates a random source for one of several parallel workers. For the <code>SEEDED</code>
+     * type every worker gets its own reproducible stream of the seed (the choices use stream 0),
+     * otherwise a new independent random source of the current type is created.
+     * @param workerIndex The index of the worker (starting with 0).
+     * @return The <code>RandomSource</code> for the worker.
+     */
+    RandomSource createWorkerRandomSource(int workerIndex) {
+        final SeededSession currentSeededSession = seededSession;
+        if (currentSeededSession != null) {
+            return currentSeededSession.getRandomSource().substream(workerIndex + 1);
+        }
+        return randomSourceType.createRandomSource();
+    }
+
+    /**
+     * The type of the currently used random source.
+     * @return The type of the currently used random source as a <code>RandomSourceType</code>.
+     */
+    RandomSourceType getRandomSourceType() {
+        return randomSourceType;
+    }
+
+    /**
+     * The currently used random source, e.g. for drawing values in other choice helpers.
+     * @return The currently used <code>RandomSource</code>.
+     */
+    RandomSource getRandomSource() {
+        return randomSource;
+    }
+
     /**
      * The last used valid value of the custom dice maximum range value.
      * @return The last used valid value of the custom dice maximum range value as a <code>int</code>.
@@ -149,4 +622,46 @@ class ChooserLogic {
     int getLastCustomDiceMaximumRangeValue() {
         return lastCustomDiceMaximumRangeValue;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the last used dice notation expression if it is valid.
+     * @param diceExpressionText The dice notation expression to set as a <code>String</code>.
+     */
+    void setLastDiceExpression(String diceExpressionText) {
+        try {
+            lastDiceExpression = DiceExpression.compile(diceExpressionText).getSource();
+        } catch (IllegalArgumentException iAE) {
+            // Keep the current value for an invalid (e.g. not yet set) expression
+        }
+    }
+
+    /**
+     * The last used valid dice notation expression.
+     * @return The last used valid dice notation expression as a <code>String</code> or
+     * <code>null</code> if none was used yet.
+     */
+    String getLastDiceExpression() {
+        return lastDiceExpression;
+    }
+
+    /**
+     * Sets the last used number range if it is valid.
+     * @param numberRangeText The number range to set as a <code>String</code>.
+     */
+    void setLastNumberRange(String numberRangeText) {
+        try {
+            lastNumberRange = NumberRange.parse(numberRangeText);
+        } catch (IllegalArgumentException iAE) {
+            // Keep the current value for an invalid (e.g. not yet set) range
+        }
+    }
+
+    /**
+     * The last used valid number range.
+     * @return The last used valid number range as a <code>String</code> (e.g. "-5..5") or
+     * <code>null</code> if none was used yet.
+     */
+    String getLastNumberRange() {
+        return lastNumberRange != null ? lastNumberRange.toString() : null;
+    }
+}
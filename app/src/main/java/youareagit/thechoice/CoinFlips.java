@@ -0,0 +1,251 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * The totals of a mass coin flip: the number of heads and tails and the longest streak of each.
+ * The flips are bit-sliced, every <code>nextLong()</code> provides 64 flips (a set bit is "Tails"
+ * like a <code>true</code> result of <code>ChooserLogic.throwCoin()</code>) which are counted with
+ * <code>Long.bitCount</code>, and the streaks are found with a few shifts per value.<br />
+ * The flips of several workers can be merged in their order, because besides the totals the
+ * streaks at the start and at the end are kept as well.
+ */
+final class CoinFlips {
+    /** The number of values which are drawn at once. */
+    private static final int BUFFER_SIZE = 256;
+
+    /** The number of flips. */
+    private long numberOfFlips = 0;
+    /** The number of "Tails" results. */
+    private long numberOfTails = 0;
+    /** The longest streak of "Heads" results. */
+    private long longestHeadsStreak = 0;
+    /** The longest streak of "Tails" results. */
+    private long longestTailsStreak = 0;
+    /** Whether the first flip was "Tails". */
+    private boolean firstTails = false;
+    /** The length of the streak at the start (equal to the number of flips if all are equal). */
+    private long firstStreak = 0;
+    /** Whether the last flip was "Tails". */
+    private boolean lastTails = false;
+    /** The length of the streak at the end, it might continue in the following flips. */
+    private long lastStreak = 0;
+
+    /**
+     * Flip a coin <code>count</code> times and add the results.
+     * @param randomSource The <code>RandomSource</code> to use.
+     * @param count The number of flips.
+     * @throws IllegalArgumentException is thrown if the count is negative.
+     */
+    void flip(RandomSource randomSource, long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("The number of coin flips cannot be negative: " + count);
+        }
+        final long[] buffer = new long[(int) Math.min(BUFFER_SIZE, (count + 63) >>> 6)];
+        long remainingFlips = count;
+        while (remainingFlips > 0) {
+            final int numberOfWords = (int) Math.min(buffer.length, (remainingFlips + 63) >>> 6);
+            randomSource.nextLongs(buffer, 0, numberOfWords);
+            for (int i = 0; i < numberOfWords; i++) {
+                final int numberOfBits = (int) Math.min(64, remainingFlips);
+                add(buffer[i], numberOfBits);
+                remainingFlips -= numberOfBits;
+            }
+        }
+    }
+
+    /**
+     * Add the given flips.
+     * @param flips The flips as bits, starting with the least significant one.
+     * @param numberOfBits The number of used bits in the range [1 ... 64].
+     */
+    private void add(long flips, int numberOfBits) {
+        final long mask = numberOfBits == 64 ? -1L : (1L << numberOfBits) - 1;
+        final long tails = flips & mask;
+        final long heads = ~flips & mask;
+        numberOfTails += Long.bitCount(tails);
+
+        // The streak at the start of the value
+        final boolean startTails = (tails & 1) != 0;
+        final int startStreak = Math.min(numberOfBits, Long.numberOfTrailingZeros(startTails ? heads : tails));
+        // Continue the streak at the end of the previous flips if the results are equal
+        final boolean continuesLastStreak = numberOfFlips > 0 && lastTails == startTails;
+        if (numberOfFlips == 0) {
+            firstTails = startTails;
+        }
+        if (firstStreak == numberOfFlips && (numberOfFlips == 0 || firstTails == startTails)) {
+            firstStreak += startStreak;
+        }
+        numberOfFlips += numberOfBits;
+
+        if (startStreak == numberOfBits) {
+            // All flips are equal, so they only extend the last streak
+            lastStreak = continuesLastStreak ? lastStreak + numberOfBits : numberOfBits;
+            lastTails = startTails;
+            updateLongestStreak(lastTails, lastStreak);
+            return;
+        }
+        updateLongestStreak(startTails, continuesLastStreak ? lastStreak + startStreak : startStreak);
+
+        // The streaks inside the value (a streak reaching the end is a lower bound here)
+        longestHeadsStreak = Math.max(longestHeadsStreak, getLongestStreak(heads, longestHeadsStreak));
+        longestTailsStreak = Math.max(longestTailsStreak, getLongestStreak(tails, longestTailsStreak));
+
+        // The streak at the end of the value, it might continue in the next one
+        lastTails = ((tails >>> (numberOfBits - 1)) & 1) != 0;
+        lastStreak = Long.numberOfLeadingZeros((lastTails ? heads : tails) << (64 - numberOfBits));
+    }
+
+    /**
+     * Returns the length of the longest run of set bits of the given value if it is longer than the
+     * given one, otherwise the given length.
+     * @param bits The bits to search.
+     * @param knownLength The length of the longest streak found so far.
+     * @return The length of the longest run if it is longer, otherwise <code>knownLength</code>.
+     */
+    private static long getLongestStreak(long bits, long knownLength) {
+        long length = knownLength;
+        // Usually there is no longer run, which only costs a few shifts to rule out
+        while (length < 64 && hasRunOfSetBits(bits, (int) length + 1)) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Checks whether the given value has a run of at least <code>length</code> set bits, by
+     * combining the value with its shifted copies with doubling distances.
+     * @param bits The bits to search.
+     * @param length The length of the run in the range [1 ... 64].
+     * @return <code>true</code> if there is such a run.
+     */
+    private static boolean hasRunOfSetBits(long bits, int length) {
+        // After each step a bit is set if it starts a run of at least "covered" set bits
+        long runStarts = bits;
+        int covered = 1;
+        while (covered * 2 <= length && runStarts != 0) {
+            runStarts &= runStarts >>> covered;
+            covered *= 2;
+        }
+        if (covered < length) {
+            runStarts &= runStarts >>> (length - covered);
+        }
+        return runStarts != 0;
+    }
+
+    /**
+     * Update the longest streak of the given result.
+     */
+    private void updateLongestStreak(boolean tails, long streak) {
+        if (tails) {
+            longestTailsStreak = Math.max(longestTailsStreak, streak);
+        } else {
+            longestHeadsStreak = Math.max(longestHeadsStreak, streak);
+        }
+    }
+
+    /**
+     * Add the given flips which happened after the ones of this object, e.g. of the next worker.
+     * @param following The following flips.
+     * @return This object.
+     */
+    CoinFlips merge(CoinFlips following) {
+        if (following.numberOfFlips == 0) {
+            return this;
+        }
+        if (numberOfFlips == 0) {
+            firstTails = following.firstTails;
+        }
+        // The streak at the end of these flips continues with the start of the following ones
+        final boolean continuesLastStreak = numberOfFlips > 0 && lastTails == following.firstTails;
+        if (continuesLastStreak) {
+            updateLongestStreak(lastTails, lastStreak + following.firstStreak);
+        }
+        if (firstStreak == numberOfFlips && (numberOfFlips == 0 || firstTails == following.firstTails)) {
+            firstStreak += following.firstStreak;
+        }
+        if (following.lastStreak == following.numberOfFlips && continuesLastStreak) {
+            lastStreak += following.numberOfFlips;
+        } else {
+            lastStreak = following.lastStreak;
+        }
+        lastTails = following.lastTails;
+        numberOfFlips += following.numberOfFlips;
+        numberOfTails += following.numberOfTails;
+        longestHeadsStreak = Math.max(longestHeadsStreak, following.longestHeadsStreak);
+        longestTailsStreak = Math.max(longestTailsStreak, following.longestTailsStreak);
+        return this;
+    }
+
+    /**
+     * The number of flips.
+     * @return The number of flips as a <code>long</code>.
+     */
+    long getNumberOfFlips() {
+        return numberOfFlips;
+    }
+
+    /**
+     * The number of "Heads" results.
+     * @return The number of "Heads" results as a <code>long</code>.
+     */
+    long getNumberOfHeads() {
+        return numberOfFlips - numberOfTails;
+    }
+
+    /**
+     * The number of "Tails" results.
+     * @return The number of "Tails" results as a <code>long</code>.
+     */
+    long getNumberOfTails() {
+        return numberOfTails;
+    }
+
+    /**
+     * The longest streak of "Heads" results.
+     * @return The length of the longest streak as a <code>long</code>.
+     */
+    long getLongestHeadsStreak() {
+        return longestHeadsStreak;
+    }
+
+    /**
+     * The longest streak of "Tails" results.
+     * @return The length of the longest streak as a <code>long</code>.
+     */
+    long getLongestTailsStreak() {
+        return longestTailsStreak;
+    }
+
+    /**
+     * The longest streak of equal results.
+     * @return The length of the longest streak as a <code>long</code>.
+     */
+    long getLongestStreak() {
+        return Math.max(longestHeadsStreak, longestTailsStreak);
+    }
+}
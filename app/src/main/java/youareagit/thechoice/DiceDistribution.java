@@ -0,0 +1,277 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The exact probability mass function of the sum of a dice expression, e.g. for showing the odds
+ * "P(&ge;15) = 27%" next to a roll result.<br />
+ * The distribution of a dice pool (k dice with N sides) is computed by iterated convolution of
+ * primitive <code>double</code> arrays. The pool is split in halves recursively and every partial
+ * convolution is stored in an LRU cache, so repeated queries for large pools (e.g. 100d20) only
+ * need a few cache lookups.<br />
+ * Hint: Exploding dice are supported up to the precision of <code>double</code> values, keep
+ * modifiers are not supported.
+ */
+final class DiceDistribution {
+    /** The maximum number of different sums a distribution may have, which limits the work of a
+     * single convolution. */
+    static final int MAXIMUM_SUPPORT_SIZE = 10001;
+    /** The probability below which further explosions of an exploding die are ignored. */
+    private static final double EXPLOSION_PROBABILITY_THRESHOLD = 1e-16;
+    /** The maximum number of dice pool distributions which are kept in the cache. */
+    private static final int CACHE_SIZE = 64;
+
+    /** The cache for dice pool distributions, keyed by <code>poolKey()</code> (LRU order). */
+    private static final Map<Long, double[]> POOL_CACHE = new LinkedHashMap<Long, double[]>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** The smallest possible sum which belongs to the first probability. */
+    private final long minimum;
+    /** The probability of each sum from the minimum on. */
+    private final double[] probabilities;
+    /** The probability of each sum or a higher one from the minimum on. */
+    private final double[] probabilitiesAtLeast;
+
+    /**
+     * Private constructor, use one of the static factory methods for creating an instance.
+     */
+    private DiceDistribution(long minimum, double[] probabilities) {
+        this.minimum = minimum;
+        this.probabilities = probabilities;
+        // Sum up the probabilities from the highest sum downwards
+        this.probabilitiesAtLeast = new double[probabilities.length];
+        double sum = 0;
+        for (int i = probabilities.length - 1; i >= 0; i--) {
+            sum += probabilities[i];
+            probabilitiesAtLeast[i] = Math.min(sum, 1.0);
+        }
+    }
+
+    /**
+     * Computes the distribution of the sums of the given dice expression.
+     * @param diceExpression The compiled dice expression.
+     * @return The <code>DiceDistribution</code> of the expression.
+     * @throws IllegalArgumentException is thrown if the expression uses keep modifiers or if its
+     * distribution would have more than <code>MAXIMUM_SUPPORT_SIZE</code> different sums.
+     */
+    static DiceDistribution of(DiceExpression diceExpression) throws IllegalArgumentException {
+        long minimum = diceExpression.getConstant();
+        double[] probabilities = { 1.0 };
+        for (int term = 0; term < diceExpression.getNumberOfDicePools(); term++) {
+            if (diceExpression.getKeepCount(term) != 0) {
+                throw new IllegalArgumentException("The distribution of dice with keep modifiers is not supported: " + diceExpression);
+            }
+            final int count = diceExpression.getDiceCount(term);
+            final double[] poolProbabilities = getPoolProbabilities(count, diceExpression.getDiceSides(term), diceExpression.isExploding(term));
+            // The smallest sum of a pool is the number of dice, respectively its negative value
+            if (diceExpression.getSign(term) > 0) {
+                minimum += count;
+                probabilities = convolve(probabilities, poolProbabilities);
+            } else {
+                minimum -= count + poolProbabilities.length - 1;
+                probabilities = convolve(probabilities, reverse(poolProbabilities));
+            }
+        }
+        return new DiceDistribution(minimum, probabilities);
+    }
+
+    /**
+     * Returns the probability of the sums which are greater than or equal to the given value.
+     * @param value The smallest sum to include.
+     * @return The probability in the range [0 ... 1] as a <code>double</code>.
+     */
+    double probabilityAtLeast(long value) {
+        if (value <= minimum) {
+            return 1.0;
+        }
+        final long index = value - minimum;
+        return index < probabilitiesAtLeast.length ? probabilitiesAtLeast[(int) index] : 0.0;
+    }
+
+    /**
+     * Returns the probability of the given sum.
+     * @param value The sum.
+     * @return The probability in the range [0 ... 1] as a <code>double</code>.
+     */
+    double probabilityOf(long value) {
+        final long index = value - minimum;
+        return index >= 0 && index < probabilities.length ? probabilities[(int) index] : 0.0;
+    }
+
+    /**
+     * The smallest possible sum.
+     * @return The smallest possible sum as a <code>long</code>.
+     */
+    long getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * The largest considered sum (for exploding dice higher sums have a negligible probability).
+     * @return The largest considered sum as a <code>long</code>.
+     */
+    long getMaximum() {
+        return minimum + probabilities.length - 1;
+    }
+
+    /**
+     * Returns the probability that a single dice with the given number of sides shows the given
+     * value or a higher one, which needs no distribution array at all.
+     * @param sides The number of sides (maximum range value) of the dice.
+     * @param value The smallest value to include.
+     * @return The probability in the range [0 ... 1] as a <code>double</code>.
+     */
+    static double probabilityAtLeast(int sides, long value) {
+        if (value <= 1) {
+            return 1.0;
+        }
+        return value > sides ? 0.0 : (double) (sides - value + 1) / sides;
+    }
+
+    /**
+     * Returns the distribution of the sum of a dice pool (starting with the smallest sum which is
+     * the number of dice) from the cache or computes it by convolving the two halves of the pool.
+     */
+    private static double[] getPoolProbabilities(int count, int sides, boolean exploding) throws IllegalArgumentException {
+        // Without explosions the number of sums is known in advance
+        if (!exploding && (long) count * (sides - 1) + 1 > MAXIMUM_SUPPORT_SIZE) {
+            throw new IllegalArgumentException("The distribution of " + count + "d" + sides + " has too many different sums");
+        }
+        final Long key = poolKey(count, sides, exploding);
+        double[] poolProbabilities;
+        synchronized (POOL_CACHE) {
+            poolProbabilities = POOL_CACHE.get(key);
+        }
+        if (poolProbabilities == null) {
+            if (count == 1) {
+                poolProbabilities = exploding ? getExplodingDieProbabilities(sides) : getDieProbabilities(sides);
+            } else {
+                // Split the pool in halves whose distributions are cached as well
+                final int half = count / 2;
+                poolProbabilities = convolve(getPoolProbabilities(half, sides, exploding),
+                        getPoolProbabilities(count - half, sides, exploding));
+            }
+            synchronized (POOL_CACHE) {
+                POOL_CACHE.put(key, poolProbabilities);
+            }
+        }
+        return poolProbabilities;
+    }
+
+    /**
+     * The uniform distribution of a single die.
+     */
+    private static double[] getDieProbabilities(int sides) {
+        final double[] dieProbabilities = new double[sides];
+        final double probability = 1.0 / sides;
+        for (int i = 0; i < sides; i++) {
+            dieProbabilities[i] = probability;
+        }
+        return dieProbabilities;
+    }
+
+    /**
+     * The distribution of a single exploding die: a value <code>k * sides + r</code> with
+     * <code>r</code> in [1 ... sides - 1] needs <code>k</code> explosions and one final roll, so its
+     * probability is <code>(1 / sides)^(k + 1)</code>.
+     */
+    private static double[] getExplodingDieProbabilities(int sides) throws IllegalArgumentException {
+        final double probability = 1.0 / sides;
+        // Count the explosions which have a relevant probability
+        int explosions = 0;
+        double chainProbability = probability;
+        while (explosions < DiceExpression.MAXIMUM_NUMBER_OF_EXPLOSIONS
+                && chainProbability * probability >= EXPLOSION_PROBABILITY_THRESHOLD) {
+            chainProbability *= probability;
+            explosions++;
+        }
+        final long size = (long) (explosions + 1) * sides;
+        if (size > MAXIMUM_SUPPORT_SIZE) {
+            throw new IllegalArgumentException("The distribution of d" + sides + "! has too many different sums");
+        }
+        final double[] dieProbabilities = new double[(int) size];
+        chainProbability = probability;
+        for (int k = 0; k <= explosions; k++) {
+            for (int r = 1; r < sides; r++) {
+                dieProbabilities[k * sides + r - 1] = chainProbability;
+            }
+            chainProbability *= probability;
+        }
+        // The last value stands for all longer (negligible) explosion chains
+        dieProbabilities[(int) size - 1] = chainProbability / probability;
+        return dieProbabilities;
+    }
+
+    /**
+     * Convolves the two given distributions, i.e. returns the distribution of the sum of two
+     * independent values with these distributions.
+     */
+    private static double[] convolve(double[] first, double[] second) throws IllegalArgumentException {
+        // The distribution of a constant zero is the neutral element (the arrays are never modified)
+        if (first.length == 1 && first[0] == 1.0) {
+            return second;
+        }
+        final int size = first.length + second.length - 1;
+        if (size > MAXIMUM_SUPPORT_SIZE) {
+            throw new IllegalArgumentException("The distribution has too many different sums: " + size);
+        }
+        final double[] result = new double[size];
+        for (int i = 0; i < first.length; i++) {
+            final double probability = first[i];
+            if (probability == 0.0) {
+                continue;
+            }
+            for (int j = 0; j < second.length; j++) {
+                result[i + j] += probability * second[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a reversed copy of the given distribution (for negative terms).
+     */
+    private static double[] reverse(double[] probabilities) {
+        final double[] reversed = new double[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            reversed[probabilities.length - 1 - i] = probabilities[i];
+        }
+        return reversed;
+    }
+
+    /**
+     * The cache key of a dice pool which combines the number of dice, sides and explosions.
+     */
+    private static Long poolKey(int count, int sides, boolean exploding) {
+        return ((long) count << 32) | ((long) sides << 1) | (exploding ? 1 : 0);
+    }
+}
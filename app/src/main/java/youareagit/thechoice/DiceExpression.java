@@ -0,0 +1,510 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * A compiled dice notation expression, e.g. <code>4d6kh3+2</code> or <code>2d20!</code>.<br />
+ * The supported notation is a sum of terms which are separated by <code>+</code> or <code>-</code>.
+ * A term is either a constant number or a dice pool <code>NdM</code> (<code>N</code> dice with
+ * <code>M</code> sides, <code>N</code> defaults to 1 and <code>d%</code> means <code>d100</code>)
+ * with the optional modifiers <code>khK</code> or <code>kK</code> (keep the <code>K</code> highest
+ * dice), <code>klK</code> (keep the <code>K</code> lowest dice) and <code>!</code> (exploding dice,
+ * a die showing its maximum value is rolled again and added).<br />
+ * An expression is parsed only once into primitive arrays (the evaluation plan) which are then
+ * executed for every roll without parsing or allocating anything.
+ */
+final class DiceExpression {
+    /** The maximum number of dice in one dice pool. */
+    static final int MAXIMUM_NUMBER_OF_DICE = 1000;
+    /** The maximum number of additional rolls of one exploding die. */
+    static final int MAXIMUM_NUMBER_OF_EXPLOSIONS = 100;
+    /** The maximum number of terms in one expression. */
+    private static final int MAXIMUM_NUMBER_OF_TERMS = 100;
+    /** The number of sides of a percentile die (<code>d%</code>). */
+    private static final int PERCENTILE_DICE_SIDES = 100;
+    /** The maximum number of compiled expressions which are kept in the cache. */
+    private static final int CACHE_SIZE = 32;
+
+    /** The cache for compiled expressions, keyed by the normalized source text (LRU order). */
+    private static final Map<String, DiceExpression> CACHE = new LinkedHashMap<String, DiceExpression>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DiceExpression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** The normalized source text of the expression. */
+    private final String source;
+    // The evaluation plan with one array entry per dice pool term
+    /** The sign (1 or -1) of each dice pool. */
+    private final int[] signs;
+    /** The number of dice of each dice pool. */
+    private final int[] diceCounts;
+    /** The number of sides of the dice of each dice pool. */
+    private final int[] diceSides;
+    /** The number of dice to keep of each dice pool, positive for the highest and negative for the
+     * lowest dice or 0 for keeping all dice. */
+    private final int[] keepCounts;
+    /** Whether the dice of each dice pool are exploding. */
+    private final boolean[] exploding;
+    /** The sum of all constant terms. */
+    private final long constant;
+    /** The number of values the scratch buffer for evaluating the keep modifiers needs. */
+    private final int scratchSize;
+
+    /**
+     * Private constructor, use <code>compile(String)</code> for creating an instance.
+     */
+    private DiceExpression(String source, int[] signs, int[] diceCounts, int[] diceSides,
+                           int[] keepCounts, boolean[] exploding, long constant) {
+        this.source = source;
+        this.signs = signs;
+        this.diceCounts = diceCounts;
+        this.diceSides = diceSides;
+        this.keepCounts = keepCounts;
+        this.exploding = exploding;
+        this.constant = constant;
+        // The keep modifiers need a heap with space for the kept dice
+        int maximumKeepCount = 0;
+        for (int keepCount : keepCounts) {
+            maximumKeepCount = Math.max(maximumKeepCount, Math.abs(keepCount));
+        }
+        this.scratchSize = maximumKeepCount;
+    }
+
+    /**
+     * Returns the compiled expression for the given source text. Each expression is only parsed
+     * once and then taken from a cache.
+     * @param expressionText The dice notation expression, e.g. <code>4d6kh3+2</code>.
+     * @return The compiled <code>DiceExpression</code>.
+     * @throws IllegalArgumentException is thrown if the expression is not valid.
+     */
+    static DiceExpression compile(String expressionText) throws IllegalArgumentException {
+        if (expressionText == null) {
+            throw new IllegalArgumentException("The dice expression cannot be null");
+        }
+        // Normalize the text so that equal expressions share one cache entry
+        final String normalizedText = expressionText.replaceAll("\\s", "").toLowerCase(Locale.US);
+        DiceExpression diceExpression;
+        synchronized (CACHE) {
+            diceExpression = CACHE.get(normalizedText);
+        }
+        if (diceExpression == null) {
+            // Parse outside of the lock, at worst an expression is parsed twice
+            diceExpression = new Parser(normalizedText).parse();
+            synchronized (CACHE) {
+                CACHE.put(normalizedText, diceExpression);
+            }
+        }
+        return diceExpression;
+    }
+
+    /**
+     * Checks if the given text looks like a dice notation expression and not like a plain number,
+     * which is used for distinguishing the expressions from custom dice maximum range values.
+     * @param text The text to check.
+     * @return <code>true</code> if the text contains anything but digits and whitespace.
+     */
+    static boolean isDiceExpression(String text) {
+        return text != null && !text.trim().matches("\\d*");
+    }
+
+    /**
+     * Roll the dice of this expression and return the resulting sum.
+     * @param randomSource The <code>RandomSource</code> to use.
+     * @param scratch A buffer with at least <code>getScratchSize()</code> entries which is used
+     *                for evaluating the keep modifiers.
+     * @return The result of the roll as a <code>long</code>.
+     */
+    long roll(RandomSource randomSource, long[] scratch) {
+        long sum = constant;
+        for (int term = 0; term < diceCounts.length; term++) {
+            final int keepCount = keepCounts[term];
+            long termSum;
+            if (keepCount == 0) {
+                // Keep all dice
+                termSum = 0;
+                for (int i = 0; i < diceCounts[term]; i++) {
+                    termSum += rollDie(randomSource, term);
+                }
+            } else {
+                termSum = rollAndKeep(randomSource, term, keepCount, scratch);
+            }
+            sum += signs[term] * termSum;
+        }
+        return sum;
+    }
+
+    /**
+     * Roll one die of the given dice pool including its explosions.
+     */
+    private long rollDie(RandomSource randomSource, int term) {
+        final int sides = diceSides[term];
+        long value = randomSource.nextInt(sides) + 1;
+        if (exploding[term]) {
+            long lastValue = value;
+            // Roll again as long as the maximum value was rolled (with an upper limit)
+            for (int i = 0; i < MAXIMUM_NUMBER_OF_EXPLOSIONS && lastValue == sides; i++) {
+                lastValue = randomSource.nextInt(sides) + 1;
+                value += lastValue;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Roll all dice of the given dice pool and sum up the kept ones. The kept values are stored in
+     * a binary min-heap (keep highest) or max-heap via negated values (keep lowest) in the scratch
+     * buffer so that neither sorting nor allocations are necessary.
+     */
+    private long rollAndKeep(RandomSource randomSource, int term, int keepCount, long[] scratch) {
+        // Negate the values for keeping the lowest dice so that the same min-heap logic works
+        final long direction = keepCount > 0 ? 1 : -1;
+        final int heapCapacity = Math.abs(keepCount);
+        int heapSize = 0;
+        for (int i = 0; i < diceCounts[term]; i++) {
+            final long value = direction * rollDie(randomSource, term);
+            if (heapSize < heapCapacity) {
+                // Fill the heap and sift the new value up
+                int child = heapSize++;
+                while (child > 0) {
+                    final int parent = (child - 1) >>> 1;
+                    if (scratch[parent] <= value) {
+                        break;
+                    }
+                    scratch[child] = scratch[parent];
+                    child = parent;
+                }
+                scratch[child] = value;
+            } else if (value > scratch[0]) {
+                // Replace the smallest kept value and sift the new value down
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= heapSize) {
+                        break;
+                    }
+                    if (child + 1 < heapSize && scratch[child + 1] < scratch[child]) {
+                        child++;
+                    }
+                    if (value <= scratch[child]) {
+                        break;
+                    }
+                    scratch[parent] = scratch[child];
+                    parent = child;
+                }
+                scratch[parent] = value;
+            }
+        }
+        long sum = 0;
+        for (int i = 0; i < heapSize; i++) {
+            sum += scratch[i];
+        }
+        return direction * sum;
+    }
+
+    /**
+     * The number of values the scratch buffer passed to <code>roll</code> needs.
+     * @return The scratch buffer size as an <code>int</code>.
+     */
+    int getScratchSize() {
+        return scratchSize;
+    }
+
+    /**
+     * The number of dice pool terms of the expression.
+     * @return The number of dice pools as an <code>int</code>.
+     */
+    int getNumberOfDicePools() {
+        return diceCounts.length;
+    }
+
+    /**
+     * The sign of the given dice pool.
+     * @param term The index of the dice pool.
+     * @return 1 for an added or -1 for a subtracted dice pool.
+     */
+    int getSign(int term) {
+        return signs[term];
+    }
+
+    /**
+     * The number of dice of the given dice pool.
+     * @param term The index of the dice pool.
+     * @return The number of dice as an <code>int</code>.
+     */
+    int getDiceCount(int term) {
+        return diceCounts[term];
+    }
+
+    /**
+     * The number of sides of the dice of the given dice pool.
+     * @param term The index of the dice pool.
+     * @return The number of sides as an <code>int</code>.
+     */
+    int getDiceSides(int term) {
+        return diceSides[term];
+    }
+
+    /**
+     * The number of kept dice of the given dice pool.
+     * @param term The index of the dice pool.
+     * @return The number of kept dice, positive for the highest and negative for the lowest dice or
+     * 0 if all dice are kept.
+     */
+    int getKeepCount(int term) {
+        return keepCounts[term];
+    }
+
+    /**
+     * Whether the dice of the given dice pool are exploding.
+     * @param term The index of the dice pool.
+     * @return <code>true</code> if the dice are exploding.
+     */
+    boolean isExploding(int term) {
+        return exploding[term];
+    }
+
+    /**
+     * The sum of all constant terms.
+     * @return The sum of all constant terms as a <code>long</code>.
+     */
+    long getConstant() {
+        return constant;
+    }
+
+    /**
+     * The smallest possible result of the expression.
+     * @return The minimum as a <code>long</code>.
+     */
+    long getMinimum() {
+        long minimum = constant;
+        for (int term = 0; term < diceCounts.length; term++) {
+            // Added pools contribute their lowest, subtracted pools their highest sum
+            minimum += signs[term] > 0 ? getCountedDice(term) : -getTermMaximum(term);
+        }
+        return minimum;
+    }
+
+    /**
+     * The largest possible result of the expression (exploding dice explode at most
+     * <code>MAXIMUM_NUMBER_OF_EXPLOSIONS</code> times).
+     * @return The maximum as a <code>long</code>.
+     */
+    long getMaximum() {
+        long maximum = constant;
+        for (int term = 0; term < diceCounts.length; term++) {
+            maximum += signs[term] > 0 ? getTermMaximum(term) : -getCountedDice(term);
+        }
+        return maximum;
+    }
+
+    /**
+     * The number of dice of the given dice pool which count for the sum.
+     * @param term The index of the dice pool.
+     * @return The number of kept dice as a <code>long</code>.
+     */
+    private long getCountedDice(int term) {
+        return keepCounts[term] != 0 ? Math.min(Math.abs(keepCounts[term]), diceCounts[term]) : diceCounts[term];
+    }
+
+    /**
+     * The largest possible sum of the given dice pool.
+     * @param term The index of the dice pool.
+     * @return The maximum sum as a <code>long</code>.
+     */
+    private long getTermMaximum(int term) {
+        final long maximumPerDie = (long) diceSides[term] * (exploding[term] ? MAXIMUM_NUMBER_OF_EXPLOSIONS + 1 : 1);
+        return getCountedDice(term) * maximumPerDie;
+    }
+
+    /**
+     * The normalized source text of the expression.
+     * @return The normalized source text as a <code>String</code>.
+     */
+    String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Recursive descent parser for the dice notation which builds the evaluation plan.
+     */
+    private static final class Parser {
+        /** The normalized text to parse. */
+        private final String text;
+        /** The current parse position. */
+        private int position = 0;
+
+        // The evaluation plan which is built while parsing
+        private final int[] signs = new int[MAXIMUM_NUMBER_OF_TERMS];
+        private final int[] diceCounts = new int[MAXIMUM_NUMBER_OF_TERMS];
+        private final int[] diceSides = new int[MAXIMUM_NUMBER_OF_TERMS];
+        private final int[] keepCounts = new int[MAXIMUM_NUMBER_OF_TERMS];
+        private final boolean[] exploding = new boolean[MAXIMUM_NUMBER_OF_TERMS];
+        private int numberOfDicePools = 0;
+        private int numberOfTerms = 0;
+        private long constant = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parse the whole text.
+         * @return The compiled <code>DiceExpression</code>.
+         * @throws IllegalArgumentException is thrown if the text is not a valid expression.
+         */
+        DiceExpression parse() throws IllegalArgumentException {
+            if (text.isEmpty()) {
+                throw error("The dice expression is empty");
+            }
+            // An optional sign of the first term
+            int sign = 1;
+            if (peek() == '+' || peek() == '-') {
+                sign = text.charAt(position++) == '-' ? -1 : 1;
+            }
+            parseTerm(sign);
+            while (position < text.length()) {
+                final char operator = text.charAt(position++);
+                if (operator != '+' && operator != '-') {
+                    throw error("Expected '+' or '-'");
+                }
+                parseTerm(operator == '-' ? -1 : 1);
+            }
+            return new DiceExpression(text,
+                    Arrays.copyOf(signs, numberOfDicePools), Arrays.copyOf(diceCounts, numberOfDicePools),
+                    Arrays.copyOf(diceSides, numberOfDicePools), Arrays.copyOf(keepCounts, numberOfDicePools),
+                    Arrays.copyOf(exploding, numberOfDicePools), constant);
+        }
+
+        /**
+         * Parse a constant or a dice pool term with the given sign.
+         */
+        private void parseTerm(int sign) throws IllegalArgumentException {
+            if (++numberOfTerms > MAXIMUM_NUMBER_OF_TERMS) {
+                throw error("Too many terms, at most " + MAXIMUM_NUMBER_OF_TERMS + " are allowed");
+            }
+            // The number of dice or the constant value
+            final int number = peek() == 'd' ? 1 : parseNumber();
+            if (peek() != 'd') {
+                // A constant term
+                constant += sign * (long) number;
+                return;
+            }
+            position++;
+            if (number < 1 || number > MAXIMUM_NUMBER_OF_DICE) {
+                throw error("The number of dice has to be in the range 1 ... " + MAXIMUM_NUMBER_OF_DICE);
+            }
+            // The number of sides
+            final int sides;
+            if (peek() == '%') {
+                position++;
+                sides = PERCENTILE_DICE_SIDES;
+            } else {
+                sides = parseNumber();
+            }
+            if (sides < 1) {
+                throw error("The number of sides has to be greater than zero");
+            }
+            // The optional modifiers in any order
+            int keepCount = 0;
+            boolean isExploding = false;
+            while (peek() == 'k' || peek() == '!') {
+                if (text.charAt(position++) == '!') {
+                    if (isExploding || sides < 2) {
+                        throw error("Only dice with at least two sides can explode once");
+                    }
+                    isExploding = true;
+                } else {
+                    if (keepCount != 0) {
+                        throw error("Only one keep modifier is allowed per dice pool");
+                    }
+                    boolean keepHighest = true;
+                    if (peek() == 'h' || peek() == 'l') {
+                        keepHighest = text.charAt(position++) == 'h';
+                    }
+                    keepCount = parseNumber();
+                    if (keepCount < 1 || keepCount > number) {
+                        throw error("The number of kept dice has to be in the range 1 ... " + number);
+                    }
+                    // Keeping all dice is the same as no keep modifier at all
+                    if (keepCount == number) {
+                        keepCount = 0;
+                    } else if (!keepHighest) {
+                        keepCount = -keepCount;
+                    }
+                }
+            }
+            signs[numberOfDicePools] = sign;
+            diceCounts[numberOfDicePools] = number;
+            diceSides[numberOfDicePools] = sides;
+            keepCounts[numberOfDicePools] = keepCount;
+            exploding[numberOfDicePools] = isExploding;
+            numberOfDicePools++;
+        }
+
+        /**
+         * Parse a non-negative decimal number (only the ASCII digits, other Unicode digits would
+         * not map to their value via <code>c - '0'</code>).
+         */
+        private int parseNumber() throws IllegalArgumentException {
+            final int start = position;
+            long value = 0;
+            while (position < text.length() && text.charAt(position) >= '0' && text.charAt(position) <= '9') {
+                value = value * 10 + (text.charAt(position++) - '0');
+                if (value > Integer.MAX_VALUE) {
+                    throw error("The number is too large");
+                }
+            }
+            if (position == start) {
+                throw error("Expected a number");
+            }
+            return (int) value;
+        }
+
+        /**
+         * The character at the current position or 0 at the end of the text.
+         */
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of the dice expression: " + text);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.Arrays;
+
+import youareagit.thechoice.data.ItemListMembers;
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * Chooses the items of an item list proportionally to their weights, but lowers the probability of
+ * the recently chosen items: an item chosen <code>age</code> picks ago (0 is the last pick) has its
+ * weight multiplied by <code>1 - RECENCY_PENALTY * RECENCY_DECAY^age</code> for each of its picks
+ * among the last <code>RECENT_PICKS_CAPACITY</code> picks.<br />
+ * The current weights are held in a Fenwick tree, so a draw and the incremental weight updates
+ * after a pick cost O(log n) even for item lists with tens of thousands of items.
+ */
+final class FairSelector {
+    /** The value returned by <code>next</code> if there is nothing to choose. */
+    static final long NO_ITEM_ID = -1;
+    /** The number of recent picks which lower the probability of their items. */
+    static final int RECENT_PICKS_CAPACITY = 16;
+    /** The part of the weight which is removed for the last pick (so an immediate repeat is rare). */
+    static final double RECENCY_PENALTY = 0.95;
+    /** The factor by which the penalty decays with every further pick. */
+    static final double RECENCY_DECAY = 0.7;
+    /** The number of incremental updates after which the tree is rebuilt to drop rounding errors. */
+    private static final int REBUILD_INTERVAL = 4096;
+    /** The maximum number of draws if rounding errors led to an item without weight. */
+    private static final int MAXIMUM_DRAW_ATTEMPTS = 8;
+    /** The weight factor for a pick of each age (0 is the last pick). */
+    private static final double[] RECENCY_FACTORS = new double[RECENT_PICKS_CAPACITY];
+
+    static {
+        double penalty = RECENCY_PENALTY;
+        for (int age = 0; age < RECENT_PICKS_CAPACITY; age++) {
+            RECENCY_FACTORS[age] = 1.0 - penalty;
+            penalty *= RECENCY_DECAY;
+        }
+    }
+
+    /** The item ids in ascending order. */
+    private final long[] itemIds;
+    /** The weights of the items without the recency penalty. */
+    private final double[] baseWeights;
+    /** The current weights of the items (the leaves of the tree). */
+    private final double[] weights;
+    /** The Fenwick tree (1-based) of the current weights. */
+    private final double[] tree;
+    /** The sum of the current weights. */
+    private double totalWeight;
+    /** The number of incremental updates since the tree was built. */
+    private int updateCount;
+    /** The membership version of the item list the selector was built for. */
+    private final long membersVersion;
+
+    // The ring buffer of the recent picks
+    /** The item ids of the recent picks. */
+    private final long[] recentItemIds = new long[RECENT_PICKS_CAPACITY];
+    /** The position in the ring buffer for the next pick. */
+    private int recentHead = 0;
+    /** The number of recent picks in the ring buffer. */
+    private int recentCount = 0;
+    /** Scratch array for the distinct item ids of the recent picks. */
+    private final long[] distinctItemIds = new long[RECENT_PICKS_CAPACITY];
+    /** Scratch array for the combined weight factors of the distinct item ids. */
+    private final double[] distinctFactors = new double[RECENT_PICKS_CAPACITY];
+
+    /**
+     * Builds the selector for the given item list members in O(n).
+     * @param itemListMembers The members of the item list (sorted by their item ids).
+     */
+    FairSelector(ItemListMembers itemListMembers) {
+        itemIds = itemListMembers.getItemIds();
+        baseWeights = itemListMembers.getWeights();
+        weights = baseWeights.clone();
+        tree = new double[itemIds.length + 1];
+        membersVersion = itemListMembers.getVersion();
+        rebuildTree();
+    }
+
+    /**
+     * Take over the recent picks of the selector which was used before the membership changed, so
+     * the penalties continue. Picks of removed items are kept for their age but have no effect.
+     * @param previousFairSelector The selector which was used before.
+     */
+    void takeOverRecentPicks(FairSelector previousFairSelector) {
+        System.arraycopy(previousFairSelector.recentItemIds, 0, recentItemIds, 0, RECENT_PICKS_CAPACITY);
+        recentHead = previousFairSelector.recentHead;
+        recentCount = previousFairSelector.recentCount;
+        updateRecentWeights();
+    }
+
+    /**
+     * Choose an item id and lower its probability for the next picks.
+     * @param randomSource The <code>RandomSource</code> to use.
+     * @return The chosen item id or <code>NO_ITEM_ID</code> if the item list is empty or all
+     * weights are zero.
+     */
+    long next(RandomSource randomSource) {
+        for (int attempt = 0; attempt < MAXIMUM_DRAW_ATTEMPTS && totalWeight > 0; attempt++) {
+            // A uniform double in [0, 1) from 53 random bits
+            final double target = (randomSource.nextLong() >>> 11) * 0x1.0p-53 * totalWeight;
+            final int index = findIndex(target);
+            // Rounding errors could lead to an item without weight, so draw again then
+            if (weights[index] > 0) {
+                final long itemId = itemIds[index];
+                recordPick(itemId);
+                return itemId;
+            }
+        }
+        return NO_ITEM_ID;
+    }
+
+    /**
+     * The membership version of the item list the selector was built for.
+     * @return The version as a <code>long</code>.
+     */
+    long getMembersVersion() {
+        return membersVersion;
+    }
+
+    /**
+     * The current probability of choosing the given item.
+     * @param itemId The id of the item.
+     * @return The probability or 0 if the item is not in the item list.
+     */
+    double getProbability(long itemId) {
+        final int index = Arrays.binarySearch(itemIds, itemId);
+        return index >= 0 && totalWeight > 0 ? weights[index] / totalWeight : 0;
+    }
+
+    /**
+     * Find the index of the item whose cumulative weight range contains the target via binary
+     * lifting over the tree in O(log n).
+     */
+    private int findIndex(double target) {
+        final int size = itemIds.length;
+        int position = 0;
+        double remaining = target;
+        for (int step = Integer.highestOneBit(size); step > 0; step >>= 1) {
+            final int next = position + step;
+            if (next <= size && tree[next] <= remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        // The position is the number of items whose cumulative weight is at most the target, so
+        // it is the 0-based index of the chosen item (limited in case of rounding errors)
+        return Math.min(position, size - 1);
+    }
+
+    /**
+     * Add the pick to the ring buffer and update the weights of all items whose age changed.
+     */
+    private void recordPick(long itemId) {
+        final boolean isFull = recentCount == RECENT_PICKS_CAPACITY;
+        final long evictedItemId = recentItemIds[recentHead];
+        recentItemIds[recentHead] = itemId;
+        recentHead = (recentHead + 1) % RECENT_PICKS_CAPACITY;
+        if (!isFull) {
+            recentCount++;
+        }
+        // Every recent pick aged by one, so update their items (and the one which dropped out)
+        if (isFull) {
+            updateWeight(evictedItemId);
+        }
+        updateRecentWeights();
+        // Drop the accumulated rounding errors from time to time
+        if (updateCount >= REBUILD_INTERVAL) {
+            rebuildTree();
+        }
+    }
+
+    /**
+     * Set the current weights of all recently picked items to their base weights multiplied by
+     * the factors of their recent picks. The ring buffer is walked once from the newest to the
+     * oldest pick and the factors of the distinct items are collected in the scratch arrays.
+     */
+    private void updateRecentWeights() {
+        int distinctCount = 0;
+        int position = recentHead;
+        for (int age = 0; age < recentCount; age++) {
+            position = (position == 0 ? RECENT_PICKS_CAPACITY : position) - 1;
+            final long itemId = recentItemIds[position];
+            int distinctIndex = 0;
+            while (distinctIndex < distinctCount && distinctItemIds[distinctIndex] != itemId) {
+                distinctIndex++;
+            }
+            if (distinctIndex == distinctCount) {
+                distinctItemIds[distinctCount] = itemId;
+                distinctFactors[distinctCount] = RECENCY_FACTORS[age];
+                distinctCount++;
+            } else {
+                distinctFactors[distinctIndex] *= RECENCY_FACTORS[age];
+            }
+        }
+        for (int i = 0; i < distinctCount; i++) {
+            final int index = Arrays.binarySearch(itemIds, distinctItemIds[i]);
+            // Skip the items which were removed from the item list
+            if (index >= 0) {
+                setWeight(index, baseWeights[index] * distinctFactors[i]);
+            }
+        }
+    }
+
+    /**
+     * Reset the current weight of an item which dropped out of the recent picks to its base weight
+     * (its remaining recent picks are applied by <code>updateRecentWeights</code> afterwards).
+     */
+    private void updateWeight(long itemId) {
+        final int index = Arrays.binarySearch(itemIds, itemId);
+        if (index >= 0) {
+            setWeight(index, baseWeights[index]);
+        }
+    }
+
+    /**
+     * Set the current weight of an item and update the tree in O(log n).
+     */
+    private void setWeight(int index, double weight) {
+        final double delta = weight - weights[index];
+        if (delta != 0) {
+            weights[index] = weight;
+            totalWeight += delta;
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+            updateCount++;
+        }
+    }
+
+    /**
+     * Build the tree from the current weights in O(n).
+     */
+    private void rebuildTree() {
+        Arrays.fill(tree, 0);
+        totalWeight = 0;
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += weights[i - 1];
+            totalWeight += weights[i - 1];
+            final int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        updateCount = 0;
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * A group vote on the items of an item list: every voter submits a ranking of (some of) the items
+ * and the winner is determined by instant-runoff voting (the candidate with the fewest first
+ * choices is eliminated until one has a majority) and by the Borda count (a candidate gets
+ * <code>numberOfCandidates - 1 - rank</code> points per ballot).<br />
+ * The tally is incremental: a new ballot only updates the Borda scores, the first choice counts
+ * and the first choice pile of its candidate, all in primitive arrays. The instant-runoff rounds
+ * then start from these counts and every elimination only moves the ballots of the eliminated
+ * candidate's pile to their next choices, so recounting after a ballot costs
+ * O(ballots + candidates^2) without allocations. Ties are broken by a random candidate order which
+ * is drawn once when the vote starts, so the winner does not change randomly between ballots.
+ */
+final class GroupVote {
+    /** The kind under which the state of a vote is stored for an item list. */
+    static final String STATE_KIND = "GROUP_VOTE";
+    /** The value returned if there is no winner yet (no ballots). */
+    static final long NO_ITEM_ID = -1;
+    /** The end of a pile of ballots. */
+    private static final int NO_BALLOT = -1;
+    /** The format version of the packed state, stored as its first value. */
+    private static final long STATE_FORMAT_VERSION = 1;
+    /** The number of values in front of the candidates in the packed state. */
+    private static final int STATE_HEADER_SIZE = 3;
+
+    /** The item ids of the candidates in ascending order. */
+    private final long[] candidateIds;
+    /** The tie-break rank of every candidate, a lower rank wins a tie. */
+    private final int[] tieBreakRanks;
+
+    /** The ranked candidate indices of all ballots, one after the other. */
+    private int[] ballotChoices;
+    /** The start of every ballot in <code>ballotChoices</code>, the entry after the last ballot is its end. */
+    private int[] ballotStarts;
+    /** The number of ballots. */
+    private int numberOfBallots = 0;
+
+    /** The Borda score of every candidate. */
+    private final long[] bordaScores;
+    /** The number of ballots with every candidate as first choice. */
+    private final int[] firstChoiceCounts;
+    /** The last ballot of the first choice pile of every candidate. */
+    private final int[] firstChoicePiles;
+    /** The previous ballot in the same first choice pile for every ballot. */
+    private int[] firstChoicePileLinks;
+
+    /** The scratch arrays of the instant-runoff rounds, reused for every recount. */
+    private final int[] roundCounts;
+    private final int[] roundPiles;
+    private final boolean[] eliminated;
+    private int[] roundPileLinks;
+    private int[] ballotPositions;
+
+    /** Whether the instant-runoff result has to be recounted. */
+    private boolean instantRunoffOutdated = true;
+    /** The instant-runoff winner index or -1 if there is none. */
+    private int instantRunoffWinner = -1;
+    /** The number of rounds of the last instant-runoff count. */
+    private int instantRunoffRounds = 0;
+
+    private GroupVote(long[] candidateIds, int[] tieBreakRanks) {
+        final int numberOfCandidates = candidateIds.length;
+        this.candidateIds = candidateIds;
+        this.tieBreakRanks = tieBreakRanks;
+        ballotChoices = new int[numberOfCandidates * 4];
+        ballotStarts = new int[5];
+        bordaScores = new long[numberOfCandidates];
+        firstChoiceCounts = new int[numberOfCandidates];
+        firstChoicePiles = new int[numberOfCandidates];
+        Arrays.fill(firstChoicePiles, NO_BALLOT);
+        firstChoicePileLinks = new int[4];
+        roundCounts = new int[numberOfCandidates];
+        roundPiles = new int[numberOfCandidates];
+        eliminated = new boolean[numberOfCandidates];
+        roundPileLinks = new int[4];
+        ballotPositions = new int[4];
+    }
+
+    /**
+     * Start a new vote on the given item ids.
+     * @param itemIds The item ids of the candidates (they are not modified).
+     * @param randomSource The <code>RandomSource</code> to use for the tie-break order.
+     * @return The new <code>GroupVote</code> without ballots.
+     * @throws IllegalArgumentException If there are no item ids or an item id is contained twice.
+     */
+    static GroupVote start(long[] itemIds, RandomSource randomSource) throws IllegalArgumentException {
+        final int numberOfCandidates = itemIds.length;
+        if (numberOfCandidates == 0) {
+            throw new IllegalArgumentException("A vote needs at least one item");
+        }
+        final long[] candidateIds = itemIds.clone();
+        Arrays.sort(candidateIds);
+        for (int i = 1; i < numberOfCandidates; i++) {
+            if (candidateIds[i] == candidateIds[i - 1]) {
+                throw new IllegalArgumentException("The item " + candidateIds[i] + " is contained twice");
+            }
+        }
+        // Fisher-Yates for the tie-break order
+        final int[] tieBreakRanks = new int[numberOfCandidates];
+        for (int i = 0; i < numberOfCandidates; i++) {
+            tieBreakRanks[i] = i;
+        }
+        for (int i = numberOfCandidates - 1; i > 0; i--) {
+            final int other = randomSource.nextInt(i + 1);
+            final int swap = tieBreakRanks[i];
+            tieBreakRanks[i] = tieBreakRanks[other];
+            tieBreakRanks[other] = swap;
+        }
+        return new GroupVote(candidateIds, tieBreakRanks);
+    }
+
+    /**
+     * Add the ballot of a voter and update the tally.
+     * @param rankedItemIds The item ids in the order of preference of the voter, candidates which
+     *                      are not contained are ranked after all contained ones.
+     * @throws IllegalArgumentException If the ballot is empty or contains an item id which is no
+     * candidate or an item id twice.
+     */
+    void addBallot(long... rankedItemIds) throws IllegalArgumentException {
+        final int numberOfChoices = rankedItemIds.length;
+        if (numberOfChoices == 0 || numberOfChoices > candidateIds.length) {
+            throw new IllegalArgumentException("A ballot needs 1 to " + candidateIds.length + " choices");
+        }
+        ensureBallotCapacity(numberOfChoices);
+        final int start = ballotStarts[numberOfBallots];
+        for (int rank = 0; rank < numberOfChoices; rank++) {
+            final int candidate = Arrays.binarySearch(candidateIds, rankedItemIds[rank]);
+            if (candidate < 0) {
+                throw new IllegalArgumentException("The item " + rankedItemIds[rank] + " is no candidate");
+            }
+            // The ballots are short, so a linear check for duplicates is enough
+            for (int i = start; i < start + rank; i++) {
+                if (ballotChoices[i] == candidate) {
+                    throw new IllegalArgumentException("The item " + rankedItemIds[rank] + " is ranked twice");
+                }
+            }
+            ballotChoices[start + rank] = candidate;
+        }
+        // Only now that the ballot is valid the tally is updated
+        final int ballot = numberOfBallots++;
+        ballotStarts[numberOfBallots] = start + numberOfChoices;
+        for (int rank = 0; rank < numberOfChoices; rank++) {
+            bordaScores[ballotChoices[start + rank]] += candidateIds.length - 1 - rank;
+        }
+        final int firstChoice = ballotChoices[start];
+        firstChoiceCounts[firstChoice]++;
+        firstChoicePileLinks[ballot] = firstChoicePiles[firstChoice];
+        firstChoicePiles[firstChoice] = ballot;
+        instantRunoffOutdated = true;
+    }
+
+    /**
+     * Remove the last added ballot from the tally, e.g. if a voter made a mistake.
+     * @return <code>true</code> if a ballot was removed or <code>false</code> if there was none.
+     */
+    boolean undoLastBallot() {
+        if (numberOfBallots == 0) {
+            return false;
+        }
+        final int ballot = --numberOfBallots;
+        final int start = ballotStarts[ballot];
+        final int end = ballotStarts[ballot + 1];
+        for (int i = start; i < end; i++) {
+            bordaScores[ballotChoices[i]] -= candidateIds.length - 1 - (i - start);
+        }
+        // The last ballot is always on top of its first choice pile
+        final int firstChoice = ballotChoices[start];
+        firstChoiceCounts[firstChoice]--;
+        firstChoicePiles[firstChoice] = firstChoicePileLinks[ballot];
+        instantRunoffOutdated = true;
+        return true;
+    }
+
+    /**
+     * Grow the ballot arrays if the next ballot with the given number of choices does not fit.
+     */
+    private void ensureBallotCapacity(int numberOfChoices) {
+        final int requiredChoices = ballotStarts[numberOfBallots] + numberOfChoices;
+        if (requiredChoices > ballotChoices.length) {
+            ballotChoices = Arrays.copyOf(ballotChoices, Math.max(requiredChoices, 2 * ballotChoices.length));
+        }
+        if (numberOfBallots + 2 > ballotStarts.length) {
+            final int ballotCapacity = 2 * ballotStarts.length;
+            ballotStarts = Arrays.copyOf(ballotStarts, ballotCapacity);
+            firstChoicePileLinks = Arrays.copyOf(firstChoicePileLinks, ballotCapacity);
+            roundPileLinks = new int[ballotCapacity];
+            ballotPositions = new int[ballotCapacity];
+        }
+    }
+
+    /**
+     * Count the instant-runoff rounds if a ballot was added or removed since the last count.
+     */
+    private void countInstantRunoff() {
+        if (!instantRunoffOutdated) {
+            return;
+        }
+        instantRunoffOutdated = false;
+        instantRunoffWinner = -1;
+        instantRunoffRounds = 0;
+        if (numberOfBallots == 0) {
+            return;
+        }
+        final int numberOfCandidates = candidateIds.length;
+        // The first round is the incrementally kept tally
+        System.arraycopy(firstChoiceCounts, 0, roundCounts, 0, numberOfCandidates);
+        System.arraycopy(firstChoicePiles, 0, roundPiles, 0, numberOfCandidates);
+        System.arraycopy(firstChoicePileLinks, 0, roundPileLinks, 0, numberOfBallots);
+        System.arraycopy(ballotStarts, 0, ballotPositions, 0, numberOfBallots);
+        Arrays.fill(eliminated, false);
+        int remainingCandidates = numberOfCandidates;
+        int activeBallots = numberOfBallots;
+
+        while (true) {
+            instantRunoffRounds++;
+            // Find the leader and the candidate to eliminate (ties by the tie-break order)
+            int leader = -1;
+            int loser = -1;
+            for (int candidate = 0; candidate < numberOfCandidates; candidate++) {
+                if (eliminated[candidate]) {
+                    continue;
+                }
+                if (leader < 0 || isAhead(candidate, leader)) {
+                    leader = candidate;
+                }
+                if (loser < 0 || isAhead(loser, candidate)) {
+                    loser = candidate;
+                }
+            }
+            if (remainingCandidates == 1 || 2L * roundCounts[leader] > activeBallots) {
+                instantRunoffWinner = leader;
+                return;
+            }
+            // Move the ballots of the eliminated candidate to their next remaining choices
+            eliminated[loser] = true;
+            remainingCandidates--;
+            int ballot = roundPiles[loser];
+            while (ballot != NO_BALLOT) {
+                final int nextBallot = roundPileLinks[ballot];
+                final int end = ballotStarts[ballot + 1];
+                int position = ballotPositions[ballot];
+                while (position < end && eliminated[ballotChoices[position]]) {
+                    position++;
+                }
+                ballotPositions[ballot] = position;
+                if (position < end) {
+                    final int nextChoice = ballotChoices[position];
+                    roundCounts[nextChoice]++;
+                    roundPileLinks[ballot] = roundPiles[nextChoice];
+                    roundPiles[nextChoice] = ballot;
+                } else {
+                    // All choices of the ballot are eliminated
+                    activeBallots--;
+                }
+                ballot = nextBallot;
+            }
+            roundPiles[loser] = NO_BALLOT;
+            roundCounts[loser] = 0;
+        }
+    }
+
+    /**
+     * Whether the first candidate has more votes in the current round than the second one or the
+     * same number and a better tie-break rank.
+     */
+    private boolean isAhead(int first, int second) {
+        return roundCounts[first] != roundCounts[second]
+                ? roundCounts[first] > roundCounts[second]
+                : tieBreakRanks[first] < tieBreakRanks[second];
+    }
+
+    /**
+     * The winner of the instant-runoff vote.
+     * @return The item id of the winner or <code>NO_ITEM_ID</code> if there are no ballots yet.
+     */
+    long getInstantRunoffWinner() {
+        countInstantRunoff();
+        return instantRunoffWinner >= 0 ? candidateIds[instantRunoffWinner] : NO_ITEM_ID;
+    }
+
+    /**
+     * The number of rounds the instant-runoff vote needed, the last round has a winner.
+     * @return The number of rounds or 0 if there are no ballots yet.
+     */
+    int getInstantRunoffRounds() {
+        countInstantRunoff();
+        return instantRunoffRounds;
+    }
+
+    /**
+     * The winner of the Borda count.
+     * @return The item id of the winner or <code>NO_ITEM_ID</code> if there are no ballots yet.
+     */
+    long getBordaWinner() {
+        if (numberOfBallots == 0) {
+            return NO_ITEM_ID;
+        }
+        int winner = 0;
+        for (int candidate = 1; candidate < candidateIds.length; candidate++) {
+            if (bordaScores[candidate] > bordaScores[winner]
+                    || (bordaScores[candidate] == bordaScores[winner] && tieBreakRanks[candidate] < tieBreakRanks[winner])) {
+                winner = candidate;
+            }
+        }
+        return candidateIds[winner];
+    }
+
+    /**
+     * The Borda score of the given candidate.
+     * @param itemId The item id of the candidate.
+     * @return The Borda score or 0 if the item is no candidate.
+     */
+    long getBordaScore(long itemId) {
+        final int candidate = Arrays.binarySearch(candidateIds, itemId);
+        return candidate >= 0 ? bordaScores[candidate] : 0;
+    }
+
+    /**
+     * The item ids of the candidates.
+     * @return A copy of the item ids in ascending order.
+     */
+    long[] getCandidateIds() {
+        return candidateIds.clone();
+    }
+
+    /**
+     * The number of ballots.
+     * @return The number of ballots as an <code>int</code>.
+     */
+    int getNumberOfBallots() {
+        return numberOfBallots;
+    }
+
+    /**
+     * Pack the vote into a blob of big endian <code>long</code> values: the format version, the
+     * number of candidates, the number of ballots, the candidate ids, the tie-break ranks and then
+     * every ballot as its number of choices followed by its candidate indices.
+     * @return The packed state as a <code>byte</code> array.
+     */
+    byte[] toState() {
+        final int numberOfCandidates = candidateIds.length;
+        final int numberOfChoices = ballotStarts[numberOfBallots];
+        final ByteBuffer byteBuffer = ByteBuffer.allocate(
+                (STATE_HEADER_SIZE + 2 * numberOfCandidates + numberOfBallots + numberOfChoices) * 8);
+        final LongBuffer longBuffer = byteBuffer.asLongBuffer();
+        longBuffer.put(STATE_FORMAT_VERSION).put(numberOfCandidates).put(numberOfBallots);
+        longBuffer.put(candidateIds);
+        for (int tieBreakRank : tieBreakRanks) {
+            longBuffer.put(tieBreakRank);
+        }
+        for (int ballot = 0; ballot < numberOfBallots; ballot++) {
+            longBuffer.put(ballotStarts[ballot + 1] - ballotStarts[ballot]);
+            for (int i = ballotStarts[ballot]; i < ballotStarts[ballot + 1]; i++) {
+                longBuffer.put(ballotChoices[i]);
+            }
+        }
+        return byteBuffer.array();
+    }
+
+    /**
+     * Unpack a vote from a blob created by <code>toState</code>, the tally is rebuilt from the
+     * ballots.
+     * @param state The packed state.
+     * @return The unpacked <code>GroupVote</code>.
+     * @throws IllegalArgumentException is thrown if the state is malformed or of another format
+     * version.
+     */
+    static GroupVote fromState(byte[] state) throws IllegalArgumentException {
+        if (state == null || state.length % 8 != 0 || state.length < STATE_HEADER_SIZE * 8) {
+            throw new IllegalArgumentException("The group vote state has an invalid length.");
+        }
+        final LongBuffer longBuffer = ByteBuffer.wrap(state).asLongBuffer();
+        final long formatVersion = longBuffer.get();
+        final long numberOfCandidates = longBuffer.get();
+        final long numberOfBallots = longBuffer.get();
+        if (formatVersion != STATE_FORMAT_VERSION) {
+            throw new IllegalArgumentException("The group vote state format version " + formatVersion + " is not supported.");
+        }
+        if (numberOfCandidates < 1 || numberOfBallots < 0
+                || longBuffer.remaining() < 2 * numberOfCandidates + numberOfBallots) {
+            throw new IllegalArgumentException("The group vote state is inconsistent (candidates: " + numberOfCandidates
+                    + ", ballots: " + numberOfBallots + ").");
+        }
+        final long[] candidateIds = new long[(int) numberOfCandidates];
+        longBuffer.get(candidateIds);
+        final int[] tieBreakRanks = new int[(int) numberOfCandidates];
+        final boolean[] usedTieBreakRanks = new boolean[(int) numberOfCandidates];
+        for (int candidate = 0; candidate < numberOfCandidates; candidate++) {
+            final long tieBreakRank = longBuffer.get();
+            if (tieBreakRank < 0 || tieBreakRank >= numberOfCandidates || usedTieBreakRanks[(int) tieBreakRank]
+                    || (candidate > 0 && candidateIds[candidate] <= candidateIds[candidate - 1])) {
+                throw new IllegalArgumentException("The group vote state contains invalid candidates.");
+            }
+            usedTieBreakRanks[(int) tieBreakRank] = true;
+            tieBreakRanks[candidate] = (int) tieBreakRank;
+        }
+        final GroupVote groupVote = new GroupVote(candidateIds, tieBreakRanks);
+        for (int ballot = 0; ballot < numberOfBallots; ballot++) {
+            final long numberOfChoices = longBuffer.remaining() > 0 ? longBuffer.get() : -1;
+            if (numberOfChoices < 1 || numberOfChoices > numberOfCandidates || longBuffer.remaining() < numberOfChoices) {
+                throw new IllegalArgumentException("The group vote state contains an invalid ballot.");
+            }
+            final long[] rankedItemIds = new long[(int) numberOfChoices];
+            for (int rank = 0; rank < numberOfChoices; rank++) {
+                final long candidate = longBuffer.get();
+                if (candidate < 0 || candidate >= numberOfCandidates) {
+                    throw new IllegalArgumentException("The group vote state contains an invalid choice: " + candidate);
+                }
+                rankedItemIds[rank] = candidateIds[(int) candidate];
+            }
+            // Rebuilds the tally and rejects duplicate choices
+            groupVote.addBallot(rankedItemIds);
+        }
+        if (longBuffer.remaining() != 0) {
+            throw new IllegalArgumentException("The group vote state has trailing values.");
+        }
+        return groupVote;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A filter of the items of an item list by their attributes, e.g. <code>vegetarian !fastfood</code>
+ * or <code>cheap | vegetarian</code>.<br />
+ * The terms separated by spaces or <code>&amp;</code> are combined with AND, the groups separated
+ * by <code>|</code> with OR and a term prefixed by <code>!</code> or <code>-</code> is negated.
+ * The filter is evaluated on an <code>ItemAttributeIndex</code> word by word.
+ */
+final class ItemAttributeFilter {
+    /** The separator of the OR groups. */
+    private static final String OR_SEPARATOR = "\\|";
+    /** The separators of the AND terms of a group. */
+    private static final String AND_SEPARATORS = "[\\s&]+";
+
+    /** The required attributes of every OR group. */
+    private final String[][] requiredAttributes;
+    /** The excluded attributes of every OR group. */
+    private final String[][] excludedAttributes;
+    /** The normalized filter text. */
+    private final String source;
+
+    private ItemAttributeFilter(String[][] requiredAttributes, String[][] excludedAttributes, String source) {
+        this.requiredAttributes = requiredAttributes;
+        this.excludedAttributes = excludedAttributes;
+        this.source = source;
+    }
+
+    /**
+     * Checks whether the given text contains a filter (it might still be invalid).
+     * @param filterText The text to check.
+     * @return <code>true</code> if the text is not empty or blank.
+     */
+    static boolean isFilter(String filterText) {
+        return filterText != null && !filterText.trim().isEmpty();
+    }
+
+    /**
+     * Parse the given filter text.
+     * @param filterText The filter text, e.g. <code>vegetarian !fastfood | cheap</code>.
+     * @return The parsed <code>ItemAttributeFilter</code>.
+     * @throws IllegalArgumentException If the text is empty or contains an empty group or term.
+     */
+    static ItemAttributeFilter parse(String filterText) throws IllegalArgumentException {
+        if (!isFilter(filterText)) {
+            throw new IllegalArgumentException("The filter is empty");
+        }
+        final String[] groups = filterText.split(OR_SEPARATOR, -1);
+        final String[][] requiredAttributes = new String[groups.length][];
+        final String[][] excludedAttributes = new String[groups.length][];
+        final StringBuilder source = new StringBuilder();
+        for (int group = 0; group < groups.length; group++) {
+            final String groupText = groups[group].trim();
+            if (groupText.isEmpty()) {
+                throw new IllegalArgumentException("The filter contains an empty group: " + filterText);
+            }
+            final List<String> required = new ArrayList<>();
+            final List<String> excluded = new ArrayList<>();
+            if (group > 0) {
+                source.append(" | ");
+            }
+            for (String term : groupText.split(AND_SEPARATORS)) {
+                final boolean negated = term.startsWith("!") || term.startsWith("-");
+                final String attribute = ItemAttributeIndex.normalize(negated ? term.substring(1) : term);
+                if (attribute.isEmpty()) {
+                    throw new IllegalArgumentException("The filter contains an empty term: " + filterText);
+                }
+                (negated ? excluded : required).add(attribute);
+                if (required.size() + excluded.size() > 1) {
+                    source.append(' ');
+                }
+                source.append(negated ? "!" : "").append(attribute);
+            }
+            requiredAttributes[group] = required.toArray(new String[required.size()]);
+            excludedAttributes[group] = excluded.toArray(new String[excluded.size()]);
+        }
+        return new ItemAttributeFilter(requiredAttributes, excludedAttributes, source.toString());
+    }
+
+    /**
+     * Evaluate the filter on the given index.
+     * @param index The attribute index of an item list.
+     * @return A new bitset with the bits of the matching member ordinals set.
+     */
+    long[] match(ItemAttributeIndex index) {
+        final long[] allBits = index.getAllBits();
+        final long[] matches = new long[allBits.length];
+        for (int group = 0; group < requiredAttributes.length; group++) {
+            final String[] required = requiredAttributes[group];
+            final String[] excluded = excludedAttributes[group];
+            // Resolve the bitsets of the group once instead of for every word
+            final long[][] requiredBits = new long[required.length][];
+            for (int i = 0; i < required.length; i++) {
+                requiredBits[i] = index.getBits(required[i]);
+            }
+            final long[][] excludedBits = new long[excluded.length][];
+            for (int i = 0; i < excluded.length; i++) {
+                excludedBits[i] = index.getBits(excluded[i]);
+            }
+            for (int wordIndex = 0; wordIndex < allBits.length; wordIndex++) {
+                long word = allBits[wordIndex];
+                for (long[] bits : requiredBits) {
+                    word &= bits[wordIndex];
+                }
+                for (long[] bits : excludedBits) {
+                    word &= ~bits[wordIndex];
+                }
+                matches[wordIndex] |= word;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * The required attributes of every OR group, e.g. for filtering in the database. Hint: The
+     * arrays are not copied, so they must not be modified.
+     * @return The normalized attributes by group.
+     */
+    String[][] getRequiredAttributes() {
+        return requiredAttributes;
+    }
+
+    /**
+     * The excluded attributes of every OR group, e.g. for filtering in the database. Hint: The
+     * arrays are not copied, so they must not be modified.
+     * @return The normalized attributes by group.
+     */
+    String[][] getExcludedAttributes() {
+        return excludedAttributes;
+    }
+
+    /**
+     * The normalized filter text, e.g. for storing it.
+     * @return The filter as a <code>String</code>.
+     */
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import youareagit.thechoice.data.ItemListMembers;
+import youareagit.thechoice.data.ItemListsItemsDataSource;
+
+/**
+ * The attributes of the members of an item list as one bitset (<code>long</code> words) per
+ * attribute over the dense member ordinals, i.e. the positions in
+ * <code>ItemListMembers.getItemIds()</code>. Filters are combined word by word and a random match
+ * is taken via a rank-select of a set bit, so a filtered pick costs O(words) regardless of the
+ * number of attributes per item.
+ */
+final class ItemAttributeIndex {
+    /** The separator of the attributes of an item. */
+    static final String ATTRIBUTE_SEPARATOR = ItemListsItemsDataSource.ATTRIBUTE_SEPARATOR;
+
+    /** The number of members. */
+    private final int numberOfMembers;
+    /** The bitset of every attribute (in lower case). */
+    private final Map<String, long[]> attributeBits = new HashMap<>();
+    /** The bitset with the bits of all members set. */
+    private final long[] allBits;
+    /** The bitset without any set bit, for unknown attributes. */
+    private final long[] noBits;
+
+    /**
+     * Build the index of the given members.
+     * @param members The members of an item list.
+     */
+    ItemAttributeIndex(ItemListMembers members) {
+        numberOfMembers = members.size();
+        final int numberOfWords = getNumberOfWords(numberOfMembers);
+        allBits = new long[numberOfWords];
+        for (int ordinal = 0; ordinal < numberOfMembers; ordinal++) {
+            allBits[ordinal >>> 6] |= 1L << ordinal;
+        }
+        noBits = new long[numberOfWords];
+
+        final String[] attributes = members.getAttributes();
+        for (int ordinal = 0; ordinal < numberOfMembers; ordinal++) {
+            if (attributes[ordinal] == null) {
+                continue;
+            }
+            for (String attribute : attributes[ordinal].split(ATTRIBUTE_SEPARATOR)) {
+                final String normalizedAttribute = normalize(attribute);
+                if (normalizedAttribute.isEmpty()) {
+                    continue;
+                }
+                long[] bits = attributeBits.get(normalizedAttribute);
+                if (bits == null) {
+                    bits = new long[numberOfWords];
+                    attributeBits.put(normalizedAttribute, bits);
+                }
+                bits[ordinal >>> 6] |= 1L << ordinal;
+            }
+        }
+    }
+
+    /**
+     * Normalizes an attribute for comparing it, e.g. " Vegetarian " becomes "vegetarian".
+     * @param attribute The attribute.
+     * @return The normalized attribute as a <code>String</code>.
+     */
+    static String normalize(String attribute) {
+        return attribute.trim().toLowerCase(Locale.US);
+    }
+
+    /**
+     * The bitset of the members with the given attribute. Hint: The array is not copied, so it
+     * must not be modified.
+     * @param normalizedAttribute The normalized attribute.
+     * @return The bitset as <code>long</code> words, without set bits for an unknown attribute.
+     */
+    long[] getBits(String normalizedAttribute) {
+        final long[] bits = attributeBits.get(normalizedAttribute);
+        return bits != null ? bits : noBits;
+    }
+
+    /**
+     * The bitset of all members. Hint: The array is not copied, so it must not be modified.
+     * @return The bitset as <code>long</code> words.
+     */
+    long[] getAllBits() {
+        return allBits;
+    }
+
+    /**
+     * The number of members.
+     * @return The number of members as an <code>int</code>.
+     */
+    int getNumberOfMembers() {
+        return numberOfMembers;
+    }
+
+    /**
+     * The number of <code>long</code> words of a bitset of the given number of members.
+     */
+    private static int getNumberOfWords(int numberOfMembers) {
+        return (numberOfMembers + 63) >>> 6;
+    }
+
+    /**
+     * Counts the set bits of the given bitset.
+     * @param bits The bitset.
+     * @return The number of set bits.
+     */
+    static int cardinality(long[] bits) {
+        int cardinality = 0;
+        for (long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the position of the set bit with the given rank (rank-select).
+     * @param bits The bitset.
+     * @param rank The rank of the set bit in the range [0 ... cardinality - 1].
+     * @return The position of the set bit.
+     * @throws IllegalArgumentException If the rank is negative or not less than the cardinality.
+     */
+    static int select(long[] bits, int rank) throws IllegalArgumentException {
+        if (rank >= 0) {
+            int remainingRank = rank;
+            for (int wordIndex = 0; wordIndex < bits.length; wordIndex++) {
+                long word = bits[wordIndex];
+                final int wordCardinality = Long.bitCount(word);
+                if (remainingRank < wordCardinality) {
+                    // Narrow the word down by halves to the searched bit
+                    int position = 0;
+                    for (int width = 32; width > 0; width >>>= 1) {
+                        final int lowerCardinality = Long.bitCount(word & ((1L << width) - 1));
+                        if (remainingRank >= lowerCardinality) {
+                            remainingRank -= lowerCardinality;
+                            word >>>= width;
+                            position += width;
+                        }
+                    }
+                    return (wordIndex << 6) + position;
+                }
+                remainingRank -= wordCardinality;
+            }
+        }
+        throw new IllegalArgumentException("There is no set bit with the rank " + rank);
+    }
+}
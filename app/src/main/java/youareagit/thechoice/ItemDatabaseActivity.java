@@ -42,6 +42,7 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ListView;
 
+import youareagit.thechoice.data.ChoiceDatabaseManager;
 import youareagit.thechoice.data.Item;
 import youareagit.thechoice.data.ItemsDataSource;
 
@@ -337,6 +338,14 @@ public class ItemDatabaseActivity extends ListActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Keep the shared database connection open while the activity is visible, so switching to
+        // another activity (which acquires its reference before this one is stopped) does not reopen it
+        ChoiceDatabaseManager.getInstance(this).acquire();
+    }
+
     @Override
     protected void onResume() {
         datasource.open();
@@ -349,6 +358,13 @@ public class ItemDatabaseActivity extends ListActivity {
         super.onPause();
     }
 
+    @Override
+    protected void onStop() {
+        // The database is closed if no other activity uses it anymore
+        ChoiceDatabaseManager.getInstance(this).release();
+        super.onStop();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -0,0 +1,237 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import youareagit.thechoice.data.ItemListMembers;
+import youareagit.thechoice.data.ItemListsItemsDataSource;
+import youareagit.thechoice.data.ItemsDataSource;
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * Caches one <code>AliasTable</code> per item list for choosing its items proportionally to their
+ * weights in O(1). A table is kept until the membership or the weights of its item list change.
+ * Tables are (re)built on a background thread so that even huge item lists never block the UI
+ * thread, until then the callers either wait for the table or fall back to a choice in the
+ * database. Each entry also holds the <code>ItemAttributeIndex</code> of the item list for
+ * filtered choices and the item names.<br />
+ * The entries are immutable snapshots, so any thread (e.g. the prefetch thread) can choose from
+ * them without touching a database. Only the background thread uses the data sources of the cache.
+ */
+class ItemListAliasTableCache {
+    /** The background thread which builds the tables (shared by all caches). */
+    private static final ExecutorService REBUILD_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ItemListAliasTableCache");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * A cache entry: an immutable snapshot of the members of an item list with their names, the
+     * alias table for their weights and the attribute index.
+     */
+    static final class Entry {
+        final ItemListMembers members;
+        /** The item names in the order of the member item ids. */
+        final String[] itemNames;
+        /** The table or <code>null</code> if the item list is empty or all weights are zero. */
+        final AliasTable aliasTable;
+        /** The bitsets of the item attributes for filtered choices. */
+        final ItemAttributeIndex attributeIndex;
+
+        Entry(ItemListMembers members, String[] itemNames, AliasTable aliasTable, ItemAttributeIndex attributeIndex) {
+            this.members = members;
+            this.itemNames = itemNames;
+            this.aliasTable = aliasTable;
+            this.attributeIndex = attributeIndex;
+        }
+
+        /**
+         * Choose an item proportionally to the item weights or, if all weights are zero, uniformly.
+         * @param randomSource The <code>RandomSource</code> to use.
+         * @return The name of the chosen item or <code>null</code> if the item list is empty.
+         */
+        String chooseItemName(RandomSource randomSource) {
+            if (aliasTable != null) {
+                return itemNames[aliasTable.next(randomSource)];
+            }
+            return itemNames.length > 0 ? itemNames[randomSource.nextInt(itemNames.length)] : null;
+        }
+
+        /**
+         * Choose an item uniformly among the items matching the filter. The matches are combined
+         * word by word from the attribute bitsets and a random match is taken via rank-select, so
+         * the choice costs O(items / 64).
+         * @param filter The attribute filter.
+         * @param randomSource The <code>RandomSource</code> to use.
+         * @return The name of the chosen item or <code>null</code> if no item matches.
+         */
+        String chooseFilteredItemName(ItemAttributeFilter filter, RandomSource randomSource) {
+            final long[] matches = filter.match(attributeIndex);
+            final int numberOfMatches = ItemAttributeIndex.cardinality(matches);
+            if (numberOfMatches == 0) {
+                return null;
+            }
+            return itemNames[ItemAttributeIndex.select(matches, randomSource.nextInt(numberOfMatches))];
+        }
+    }
+
+    /** The data source for loading the item list members (only used by the background thread). */
+    private final ItemListsItemsDataSource itemListsItemsDataSource;
+    /** The data source for loading the item names (only used by the background thread). */
+    private final ItemsDataSource itemsDataSource;
+    /** The cached entries by item list id, guarded by this object's monitor. */
+    private final Map<Long, Entry> entries = new HashMap<>();
+    /** The rebuilds which are scheduled or running by item list id, guarded by this object's monitor. */
+    private final Map<Long, Future<Entry>> pendingRebuilds = new HashMap<>();
+
+    /**
+     * Constructor for the <code>ItemListAliasTableCache</code> object.
+     * @param context The <code>Context</code> for the data sources of the background thread.
+     */
+    ItemListAliasTableCache(Context context) {
+        itemListsItemsDataSource = new ItemListsItemsDataSource(context);
+        itemsDataSource = new ItemsDataSource(context);
+    }
+
+    /**
+     * Returns the entry of the given item list if it is up to date. Otherwise a rebuild is started
+     * in the background (unless one is pending already) and, if requested, awaited.
+     * @param itemListId The id of the item list.
+     * @param waitIfMissing Whether to wait for the rebuild, e.g. because the result must not depend
+     *                      on the timing of the background thread.
+     * @return The entry or <code>null</code> if there is no current one (yet) or the rebuild failed.
+     */
+    Entry getEntry(long itemListId, boolean waitIfMissing) {
+        final Future<Entry> rebuild;
+        synchronized (this) {
+            final Entry entry = entries.get(itemListId);
+            if (entry != null && entry.members.getVersion() == ItemListsItemsDataSource.getItemListVersion(itemListId)) {
+                return entry;
+            }
+            rebuild = scheduleRebuild(itemListId);
+        }
+        if (!waitIfMissing) {
+            return null;
+        }
+        try {
+            return rebuild.get();
+        } catch (InterruptedException iE) {
+            // Keep the interruption for the caller and let it fall back
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException eE) {
+            // The rebuild failed (and logged why), let the caller fall back
+        }
+        return null;
+    }
+
+    /**
+     * Start building the table of the given item list in the background if there is no current one,
+     * e.g. as soon as an item list gets selected.
+     * @param itemListId The id of the item list.
+     */
+    void prepare(long itemListId) {
+        getEntry(itemListId, false);
+    }
+
+    /**
+     * Returns the pending rebuild of the given item list or schedules a new one (only one rebuild
+     * per item list at a time). Must be called while holding this object's monitor.
+     */
+    private Future<Entry> scheduleRebuild(final long itemListId) {
+        Future<Entry> rebuild = pendingRebuilds.get(itemListId);
+        if (rebuild == null) {
+            rebuild = REBUILD_EXECUTOR.submit(new Callable<Entry>() {
+                @Override
+                public Entry call() {
+                    try {
+                        return build(itemListId);
+                    } catch (RuntimeException rE) {
+                        // E.g. the database cannot be opened, the next access starts a new rebuild
+                        Log.w(ItemListAliasTableCache.class.getName(), "Rebuilding the alias table of item list " + itemListId + " failed", rE);
+                        throw rE;
+                    } finally {
+                        synchronized (ItemListAliasTableCache.this) {
+                            pendingRebuilds.remove(itemListId);
+                        }
+                    }
+                }
+            });
+            pendingRebuilds.put(itemListId, rebuild);
+        }
+        return rebuild;
+    }
+
+    /**
+     * Load the members of the given item list with their names, build their table and store it
+     * (on the background thread).
+     * @return The new entry.
+     */
+    private Entry build(long itemListId) {
+        final Entry entry;
+        // Hold a reference to the database only while building
+        itemListsItemsDataSource.open();
+        itemsDataSource.open();
+        try {
+            final ItemListMembers members = itemListsItemsDataSource.getItemListMembers(itemListId);
+            final String[] itemNames = itemsDataSource.getItemNames(members.getItemIds());
+            AliasTable aliasTable = null;
+            try {
+                if (members.size() > 0) {
+                    aliasTable = new AliasTable(members.getWeights());
+                }
+            } catch (IllegalArgumentException iAE) {
+                // E.g. all weights are zero, so there is nothing to choose proportionally
+                Log.w(ItemListAliasTableCache.class.getName(), "No alias table for item list " + itemListId + ": " + iAE.getMessage());
+            }
+            entry = new Entry(members, itemNames, aliasTable, new ItemAttributeIndex(members));
+        } finally {
+            itemsDataSource.close();
+            itemListsItemsDataSource.close();
+        }
+        synchronized (this) {
+            // Keep a newer entry which was built in the meantime
+            final Entry currentEntry = entries.get(itemListId);
+            if (currentEntry == null || currentEntry.members.getVersion() <= entry.members.getVersion()) {
+                entries.put(itemListId, entry);
+            }
+        }
+        return entry;
+    }
+}
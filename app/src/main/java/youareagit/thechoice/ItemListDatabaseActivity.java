@@ -27,6 +27,7 @@ import android.content.DialogInterface;
 import android.database.sqlite.SQLiteConstraintException;
 import android.os.Bundle;
 import android.support.v7.widget.Toolbar;
+import android.text.InputType;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.Menu;
@@ -40,17 +41,27 @@ import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.Toast;
 
+import java.util.Arrays;
 import java.util.List;
 
+import youareagit.thechoice.data.ChoiceDatabaseManager;
 import youareagit.thechoice.data.Item;
 import youareagit.thechoice.data.ItemList;
+import youareagit.thechoice.data.ItemListMembers;
 import youareagit.thechoice.data.ItemListsDataSource;
+import youareagit.thechoice.data.ItemListsItemsDataSource;
+import youareagit.thechoice.data.ItemsDataSource;
 
 public class ItemListDatabaseActivity extends ListActivity {
     private int INVALID_SELECTED_ITEM_POSITION = -1;
     private ArrayAdapter<ItemList> itemListAdapter = null;
     private ItemListsDataSource datasource = null;
+    /** Data source for the items which can be weighted in an item list. */
+    private ItemsDataSource itemsDataSource = null;
+    /** Data source for the items of the item lists and their weights. */
+    private ItemListsItemsDataSource itemListsItemsDataSource = null;
     private String itemID = null;
     private int selectedItemPosition = INVALID_SELECTED_ITEM_POSITION;
     private EditText editTextItemName = null;
@@ -140,6 +151,10 @@ public class ItemListDatabaseActivity extends ListActivity {
 
         datasource = new ItemListsDataSource(this);
         datasource.open();
+        itemsDataSource = new ItemsDataSource(this);
+        itemsDataSource.open();
+        itemListsItemsDataSource = new ItemListsItemsDataSource(this);
+        itemListsItemsDataSource.open();
 
         List<ItemList> itemLists = datasource.getAllItemLists();
 
@@ -158,7 +173,7 @@ public class ItemListDatabaseActivity extends ListActivity {
                                                     View view, ContextMenuInfo menuInfo) {
                         // Set the context menu from the XML file
                         MenuInflater inflater = getMenuInflater();
-                        inflater.inflate(R.menu.item_editor_context_menu,
+                        inflater.inflate(R.menu.itemlist_editor_context_menu,
                                 menu);
 
                         // Extract and set the position/index of the list item
@@ -189,6 +204,39 @@ public class ItemListDatabaseActivity extends ListActivity {
                                         return true;
                                     }
                                 });
+                        MenuItem menuItemEditItemWeights = menu
+                                .findItem(R.id.menuItemEditItemWeights);
+                        menuItemEditItemWeights
+                                .setOnMenuItemClickListener(new OnMenuItemClickListener() {
+                                    public boolean onMenuItemClick(MenuItem item) {
+                                        if (getListAdapter().getCount() > 0) {
+                                            showItemWeightsDialog(itemListAdapter.getItem(selectedItemPosition));
+                                        }
+                                        return true;
+                                    }
+                                });
+                        MenuItem menuItemEditItemSkills = menu
+                                .findItem(R.id.menuItemEditItemSkills);
+                        menuItemEditItemSkills
+                                .setOnMenuItemClickListener(new OnMenuItemClickListener() {
+                                    public boolean onMenuItemClick(MenuItem item) {
+                                        if (getListAdapter().getCount() > 0) {
+                                            showItemSkillsDialog(itemListAdapter.getItem(selectedItemPosition));
+                                        }
+                                        return true;
+                                    }
+                                });
+                        MenuItem menuItemEditItemAttributes = menu
+                                .findItem(R.id.menuItemEditItemAttributes);
+                        menuItemEditItemAttributes
+                                .setOnMenuItemClickListener(new OnMenuItemClickListener() {
+                                    public boolean onMenuItemClick(MenuItem item) {
+                                        if (getListAdapter().getCount() > 0) {
+                                            showItemAttributesDialog(itemListAdapter.getItem(selectedItemPosition));
+                                        }
+                                        return true;
+                                    }
+                                });
                         MenuItem menuItemEditItem = (menu
                                 .findItem(R.id.menuItemEditItem));
                         menuItemEditItem
@@ -340,22 +388,271 @@ public class ItemListDatabaseActivity extends ListActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Keep the shared database connection open while the activity is visible, so switching to
+        // another activity (which acquires its reference before this one is stopped) does not reopen it
+        ChoiceDatabaseManager.getInstance(this).acquire();
+    }
+
     @Override
     protected void onResume() {
         datasource.open();
+        itemsDataSource.open();
+        itemListsItemsDataSource.open();
         super.onResume();
     }
 
     @Override
     protected void onPause() {
         datasource.close();
+        itemsDataSource.close();
+        itemListsItemsDataSource.close();
         super.onPause();
     }
 
+    @Override
+    protected void onStop() {
+        // The database is closed if no other activity uses it anymore
+        ChoiceDatabaseManager.getInstance(this).release();
+        super.onStop();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         datasource.close();
+        itemsDataSource.close();
+        itemListsItemsDataSource.close();
+    }
+
+    /**
+     * Show a dialog with all items and their weights in the given item list. Clicking an item
+     * opens a dialog for entering its weight, an item is chosen proportionally to it.
+     * @param itemList The item list whose weights are edited.
+     */
+    void showItemWeightsDialog(final ItemList itemList) {
+        final List<Item> items = itemsDataSource.getAllItems();
+        // The members are sorted by the item ids, so the weight of an item is found via binary search
+        final ItemListMembers itemListMembers = itemListsItemsDataSource.getItemListMembers(itemList.getId());
+        final long[] memberItemIds = itemListMembers.getItemIds();
+        final double[] memberWeights = itemListMembers.getWeights();
+
+        final String[] itemLabels = new String[items.size()];
+        for (int i = 0; i < itemLabels.length; i++) {
+            final Item item = items.get(i);
+            final int memberIndex = Arrays.binarySearch(memberItemIds, item.getId());
+            itemLabels[i] = memberIndex >= 0
+                    ? getResources().getString(R.string.text_item_weight, item.getName(), String.valueOf(memberWeights[memberIndex]))
+                    : getResources().getString(R.string.text_item_not_in_item_list, item.getName());
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(getResources().getString(R.string.dialog_title_item_weights, itemList.getListName()))
+                .setItems(itemLabels, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        final Item item = items.get(which);
+                        final int memberIndex = Arrays.binarySearch(memberItemIds, item.getId());
+                        showItemWeightDialog(itemList, item, memberIndex >= 0 ? memberWeights[memberIndex] : null);
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
+    }
+
+    /**
+     * Show a dialog for entering the weight of the item in the item list. An item which is not in
+     * the item list yet is added to it with the entered weight.
+     * @param itemList The item list.
+     * @param item The item to weight.
+     * @param weight The current weight or <code>null</code> if the item is not in the item list.
+     */
+    void showItemWeightDialog(final ItemList itemList, final Item item, final Double weight) {
+        final EditText editTextItemWeight = new EditText(this);
+        editTextItemWeight.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL);
+        editTextItemWeight.setHint(R.string.hint_item_weight);
+        if (weight != null) {
+            editTextItemWeight.setText(String.valueOf(weight));
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(item.getName())
+                .setView(editTextItemWeight)
+                .setPositiveButton(R.string.button_save_item, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            // Accept a decimal comma as well
+                            final double newWeight = Double.parseDouble(editTextItemWeight.getText().toString().trim().replace(',', '.'));
+                            if (weight != null) {
+                                itemListsItemsDataSource.updateItemWeight(itemList.getId(), item.getId(), newWeight);
+                            } else {
+                                itemListsItemsDataSource.createItem(itemList.getId(), item.getId(), newWeight);
+                            }
+                            // Show the changed weights again
+                            showItemWeightsDialog(itemList);
+                        } catch (IllegalArgumentException iAE) {
+                            // A NumberFormatException or a negative weight
+                            iAE.printStackTrace();
+                            Toast.makeText(ItemListDatabaseActivity.this, R.string.text_invalid_item_weight, Toast.LENGTH_LONG).show();
+                        }
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
+    }
+
+    /**
+     * Show a dialog with all items and their skills in the given item list. Clicking an item opens
+     * a dialog for entering its skill, teams are balanced by the sums of the skills.
+     * @param itemList The item list whose skills are edited.
+     */
+    void showItemSkillsDialog(final ItemList itemList) {
+        final List<Item> items = itemsDataSource.getAllItems();
+        // The members are sorted by the item ids, so the skill of an item is found via binary search
+        final ItemListMembers itemListMembers = itemListsItemsDataSource.getItemListMembers(itemList.getId());
+        final long[] memberItemIds = itemListMembers.getItemIds();
+        final double[] memberSkills = itemListMembers.getSkills();
+
+        final String[] itemLabels = new String[items.size()];
+        for (int i = 0; i < itemLabels.length; i++) {
+            final Item item = items.get(i);
+            final int memberIndex = Arrays.binarySearch(memberItemIds, item.getId());
+            itemLabels[i] = memberIndex >= 0
+                    ? getResources().getString(R.string.text_item_skill, item.getName(), String.valueOf(memberSkills[memberIndex]))
+                    : getResources().getString(R.string.text_item_not_in_item_list, item.getName());
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(getResources().getString(R.string.dialog_title_item_skills, itemList.getListName()))
+                .setItems(itemLabels, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        final Item item = items.get(which);
+                        final int memberIndex = Arrays.binarySearch(memberItemIds, item.getId());
+                        if (memberIndex >= 0) {
+                            showItemSkillDialog(itemList, item, memberSkills[memberIndex]);
+                        } else {
+                            // The skill belongs to the membership of the item
+                            Toast.makeText(ItemListDatabaseActivity.this, R.string.text_add_item_to_item_list_first, Toast.LENGTH_LONG).show();
+                        }
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
+    }
+
+    /**
+     * Show a dialog for entering the skill of the item in the item list.
+     * @param itemList The item list.
+     * @param item The item to edit.
+     * @param skill The current skill.
+     */
+    void showItemSkillDialog(final ItemList itemList, final Item item, double skill) {
+        final EditText editTextItemSkill = new EditText(this);
+        editTextItemSkill.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL);
+        editTextItemSkill.setHint(R.string.hint_item_skill);
+        editTextItemSkill.setText(String.valueOf(skill));
+
+        new AlertDialog.Builder(this)
+                .setTitle(item.getName())
+                .setView(editTextItemSkill)
+                .setPositiveButton(R.string.button_save_item, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            // Accept a decimal comma as well
+                            final double newSkill = Double.parseDouble(editTextItemSkill.getText().toString().trim().replace(',', '.'));
+                            itemListsItemsDataSource.updateItemSkill(itemList.getId(), item.getId(), newSkill);
+                            // Show the changed skills again
+                            showItemSkillsDialog(itemList);
+                        } catch (IllegalArgumentException iAE) {
+                            // A NumberFormatException or a negative skill
+                            iAE.printStackTrace();
+                            Toast.makeText(ItemListDatabaseActivity.this, R.string.text_invalid_item_skill, Toast.LENGTH_LONG).show();
+                        }
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
+    }
+
+    /**
+     * Show a dialog with all items and their attributes in the given item list. Clicking an item
+     * opens a dialog for entering its attributes, which the attribute filter of the choice matches.
+     * @param itemList The item list whose attributes are edited.
+     */
+    void showItemAttributesDialog(final ItemList itemList) {
+        final List<Item> items = itemsDataSource.getAllItems();
+        // The members are sorted by the item ids, so the attributes of an item are found via binary search
+        final ItemListMembers itemListMembers = itemListsItemsDataSource.getItemListMembers(itemList.getId());
+        final long[] memberItemIds = itemListMembers.getItemIds();
+        final String[] memberAttributes = itemListMembers.getAttributes();
+
+        final String[] itemLabels = new String[items.size()];
+        for (int i = 0; i < itemLabels.length; i++) {
+            final Item item = items.get(i);
+            final int memberIndex = Arrays.binarySearch(memberItemIds, item.getId());
+            if (memberIndex < 0) {
+                itemLabels[i] = getResources().getString(R.string.text_item_not_in_item_list, item.getName());
+            } else if (memberAttributes[memberIndex] == null) {
+                itemLabels[i] = getResources().getString(R.string.text_item_no_attributes, item.getName());
+            } else {
+                itemLabels[i] = getResources().getString(R.string.text_item_attributes, item.getName(), memberAttributes[memberIndex]);
+            }
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(getResources().getString(R.string.dialog_title_item_attributes, itemList.getListName()))
+                .setItems(itemLabels, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        final Item item = items.get(which);
+                        final int memberIndex = Arrays.binarySearch(memberItemIds, item.getId());
+                        if (memberIndex >= 0) {
+                            showItemAttributeDialog(itemList, item, memberAttributes[memberIndex]);
+                        } else {
+                            // The attributes belong to the membership of the item
+                            Toast.makeText(ItemListDatabaseActivity.this, R.string.text_add_item_to_item_list_first, Toast.LENGTH_LONG).show();
+                        }
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
+    }
+
+    /**
+     * Show a dialog for entering the comma separated attributes of the item in the item list. An
+     * empty text removes all attributes of the item.
+     * @param itemList The item list.
+     * @param item The item to edit.
+     * @param attributes The current attributes or <code>null</code> if the item has none.
+     */
+    void showItemAttributeDialog(final ItemList itemList, final Item item, final String attributes) {
+        final EditText editTextItemAttributes = new EditText(this);
+        editTextItemAttributes.setInputType(InputType.TYPE_CLASS_TEXT);
+        editTextItemAttributes.setHint(R.string.hint_item_attributes);
+        if (attributes != null) {
+            editTextItemAttributes.setText(attributes);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(item.getName())
+                .setView(editTextItemAttributes)
+                .setPositiveButton(R.string.button_save_item, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        // The attributes are normalized when they are stored, e.g. " Cheap, " becomes "cheap"
+                        itemListsItemsDataSource.updateItemAttributes(itemList.getId(), item.getId(),
+                                editTextItemAttributes.getText().toString());
+                        // Show the changed attributes again
+                        showItemAttributesDialog(itemList);
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
     }
 
     /**
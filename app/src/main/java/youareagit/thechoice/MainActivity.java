@@ -21,7 +21,12 @@
  SOFTWARE. */
 package youareagit.thechoice;
 
+import android.app.AlertDialog;
+import android.app.ProgressDialog;
+import android.content.DialogInterface;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.support.design.widget.FloatingActionButton;
 import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
@@ -46,9 +51,17 @@ import android.hardware.SensorManager;
 import android.widget.Button;
 import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import youareagit.thechoice.data.ChoiceDatabaseManager;
 import youareagit.thechoice.data.ChoiceMethod;
 import youareagit.thechoice.data.ItemList;
+import youareagit.thechoice.random.RandomSourceType;
 
 
 public class MainActivity extends AppCompatActivity implements
@@ -57,6 +70,19 @@ public class MainActivity extends AppCompatActivity implements
     private static final int SHAKE_SPEED_THRESHOLD = 800;
     /** The time threshold after which a new shake detection check is done. */
     private static final int SHAKE_UPDATE_THRESHOLD_IN_MILLISECONDS = 250;
+    /** The choice methods for item lists in the same order as the item list mode spinner labels. */
+    private static final ChoiceMethod[] ITEM_LIST_CHOICE_METHODS = {
+            ChoiceMethod.FROM_LIST, ChoiceMethod.FROM_LIST_SHUFFLE_BAG, ChoiceMethod.FROM_LIST_FAIR,
+            ChoiceMethod.FROM_LIST_MANY, ChoiceMethod.SPLIT_TEAMS, ChoiceMethod.TOURNAMENT,
+            ChoiceMethod.GROUP_VOTE };
+    /** The number of virtual draws of an odds simulation. */
+    private static final long SIMULATION_NUMBER_OF_DRAWS = 2000000;
+    /** The time between two progress updates of an odds simulation. */
+    private static final long SIMULATION_PROGRESS_INTERVAL_IN_MILLISECONDS = 100;
+    /** The maximum number of outcomes listed in the report of an odds simulation. */
+    private static final int SIMULATION_REPORT_NUMBER_OF_OUTCOMES = 10;
+    /** The streak lengths listed in the report of an odds simulation. */
+    private static final int[] SIMULATION_REPORT_STREAK_LENGTHS = { 2, 3, 5 };
 
     // Variables for handling the shake detection
     private SensorManager sensorManager = null;
@@ -70,6 +96,8 @@ public class MainActivity extends AppCompatActivity implements
     private ChooserDatabaseHandler chooserDatabaseHandler;
     /** The ChooserLogic object which is responsible for random choices and storing the current custom dice maximum range value. */
     private ChooserLogic chooserLogic;
+    /** Keeps the next results of the selected item list ready so that a shake only has to show one. */
+    private final ChoicePrefetcher choicePrefetcher = new ChoicePrefetcher();
 
     /** The ItemListAdapter for the Spinner that contains item list entries. */
     private ArrayAdapter<ItemList> itemListAdapter = null;
@@ -81,6 +109,12 @@ public class MainActivity extends AppCompatActivity implements
     private int selectedItemPosition = INVALID_SELECTED_ITEM_POSITION;
     /** The item list ID as a <code>String</code>. */
     private String itemListId = null;
+    /** The currently running odds simulation or <code>null</code>. */
+    private SimulationTask simulationTask = null;
+    /** The dialog of the current tournament match or <code>null</code>. */
+    private AlertDialog tournamentDialog = null;
+    /** The currently shown ballot dialog of a group vote or <code>null</code>. */
+    private AlertDialog groupVoteDialog = null;
 
 
     @Override
@@ -117,10 +151,12 @@ public class MainActivity extends AppCompatActivity implements
 
         // Get the Spinner for the currently selected item list entry
         itemListNameSpinner = (Spinner) findViewById(R.id.spinner_itemlist_name);
-        // Use the Adapter to show the elements in the Spinner
+        // Use the Adapter to show the elements in the Spinner (they are added as soon as they are
+        // loaded in the background, see onResume)
         itemListAdapter = new ArrayAdapter<>(this,
-                android.R.layout.simple_spinner_dropdown_item, chooserDatabaseHandler.getItemLists());
+                android.R.layout.simple_spinner_dropdown_item, new ArrayList<ItemList>());
         itemListNameSpinner.setAdapter(itemListAdapter);
+        itemListNameSpinner.setOnItemSelectedListener(onSpinnerItemSelectedListener);
 
         // Set the button listener for choosing
         Button buttonChoose = (Button) findViewById(R.id.buttonChoose);
@@ -129,9 +165,7 @@ public class MainActivity extends AppCompatActivity implements
                 choose();
             }
         });
-
-        // Set the text field values to the correct instruction text
-        initializeTextFields();
+        // The text fields are initialized as soon as the settings are loaded, see onResume
     }
 
     /**
@@ -147,6 +181,13 @@ public class MainActivity extends AppCompatActivity implements
             itemListId = String.valueOf(position);
             selectedItemPosition = position;
             System.out.println("Selected item list name ID: " + itemListId);
+            // Prepare choosing from the selected item list in the background
+            chooserDatabaseHandler.prepareItemList(parent.getItemAtPosition(position).toString());
+            if (isItemListChoicePrefetchable(getItemListChoiceMethod())) {
+                final String itemListName = parent.getItemAtPosition(position).toString();
+                final ItemAttributeFilter filter = parseItemListFilter(chooserDatabaseHandler.getItemListFilterDefault());
+                choicePrefetcher.prepare(getItemListPrefetchKey(itemListName, filter), chooserDatabaseHandler.createItemListPrefetchProducer(itemListName, filter));
+            }
         }
 
         public void onNothingSelected(AdapterView<?> parent) {
@@ -182,31 +223,157 @@ public class MainActivity extends AppCompatActivity implements
             return true;
         }
 
+        // The following actions need the loaded settings and item lists
+        if (!chooserDatabaseHandler.isLoaded()) {
+            return super.onOptionsItemSelected(item);
+        }
         //noinspection SimplifiableIfStatement
         if (id == R.id.action_settings) {
+            showRandomSourceTypeDialog();
+            return true;
+        }
+        if (id == R.id.action_seeded_session) {
+            showSeededSessionDialog();
+            return true;
+        }
+        if (id == R.id.action_simulate) {
+            startSimulation();
             return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Show a dialog for selecting the random source type which is used for all choices. The
+     * selection is stored as a setting when the app is paused.
+     */
+    private void showRandomSourceTypeDialog() {
+        final RandomSourceType[] randomSourceTypes = RandomSourceType.values();
+        // The labels have to be in the same order as the RandomSourceType enum values
+        final String[] randomSourceTypeLabels = getResources().getStringArray(R.array.random_source_type_labels);
+        // Preselect the currently used random source type
+        int checkedItem = chooserDatabaseHandler.getRandomSourceTypeDefault().ordinal();
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.dialog_title_random_source_type)
+                .setSingleChoiceItems(randomSourceTypeLabels, checkedItem, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        // Use the selected random source type from now on
+                        chooserDatabaseHandler.setRandomSourceTypeDefault(randomSourceTypes[which]);
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Show a dialog with the exported seeded session (seed, stream, position and result history)
+     * which can be shared or replaced by another exported session for importing it.
+     */
+    private void showSeededSessionDialog() {
+        final EditText editTextSeededSession = new EditText(this);
+        editTextSeededSession.setHint(R.string.hint_seeded_session);
+        final String exportedSeededSession = chooserDatabaseHandler.exportSeededSession();
+        if (exportedSeededSession != null) {
+            editTextSeededSession.setText(exportedSeededSession);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.dialog_title_seeded_session)
+                .setView(editTextSeededSession)
+                .setPositiveButton(R.string.button_import_seeded_session, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        try {
+                            // Continue the choices of the (possibly edited) session from now on
+                            chooserDatabaseHandler.importSeededSession(editTextSeededSession.getText().toString());
+                        } catch (IllegalArgumentException iAE) {
+                            iAE.printStackTrace();
+                            Toast.makeText(MainActivity.this, R.string.text_invalid_seeded_session, Toast.LENGTH_LONG).show();
+                        }
+                    }
+                })
+                .setNeutralButton(R.string.button_share_seeded_session, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        // Send the session text to another app, e.g. for an audit
+                        Intent sendIntent = new Intent(Intent.ACTION_SEND);
+                        sendIntent.setType("text/plain");
+                        sendIntent.putExtra(Intent.EXTRA_TEXT, editTextSeededSession.getText().toString());
+                        startActivity(Intent.createChooser(sendIntent, getResources().getString(R.string.dialog_title_seeded_session)));
+                    }
+                })
+                .setNegativeButton(R.string.button_cancel_edit_item, null)
+                .show();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Keep the shared database connection open while the activity is visible, so switching to
+        // another activity (which acquires its reference before this one is stopped) does not reopen it
+        ChoiceDatabaseManager.getInstance(this).acquire();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        chooserDatabaseHandler.openDatabaseConnectionsAndLoadOrCreateDefaultEntries();
+        // Open the database and load the settings and item lists in the background
+        chooserDatabaseHandler.openDatabaseConnectionsAndLoadOrCreateDefaultEntries(new ChooserDatabaseHandler.OnLoadedListener() {
+            @Override
+            public void onLoaded() {
+                showLoadedItemLists();
+                // Set the text field values to the correct instruction text
+                initializeTextFields();
+            }
+        });
+        // The items might have been edited in the meantime, so the prefetched results are outdated
+        choicePrefetcher.clear();
 
-        // Set the text field values to the correct instruction text
-        initializeTextFields();
         // Register the sensor again
         sensorManager.registerListener(this, accelerometer,
                 SensorManager.SENSOR_DELAY_NORMAL);
     }
 
+    /**
+     * Show the loaded item lists in the spinner (they might have been edited in the meantime) and
+     * keep the selected item list if it still exists.
+     */
+    private void showLoadedItemLists() {
+        final Object selectedItemList = itemListNameSpinner.getSelectedItem();
+        itemListAdapter.setNotifyOnChange(false);
+        itemListAdapter.clear();
+        itemListAdapter.addAll(chooserDatabaseHandler.getItemLists());
+        itemListAdapter.notifyDataSetChanged();
+        if (selectedItemList != null) {
+            final List<String> itemListNames = chooserDatabaseHandler.getItemListNames();
+            final int position = itemListNames.indexOf(selectedItemList.toString());
+            if (position >= 0) {
+                itemListNameSpinner.setSelection(position);
+            }
+        }
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
+        // A running simulation is not needed anymore
+        if (simulationTask != null) {
+            simulationTask.cancelSimulation();
+        }
+        // Stop prefetching before the database connections get closed
+        choicePrefetcher.clear();
         chooserDatabaseHandler.closeDatabaseConnections();
     }
 
+    @Override
+    protected void onStop() {
+        // The database is closed if no other activity uses it anymore
+        ChoiceDatabaseManager.getInstance(this).release();
+        super.onStop();
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
@@ -277,6 +444,10 @@ public class MainActivity extends AppCompatActivity implements
      * a dice or custom dice depending on the RadioButton choice and sets the text field.
      */
     protected void choose() {
+        // Nothing can be chosen while the settings and item lists are still being loaded
+        if (!chooserDatabaseHandler.isLoaded()) {
+            return;
+        }
         // Get all RadioButtons and check their check state
         final RadioButton radioButtonChooseFromList = (RadioButton) findViewById(R.id.radio_choose_from_list);
         final RadioButton radioButtonThrowCoin = (RadioButton) findViewById(R.id.radio_throw_coin);
@@ -285,13 +456,27 @@ public class MainActivity extends AppCompatActivity implements
 
         // Buffer for the choice result
         String choiceResult = null;
+        // Buffer for additional details of the choice result, e.g. the odds of a dice roll
+        String choiceResultDetails = null;
+        // Remember the position of a seeded random source for the result history
+        final long choicePosition = chooserLogic.markChoice();
 
         // Check which RadioButton is checked
         if (radioButtonChooseFromList.isChecked()) {
+            // The item list mode spinner selects how to choose from the item list
+            final ChoiceMethod itemListChoiceMethod = getItemListChoiceMethod();
             // Set the value of the setting object accordingly so that it can be stored in the database when closing the app
-            chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.FROM_LIST);
-            // Get an item text from the item list
-            choiceResult = chooseFromItemList();
+            chooserDatabaseHandler.setChoiceMethodDefault(itemListChoiceMethod);
+            if (itemListChoiceMethod == ChoiceMethod.TOURNAMENT) {
+                // The winner is picked match by match in a dialog which shows the result at the end
+                showTournamentMatchDialog(false);
+            } else if (itemListChoiceMethod == ChoiceMethod.GROUP_VOTE) {
+                // The voters submit their ballots one after the other in a dialog
+                showGroupVoteBallotDialog(false, null, null);
+            } else {
+                // Get an item text from the item list
+                choiceResult = chooseFromItemList(itemListChoiceMethod);
+            }
         } else if (radioButtonThrowCoin.isChecked()) {
             // Set the value of the setting object accordingly so that it can be stored in the database when closing the app
             chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.THROW_COIN);
@@ -301,35 +486,88 @@ public class MainActivity extends AppCompatActivity implements
             chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.RULE_DICE);
             choiceResult = chooserLogic.ruleNormalDice();
         } else if (radioButtonRuleCustomDice.isChecked()) {
-            // Set the value of the setting object accordingly so that it can be stored in the database when closing the app
-            chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.RULE_CUSTOM_DICE);
-            choiceResult = ruleCustomDice();
+            // The custom dice field accepts a maximum range value, a number range or a dice notation expression
+            final EditText editTextCustomDiceRange = (EditText) findViewById(R.id.edit_custom_dice_range);
+            if (NumberRange.isNumberRange(editTextCustomDiceRange.getText().toString())) {
+                // Set the value of the setting object accordingly so that it can be stored in the database when closing the app
+                chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.NUMBER_RANGE);
+                choiceResult = ruleNumberRange();
+                if (choiceResult != null) {
+                    // Show the odds of choosing at least the result
+                    choiceResultDetails = getProbabilityAtLeastText(choiceResult, chooserLogic.getNumberRangeProbabilityAtLeast(Long.parseLong(choiceResult)));
+                }
+            } else if (DiceExpression.isDiceExpression(editTextCustomDiceRange.getText().toString())) {
+                // Set the value of the setting object accordingly so that it can be stored in the database when closing the app
+                chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.DICE_EXPRESSION);
+                choiceResult = ruleDiceExpression();
+                if (choiceResult != null) {
+                    // Show the odds of rolling at least the result (if they can be computed)
+                    DiceDistribution diceDistribution = chooserLogic.getDiceExpressionDistribution(chooserLogic.getLastDiceExpression());
+                    if (diceDistribution != null) {
+                        choiceResultDetails = getProbabilityAtLeastText(choiceResult, diceDistribution.probabilityAtLeast(Long.parseLong(choiceResult)));
+                    }
+                }
+            } else {
+                // Set the value of the setting object accordingly so that it can be stored in the database when closing the app
+                chooserDatabaseHandler.setChoiceMethodDefault(ChoiceMethod.RULE_CUSTOM_DICE);
+                choiceResult = ruleCustomDice();
+                if (choiceResult != null) {
+                    // Show the odds of rolling at least the result
+                    choiceResultDetails = getProbabilityAtLeastText(choiceResult, chooserLogic.getCustomDiceProbabilityAtLeast(Long.parseLong(choiceResult)));
+                }
+            }
         } else {
             setTextfieldsForNoChosenChoiceMethod();
         }
 
         // Set the text field if a choice result text was found
         if(choiceResult != null){
-            // Find the text field for the choice result text
-            TextView choiceResultTextTextView = (TextView) findViewById(R.id.textViewChoiceResultText);
-            // Delete the hint to enable auto resize for the text
-            choiceResultTextTextView.setHint("");
-            // Overwrite the former text color (might have been red once due to
-            // no database entry)
-            choiceResultTextTextView.setTextColor(Color.BLACK);
-            // Set the choice result text
-            choiceResultTextTextView.setText(choiceResult);
-
-            // Find the text field for the second text field
-            TextView choiceResultText2TextView = (TextView) findViewById(R.id.textViewChoiceResut2Text);
-            // Delete the hint to enable auto resize for the text
-            choiceResultText2TextView.setHint("");
-            // Overwrite the former text color (might have been red once due to
-            // no database entry)
-            choiceResultText2TextView.setTextColor(Color.BLACK);
+            // Record the result in the history of a seeded session
+            chooserLogic.recordChoiceResult(choicePosition, choiceResult);
+            showChoiceResult(choiceResult, choiceResultDetails);
         }
     }
 
+    /**
+     * Show the given choice result text and its details in the result text fields.
+     * @param choiceResult The choice result text.
+     * @param choiceResultDetails Additional details of the choice result, e.g. the odds of a dice
+     *                            roll, or <code>null</code>.
+     */
+    private void showChoiceResult(String choiceResult, String choiceResultDetails) {
+        // Find the text field for the choice result text
+        TextView choiceResultTextTextView = (TextView) findViewById(R.id.textViewChoiceResultText);
+        // Delete the hint to enable auto resize for the text
+        choiceResultTextTextView.setHint("");
+        // Overwrite the former text color (might have been red once due to
+        // no database entry)
+        choiceResultTextTextView.setTextColor(Color.BLACK);
+        // Set the choice result text
+        choiceResultTextTextView.setText(choiceResult);
+
+        // Find the text field for the second text field
+        TextView choiceResultText2TextView = (TextView) findViewById(R.id.textViewChoiceResut2Text);
+        // Delete the hint to enable auto resize for the text
+        choiceResultText2TextView.setHint("");
+        // Overwrite the former text color (might have been red once due to
+        // no database entry)
+        choiceResultText2TextView.setTextColor(Color.BLACK);
+        // Set the choice result details or empty the text field
+        choiceResultText2TextView.setText(choiceResultDetails != null ? choiceResultDetails : "");
+    }
+
+    /**
+     * Build the text for the odds of a result, e.g. "P(&ge;15) = 27%".
+     * @param choiceResult The result text.
+     * @param probability The probability of the result or a higher one.
+     * @return The odds text as a <code>String</code>.
+     */
+    private String getProbabilityAtLeastText(String choiceResult, double probability) {
+        NumberFormat percentFormat = NumberFormat.getPercentInstance();
+        percentFormat.setMaximumFractionDigits(2);
+        return getResources().getString(R.string.text_probability_at_least, choiceResult, percentFormat.format(probability));
+    }
+
     /**
      * Throw a coin and return the result text.
      * @return The text of the coin throw or <code>null</code> if an error occurred.
@@ -385,12 +623,496 @@ public class MainActivity extends AppCompatActivity implements
         return chooserLogic.ruleCustomDice(customDiceMaximumRangeValue);
     }
 
+    /**
+     * Rule the dice of the dice notation expression (e.g. "4d6kh3+2") in the custom dice field and
+     * return the result as text.
+     * @return The result of ruling the dice expression as a <code>String</code> or <code>null</code>
+     * if the expression was invalid.
+     */
+    protected String ruleDiceExpression() {
+        // Get the EditText field and store its text value
+        final EditText editTextCustomDiceRange = (EditText) findViewById(R.id.edit_custom_dice_range);
+        final String diceExpressionText = editTextCustomDiceRange.getText().toString();
+
+        // Use a method for rolling the dice of the expression and return its result
+        String choiceResult = chooserLogic.ruleDiceExpression(diceExpressionText);
+        if (choiceResult == null) {
+            // Reset the value of the EditText to the last valid expression or maximum range value
+            String lastDiceExpression = chooserLogic.getLastDiceExpression();
+            if (lastDiceExpression != null) {
+                editTextCustomDiceRange.setText(lastDiceExpression);
+            } else {
+                editTextCustomDiceRange.setText(String.valueOf(chooserLogic.getLastCustomDiceMaximumRangeValue()));
+            }
+        }
+        return choiceResult;
+    }
+
+    /**
+     * Choose a value of the number range (e.g. "-5..5") in the custom dice field and return the
+     * result as text.
+     * @return The chosen value as a <code>String</code> or <code>null</code> if the range was
+     * invalid.
+     */
+    protected String ruleNumberRange() {
+        // Get the EditText field and store its text value
+        final EditText editTextCustomDiceRange = (EditText) findViewById(R.id.edit_custom_dice_range);
+        final String numberRangeText = editTextCustomDiceRange.getText().toString();
+
+        // Use a method for choosing a value of the range and return its result
+        String choiceResult = chooserLogic.ruleNumberRange(numberRangeText);
+        if (choiceResult == null) {
+            // Reset the value of the EditText to the last valid range or maximum range value
+            String lastNumberRange = chooserLogic.getLastNumberRange();
+            if (lastNumberRange != null) {
+                editTextCustomDiceRange.setText(lastNumberRange);
+            } else {
+                editTextCustomDiceRange.setText(String.valueOf(chooserLogic.getLastCustomDiceMaximumRangeValue()));
+            }
+        }
+        return choiceResult;
+    }
+
+    /**
+     * Returns the choice method for item lists which is selected in the item list mode spinner.
+     * @return The selected item list choice method as a <code>ChoiceMethod</code>.
+     */
+    private ChoiceMethod getItemListChoiceMethod() {
+        final Spinner itemListModeSpinner = (Spinner) findViewById(R.id.spinner_itemlist_mode);
+        final int position = itemListModeSpinner.getSelectedItemPosition();
+        if (position >= 0 && position < ITEM_LIST_CHOICE_METHODS.length) {
+            return ITEM_LIST_CHOICE_METHODS[position];
+        }
+        return ChoiceMethod.FROM_LIST;
+    }
+
+    /**
+     * Simulate many choices of the currently selected choice method in the background and show the
+     * empirical odds, the expected waits and the streak probabilities afterwards.
+     */
+    private void startSimulation() {
+        if (simulationTask != null) {
+            // Only one simulation at a time
+            return;
+        }
+        MonteCarloSimulation.Model model = null;
+        try {
+            model = createSimulationModel();
+        } catch (IllegalArgumentException iAE) {
+            iAE.printStackTrace();
+        }
+        if (model == null) {
+            Toast.makeText(this, R.string.text_simulation_not_possible, Toast.LENGTH_LONG).show();
+            return;
+        }
+        simulationTask = new SimulationTask(new MonteCarloSimulation(model, chooserLogic, SIMULATION_NUMBER_OF_DRAWS));
+        simulationTask.execute();
+    }
+
+    /**
+     * Creates the simulation model of the currently selected choice method.
+     * @return The <code>MonteCarloSimulation.Model</code> or <code>null</code> if no choice method
+     * or no item list is selected.
+     * @throws IllegalArgumentException If the choice method can not be simulated, e.g. a custom dice
+     * with too many sides.
+     */
+    private MonteCarloSimulation.Model createSimulationModel() throws IllegalArgumentException {
+        final RadioButton radioButtonChooseFromList = (RadioButton) findViewById(R.id.radio_choose_from_list);
+        final RadioButton radioButtonThrowCoin = (RadioButton) findViewById(R.id.radio_throw_coin);
+        final RadioButton radioButtonRuleDice = (RadioButton) findViewById(R.id.radio_rule_dice);
+        final RadioButton radioButtonRuleCustomDice = (RadioButton) findViewById(R.id.radio_rule_custom_dice);
+
+        if (radioButtonChooseFromList.isChecked()) {
+            final Spinner itemListNameSpinner = (Spinner) findViewById(R.id.spinner_itemlist_name);
+            if (itemListNameSpinner.getSelectedItem() != null) {
+                return chooserDatabaseHandler.createItemListSimulationModel(
+                        itemListNameSpinner.getSelectedItem().toString(), getItemListChoiceMethod());
+            }
+        } else if (radioButtonThrowCoin.isChecked()) {
+            Resources res = getResources();
+            return MonteCarloSimulation.createCoinModel(res.getString(R.string.text_coin_heads), res.getString(R.string.text_coin_tails));
+        } else if (radioButtonRuleDice.isChecked()) {
+            return MonteCarloSimulation.createDiceModel(ChooserLogic.NORMAL_DICE_MAXIMUM_RANGE_VALUE);
+        } else if (radioButtonRuleCustomDice.isChecked()) {
+            final EditText editTextCustomDiceRange = (EditText) findViewById(R.id.edit_custom_dice_range);
+            final String customDiceRangeText = editTextCustomDiceRange.getText().toString();
+            if (NumberRange.isNumberRange(customDiceRangeText)) {
+                return MonteCarloSimulation.createNumberRangeModel(NumberRange.parse(customDiceRangeText));
+            }
+            if (DiceExpression.isDiceExpression(customDiceRangeText)) {
+                return MonteCarloSimulation.createDiceExpressionModel(DiceExpression.compile(customDiceRangeText));
+            }
+            try {
+                return MonteCarloSimulation.createDiceModel(Integer.parseInt(customDiceRangeText.trim()));
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Invalid custom dice range: " + customDiceRangeText, nfe);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Build the report text of a finished or cancelled simulation.
+     * @param simulation The simulation.
+     * @return The report as a <code>String</code>.
+     */
+    private String getSimulationReport(MonteCarloSimulation simulation) {
+        final Resources res = getResources();
+        final MonteCarloSimulation.Result result = simulation.getResult();
+        final MonteCarloSimulation.Model model = simulation.getModel();
+        NumberFormat percentFormat = NumberFormat.getPercentInstance();
+        percentFormat.setMaximumFractionDigits(2);
+        NumberFormat numberFormat = NumberFormat.getNumberInstance();
+        numberFormat.setMaximumFractionDigits(1);
+
+        StringBuilder report = new StringBuilder();
+        report.append(res.getString(R.string.text_simulation_draws, numberFormat.format(result.getNumberOfDraws())));
+        if (simulation.isCancelled()) {
+            report.append(' ').append(res.getString(R.string.text_simulation_cancelled));
+        }
+        report.append('\n');
+        // The most frequent outcomes with their odds and the mean wait until they appear again
+        for (int outcome : result.getMostFrequentOutcomes(SIMULATION_REPORT_NUMBER_OF_OUTCOMES)) {
+            final double expectedWait = result.getExpectedWait(outcome);
+            report.append('\n').append(res.getString(R.string.text_simulation_outcome,
+                    model.getOutcomeLabel(outcome),
+                    percentFormat.format(result.getFrequency(outcome)),
+                    Double.isNaN(expectedWait) ? "-" : numberFormat.format(expectedWait)));
+        }
+        if (model.getNumberOfOutcomes() > SIMULATION_REPORT_NUMBER_OF_OUTCOMES) {
+            report.append('\n').append(res.getString(R.string.text_simulation_more_outcomes,
+                    model.getNumberOfOutcomes() - SIMULATION_REPORT_NUMBER_OF_OUTCOMES));
+        }
+        report.append('\n');
+        // The probabilities that a result repeats several times in a row
+        for (int streakLength : SIMULATION_REPORT_STREAK_LENGTHS) {
+            report.append('\n').append(res.getString(R.string.text_simulation_streak, streakLength,
+                    percentFormat.format(result.getStreakProbabilityAtLeast(streakLength))));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Runs a simulation while showing its progress in a cancellable dialog and shows the report
+     * once it is done, without blocking the UI thread.
+     */
+    private class SimulationTask extends AsyncTask<Void, Integer, Void> {
+        /** The running simulation. */
+        private final MonteCarloSimulation simulation;
+        /** The dialog showing the progress. */
+        private ProgressDialog progressDialog = null;
+
+        SimulationTask(MonteCarloSimulation simulation) {
+            this.simulation = simulation;
+        }
+
+        /**
+         * Cancel the simulation, the draws done so far are still reported.
+         */
+        void cancelSimulation() {
+            simulation.cancel();
+        }
+
+        @Override
+        protected void onPreExecute() {
+            progressDialog = new ProgressDialog(MainActivity.this);
+            progressDialog.setTitle(R.string.dialog_title_simulation);
+            progressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+            progressDialog.setMax(100);
+            progressDialog.setCancelable(true);
+            progressDialog.setOnCancelListener(new DialogInterface.OnCancelListener() {
+                @Override
+                public void onCancel(DialogInterface dialog) {
+                    simulation.cancel();
+                }
+            });
+            progressDialog.setButton(DialogInterface.BUTTON_NEGATIVE, getResources().getString(R.string.button_cancel_edit_item),
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            simulation.cancel();
+                        }
+                    });
+            progressDialog.show();
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            simulation.start();
+            try {
+                // Poll the progress until all workers are done
+                while (!simulation.await(SIMULATION_PROGRESS_INTERVAL_IN_MILLISECONDS)) {
+                    publishProgress((int) (simulation.getProgress() * 100));
+                }
+            } catch (InterruptedException iE) {
+                iE.printStackTrace();
+                simulation.cancel();
+            }
+            return null;
+        }
+
+        @Override
+        protected void onProgressUpdate(Integer... values) {
+            progressDialog.setProgress(values[0]);
+        }
+
+        @Override
+        protected void onPostExecute(Void unused) {
+            simulationTask = null;
+            if (progressDialog.isShowing()) {
+                progressDialog.dismiss();
+            }
+            if (isFinishing()) {
+                return;
+            }
+            new AlertDialog.Builder(MainActivity.this)
+                    .setTitle(R.string.dialog_title_simulation)
+                    .setMessage(getSimulationReport(simulation))
+                    .setPositiveButton(android.R.string.ok, null)
+                    .show();
+        }
+    }
+
+    /**
+     * Show the current match of the tournament bracket of the selected item list, let the user pick
+     * its winner (or undo the last match or seed a new bracket) and continue with the next match
+     * until the winner is known, which is then shown as the choice result. A finished bracket is
+     * replaced by a newly seeded one.
+     * @param startNew Whether to seed a new bracket even if one is in progress.
+     */
+    private void showTournamentMatchDialog(boolean startNew) {
+        if (tournamentDialog != null && tournamentDialog.isShowing()) {
+            // Ignore e.g. a shake while a match is shown
+            return;
+        }
+        final Spinner itemListNameSpinner = (Spinner) findViewById(R.id.spinner_itemlist_name);
+        if (itemListNameSpinner.getSelectedItem() == null) {
+            setTextfieldsForItemListChoice();
+            return;
+        }
+        final String itemListName = itemListNameSpinner.getSelectedItem().toString();
+        TournamentBracket bracket = chooserDatabaseHandler.getTournamentBracket(itemListName, startNew);
+        if (bracket != null && bracket.isFinished() && !startNew) {
+            // The last tournament is over, so start a new one
+            bracket = chooserDatabaseHandler.getTournamentBracket(itemListName, true);
+        }
+        if (bracket == null) {
+            // No database entries
+            setTextfieldsForItemListChoice();
+            return;
+        }
+        final TournamentBracket tournamentBracket = bracket;
+        if (tournamentBracket.isFinished()) {
+            // A list with a single item has its winner right away
+            showTournamentWinner(tournamentBracket);
+            return;
+        }
+
+        // Resolve the names of both contenders with one query
+        final long firstContender = tournamentBracket.getFirstContender();
+        final long secondContender = tournamentBracket.getSecondContender();
+        final String[] contenderNames = chooserDatabaseHandler.getItemNames(firstContender, secondContender);
+        final Resources res = getResources();
+        final String[] options = {
+                contenderNames[0] != null ? contenderNames[0] : String.valueOf(firstContender),
+                contenderNames[1] != null ? contenderNames[1] : String.valueOf(secondContender),
+                res.getString(R.string.button_undo_tournament_match),
+                res.getString(R.string.button_new_tournament) };
+
+        tournamentDialog = new AlertDialog.Builder(this)
+                .setTitle(res.getString(R.string.dialog_title_tournament_match,
+                        tournamentBracket.getRound(), tournamentBracket.getNumberOfRounds()))
+                .setItems(options, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        boolean startNewTournament = false;
+                        if (which == 0) {
+                            tournamentBracket.chooseWinner(firstContender);
+                        } else if (which == 1) {
+                            tournamentBracket.chooseWinner(secondContender);
+                        } else if (which == 2) {
+                            tournamentBracket.undo();
+                        } else {
+                            startNewTournament = true;
+                        }
+                        dialog.dismiss();
+                        if (startNewTournament) {
+                            showTournamentMatchDialog(true);
+                            return;
+                        }
+                        // Store the bracket after every change, so it continues after a restart
+                        chooserDatabaseHandler.storeTournamentBracket(itemListName, tournamentBracket);
+                        if (tournamentBracket.isFinished()) {
+                            showTournamentWinner(tournamentBracket);
+                        } else {
+                            showTournamentMatchDialog(false);
+                        }
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Show the winner of a finished tournament as the choice result.
+     * @param tournamentBracket The finished tournament bracket.
+     */
+    private void showTournamentWinner(TournamentBracket tournamentBracket) {
+        final long winner = tournamentBracket.getWinner();
+        final String winnerName = chooserDatabaseHandler.getItemNames(winner)[0];
+        showChoiceResult(winnerName != null ? winnerName : String.valueOf(winner),
+                getResources().getString(R.string.text_tournament_winner, tournamentBracket.getNumberOfRounds()));
+    }
+
+    /**
+     * Show the dialog in which a voter ranks the items of the selected item list by tapping them
+     * in the order of preference. It is shown again after every tap until the ballot is submitted,
+     * then the current winner is shown and the next voter can rank the items.
+     * @param startNew Whether to start a new vote.
+     * @param candidateNames The names of the candidates in the order of <code>getCandidateIds</code>
+     *                       or <code>null</code> if they have to be resolved first.
+     * @param ballot The candidate indices ranked so far on the current ballot or <code>null</code>
+     *               for a new ballot.
+     */
+    private void showGroupVoteBallotDialog(boolean startNew, String[] candidateNames, List<Integer> ballot) {
+        if (groupVoteDialog != null && groupVoteDialog.isShowing()) {
+            // Ignore e.g. a shake while a ballot is shown
+            return;
+        }
+        final Spinner itemListNameSpinner = (Spinner) findViewById(R.id.spinner_itemlist_name);
+        if (itemListNameSpinner.getSelectedItem() == null) {
+            setTextfieldsForItemListChoice();
+            return;
+        }
+        final String itemListName = itemListNameSpinner.getSelectedItem().toString();
+        final GroupVote groupVote = chooserDatabaseHandler.getGroupVote(itemListName, startNew);
+        if (groupVote == null) {
+            // No database entries
+            setTextfieldsForItemListChoice();
+            return;
+        }
+        final long[] candidateIds = groupVote.getCandidateIds();
+        if (candidateNames == null) {
+            // Resolve the names of all candidates with one query for the whole ballot
+            candidateNames = chooserDatabaseHandler.getItemNames(candidateIds);
+            for (int candidate = 0; candidate < candidateIds.length; candidate++) {
+                if (candidateNames[candidate] == null) {
+                    candidateNames[candidate] = String.valueOf(candidateIds[candidate]);
+                }
+            }
+        }
+        final String[] names = candidateNames;
+        final List<Integer> rankedCandidates = ballot != null ? ballot : new ArrayList<Integer>();
+
+        // The candidates which are not ranked yet followed by the actions
+        final List<Integer> remainingCandidates = new ArrayList<>();
+        final List<String> options = new ArrayList<>();
+        for (int candidate = 0; candidate < candidateIds.length; candidate++) {
+            if (!rankedCandidates.contains(candidate)) {
+                remainingCandidates.add(candidate);
+                options.add(names[candidate]);
+            }
+        }
+        final Resources res = getResources();
+        final int submitOption = options.size();
+        options.add(res.getString(R.string.button_submit_ballot));
+        options.add(res.getString(R.string.button_show_group_vote_winner));
+        options.add(res.getString(R.string.button_undo_ballot));
+        options.add(res.getString(R.string.button_new_group_vote));
+
+        groupVoteDialog = new AlertDialog.Builder(this)
+                .setTitle(res.getString(R.string.dialog_title_group_vote_ballot,
+                        groupVote.getNumberOfBallots() + 1, rankedCandidates.size() + 1))
+                .setItems(options.toArray(new String[options.size()]), new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                        if (which < submitOption) {
+                            // Rank the tapped candidate next
+                            rankedCandidates.add(remainingCandidates.get(which));
+                            showGroupVoteBallotDialog(false, names, rankedCandidates);
+                        } else if (which == submitOption) {
+                            if (!rankedCandidates.isEmpty()) {
+                                final long[] rankedItemIds = new long[rankedCandidates.size()];
+                                for (int rank = 0; rank < rankedItemIds.length; rank++) {
+                                    rankedItemIds[rank] = candidateIds[rankedCandidates.get(rank)];
+                                }
+                                groupVote.addBallot(rankedItemIds);
+                                // Store the ballots after every change, so the vote continues after a restart
+                                chooserDatabaseHandler.storeGroupVote(itemListName, groupVote);
+                                showGroupVoteWinner(groupVote, names);
+                            }
+                            // The next voter starts with an empty ballot
+                            showGroupVoteBallotDialog(false, names, null);
+                        } else if (which == submitOption + 1) {
+                            showGroupVoteWinner(groupVote, names);
+                        } else if (which == submitOption + 2) {
+                            groupVote.undoLastBallot();
+                            chooserDatabaseHandler.storeGroupVote(itemListName, groupVote);
+                            showGroupVoteWinner(groupVote, names);
+                            showGroupVoteBallotDialog(false, names, null);
+                        } else {
+                            showGroupVoteBallotDialog(true, null, null);
+                        }
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Show the current winner of a group vote as the choice result: the instant-runoff winner with
+     * the number of rounds and ballots and the Borda winner as details.
+     * @param groupVote The group vote.
+     * @param candidateNames The names of the candidates in the order of <code>getCandidateIds</code>.
+     */
+    private void showGroupVoteWinner(GroupVote groupVote, String[] candidateNames) {
+        final long[] candidateIds = groupVote.getCandidateIds();
+        final long instantRunoffWinner = groupVote.getInstantRunoffWinner();
+        if (instantRunoffWinner == GroupVote.NO_ITEM_ID) {
+            // No ballots yet
+            return;
+        }
+        final String instantRunoffWinnerName = candidateNames[Arrays.binarySearch(candidateIds, instantRunoffWinner)];
+        final String bordaWinnerName = candidateNames[Arrays.binarySearch(candidateIds, groupVote.getBordaWinner())];
+        showChoiceResult(instantRunoffWinnerName, getResources().getString(R.string.text_group_vote_result,
+                groupVote.getInstantRunoffRounds(), groupVote.getNumberOfBallots(), bordaWinnerName));
+    }
+
+    /**
+     * Returns the number of distinct items to choose at once (or the number of teams) from the pick
+     * count field and stores it as setting. An invalid value is replaced by the last valid one.
+     * @return The pick count as an <code>int</code> greater than 0.
+     */
+    private int getItemListPickCount() {
+        final EditText editTextItemListPickCount = (EditText) findViewById(R.id.edit_itemlist_pick_count);
+        // Buffer for the pick count
+        int itemListPickCount = chooserDatabaseHandler.getItemListPickCountDefault();
+        try {
+            //Try to convert the text into a number
+            final int convertedItemListPickCount = Integer.parseInt(editTextItemListPickCount.getText().toString());
+            if (convertedItemListPickCount > 0) {
+                itemListPickCount = convertedItemListPickCount;
+            }
+        } catch (NumberFormatException nfe) {
+            // For debugging
+            nfe.printStackTrace();
+        }
+        // Reset the value of the EditText and remember the value for storing it later
+        editTextItemListPickCount.setText(String.valueOf(itemListPickCount));
+        chooserDatabaseHandler.setItemListPickCountDefault(itemListPickCount);
+        return itemListPickCount;
+    }
+
     /**
      * Choose an item from the currently selected item list and return its text.
+     * @param itemListChoiceMethod How to choose from the item list, e.g. <code>FROM_LIST</code>,
+     *                             <code>FROM_LIST_SHUFFLE_BAG</code>, <code>FROM_LIST_FAIR</code>
+     *                             <code>FROM_LIST_MANY</code> (the texts are joined) or
+     *                             <code>SPLIT_TEAMS</code> (one line per team). The attribute
+     *                             filter only applies to <code>FROM_LIST</code>.
      * @return The text of the chosen item or <code>null</code> if there were no entries in
-     * the database.
+     * the database (or no entry matches the filter).
      */
-    protected String chooseFromItemList() {
+    protected String chooseFromItemList(ChoiceMethod itemListChoiceMethod) {
         // Get the currently selected item list name from the corresponding spinner
         final Spinner itemListNameSpinner = (Spinner) findViewById(R.id.spinner_itemlist_name);
         // Buffer for the item name
@@ -400,7 +1122,43 @@ public class MainActivity extends AppCompatActivity implements
             String itemListName = itemListNameSpinner.getSelectedItem().toString();
 
             // Try to get a random item name from the selected item list identified via its name
-            chosenItemName = chooserDatabaseHandler.chooseFromItemList(itemListName);
+            if (itemListChoiceMethod == ChoiceMethod.FROM_LIST_MANY) {
+                // Choose several distinct items at once and show them as one text
+                List<String> chosenItemNames = chooserDatabaseHandler.chooseManyFromItemList(itemListName, getItemListPickCount());
+                if (chosenItemNames != null) {
+                    chosenItemName = TextUtils.join(", ", chosenItemNames);
+                }
+            } else if (itemListChoiceMethod == ChoiceMethod.SPLIT_TEAMS) {
+                // Split the item list into as many teams as the count field says, one line per team
+                List<List<String>> teams = chooserDatabaseHandler.splitItemListIntoTeams(itemListName, getItemListPickCount());
+                if (teams != null) {
+                    StringBuilder teamsText = new StringBuilder();
+                    for (int team = 0; team < teams.size(); team++) {
+                        if (team > 0) {
+                            teamsText.append('\n');
+                        }
+                        teamsText.append(getResources().getString(R.string.text_team, team + 1, TextUtils.join(", ", teams.get(team))));
+                    }
+                    chosenItemName = teamsText.toString();
+                }
+            } else if (itemListChoiceMethod == ChoiceMethod.FROM_LIST_SHUFFLE_BAG) {
+                chosenItemName = chooserDatabaseHandler.chooseFromItemListShuffleBag(itemListName);
+            } else if (itemListChoiceMethod == ChoiceMethod.FROM_LIST_FAIR) {
+                chosenItemName = chooserDatabaseHandler.chooseFromItemListFair(itemListName);
+            } else {
+                // Choose only among the items matching the attribute filter (if one is entered)
+                final ItemAttributeFilter filter = getItemListFilter();
+                if (isItemListChoicePrefetchable(itemListChoiceMethod)) {
+                    // Take a result which was chosen in the background and only choose directly if none is ready yet
+                    chosenItemName = choicePrefetcher.poll(getItemListPrefetchKey(itemListName, filter), chooserDatabaseHandler.createItemListPrefetchProducer(itemListName, filter));
+                }
+                if (chosenItemName == null) {
+                    chosenItemName = chooserDatabaseHandler.chooseFromItemList(itemListName, filter);
+                }
+                if (chosenItemName == null && filter != null) {
+                    Toast.makeText(this, R.string.text_no_item_matches_filter, Toast.LENGTH_LONG).show();
+                }
+            }
             if (chosenItemName == null || chosenItemName.isEmpty()) {
                 // No database entries
                 // Set the text fields for an empty item list
@@ -412,6 +1170,69 @@ public class MainActivity extends AppCompatActivity implements
         return chosenItemName;
     }
 
+    /**
+     * Checks whether the results of the given item list choice method can be prefetched. Only the
+     * choice from the list has no state which a prefetched but never shown result would change, and
+     * a seeded session has to record every result at its position.
+     * @param itemListChoiceMethod The item list choice method.
+     * @return <code>true</code> if the results can be prefetched.
+     */
+    private boolean isItemListChoicePrefetchable(ChoiceMethod itemListChoiceMethod) {
+        return itemListChoiceMethod == ChoiceMethod.FROM_LIST
+                && chooserLogic.getRandomSourceType() != RandomSourceType.SEEDED;
+    }
+
+    /**
+     * Returns the key of the prefetched results of the given item list.
+     * @param itemListName The name of the item list.
+     * @param filter The attribute filter or <code>null</code>.
+     * @return The prefetch key as a <code>String</code> (it includes the random source type and the
+     * filter, so a change of either abandons the results of the old one).
+     */
+    private String getItemListPrefetchKey(String itemListName, ItemAttributeFilter filter) {
+        return ChoiceMethod.FROM_LIST + ":" + chooserLogic.getRandomSourceType() + ":" + filter + ":" + itemListName;
+    }
+
+    /**
+     * Returns the attribute filter from the filter field and stores it as setting. An invalid
+     * filter is replaced by the last valid one.
+     * @return The <code>ItemAttributeFilter</code> or <code>null</code> if the field is empty.
+     */
+    private ItemAttributeFilter getItemListFilter() {
+        final EditText editTextItemListFilter = (EditText) findViewById(R.id.edit_itemlist_filter);
+        final String filterText = editTextItemListFilter.getText().toString();
+        // Buffer for the filter
+        ItemAttributeFilter filter = null;
+        if (ItemAttributeFilter.isFilter(filterText)) {
+            filter = parseItemListFilter(filterText);
+            if (filter == null) {
+                // Fall back to the last valid filter and show it instead of the invalid one
+                filter = parseItemListFilter(chooserDatabaseHandler.getItemListFilterDefault());
+                editTextItemListFilter.setText(filter != null ? filter.toString() : "");
+            }
+        }
+        // Remember the filter for storing it later
+        chooserDatabaseHandler.setItemListFilterDefault(filter);
+        return filter;
+    }
+
+    /**
+     * Parse the given attribute filter text.
+     * @param filterText The filter text, e.g. <code>vegetarian !fastfood</code>.
+     * @return The <code>ItemAttributeFilter</code> or <code>null</code> if the text is empty or invalid.
+     */
+    private ItemAttributeFilter parseItemListFilter(String filterText) {
+        if (ItemAttributeFilter.isFilter(filterText)) {
+            try {
+                return ItemAttributeFilter.parse(filterText);
+            } catch (IllegalArgumentException iAE) {
+                // For debugging
+                iAE.printStackTrace();
+            }
+        }
+        return null;
+    }
+
     /**
      * Initialize the text field values depending on the chosen choice method (via the selected RadioButton).
      * E.g. for no item list entries (database is empty for the chosen list name) or existing entries.
@@ -428,6 +1249,25 @@ public class MainActivity extends AppCompatActivity implements
         editTextCustomDiceRange.setText(customDiceMaximumRangeValue);
         // Also set the value for the ChooserLogic object so it can be persisted correctly
         chooserLogic.setLastCustomDiceMaximumRangeValue(Integer.valueOf(customDiceMaximumRangeValue));
+        // Show the last dice expression instead if it was the last used choice method
+        String diceExpression = chooserDatabaseHandler.getDiceExpressionDefault();
+        if (chooserDatabaseHandler.getChoiceMethodDefault() == ChoiceMethod.DICE_EXPRESSION
+                && diceExpression != null) {
+            editTextCustomDiceRange.setText(diceExpression);
+        }
+        // Show the last number range instead if it was the last used choice method
+        String numberRange = chooserDatabaseHandler.getNumberRangeDefault();
+        if (chooserDatabaseHandler.getChoiceMethodDefault() == ChoiceMethod.NUMBER_RANGE
+                && numberRange != null) {
+            editTextCustomDiceRange.setText(numberRange);
+        }
+        // Set the stored number of distinct items to choose at once from an item list
+        final EditText editTextItemListPickCount = (EditText) findViewById(R.id.edit_itemlist_pick_count);
+        editTextItemListPickCount.setText(String.valueOf(chooserDatabaseHandler.getItemListPickCountDefault()));
+        // Set the stored attribute filter for choosing from an item list
+        final EditText editTextItemListFilter = (EditText) findViewById(R.id.edit_itemlist_filter);
+        final String itemListFilter = chooserDatabaseHandler.getItemListFilterDefault();
+        editTextItemListFilter.setText(itemListFilter != null ? itemListFilter : "");
     }
     /**
      * Set the text fields for no item list entries (database is empty for the chosen list name)
@@ -525,7 +1365,7 @@ public class MainActivity extends AppCompatActivity implements
             case R.id.radio_choose_from_list:
                 if (checked) {
                     // Set the radio buttons and text fields accordingly
-                    setChoiceMethodRadioButtons(ChoiceMethod.FROM_LIST);
+                    setChoiceMethodRadioButtons(getItemListChoiceMethod());
                 }
                 break;
             case R.id.radio_throw_coin:
@@ -565,6 +1405,15 @@ public class MainActivity extends AppCompatActivity implements
         // Check the correct choose RadioButton according to the last stored value
         switch(choiceMethod){
             case FROM_LIST:
+            case FROM_LIST_SHUFFLE_BAG:
+            case FROM_LIST_FAIR:
+            case FROM_LIST_MANY:
+            case SPLIT_TEAMS:
+            case TOURNAMENT:
+            case GROUP_VOTE:
+                // Select the item list mode of the choice method
+                final Spinner itemListModeSpinner = (Spinner) findViewById(R.id.spinner_itemlist_mode);
+                itemListModeSpinner.setSelection(Arrays.asList(ITEM_LIST_CHOICE_METHODS).indexOf(choiceMethod));
                 // Activate the correct RadioButton and deactivate the others
                 radioButtonChooseFromList.setChecked(true);
                 radioButtonThrowCoin.setChecked(false);
@@ -586,6 +1435,8 @@ public class MainActivity extends AppCompatActivity implements
                 radioButtonRuleCustomDice.setChecked(false);
                 break;
             case RULE_CUSTOM_DICE:
+            case DICE_EXPRESSION:
+            case NUMBER_RANGE:
                 // Activate the correct RadioButton and deactivate the others
                 radioButtonChooseFromList.setChecked(false);
                 radioButtonThrowCoin.setChecked(false);
@@ -0,0 +1,612 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import youareagit.thechoice.data.ChoiceMethod;
+import youareagit.thechoice.data.ItemListMembers;
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * A Monte Carlo simulation ("what are my odds") which performs a large number of virtual draws of
+ * a choice method and collects the empirical frequency of every outcome, the mean wait between two
+ * appearances of every outcome and the lengths of the streaks of equal outcomes.<br />
+ * The draws are split into a fixed number of partitions which the worker threads (one per
+ * available core) take from a shared counter, so a fast worker simply processes more partitions.
+ * Every partition uses its own random source substream and primitive counter arrays which are
+ * merged into the result once the partition is done. As the number of partitions does not depend
+ * on the number of cores, a simulation with a seeded random source is reproducible on every device.
+ */
+final class MonteCarloSimulation {
+    /** The maximum number of distinct outcomes of a simulated model. */
+    static final int MAXIMUM_NUMBER_OF_OUTCOMES = 100000;
+    /** Streaks of this length or longer are counted together. */
+    static final int MAXIMUM_STREAK_LENGTH = 16;
+    /** The number of partitions the draws are split into. */
+    private static final int NUMBER_OF_PARTITIONS = 64;
+    /** The number of draws between two progress updates (and checks for a cancellation). */
+    private static final int PROGRESS_BATCH_SIZE = 4096;
+
+    /**
+     * The simulated choice method with its outcomes numbered from 0.
+     */
+    interface Model {
+        /**
+         * The number of distinct outcomes.
+         * @return The number of outcomes as an <code>int</code>.
+         */
+        int getNumberOfOutcomes();
+
+        /**
+         * The text of the given outcome.
+         * @param outcome The number of the outcome.
+         * @return The text of the outcome as a <code>String</code>.
+         */
+        String getOutcomeLabel(int outcome);
+
+        /**
+         * Creates a new drawer with its own state (e.g. a new shuffle bag) for one partition.
+         * @return The new <code>Drawer</code>.
+         */
+        Drawer createDrawer();
+    }
+
+    /**
+     * Performs the draws of one partition, it is only used by one thread.
+     */
+    interface Drawer {
+        /**
+         * Perform one draw.
+         * @param randomSource The <code>RandomSource</code> to use.
+         * @return The number of the drawn outcome.
+         */
+        int draw(RandomSource randomSource);
+    }
+
+    /** The simulated model. */
+    private final Model model;
+    /** The logic which provides the random source substreams. */
+    private final ChooserLogic chooserLogic;
+    /** The total number of draws. */
+    private final long numberOfDraws;
+    /** The merged counters of all finished partitions. */
+    private final Result result;
+    /** The index of the next partition which is not taken by a worker yet. */
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    /** The number of draws done so far. */
+    private final AtomicLong completedDraws = new AtomicLong();
+    /** Counted down by every worker when it is done. */
+    private CountDownLatch runningWorkers = null;
+    /** Whether the simulation was cancelled. */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a simulation of the given model.
+     * @param model The model to simulate.
+     * @param chooserLogic The logic which provides the random source substreams.
+     * @param numberOfDraws The total number of draws.
+     * @throws IllegalArgumentException If the number of draws is not positive.
+     */
+    MonteCarloSimulation(Model model, ChooserLogic chooserLogic, long numberOfDraws) throws IllegalArgumentException {
+        if (numberOfDraws <= 0) {
+            throw new IllegalArgumentException("The number of draws must be positive: " + numberOfDraws);
+        }
+        this.model = model;
+        this.chooserLogic = chooserLogic;
+        this.numberOfDraws = numberOfDraws;
+        result = new Result(model.getNumberOfOutcomes());
+    }
+
+    /**
+     * Start the simulation on one background thread per available core and return immediately.
+     */
+    synchronized void start() {
+        if (runningWorkers != null) {
+            throw new IllegalStateException("The simulation was already started");
+        }
+        final int numberOfWorkers = Math.max(1, Math.min(NUMBER_OF_PARTITIONS, Runtime.getRuntime().availableProcessors()));
+        runningWorkers = new CountDownLatch(numberOfWorkers);
+        final ExecutorService executorService = Executors.newFixedThreadPool(numberOfWorkers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MonteCarloSimulation");
+                // Do not keep the app alive for an abandoned simulation
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        for (int worker = 0; worker < numberOfWorkers; worker++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Take partitions until all are done (or the simulation is cancelled)
+                        int partition;
+                        while (!cancelled && (partition = nextPartition.getAndIncrement()) < NUMBER_OF_PARTITIONS) {
+                            runPartition(partition);
+                        }
+                    } finally {
+                        runningWorkers.countDown();
+                    }
+                }
+            });
+        }
+        // The threads end as soon as the workers are done
+        executorService.shutdown();
+    }
+
+    /**
+     * Perform the draws of the given partition and merge its counters into the result.
+     * @param partition The index of the partition.
+     */
+    private void runPartition(int partition) {
+        final long firstDraw = numberOfDraws * partition / NUMBER_OF_PARTITIONS;
+        final long partitionDraws = numberOfDraws * (partition + 1) / NUMBER_OF_PARTITIONS - firstDraw;
+        final RandomSource randomSource = chooserLogic.createWorkerRandomSource(partition);
+        final Drawer drawer = model.createDrawer();
+
+        // Private primitive counters of the partition
+        final Result partitionResult = new Result(model.getNumberOfOutcomes());
+        final long[] lastSeen = new long[model.getNumberOfOutcomes()];
+        Arrays.fill(lastSeen, -1);
+        int previousOutcome = -1;
+        int streakLength = 0;
+
+        long draw = 0;
+        while (draw < partitionDraws && !cancelled) {
+            final long batchStart = draw;
+            final long batchEnd = Math.min(partitionDraws, draw + PROGRESS_BATCH_SIZE);
+            for (; draw < batchEnd; draw++) {
+                final int outcome = drawer.draw(randomSource);
+                partitionResult.counts[outcome]++;
+                // The wait since the last appearance of the outcome
+                if (lastSeen[outcome] >= 0) {
+                    partitionResult.waitSums[outcome] += draw - lastSeen[outcome];
+                    partitionResult.waitCounts[outcome]++;
+                }
+                lastSeen[outcome] = draw;
+                // The streak of equal outcomes
+                if (outcome == previousOutcome) {
+                    streakLength++;
+                } else {
+                    if (streakLength > 0) {
+                        partitionResult.streakCounts[Math.min(streakLength, MAXIMUM_STREAK_LENGTH)]++;
+                    }
+                    previousOutcome = outcome;
+                    streakLength = 1;
+                }
+            }
+            completedDraws.addAndGet(batchEnd - batchStart);
+        }
+        if (streakLength > 0) {
+            partitionResult.streakCounts[Math.min(streakLength, MAXIMUM_STREAK_LENGTH)]++;
+        }
+        partitionResult.numberOfDraws = draw;
+        result.merge(partitionResult);
+    }
+
+    /**
+     * Cancel the simulation, the draws done so far stay in the result.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Whether the simulation was cancelled.
+     * @return <code>true</code> if the simulation was cancelled.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * The progress of the simulation.
+     * @return The share of the draws done so far in the range [0 ... 1] as a <code>double</code>.
+     */
+    double getProgress() {
+        return (double) completedDraws.get() / numberOfDraws;
+    }
+
+    /**
+     * Wait until all workers are done.
+     * @param timeoutMilliseconds The maximum time to wait in milliseconds.
+     * @return <code>true</code> if all workers are done.
+     * @throws InterruptedException If the waiting thread was interrupted.
+     */
+    boolean await(long timeoutMilliseconds) throws InterruptedException {
+        final CountDownLatch currentRunningWorkers;
+        synchronized (this) {
+            currentRunningWorkers = runningWorkers;
+        }
+        if (currentRunningWorkers == null) {
+            throw new IllegalStateException("The simulation was not started");
+        }
+        return currentRunningWorkers.await(timeoutMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The result of all finished partitions, it is complete once <code>await</code> returned
+     * <code>true</code>.
+     * @return The <code>Result</code> of the simulation.
+     */
+    Result getResult() {
+        return result;
+    }
+
+    /**
+     * The simulated model.
+     * @return The simulated <code>Model</code>.
+     */
+    Model getModel() {
+        return model;
+    }
+
+    /**
+     * The model of a custom dice with the given number of sides (outcome <code>i</code> is the
+     * value <code>i + 1</code>).
+     * @param sides The number of sides.
+     * @return The dice <code>Model</code>.
+     * @throws IllegalArgumentException If the number of sides is invalid or too large.
+     */
+    static Model createDiceModel(final int sides) throws IllegalArgumentException {
+        checkNumberOfOutcomes(sides);
+        return new Model() {
+            @Override
+            public int getNumberOfOutcomes() {
+                return sides;
+            }
+
+            @Override
+            public String getOutcomeLabel(int outcome) {
+                return String.valueOf(outcome + 1);
+            }
+
+            @Override
+            public Drawer createDrawer() {
+                return new Drawer() {
+                    @Override
+                    public int draw(RandomSource randomSource) {
+                        return randomSource.nextInt(sides);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * The model of a coin throw (outcome 0 is "Heads" and 1 is "Tails").
+     * @param headsLabel The text for "Heads".
+     * @param tailsLabel The text for "Tails".
+     * @return The coin <code>Model</code>.
+     */
+    static Model createCoinModel(String headsLabel, String tailsLabel) {
+        return createLabeledModel(new String[]{headsLabel, tailsLabel}, new Drawer() {
+            @Override
+            public int draw(RandomSource randomSource) {
+                return randomSource.nextBoolean() ? 1 : 0;
+            }
+        });
+    }
+
+    /**
+     * The model of a compiled dice notation expression (outcome <code>i</code> is the sum
+     * <code>minimum + i</code>).
+     * @param diceExpression The compiled dice expression.
+     * @return The dice expression <code>Model</code>.
+     * @throws IllegalArgumentException If the expression has too many possible sums.
+     */
+    static Model createDiceExpressionModel(final DiceExpression diceExpression) throws IllegalArgumentException {
+        final long minimum = diceExpression.getMinimum();
+        final long numberOfSums = diceExpression.getMaximum() - minimum + 1;
+        checkNumberOfOutcomes(numberOfSums);
+        return new Model() {
+            @Override
+            public int getNumberOfOutcomes() {
+                return (int) numberOfSums;
+            }
+
+            @Override
+            public String getOutcomeLabel(int outcome) {
+                return String.valueOf(minimum + outcome);
+            }
+
+            @Override
+            public Drawer createDrawer() {
+                // Every partition needs its own scratch buffer
+                final long[] scratch = new long[diceExpression.getScratchSize()];
+                return new Drawer() {
+                    @Override
+                    public int draw(RandomSource randomSource) {
+                        return (int) (diceExpression.roll(randomSource, scratch) - minimum);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * The model of a number range (outcome <code>i</code> is the value <code>minimum + i</code>).
+     * @param numberRange The number range.
+     * @return The number range <code>Model</code>.
+     * @throws IllegalArgumentException If the range has too many values (a wrapped size of huge
+     * ranges is negative or 0 and therefore rejected, too).
+     */
+    static Model createNumberRangeModel(NumberRange numberRange) throws IllegalArgumentException {
+        final long minimum = numberRange.getMinimum();
+        final long maximum = numberRange.getMaximum();
+        final long numberOfValues = maximum - minimum + 1;
+        checkNumberOfOutcomes(numberOfValues);
+        return new Model() {
+            @Override
+            public int getNumberOfOutcomes() {
+                return (int) numberOfValues;
+            }
+
+            @Override
+            public String getOutcomeLabel(int outcome) {
+                return String.valueOf(minimum + outcome);
+            }
+
+            @Override
+            public Drawer createDrawer() {
+                return new Drawer() {
+                    @Override
+                    public int draw(RandomSource randomSource) {
+                        return (int) (randomSource.nextLong(minimum, maximum) - minimum);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * The model of choosing from an item list with the given choice method (outcome
+     * <code>i</code> is the item with the <code>i</code>-th smallest item id).
+     * @param itemListMembers The members of the item list.
+     * @param itemNames The names of the members in the same order as their item ids.
+     * @param choiceMethod The item list choice method, <code>FROM_LIST</code>,
+     *                     <code>FROM_LIST_SHUFFLE_BAG</code> or <code>FROM_LIST_FAIR</code>.
+     * @return The item list <code>Model</code>.
+     * @throws IllegalArgumentException If the item list is empty or too large, all weights are
+     * zero or the choice method does not choose from an item list.
+     */
+    static Model createItemListModel(final ItemListMembers itemListMembers, String[] itemNames,
+                                     ChoiceMethod choiceMethod) throws IllegalArgumentException {
+        checkNumberOfOutcomes(itemListMembers.size());
+        final long[] itemIds = itemListMembers.getItemIds();
+        // The weighted table also checks that there is a positive weight
+        final AliasTable aliasTable = new AliasTable(itemListMembers.getWeights());
+
+        if (choiceMethod != ChoiceMethod.FROM_LIST
+                && choiceMethod != ChoiceMethod.FROM_LIST_SHUFFLE_BAG
+                && choiceMethod != ChoiceMethod.FROM_LIST_FAIR) {
+            throw new IllegalArgumentException("Not an item list choice method: " + choiceMethod);
+        }
+        final ChoiceMethod itemListChoiceMethod = choiceMethod;
+        return new LabeledModel(itemNames) {
+            @Override
+            public Drawer createDrawer() {
+                switch (itemListChoiceMethod) {
+                    case FROM_LIST_SHUFFLE_BAG:
+                        // A new full bag for every partition
+                        final ShuffleBag shuffleBag = new ShuffleBag();
+                        shuffleBag.merge(itemIds, itemListMembers.getVersion());
+                        return new Drawer() {
+                            @Override
+                            public int draw(RandomSource randomSource) {
+                                return Arrays.binarySearch(itemIds, shuffleBag.next(randomSource));
+                            }
+                        };
+                    case FROM_LIST_FAIR:
+                        // A new selector without recent picks for every partition
+                        final FairSelector fairSelector = new FairSelector(itemListMembers);
+                        return new Drawer() {
+                            @Override
+                            public int draw(RandomSource randomSource) {
+                                return Arrays.binarySearch(itemIds, fairSelector.next(randomSource));
+                            }
+                        };
+                    default:
+                        // The weighted table is immutable, so all partitions share it
+                        return new Drawer() {
+                            @Override
+                            public int draw(RandomSource randomSource) {
+                                return aliasTable.next(randomSource);
+                            }
+                        };
+                }
+            }
+        };
+    }
+
+    /**
+     * A model with one fixed stateless drawer and the given outcome texts.
+     * @param labels The texts of the outcomes.
+     * @param drawer The drawer which is shared by all partitions.
+     * @return The <code>Model</code>.
+     */
+    private static Model createLabeledModel(String[] labels, final Drawer drawer) {
+        return new LabeledModel(labels) {
+            @Override
+            public Drawer createDrawer() {
+                return drawer;
+            }
+        };
+    }
+
+    /**
+     * Checks whether the given number of outcomes can be simulated.
+     * @param numberOfOutcomes The number of outcomes.
+     * @throws IllegalArgumentException If there are no or too many outcomes.
+     */
+    private static void checkNumberOfOutcomes(long numberOfOutcomes) throws IllegalArgumentException {
+        if (numberOfOutcomes < 1 || numberOfOutcomes > MAXIMUM_NUMBER_OF_OUTCOMES) {
+            throw new IllegalArgumentException("Only 1 to " + MAXIMUM_NUMBER_OF_OUTCOMES
+                    + " outcomes can be simulated: " + numberOfOutcomes);
+        }
+    }
+
+    /**
+     * A model with a fixed text for every outcome.
+     */
+    private abstract static class LabeledModel implements Model {
+        /** The texts of the outcomes. */
+        private final String[] labels;
+
+        LabeledModel(String[] labels) {
+            this.labels = labels;
+        }
+
+        @Override
+        public int getNumberOfOutcomes() {
+            return labels.length;
+        }
+
+        @Override
+        public String getOutcomeLabel(int outcome) {
+            return labels[outcome];
+        }
+    }
+
+    /**
+     * The counters of a simulation: the draws, the wait sums and the streak lengths.
+     */
+    static final class Result {
+        /** The number of draws per outcome. */
+        private final long[] counts;
+        /** The sum of the draws between two appearances per outcome. */
+        private final long[] waitSums;
+        /** The number of summed waits per outcome. */
+        private final long[] waitCounts;
+        /** The number of streaks per length (index 0 is unused, the last one counts all longer). */
+        private final long[] streakCounts = new long[MAXIMUM_STREAK_LENGTH + 1];
+        /** The total number of draws. */
+        private long numberOfDraws = 0;
+
+        Result(int numberOfOutcomes) {
+            counts = new long[numberOfOutcomes];
+            waitSums = new long[numberOfOutcomes];
+            waitCounts = new long[numberOfOutcomes];
+        }
+
+        /**
+         * Add the counters of a finished partition.
+         * @param partitionResult The result of the partition.
+         */
+        private synchronized void merge(Result partitionResult) {
+            for (int outcome = 0; outcome < counts.length; outcome++) {
+                counts[outcome] += partitionResult.counts[outcome];
+                waitSums[outcome] += partitionResult.waitSums[outcome];
+                waitCounts[outcome] += partitionResult.waitCounts[outcome];
+            }
+            for (int length = 0; length < streakCounts.length; length++) {
+                streakCounts[length] += partitionResult.streakCounts[length];
+            }
+            numberOfDraws += partitionResult.numberOfDraws;
+        }
+
+        /**
+         * The total number of draws.
+         * @return The number of draws as a <code>long</code>.
+         */
+        synchronized long getNumberOfDraws() {
+            return numberOfDraws;
+        }
+
+        /**
+         * The number of draws of the given outcome.
+         * @param outcome The number of the outcome.
+         * @return The number of draws as a <code>long</code>.
+         */
+        synchronized long getCount(int outcome) {
+            return counts[outcome];
+        }
+
+        /**
+         * The empirical frequency of the given outcome.
+         * @param outcome The number of the outcome.
+         * @return The frequency in the range [0 ... 1] as a <code>double</code>.
+         */
+        synchronized double getFrequency(int outcome) {
+            return numberOfDraws > 0 ? (double) counts[outcome] / numberOfDraws : 0;
+        }
+
+        /**
+         * The mean number of draws until the given outcome appears again.
+         * @param outcome The number of the outcome.
+         * @return The expected wait as a <code>double</code> or <code>Double.NaN</code> if the
+         * outcome did not appear twice.
+         */
+        synchronized double getExpectedWait(int outcome) {
+            return waitCounts[outcome] > 0 ? (double) waitSums[outcome] / waitCounts[outcome] : Double.NaN;
+        }
+
+        /**
+         * The probability that a streak of equal outcomes is at least the given length.
+         * @param length The streak length in the range [1 ... <code>MAXIMUM_STREAK_LENGTH</code>].
+         * @return The probability in the range [0 ... 1] as a <code>double</code>.
+         */
+        synchronized double getStreakProbabilityAtLeast(int length) {
+            long streaks = 0;
+            long longStreaks = 0;
+            for (int streakLength = 1; streakLength < streakCounts.length; streakLength++) {
+                streaks += streakCounts[streakLength];
+                if (streakLength >= length) {
+                    longStreaks += streakCounts[streakLength];
+                }
+            }
+            return streaks > 0 ? (double) longStreaks / streaks : 0;
+        }
+
+        /**
+         * The outcomes sorted by their number of draws, the most frequent first.
+         * @param maximumNumberOfOutcomes The maximum number of returned outcomes.
+         * @return The numbers of the most frequent outcomes as an <code>int</code> array.
+         */
+        synchronized int[] getMostFrequentOutcomes(int maximumNumberOfOutcomes) {
+            // Pack count and outcome into one sortable value (counts stay far below 2^43)
+            final long[] packed = new long[counts.length];
+            for (int outcome = 0; outcome < counts.length; outcome++) {
+                packed[outcome] = (counts[outcome] << 20) | (MAXIMUM_NUMBER_OF_OUTCOMES - 1 - outcome);
+            }
+            Arrays.sort(packed);
+            final int[] mostFrequentOutcomes = new int[Math.min(maximumNumberOfOutcomes, counts.length)];
+            for (int i = 0; i < mostFrequentOutcomes.length; i++) {
+                mostFrequentOutcomes[i] = (int) (MAXIMUM_NUMBER_OF_OUTCOMES - 1 - (packed[packed.length - 1 - i] & ((1 << 20) - 1)));
+            }
+            return mostFrequentOutcomes;
+        }
+    }
+}
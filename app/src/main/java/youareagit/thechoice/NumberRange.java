@@ -0,0 +1,119 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+/**
+ * An inclusive range of <code>long</code> values in the notation <code>min..max</code>, e.g.
+ * <code>-5..5</code> or <code>1..1000000000000</code>, for choosing a uniformly distributed value
+ * between arbitrary bounds.
+ */
+final class NumberRange {
+    /** The separator between the minimum and the maximum. */
+    private static final String SEPARATOR = "..";
+
+    /** The inclusive lower bound. */
+    private final long minimum;
+    /** The inclusive upper bound. */
+    private final long maximum;
+
+    private NumberRange(long minimum, long maximum) {
+        this.minimum = minimum;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Parse the given range text.
+     * @param rangeText The range text, e.g. <code>-5..5</code> (spaces are ignored).
+     * @return The parsed <code>NumberRange</code>.
+     * @throws IllegalArgumentException If the text is no valid range or the maximum is less than
+     * the minimum.
+     */
+    static NumberRange parse(String rangeText) throws IllegalArgumentException {
+        if (rangeText == null) {
+            throw new IllegalArgumentException("The range text is missing");
+        }
+        final String normalizedText = rangeText.replace(" ", "");
+        final int separatorIndex = normalizedText.indexOf(SEPARATOR);
+        if (separatorIndex < 0) {
+            throw new IllegalArgumentException("The range has to be written as min..max: " + rangeText);
+        }
+        try {
+            final long minimum = Long.parseLong(normalizedText.substring(0, separatorIndex));
+            final long maximum = Long.parseLong(normalizedText.substring(separatorIndex + SEPARATOR.length()));
+            if (maximum < minimum) {
+                throw new IllegalArgumentException("The maximum of the range is less than its minimum: " + rangeText);
+            }
+            return new NumberRange(minimum, maximum);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("The bounds of the range are no valid numbers: " + rangeText, nfe);
+        }
+    }
+
+    /**
+     * Checks whether the given text uses the range notation (it might still be invalid).
+     * @param text The text to check.
+     * @return <code>true</code> if the text contains the <code>..</code> separator.
+     */
+    static boolean isNumberRange(String text) {
+        return text != null && text.contains(SEPARATOR);
+    }
+
+    /**
+     * The inclusive lower bound.
+     * @return The minimum as a <code>long</code>.
+     */
+    long getMinimum() {
+        return minimum;
+    }
+
+    /**
+     * The inclusive upper bound.
+     * @return The maximum as a <code>long</code>.
+     */
+    long getMaximum() {
+        return maximum;
+    }
+
+    /**
+     * The probability that a uniformly chosen value of the range is the given value or a higher one.
+     * @param value The smallest value to include.
+     * @return The probability in the range [0 ... 1] as a <code>double</code>.
+     */
+    double probabilityAtLeast(long value) {
+        if (value <= minimum) {
+            return 1;
+        }
+        if (value > maximum) {
+            return 0;
+        }
+        // Doubles avoid the overflow of the full 64 bit range
+        return ((double) maximum - value + 1) / ((double) maximum - minimum + 1);
+    }
+
+    @Override
+    public String toString() {
+        return minimum + SEPARATOR + maximum;
+    }
+}
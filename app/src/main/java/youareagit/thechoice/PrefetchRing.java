@@ -0,0 +1,111 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small lock-free ring buffer for exactly one producer thread and one consumer thread.<br />
+ * The producer only writes the tail counter and the consumer only writes the head counter, so
+ * neither side ever waits for the other. A slot is published with an ordered write of the counter
+ * after the element was stored, which is enough for the other side to see the element.
+ * @param <E> The type of the elements.
+ */
+final class PrefetchRing<E> {
+    /** The slots, their number is a power of two. */
+    private final Object[] slots;
+    /** The mask for mapping a counter to its slot index. */
+    private final int mask;
+    /** The number of elements taken so far, only written by the consumer. */
+    private final AtomicLong head = new AtomicLong();
+    /** The number of elements added so far, only written by the producer. */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates an empty ring.
+     * @param capacity The minimum number of elements the ring can hold, it is rounded up to the
+     *                 next power of two.
+     * @throws IllegalArgumentException If the capacity is not in the range [1 ... 2^30].
+     */
+    PrefetchRing(int capacity) throws IllegalArgumentException {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("The capacity must be in the range [1 ... 2^30]: " + capacity);
+        }
+        final int numberOfSlots = Integer.highestOneBit(capacity - 1) << 1;
+        slots = new Object[Math.max(1, numberOfSlots)];
+        mask = slots.length - 1;
+    }
+
+    /**
+     * Add an element if there is space for it. Must only be called by the producer thread.
+     * @param element The element to add which must not be <code>null</code>.
+     * @return <code>true</code> if the element was added or <code>false</code> if the ring is full.
+     */
+    boolean offer(E element) {
+        final long currentTail = tail.get();
+        if (currentTail - head.get() == slots.length) {
+            return false;
+        }
+        slots[(int) currentTail & mask] = element;
+        // Publish the element, the consumer reads the slot only after it sees the new tail
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    /**
+     * Take the oldest element. Must only be called by the consumer thread.
+     * @return The oldest element or <code>null</code> if the ring is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        final long currentHead = head.get();
+        if (currentHead == tail.get()) {
+            return null;
+        }
+        final int index = (int) currentHead & mask;
+        final E element = (E) slots[index];
+        // Release the reference before the slot is handed back to the producer
+        slots[index] = null;
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+
+    /**
+     * Checks whether the ring has no free slot left. Exact for the producer thread, for other
+     * threads the result may already be outdated.
+     * @return <code>true</code> if the ring is full.
+     */
+    boolean isFull() {
+        return tail.get() - head.get() == slots.length;
+    }
+
+    /**
+     * The number of slots of the ring.
+     * @return The capacity as an <code>int</code>.
+     */
+    int getCapacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.Arrays;
+
+import youareagit.thechoice.random.SeededRandomSource;
+
+/**
+ * A reproducible session: the <code>SeededRandomSource</code> used for all choices and the history
+ * of the choice results, each with the position of the random source before the choice.<br />
+ * A session can be exported as text and imported again, e.g. on another device, where the
+ * following choices continue exactly as they would have on the original device. Setting the
+ * position of the text to the position of a recorded result replays the choices from there.
+ */
+final class SeededSession {
+    /** The maximum number of results kept in the history (the oldest ones are dropped first). */
+    static final int MAXIMUM_HISTORY_SIZE = 1000;
+
+    // The keys of the export format
+    /** The first line of the export format. */
+    private static final String EXPORT_HEADER = "# TheChoice seeded session 1";
+    private static final String KEY_SEED = "seed";
+    private static final String KEY_STREAM = "stream";
+    private static final String KEY_POSITION = "position";
+    private static final String KEY_RESULT = "result";
+
+    /** The random source of the session. */
+    private final SeededRandomSource seededRandomSource;
+    /** The positions of the random source before each recorded choice, guarded by this object's monitor. */
+    private long[] historyPositions = new long[16];
+    /** The recorded results in the same order as the positions, guarded by this object's monitor. */
+    private String[] historyResults = new String[16];
+    /** The number of recorded results. */
+    private int historySize = 0;
+
+    /**
+     * Constructor for a <code>SeededSession</code> object with an empty history.
+     * @param seededRandomSource The random source of the session.
+     */
+    SeededSession(SeededRandomSource seededRandomSource) {
+        this.seededRandomSource = seededRandomSource;
+    }
+
+    /**
+     * The random source of the session.
+     * @return The <code>SeededRandomSource</code> of the session.
+     */
+    SeededRandomSource getRandomSource() {
+        return seededRandomSource;
+    }
+
+    /**
+     * Record a choice result.
+     * @param position The position of the random source before the choice.
+     * @param result The result text.
+     */
+    synchronized void recordResult(long position, String result) {
+        if (historySize == MAXIMUM_HISTORY_SIZE) {
+            // Drop the oldest half at once so that recording stays cheap
+            final int keptSize = MAXIMUM_HISTORY_SIZE / 2;
+            System.arraycopy(historyPositions, historySize - keptSize, historyPositions, 0, keptSize);
+            System.arraycopy(historyResults, historySize - keptSize, historyResults, 0, keptSize);
+            Arrays.fill(historyResults, keptSize, historySize, null);
+            historySize = keptSize;
+        } else if (historySize == historyPositions.length) {
+            historyPositions = Arrays.copyOf(historyPositions, Math.min(historySize * 2, MAXIMUM_HISTORY_SIZE));
+            historyResults = Arrays.copyOf(historyResults, historyPositions.length);
+        }
+        historyPositions[historySize] = position;
+        historyResults[historySize] = result;
+        historySize++;
+    }
+
+    /**
+     * The number of recorded results.
+     * @return The number of recorded results as an <code>int</code>.
+     */
+    synchronized int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * The recorded result at the given index (0 is the oldest one).
+     * @param index The index of the result.
+     * @return The result text.
+     */
+    synchronized String getHistoryResult(int index) {
+        return historyResults[index];
+    }
+
+    /**
+     * The position of the random source before the recorded result at the given index.
+     * @param index The index of the result.
+     * @return The position as a <code>long</code>.
+     */
+    synchronized long getHistoryPosition(int index) {
+        return historyPositions[index];
+    }
+
+    /**
+     * Export the seed, stream, current position and the history as text, one
+     * <code>key=value</code> pair per line.
+     * @return The exported session as a <code>String</code>.
+     */
+    synchronized String export() {
+        StringBuilder stringBuilder = new StringBuilder(64 + historySize * 32);
+        stringBuilder.append(EXPORT_HEADER).append('\n');
+        stringBuilder.append(KEY_SEED).append('=').append(seededRandomSource.getSeed()).append('\n');
+        stringBuilder.append(KEY_STREAM).append('=').append(seededRandomSource.getStreamIndex()).append('\n');
+        stringBuilder.append(KEY_POSITION).append('=').append(seededRandomSource.getPosition()).append('\n');
+        for (int i = 0; i < historySize; i++) {
+            // The position before the choice and the result (with escaped line breaks)
+            stringBuilder.append(KEY_RESULT).append('=').append(historyPositions[i]).append(' ')
+                    .append(historyResults[i].replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Import a session from the text created by <code>export()</code>. Empty lines and lines
+     * starting with <code>#</code> are ignored.
+     * @param exportedSession The exported session.
+     * @return The imported <code>SeededSession</code> whose random source is at the exported
+     * position.
+     * @throws IllegalArgumentException is thrown if the text is malformed or the seed is missing.
+     */
+    static SeededSession parse(String exportedSession) throws IllegalArgumentException {
+        if (exportedSession == null) {
+            throw new IllegalArgumentException("The exported seeded session cannot be null.");
+        }
+        Long seed = null;
+        int streamIndex = 0;
+        long position = 0;
+        // Buffer the history until the random source can be created
+        SeededSession historyBuffer = new SeededSession(null);
+
+        try {
+            for (String line : exportedSession.split("\n")) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final int separatorIndex = line.indexOf('=');
+                if (separatorIndex < 0) {
+                    throw new IllegalArgumentException("The line of the seeded session has no '=': " + line);
+                }
+                final String key = line.substring(0, separatorIndex).trim();
+                final String value = line.substring(separatorIndex + 1).trim();
+                if (KEY_SEED.equals(key)) {
+                    seed = Long.parseLong(value);
+                } else if (KEY_STREAM.equals(key)) {
+                    streamIndex = Integer.parseInt(value);
+                } else if (KEY_POSITION.equals(key)) {
+                    position = Long.parseLong(value);
+                } else if (KEY_RESULT.equals(key)) {
+                    final int spaceIndex = value.indexOf(' ');
+                    final long resultPosition = Long.parseLong(spaceIndex < 0 ? value : value.substring(0, spaceIndex));
+                    final String result = spaceIndex < 0 ? "" : unescape(value.substring(spaceIndex + 1));
+                    historyBuffer.recordResult(resultPosition, result);
+                } else {
+                    throw new IllegalArgumentException("The key of the seeded session is unknown: " + key);
+                }
+            }
+        } catch (NumberFormatException nFE) {
+            throw new IllegalArgumentException("The seeded session contains an invalid number: " + nFE.getMessage());
+        }
+        if (seed == null) {
+            throw new IllegalArgumentException("The seeded session contains no seed.");
+        }
+
+        SeededSession seededSession = new SeededSession(new SeededRandomSource(seed, streamIndex, position));
+        for (int i = 0; i < historyBuffer.historySize; i++) {
+            seededSession.recordResult(historyBuffer.historyPositions[i], historyBuffer.historyResults[i]);
+        }
+        return seededSession;
+    }
+
+    /**
+     * Reverse the escaping of backslashes and line breaks of the export.
+     */
+    private static String unescape(String escapedText) {
+        StringBuilder stringBuilder = new StringBuilder(escapedText.length());
+        for (int i = 0; i < escapedText.length(); i++) {
+            char character = escapedText.charAt(i);
+            if (character == '\\' && i + 1 < escapedText.length()) {
+                i++;
+                character = escapedText.charAt(i) == 'n' ? '\n' : escapedText.charAt(i);
+            }
+            stringBuilder.append(character);
+        }
+        return stringBuilder.toString();
+    }
+}
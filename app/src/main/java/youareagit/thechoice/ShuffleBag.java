@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * A shuffle bag of item ids which draws without replacement and is only refilled once it is
+ * empty, so no item is repeated before all others were chosen.<br />
+ * The bag is shuffled lazily (one Fisher-Yates step per draw): the drawn ids are kept in draw
+ * order in front of the remaining ones, so refilling the bag only resets the cursor and a
+ * membership change can be merged without reshuffling the remaining ids.
+ */
+final class ShuffleBag {
+    /** The kind under which the state of a shuffle bag is stored for an item list. */
+    static final String STATE_KIND = "SHUFFLE_BAG";
+    /** The value returned by <code>next</code> if the bag is empty. */
+    static final long NO_ITEM_ID = -1;
+    /** The format version of the packed state, stored as its first value. */
+    private static final long STATE_FORMAT_VERSION = 1;
+    /** The number of values in front of the item ids in the packed state. */
+    private static final int STATE_HEADER_SIZE = 3;
+    /** The membership version if the bag was not merged with the current item list yet. */
+    static final long MEMBERS_VERSION_UNKNOWN = Long.MIN_VALUE;
+
+    /** The drawn item ids (in draw order) followed by the remaining item ids (in any order). */
+    private long[] itemIds;
+    /** The number of item ids in the bag. */
+    private int size;
+    /** The number of drawn item ids (the cursor), the last drawn one is at <code>drawnCount - 1</code>. */
+    private int drawnCount;
+    /** The membership version of the item list which was merged last. */
+    private long membersVersion = MEMBERS_VERSION_UNKNOWN;
+
+    /**
+     * Creates an empty bag, use <code>merge</code> to fill it.
+     */
+    ShuffleBag() {
+        this(new long[0], 0, 0);
+    }
+
+    private ShuffleBag(long[] itemIds, int size, int drawnCount) {
+        this.itemIds = itemIds;
+        this.size = size;
+        this.drawnCount = drawnCount;
+    }
+
+    /**
+     * Draw the next item id from the bag and refill it first if it is empty. Directly after a
+     * refill the last drawn item id is skipped so that it is not repeated at the boundary.
+     * @param randomSource The <code>RandomSource</code> to use.
+     * @return The drawn item id or <code>NO_ITEM_ID</code> if the bag has no item ids at all.
+     */
+    long next(RandomSource randomSource) {
+        if (size == 0) {
+            return NO_ITEM_ID;
+        }
+        int bound = size;
+        if (drawnCount == size) {
+            // Refill the bag, the last drawn item id stays at the end and is excluded once
+            drawnCount = 0;
+            if (size > 1) {
+                bound = size - 1;
+            }
+        }
+        // One Fisher-Yates step: move a random remaining item id to the cursor
+        final int index = drawnCount + randomSource.nextInt(bound - drawnCount);
+        final long itemId = itemIds[index];
+        itemIds[index] = itemIds[drawnCount];
+        itemIds[drawnCount] = itemId;
+        drawnCount++;
+        return itemId;
+    }
+
+    /**
+     * Merge the current item ids of the item list into the bag: the ids which were removed from the
+     * item list are dropped (keeping the order of the drawn ones) and new ids are added to the
+     * remaining ones, so a partially drawn bag continues without repeats. It costs
+     * O(n log n) for sorting instead of a rebuild.
+     * @param currentItemIds The current item ids of the item list (they are not modified).
+     * @param currentMembersVersion The membership version of the current item ids.
+     */
+    void merge(long[] currentItemIds, long currentMembersVersion) {
+        final long[] sortedCurrentItemIds = currentItemIds.clone();
+        Arrays.sort(sortedCurrentItemIds);
+        final long[] sortedBagItemIds = Arrays.copyOf(itemIds, size);
+        Arrays.sort(sortedBagItemIds);
+
+        final long[] mergedItemIds = new long[currentItemIds.length];
+        int mergedSize = 0;
+        int mergedDrawnCount = 0;
+        // Keep the drawn and the remaining item ids which are still in the item list
+        for (int i = 0; i < size; i++) {
+            if (Arrays.binarySearch(sortedCurrentItemIds, itemIds[i]) >= 0) {
+                mergedItemIds[mergedSize++] = itemIds[i];
+                if (i < drawnCount) {
+                    mergedDrawnCount++;
+                }
+            }
+        }
+        // Add the new item ids to the remaining ones (their position does not matter)
+        for (long itemId : currentItemIds) {
+            if (Arrays.binarySearch(sortedBagItemIds, itemId) < 0) {
+                mergedItemIds[mergedSize++] = itemId;
+            }
+        }
+        itemIds = mergedItemIds;
+        size = mergedSize;
+        drawnCount = mergedDrawnCount;
+        membersVersion = currentMembersVersion;
+    }
+
+    /**
+     * The membership version of the item list which was merged last.
+     * @return The version or <code>MEMBERS_VERSION_UNKNOWN</code> if it was not merged yet.
+     */
+    long getMembersVersion() {
+        return membersVersion;
+    }
+
+    /**
+     * The number of item ids in the bag.
+     * @return The number of item ids as an <code>int</code>.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * The number of item ids which can be drawn before the bag is refilled.
+     * @return The number of remaining item ids as an <code>int</code>.
+     */
+    int getRemainingCount() {
+        return size - drawnCount;
+    }
+
+    /**
+     * Pack the bag into a blob of big endian <code>long</code> values: the format version, the
+     * size, the number of drawn item ids and the item ids.
+     * @return The packed state as a <code>byte</code> array.
+     */
+    byte[] toState() {
+        final ByteBuffer byteBuffer = ByteBuffer.allocate((STATE_HEADER_SIZE + size) * 8);
+        final LongBuffer longBuffer = byteBuffer.asLongBuffer();
+        longBuffer.put(STATE_FORMAT_VERSION).put(size).put(drawnCount);
+        longBuffer.put(itemIds, 0, size);
+        return byteBuffer.array();
+    }
+
+    /**
+     * Unpack a bag from a blob created by <code>toState</code>. The membership version is unknown,
+     * so the bag has to be merged with the current item list before drawing.
+     * @param state The packed state.
+     * @return The unpacked <code>ShuffleBag</code>.
+     * @throws IllegalArgumentException is thrown if the state is malformed or of another format
+     * version.
+     */
+    static ShuffleBag fromState(byte[] state) throws IllegalArgumentException {
+        if (state == null || state.length % 8 != 0 || state.length < STATE_HEADER_SIZE * 8) {
+            throw new IllegalArgumentException("The shuffle bag state has an invalid length.");
+        }
+        final LongBuffer longBuffer = ByteBuffer.wrap(state).asLongBuffer();
+        final long formatVersion = longBuffer.get();
+        final long size = longBuffer.get();
+        final long drawnCount = longBuffer.get();
+        if (formatVersion != STATE_FORMAT_VERSION) {
+            throw new IllegalArgumentException("The shuffle bag state format version " + formatVersion + " is not supported.");
+        }
+        if (size != longBuffer.remaining() || drawnCount < 0 || drawnCount > size) {
+            throw new IllegalArgumentException("The shuffle bag state is inconsistent (size: " + size + ", drawn: " + drawnCount + ").");
+        }
+        final long[] itemIds = new long[(int) size];
+        longBuffer.get(itemIds);
+        return new ShuffleBag(itemIds, (int) size, (int) drawnCount);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * Splits the members of an item list into a given number of random teams whose sizes differ by
+ * at most one.<br />
+ * Without skills the item ids are shuffled in place (Fisher-Yates) and cut into consecutive
+ * slices. With skills the members are assigned greedily by descending skill (longest processing
+ * time first): every round of <code>numberOfTeams</code> members is dealt to the teams ordered by
+ * their skill sums, so the strongest remaining member joins the weakest team. Members with equal
+ * skills are ordered randomly. Both cost O(n log n) and work on primitive arrays.
+ */
+final class TeamSplitter {
+    /**
+     * Not instantiable, it only provides the static split methods.
+     */
+    private TeamSplitter() {
+    }
+
+    /**
+     * Split the given item ids into random teams.
+     * @param itemIds The item ids of the members (they are not modified).
+     * @param skills The skills of the members in the same order as the item ids or
+     *               <code>null</code>, the teams are only balanced if a skill is greater than 0.
+     * @param numberOfTeams The number of teams.
+     * @param randomSource The <code>RandomSource</code> to use.
+     * @return The item ids of each team as a <code>long</code> array per team.
+     * @throws IllegalArgumentException If the number of teams is not positive or the skills do not
+     * match the item ids.
+     */
+    static long[][] split(long[] itemIds, double[] skills, int numberOfTeams, RandomSource randomSource)
+            throws IllegalArgumentException {
+        if (numberOfTeams <= 0) {
+            throw new IllegalArgumentException("The number of teams must be positive: " + numberOfTeams);
+        }
+        if (skills != null && skills.length != itemIds.length) {
+            throw new IllegalArgumentException("There are " + skills.length + " skills for " + itemIds.length + " item ids");
+        }
+        if (skills != null && hasSkills(skills)) {
+            return splitBalanced(itemIds, skills, numberOfTeams, randomSource);
+        }
+        return splitRandomly(itemIds, numberOfTeams, randomSource);
+    }
+
+    /**
+     * Shuffle a copy of the item ids and cut it into consecutive slices of near-equal size.
+     */
+    private static long[][] splitRandomly(long[] itemIds, int numberOfTeams, RandomSource randomSource) {
+        final long[] shuffledItemIds = itemIds.clone();
+        // Fisher-Yates in place
+        for (int i = shuffledItemIds.length - 1; i > 0; i--) {
+            final int other = randomSource.nextInt(i + 1);
+            final long swap = shuffledItemIds[i];
+            shuffledItemIds[i] = shuffledItemIds[other];
+            shuffledItemIds[other] = swap;
+        }
+        final long[][] teams = new long[numberOfTeams][];
+        for (int team = 0; team < numberOfTeams; team++) {
+            // The slice boundaries spread the remainder over the teams
+            final int start = (int) ((long) shuffledItemIds.length * team / numberOfTeams);
+            final int end = (int) ((long) shuffledItemIds.length * (team + 1) / numberOfTeams);
+            teams[team] = Arrays.copyOfRange(shuffledItemIds, start, end);
+        }
+        return teams;
+    }
+
+    /**
+     * Deal the members by descending skill round by round to the teams with the lowest skill sums.
+     */
+    private static long[][] splitBalanced(long[] itemIds, final double[] skills, int numberOfTeams, RandomSource randomSource) {
+        final int numberOfMembers = itemIds.length;
+        // A random order first, so members with equal skills are ordered randomly by the stable sort
+        final Integer[] members = new Integer[numberOfMembers];
+        for (int i = 0; i < numberOfMembers; i++) {
+            final int other = randomSource.nextInt(i + 1);
+            members[i] = members[other];
+            members[other] = i;
+        }
+        Arrays.sort(members, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(skills[second], skills[first]);
+            }
+        });
+
+        // The teams in a random order, so equally strong teams are filled randomly
+        final Integer[] teamOrder = new Integer[numberOfTeams];
+        for (int i = 0; i < numberOfTeams; i++) {
+            final int other = randomSource.nextInt(i + 1);
+            teamOrder[i] = teamOrder[other];
+            teamOrder[other] = i;
+        }
+        final double[] skillSums = new double[numberOfTeams];
+        final int[] teamSizes = new int[numberOfTeams];
+        final int[] memberTeams = new int[numberOfMembers];
+        final Comparator<Integer> weakestTeamFirst = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                return Double.compare(skillSums[first], skillSums[second]);
+            }
+        };
+        for (int roundStart = 0; roundStart < numberOfMembers; roundStart += numberOfTeams) {
+            // Every team gets one member per round, the weakest team the strongest member
+            Arrays.sort(teamOrder, weakestTeamFirst);
+            final int roundEnd = Math.min(numberOfMembers, roundStart + numberOfTeams);
+            for (int i = roundStart; i < roundEnd; i++) {
+                final int member = members[i];
+                final int team = teamOrder[i - roundStart];
+                memberTeams[member] = team;
+                skillSums[team] += skills[member];
+                teamSizes[team]++;
+            }
+        }
+
+        // Collect the item ids of every team (strongest member first)
+        final long[][] teams = new long[numberOfTeams][];
+        for (int team = 0; team < numberOfTeams; team++) {
+            teams[team] = new long[teamSizes[team]];
+        }
+        final int[] filled = new int[numberOfTeams];
+        for (Integer member : members) {
+            final int team = memberTeams[member];
+            teams[team][filled[team]++] = itemIds[member];
+        }
+        return teams;
+    }
+
+    /**
+     * Whether a skill is set.
+     * @param skills The skills.
+     * @return <code>true</code> if at least one skill is greater than 0.
+     */
+    private static boolean hasSkills(double[] skills) {
+        for (double skill : skills) {
+            if (skill > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
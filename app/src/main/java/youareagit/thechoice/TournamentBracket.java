@@ -0,0 +1,272 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * A single-elimination tournament bracket of item ids in which the user picks the winner of every
+ * match until one item remains.<br />
+ * The bracket is stored as an implicit binary heap: the seeded item ids are the leaves at the
+ * indices [<code>numberOfLeaves</code> ... 2 * <code>numberOfLeaves</code> - 1] and every match
+ * at index <code>i</code> holds the winner of its contenders at <code>2i</code> and
+ * <code>2i + 1</code>, the final is at index 1. The matches are played round by round from left
+ * to right via a cursor, so picking a winner, undoing a match and packing the state only touch
+ * primitive arrays without rebuilding anything.
+ */
+final class TournamentBracket {
+    /** The kind under which the state of a bracket is stored for an item list. */
+    static final String STATE_KIND = "TOURNAMENT";
+    /** The value of an empty leaf (a bye, the other contender advances automatically). */
+    static final long NO_ITEM_ID = -1;
+    /** The value of a match which was not decided yet. */
+    private static final long UNDECIDED = -2;
+    /** The cursor value if all matches are decided. */
+    private static final int NO_MATCH = 0;
+    /** The format version of the packed state, stored as its first value. */
+    private static final long STATE_FORMAT_VERSION = 1;
+    /** The number of values in front of the heap in the packed state. */
+    private static final int STATE_HEADER_SIZE = 4;
+
+    /** The number of leaves (a power of two). */
+    private final int numberOfLeaves;
+    /** The heap of the matches (index 1 ... numberOfLeaves - 1) and the leaves, index 0 is unused. */
+    private final long[] heap;
+    /** The indices of the decided matches in the order they were decided (for undoing them). */
+    private final int[] decidedMatches;
+    /** The number of decided matches. */
+    private int decidedCount;
+    /** The index of the current match or <code>NO_MATCH</code> if the bracket is finished. */
+    private int cursor;
+
+    private TournamentBracket(int numberOfLeaves, long[] heap, int[] decidedMatches, int decidedCount, int cursor) {
+        this.numberOfLeaves = numberOfLeaves;
+        this.heap = heap;
+        this.decidedMatches = decidedMatches;
+        this.decidedCount = decidedCount;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Seed a new bracket with the given item ids in a random order. If the number of items is not a
+     * power of two, some items of the first round get a bye.
+     * @param itemIds The item ids (they are not modified).
+     * @param randomSource The <code>RandomSource</code> to use for the seeding.
+     * @return The new <code>TournamentBracket</code>.
+     * @throws IllegalArgumentException If there are no item ids.
+     */
+    static TournamentBracket seed(long[] itemIds, RandomSource randomSource) throws IllegalArgumentException {
+        final int numberOfItems = itemIds.length;
+        if (numberOfItems == 0) {
+            throw new IllegalArgumentException("A tournament needs at least one item");
+        }
+        final int numberOfLeaves = numberOfItems == 1 ? 1 : Integer.highestOneBit(numberOfItems - 1) << 1;
+        final long[] heap = new long[2 * numberOfLeaves];
+        Arrays.fill(heap, UNDECIDED);
+
+        // Fisher-Yates on a copy for the seeding order
+        final long[] seededItemIds = itemIds.clone();
+        for (int i = numberOfItems - 1; i > 0; i--) {
+            final int other = randomSource.nextInt(i + 1);
+            final long swap = seededItemIds[i];
+            seededItemIds[i] = seededItemIds[other];
+            seededItemIds[other] = swap;
+        }
+
+        if (numberOfLeaves == 1) {
+            // The only item is the winner
+            heap[1] = seededItemIds[0];
+        } else {
+            // Every first round match gets at least one item, so byes never meet each other
+            final int numberOfFirstRoundMatches = numberOfLeaves / 2;
+            for (int match = 0; match < numberOfFirstRoundMatches; match++) {
+                final int second = match + numberOfFirstRoundMatches;
+                heap[numberOfLeaves + 2 * match] = seededItemIds[match];
+                heap[numberOfLeaves + 2 * match + 1] = second < numberOfItems ? seededItemIds[second] : NO_ITEM_ID;
+                // The item of a match with a bye advances right away
+                if (second >= numberOfItems) {
+                    heap[numberOfFirstRoundMatches + match] = seededItemIds[match];
+                }
+            }
+        }
+        final TournamentBracket tournamentBracket = new TournamentBracket(numberOfLeaves, heap,
+                new int[Math.max(0, numberOfLeaves - 1)], 0, numberOfLeaves == 1 ? NO_MATCH : numberOfLeaves / 2);
+        tournamentBracket.skipDecidedMatches();
+        return tournamentBracket;
+    }
+
+    /**
+     * Whether all matches are decided.
+     * @return <code>true</code> if the winner is known.
+     */
+    boolean isFinished() {
+        return cursor == NO_MATCH;
+    }
+
+    /**
+     * The winner of the tournament.
+     * @return The item id of the winner or <code>NO_ITEM_ID</code> if it is not finished yet.
+     */
+    long getWinner() {
+        return isFinished() ? heap[1] : NO_ITEM_ID;
+    }
+
+    /**
+     * The first contender of the current match.
+     * @return The item id or <code>NO_ITEM_ID</code> if the tournament is finished.
+     */
+    long getFirstContender() {
+        return isFinished() ? NO_ITEM_ID : heap[2 * cursor];
+    }
+
+    /**
+     * The second contender of the current match.
+     * @return The item id or <code>NO_ITEM_ID</code> if the tournament is finished.
+     */
+    long getSecondContender() {
+        return isFinished() ? NO_ITEM_ID : heap[2 * cursor + 1];
+    }
+
+    /**
+     * The round of the current match, the final is the last round.
+     * @return The round in the range [1 ... <code>getNumberOfRounds</code>] or 0 if the tournament
+     * is finished.
+     */
+    int getRound() {
+        if (isFinished()) {
+            return 0;
+        }
+        // The final (index 1) has the depth 0, the first round the depth numberOfRounds - 1
+        final int depth = 31 - Integer.numberOfLeadingZeros(cursor);
+        return getNumberOfRounds() - depth;
+    }
+
+    /**
+     * The number of rounds of the tournament.
+     * @return The number of rounds as an <code>int</code>.
+     */
+    int getNumberOfRounds() {
+        return Integer.numberOfTrailingZeros(numberOfLeaves);
+    }
+
+    /**
+     * Let the given contender win the current match and move on to the next match.
+     * @param winnerItemId The item id of the winner, one of the contenders of the current match.
+     * @throws IllegalArgumentException If the tournament is finished or the item is no contender
+     * of the current match.
+     */
+    void chooseWinner(long winnerItemId) throws IllegalArgumentException {
+        if (isFinished()
+                || (winnerItemId != heap[2 * cursor] && winnerItemId != heap[2 * cursor + 1])) {
+            throw new IllegalArgumentException("The item " + winnerItemId + " is no contender of the current match");
+        }
+        heap[cursor] = winnerItemId;
+        decidedMatches[decidedCount++] = cursor;
+        skipDecidedMatches();
+    }
+
+    /**
+     * Undo the last decided match, it becomes the current match again.
+     * @return <code>true</code> if a match was undone or <code>false</code> if no match was decided yet.
+     */
+    boolean undo() {
+        if (decidedCount == 0) {
+            return false;
+        }
+        cursor = decidedMatches[--decidedCount];
+        heap[cursor] = UNDECIDED;
+        return true;
+    }
+
+    /**
+     * Move the cursor to the next match which is not decided yet (the byes are decided already).
+     */
+    private void skipDecidedMatches() {
+        while (cursor != NO_MATCH && heap[cursor] != UNDECIDED) {
+            // The next match in the same round or the first match of the next round
+            final int roundStart = Integer.highestOneBit(cursor);
+            cursor = cursor + 1 < 2 * roundStart ? cursor + 1 : roundStart / 2;
+        }
+    }
+
+    /**
+     * Pack the bracket into a blob of big endian <code>long</code> values: the format version, the
+     * number of leaves, the cursor, the number of decided matches, the heap and the decided matches.
+     * @return The packed state as a <code>byte</code> array.
+     */
+    byte[] toState() {
+        final int heapSize = 2 * numberOfLeaves - 1;
+        final ByteBuffer byteBuffer = ByteBuffer.allocate((STATE_HEADER_SIZE + heapSize + decidedCount) * 8);
+        final LongBuffer longBuffer = byteBuffer.asLongBuffer();
+        longBuffer.put(STATE_FORMAT_VERSION).put(numberOfLeaves).put(cursor).put(decidedCount);
+        longBuffer.put(heap, 1, heapSize);
+        for (int i = 0; i < decidedCount; i++) {
+            longBuffer.put(decidedMatches[i]);
+        }
+        return byteBuffer.array();
+    }
+
+    /**
+     * Unpack a bracket from a blob created by <code>toState</code>.
+     * @param state The packed state.
+     * @return The unpacked <code>TournamentBracket</code>.
+     * @throws IllegalArgumentException is thrown if the state is malformed or of another format
+     * version.
+     */
+    static TournamentBracket fromState(byte[] state) throws IllegalArgumentException {
+        if (state == null || state.length % 8 != 0 || state.length < STATE_HEADER_SIZE * 8) {
+            throw new IllegalArgumentException("The tournament state has an invalid length.");
+        }
+        final LongBuffer longBuffer = ByteBuffer.wrap(state).asLongBuffer();
+        final long formatVersion = longBuffer.get();
+        final long numberOfLeaves = longBuffer.get();
+        final long cursor = longBuffer.get();
+        final long decidedCount = longBuffer.get();
+        if (formatVersion != STATE_FORMAT_VERSION) {
+            throw new IllegalArgumentException("The tournament state format version " + formatVersion + " is not supported.");
+        }
+        if (numberOfLeaves < 1 || numberOfLeaves > (1 << 30) || Long.bitCount(numberOfLeaves) != 1
+                || cursor < 0 || cursor >= numberOfLeaves || decidedCount < 0 || decidedCount >= numberOfLeaves
+                || longBuffer.remaining() != 2 * numberOfLeaves - 1 + decidedCount) {
+            throw new IllegalArgumentException("The tournament state is inconsistent (leaves: " + numberOfLeaves
+                    + ", cursor: " + cursor + ", decided: " + decidedCount + ").");
+        }
+        final long[] heap = new long[2 * (int) numberOfLeaves];
+        longBuffer.get(heap, 1, heap.length - 1);
+        final int[] decidedMatches = new int[(int) numberOfLeaves - 1];
+        for (int i = 0; i < decidedCount; i++) {
+            final long match = longBuffer.get();
+            if (match < 1 || match >= numberOfLeaves) {
+                throw new IllegalArgumentException("The tournament state contains an invalid match: " + match);
+            }
+            decidedMatches[i] = (int) match;
+        }
+        return new TournamentBracket((int) numberOfLeaves, heap, decidedMatches, (int) decidedCount, (int) cursor);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Shares one connection to the <code>ChoiceSQLiteHelper</code> database between all activities
+ * and data sources of the app. The database is opened by the first reference and closed when the
+ * last reference is released, so switching between the activities (the next one acquires its
+ * reference in <code>onStart</code> before the previous one releases it in <code>onStop</code>)
+ * neither reopens the database nor runs its schema statements again.
+ */
+public final class ChoiceDatabaseManager {
+    /** The manager of the app. */
+    private static ChoiceDatabaseManager instance = null;
+
+    /** The helper which opens (and creates or upgrades) the database. */
+    private final ChoiceSQLiteHelper dbHelper;
+    /** The open database or <code>null</code> if there is no reference, guarded by this object's monitor. */
+    private SQLiteDatabase database = null;
+    /** The number of acquired references, guarded by this object's monitor. */
+    private int references = 0;
+
+    private ChoiceDatabaseManager(Context context) {
+        dbHelper = new ChoiceSQLiteHelper(context);
+    }
+
+    /**
+     * Returns the manager of the app.
+     * @param context A <code>Context</code> of the app (only its application context is kept).
+     * @return The <code>ChoiceDatabaseManager</code>.
+     */
+    public static synchronized ChoiceDatabaseManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new ChoiceDatabaseManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Acquire a reference to the database and open it if it is not open yet. Every reference has
+     * to be released with <code>release</code>.
+     * @return The open database.
+     * @throws SQLException If the database cannot be opened.
+     */
+    public synchronized SQLiteDatabase acquire() throws SQLException {
+        if (database == null) {
+            database = dbHelper.getWritableDatabase();
+        }
+        references++;
+        return database;
+    }
+
+    /**
+     * Release a reference to the database and close it if it was the last one.
+     * @throws IllegalStateException If there is no acquired reference.
+     */
+    public synchronized void release() throws IllegalStateException {
+        if (references <= 0) {
+            throw new IllegalStateException("There is no acquired reference to the database");
+        }
+        references--;
+        if (references == 0) {
+            dbHelper.close();
+            database = null;
+        }
+    }
+}
@@ -32,5 +32,13 @@ public enum ChoiceMethod {
     FROM_LIST,
     THROW_COIN,
     RULE_DICE,
-    RULE_CUSTOM_DICE
+    RULE_CUSTOM_DICE,
+    DICE_EXPRESSION,
+    FROM_LIST_SHUFFLE_BAG,
+    FROM_LIST_FAIR,
+    FROM_LIST_MANY,
+    SPLIT_TEAMS,
+    TOURNAMENT,
+    NUMBER_RANGE,
+    GROUP_VOTE
 }
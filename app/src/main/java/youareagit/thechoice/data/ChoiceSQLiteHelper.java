@@ -0,0 +1,263 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import youareagit.thechoice.data.settings.SettingsTable;
+
+/**
+ * The helper of the single database which contains all tables of the app, so the items and
+ * their item list memberships share one page cache and journal and can be joined and changed in
+ * one transaction. Foreign keys delete the memberships and states together with their item list
+ * or item.<br />
+ * Older versions stored every table in its own database file, these files are imported once
+ * into the new (empty) database and deleted afterwards. Schema changes are applied by the
+ * <code>SchemaMigrations</code> steps without dropping any table.
+ */
+class ChoiceSQLiteHelper extends SQLiteOpenHelper {
+    /** The name of the database file. */
+    static final String DATABASE_NAME = "thechoice.db";
+    private static final int DATABASE_VERSION = SchemaMigrations.getLatestVersion();
+
+    /**
+     * The statements for creating all tables and indexes of the initial version, the referenced
+     * tables first (the later versions are reached via the migration steps).
+     */
+    private static final String[] DATABASE_CREATE_STATEMENTS = {
+            ItemsTable.DATABASE_CREATE,
+            ItemListsTable.DATABASE_CREATE_ITEMLISTS,
+            ItemListsItemsTable.DATABASE_CREATE_ITEMLISTS_ITEMS,
+            ItemListsItemsTable.DATABASE_CREATE_INDEX_ITEM_ID,
+            ItemListStatesTable.DATABASE_CREATE_ITEMLIST_STATES,
+            SettingsTable.DATABASE_CREATE };
+
+    /** The legacy database files and their tables, the referenced tables first. */
+    private static final String[][] LEGACY_DATABASES = {
+            { ItemsTable.LEGACY_DATABASE_NAME, ItemsTable.TABLE_ITEMS },
+            { ItemListsTable.LEGACY_DATABASE_NAME, ItemListsTable.TABLE_ITEMLISTS },
+            { ItemListsItemsTable.LEGACY_DATABASE_NAME, ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS },
+            { ItemListStatesTable.LEGACY_DATABASE_NAME, ItemListStatesTable.TABLE_ITEMLIST_STATES },
+            { SettingsTable.LEGACY_DATABASE_NAME, SettingsTable.TABLE_SETTINGS } };
+
+    /** The prefix of the schema names under which the legacy database files are attached. */
+    private static final String LEGACY_SCHEMA_PREFIX = "legacy";
+
+    /** The <code>Context</code> for resolving the legacy database files. */
+    private final Context context;
+
+    ChoiceSQLiteHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase database) {
+        createTables(database);
+        // Bring the initial version up to date the same way as an existing database
+        SchemaMigrations.migrate(database, SchemaMigrations.INITIAL_VERSION, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase database, int oldVersion,
+                          int newVersion) {
+        // Apply the missing migration steps (an exception rolls the whole upgrade back, so it is
+        // repeated on the next start)
+        SchemaMigrations.migrate(database, oldVersion, newVersion);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase database) {
+        super.onOpen(database);
+        if (!database.isReadOnly()) {
+            // Import the legacy database files before the foreign keys are enforced (the orphaned
+            // rows of the files are removed afterwards)
+            importLegacyDatabases(database);
+            // SQLite does not enforce the foreign keys (and their cascades) by default
+            database.execSQL("PRAGMA foreign_keys = ON;");
+        }
+        // Migrate the rows of the latest migration steps in the background
+        SchemaMigrations.startBatches(database);
+    }
+
+    /**
+     * Create all tables and indexes of the initial version which do not exist yet.
+     *
+     * @param database
+     *            The database to create the tables in.
+     */
+    void createTables(SQLiteDatabase database) {
+        for (String createStatement : DATABASE_CREATE_STATEMENTS) {
+            database.execSQL(createStatement);
+        }
+    }
+
+    /**
+     * Copy the rows of the legacy database files into the tables of the new database in one
+     * transaction and delete the files once it is committed. The files are attached outside of
+     * any transaction (which older SQLite versions require, so this cannot be done in
+     * <code>onCreate</code>) and every table is copied with a single
+     * <code>INSERT INTO ... SELECT</code> statement. Only the columns which exist in both tables are
+     * copied, so the files of every older version can be imported and missing columns get their
+     * default values.<br />
+     * The files are only imported into an empty database, so an import which was interrupted
+     * (e.g. the app was stopped right after the database was created) is repeated on the next
+     * start, while files which are left over after a committed import are only deleted.
+     *
+     * @param database
+     *            The new database.
+     */
+    private void importLegacyDatabases(SQLiteDatabase database) {
+        // Attach every existing legacy database file under its own schema name
+        final String[] legacySchemas = new String[LEGACY_DATABASES.length];
+        boolean legacyDatabasesExist = false;
+        for (int i = 0; i < LEGACY_DATABASES.length; i++) {
+            final File legacyDatabaseFile = context.getDatabasePath(LEGACY_DATABASES[i][0]);
+            if (legacyDatabaseFile.exists()) {
+                legacySchemas[i] = LEGACY_SCHEMA_PREFIX + i;
+                database.execSQL("ATTACH DATABASE ? AS " + legacySchemas[i], new Object[] { legacyDatabaseFile.getPath() });
+                legacyDatabasesExist = true;
+            }
+        }
+        if (!legacyDatabasesExist) {
+            return;
+        }
+
+        try {
+            database.beginTransaction();
+            try {
+                if (isEmpty(database)) {
+                    for (int i = 0; i < LEGACY_DATABASES.length; i++) {
+                        if (legacySchemas[i] != null) {
+                            importLegacyTable(database, legacySchemas[i], LEGACY_DATABASES[i][1]);
+                        }
+                    }
+                    removeOrphanedRows(database);
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } finally {
+            for (String legacySchema : legacySchemas) {
+                if (legacySchema != null) {
+                    database.execSQL("DETACH DATABASE " + legacySchema);
+                }
+            }
+        }
+        // Delete the legacy database files only after the import was committed
+        for (String[] legacyDatabase : LEGACY_DATABASES) {
+            context.deleteDatabase(legacyDatabase[0]);
+        }
+    }
+
+    /**
+     * Checks whether none of the tables which are imported from the legacy databases has a row.
+     */
+    private static boolean isEmpty(SQLiteDatabase database) {
+        final StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < LEGACY_DATABASES.length; i++) {
+            query.append(i > 0 ? " OR " : "").append("EXISTS (SELECT 1 FROM main.").append(LEGACY_DATABASES[i][1]).append(')');
+        }
+        return DatabaseUtils.longForQuery(database, query.toString(), null) == 0;
+    }
+
+    /**
+     * Copy all rows of the given table from the attached legacy database into the new database with
+     * a single statement, which fails (and rolls back the whole import) instead of losing a row.
+     */
+    private static void importLegacyTable(SQLiteDatabase database, String legacySchema, String table) {
+        // The columns of the table in the new database
+        final Set<String> columns = getColumns(database, "main", table);
+        // The columns of the table in the legacy database which exist in the new one as well
+        final List<String> importedColumns = new ArrayList<>();
+        for (String column : getColumns(database, legacySchema, table)) {
+            if (columns.contains(column)) {
+                importedColumns.add(column);
+            }
+        }
+        if (importedColumns.isEmpty()) {
+            // The file exists but the table was never created, so there is nothing to import
+            Log.w(ChoiceSQLiteHelper.class.getName(), "No table " + table + " in the legacy database");
+            return;
+        }
+
+        final String columnList = TextUtils.join(", ", importedColumns);
+        final SQLiteStatement statement = database.compileStatement("INSERT INTO main." + table + " (" + columnList
+                + ") SELECT " + columnList + " FROM " + legacySchema + "." + table);
+        try {
+            Log.i(ChoiceSQLiteHelper.class.getName(), "Imported " + statement.executeUpdateDelete() + " rows of " + table);
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Returns the names of the columns of the given table in the given schema (in their order).
+     */
+    private static Set<String> getColumns(SQLiteDatabase database, String schema, String table) {
+        final Set<String> columns = new LinkedHashSet<>();
+        final Cursor cursor = database.rawQuery("PRAGMA " + schema + ".table_info(" + table + ")", null);
+        try {
+            final int columnNameIndex = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(columnNameIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    /**
+     * Delete the imported memberships and states which refer to deleted item lists or items. The
+     * legacy files had no foreign keys, so they might still contain such rows which could never be
+     * shown anyway.
+     */
+    private static void removeOrphanedRows(SQLiteDatabase database) {
+        final String itemListExists = " IN (SELECT " + ItemListsTable.COLUMN_ID + " FROM " + ItemListsTable.TABLE_ITEMLISTS + ")";
+        final int orphanedMemberships = database.delete(ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + " NOT" + itemListExists
+                        + " OR " + ItemListsItemsTable.COLUMN_ITEM_ID + " NOT IN (SELECT "
+                        + ItemsTable.COLUMN_ID + " FROM " + ItemsTable.TABLE_ITEMS + ")", null);
+        final int orphanedStates = database.delete(ItemListStatesTable.TABLE_ITEMLIST_STATES,
+                ItemListStatesTable.COLUMN_ITEMLIST_ID + " NOT" + itemListExists, null);
+        Log.i(ChoiceSQLiteHelper.class.getName(), "Imported the legacy databases, removed "
+                + orphanedMemberships + " orphaned memberships and " + orphanedStates + " orphaned states");
+    }
+}
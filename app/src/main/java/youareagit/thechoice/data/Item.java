@@ -68,8 +68,8 @@ public class Item {
      */
     ContentValues getAllContentValues() {
         ContentValues contentValues = new ContentValues();
-        contentValues.put(ItemsSQLiteHelper.COLUMN_ID, getId());
-        contentValues.put(ItemsSQLiteHelper.COLUMN_NAME, getName());
+        contentValues.put(ItemsTable.COLUMN_ID, getId());
+        contentValues.put(ItemsTable.COLUMN_NAME, getName());
         
         return contentValues;
     }
@@ -86,9 +86,9 @@ public class ItemList {
      */
     ContentValues getAllContentValues() {
         ContentValues contentValues = new ContentValues();
-        contentValues.put(ItemListsSQLiteHelper.COLUMN_ID, getId());
-        contentValues.put(ItemListsSQLiteHelper.COLUMN_NAME, getItemName());
-        contentValues.put(ItemListsSQLiteHelper.COLUMN_LISTNAME,
+        contentValues.put(ItemListsTable.COLUMN_ID, getId());
+        contentValues.put(ItemListsTable.COLUMN_NAME, getItemName());
+        contentValues.put(ItemListsTable.COLUMN_LISTNAME,
                 getListName());
         
         return contentValues;
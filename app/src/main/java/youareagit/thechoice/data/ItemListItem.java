@@ -32,6 +32,12 @@ public class ItemListItem {
 
     private long itemListId;
     private long itemId;
+    /** The weight of the item in the item list, an item is chosen proportionally to it. */
+    private double weight = ItemListsItemsTable.WEIGHT_DEFAULT;
+    /** The skill of the item in the item list, teams are balanced by their skill sums. */
+    private double skill = ItemListsItemsTable.SKILL_DEFAULT;
+    /** The comma separated attributes of the item in the item list or <code>null</code> for none. */
+    private String attributes = null;
     //TODO: Implement list with items for the SpinnerAdapter
     private List<Item> items = new ArrayList<>();
 
@@ -45,7 +51,7 @@ public class ItemListItem {
 
     @Override
     public String toString() {
-        return getItemListId() + ", " + getItemId();
+        return getItemListId() + ", " + getItemId() + ", " + getWeight() + ", " + getSkill() + ", " + getAttributes();
     }
 
     /**
@@ -64,8 +70,11 @@ public class ItemListItem {
      */
     ContentValues getAllContentValues() {
         ContentValues contentValues = new ContentValues();
-        contentValues.put(ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID, getItemListId());
-        contentValues.put(ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID, getItemId());
+        contentValues.put(ItemListsItemsTable.COLUMN_ITEMLIST_ID, getItemListId());
+        contentValues.put(ItemListsItemsTable.COLUMN_ITEM_ID, getItemId());
+        contentValues.put(ItemListsItemsTable.COLUMN_WEIGHT, getWeight());
+        contentValues.put(ItemListsItemsTable.COLUMN_SKILL, getSkill());
+        contentValues.put(ItemListsItemsTable.COLUMN_ATTRIBUTES, getAttributes());
 
         return contentValues;
     }
@@ -85,4 +94,28 @@ public class ItemListItem {
     void setItemListId(long itemListId) {
         this.itemListId = itemListId;
     }
+
+    double getWeight() {
+        return weight;
+    }
+
+    void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    double getSkill() {
+        return skill;
+    }
+
+    void setSkill(double skill) {
+        this.skill = skill;
+    }
+
+    String getAttributes() {
+        return attributes;
+    }
+
+    void setAttributes(String attributes) {
+        this.attributes = attributes;
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+/**
+ * The members of an item list as primitive arrays: the item ids, their weights, their skills and
+ * their attributes in the same order. It is used for building selection structures without boxing every entry.
+ */
+public final class ItemListMembers {
+    /** The id of the item list. */
+    private final long itemListId;
+    /** The version of the item list membership when the members were loaded. */
+    private final long version;
+    /** The ids of the items. */
+    private final long[] itemIds;
+    /** The weights of the items in the same order as the item ids. */
+    private final double[] weights;
+    /** The skills of the items in the same order as the item ids. */
+    private final double[] skills;
+    /** The comma separated attributes of the items (<code>null</code> for none) in the same order as the item ids. */
+    private final String[] attributes;
+
+    ItemListMembers(long itemListId, long version, long[] itemIds, double[] weights) {
+        this(itemListId, version, itemIds, weights, new double[itemIds.length]);
+    }
+
+    ItemListMembers(long itemListId, long version, long[] itemIds, double[] weights, double[] skills) {
+        this(itemListId, version, itemIds, weights, skills, new String[itemIds.length]);
+    }
+
+    ItemListMembers(long itemListId, long version, long[] itemIds, double[] weights, double[] skills, String[] attributes) {
+        this.itemListId = itemListId;
+        this.version = version;
+        this.itemIds = itemIds;
+        this.weights = weights;
+        this.skills = skills;
+        this.attributes = attributes;
+    }
+
+    public long getItemListId() {
+        return itemListId;
+    }
+
+    /**
+     * The version of the item list membership when the members were loaded, compare it with
+     * <code>ItemListsItemsDataSource.getItemListVersion(long)</code> to detect changes.
+     * @return The version as a <code>long</code>.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The ids of the items in ascending order. Hint: The array is not copied, so it must not be modified.
+     * @return The item ids as a <code>long</code> array.
+     */
+    public long[] getItemIds() {
+        return itemIds;
+    }
+
+    /**
+     * The weights of the items in the same order as the item ids. Hint: The array is not copied,
+     * so it must not be modified.
+     * @return The weights as a <code>double</code> array.
+     */
+    public double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * The skills of the items in the same order as the item ids (0 if none was set). Hint: The
+     * array is not copied, so it must not be modified.
+     * @return The skills as a <code>double</code> array.
+     */
+    public double[] getSkills() {
+        return skills;
+    }
+
+    /**
+     * The comma separated attributes of the items in the same order as the item ids (<code>null</code>
+     * if none were set). Hint: The array is not copied, so it must not be modified.
+     * @return The attributes as a <code>String</code> array.
+     */
+    public String[] getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * The number of items in the item list.
+     * @return The number of items as an <code>int</code>.
+     */
+    public int size() {
+        return itemIds.length;
+    }
+}
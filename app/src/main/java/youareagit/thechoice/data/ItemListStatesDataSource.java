@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * The database transformation class for storing the states of choice methods which work on an
+ * item list (e.g. a partially drawn shuffle bag) as compact blobs.<br />
+ * Every item list can have one state per kind, so that resuming a choice method costs a single
+ * row read instead of rebuilding its state.
+ */
+public class ItemListStatesDataSource {
+    // Database fields
+    /** The database to use. */
+    private SQLiteDatabase database;
+    /** The manager of the shared database connection. */
+    private ChoiceDatabaseManager databaseManager;
+
+    /**
+     * Constructor.
+     *
+     * @param context
+     *            The <code>Context</code> to use.
+     */
+    public ItemListStatesDataSource(Context context) {
+        databaseManager = ChoiceDatabaseManager.getInstance(context);
+    }
+
+    /**
+     * Open a connection to the database by acquiring a reference to the shared connection (opening
+     * an already opened data source does nothing).
+     *
+     * @throws SQLException
+     *             If the database cannot be opened.
+     */
+    public void open() throws SQLException {
+        if (database == null) {
+            database = databaseManager.acquire();
+        }
+    }
+
+    /**
+     * Close the database connection by releasing the reference to the shared connection, which
+     * is closed when no activity or data source uses it anymore.
+     */
+    public void close() {
+        if (database != null) {
+            database = null;
+            databaseManager.release();
+        }
+    }
+
+    /**
+     * Returns the stored state of the given kind for the item list.
+     *
+     * @param itemListId
+     *            The id of the item list.
+     * @param kind
+     *            The kind of the state, e.g. the name of the choice method.
+     * @return The stored state or <code>null</code> if none was stored.
+     */
+    public byte[] getState(long itemListId, String kind) {
+        byte[] state = null;
+        String whereClause = ItemListStatesTable.COLUMN_ITEMLIST_ID + " = ? AND "
+                + ItemListStatesTable.COLUMN_KIND + " = ?";
+        String[] whereArgs = new String[] { String.valueOf(itemListId), kind };
+        // Query only the state column of the single row
+        Cursor cursor = database.query(
+                ItemListStatesTable.TABLE_ITEMLIST_STATES,
+                new String[] { ItemListStatesTable.COLUMN_STATE },
+                whereClause, whereArgs, null, null, null);
+        if (cursor.moveToFirst()) {
+            state = cursor.getBlob(0);
+        }
+        // Make sure to close the cursor
+        cursor.close();
+        return state;
+    }
+
+    /**
+     * Stores (inserts or replaces) the state of the given kind for the item list.
+     *
+     * @param itemListId
+     *            The id of the item list.
+     * @param kind
+     *            The kind of the state, e.g. the name of the choice method.
+     * @param state
+     *            The state to store.
+     */
+    public void storeState(long itemListId, String kind, byte[] state) {
+        ContentValues values = new ContentValues();
+        values.put(ItemListStatesTable.COLUMN_ITEMLIST_ID, itemListId);
+        values.put(ItemListStatesTable.COLUMN_KIND, kind);
+        values.put(ItemListStatesTable.COLUMN_STATE, state);
+        // Replace the former state of the item list in one statement
+        database.insertWithOnConflict(ItemListStatesTable.TABLE_ITEMLIST_STATES,
+                null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+/**
+ * The definition of the table of the choice method states per item list in the
+ * <code>ChoiceSQLiteHelper</code> database. The states are deleted together with their item list.
+ */
+final class ItemListStatesTable {
+    static final String TABLE_ITEMLIST_STATES = "item_list_states";
+    static final String COLUMN_ITEMLIST_ID = "_itemListId";
+    static final String COLUMN_KIND = "kind";
+    static final String COLUMN_STATE = "state";
+
+    /**
+     * The SQL statement for creating the table with a primary key on the
+     * item list id and state kind combination and a foreign key on the item list.
+     */
+    static final String DATABASE_CREATE_ITEMLIST_STATES = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_ITEMLIST_STATES + " ("
+            + COLUMN_ITEMLIST_ID + " INTEGER NOT NULL REFERENCES "
+            + ItemListsTable.TABLE_ITEMLISTS + " (" + ItemListsTable.COLUMN_ID + ") ON DELETE CASCADE, "
+            + COLUMN_KIND + " TEXT NOT NULL, "
+            + COLUMN_STATE + " BLOB, " + "PRIMARY KEY ("
+            + COLUMN_ITEMLIST_ID + ", " + COLUMN_KIND + "));";
+
+    /** The name of the legacy database file which only contained this table. */
+    static final String LEGACY_DATABASE_NAME = TABLE_ITEMLIST_STATES;
+
+    private ItemListStatesTable() {
+    }
+}
@@ -43,14 +43,14 @@ public class ItemListsDataSource {
     // Database fields
     /** The database to use. */
     private SQLiteDatabase database;
-    /** Database helper. */
-    private ItemListsSQLiteHelper dbHelper;
+    /** The manager of the shared database connection. */
+    private ChoiceDatabaseManager databaseManager;
     /**
      * Stores all (relevant) columns of the item lists database so they can be
      * queried.
      */
-    private String[] allColumns = { ItemListsSQLiteHelper.COLUMN_ID,
-            ItemListsSQLiteHelper.COLUMN_LISTNAME };
+    private String[] allColumns = { ItemListsTable.COLUMN_ID,
+            ItemListsTable.COLUMN_LISTNAME };
 
     /**
      * Constructor.
@@ -59,25 +59,31 @@ public class ItemListsDataSource {
      *            The <code>Context</code> to use.
      */
     public ItemListsDataSource(Context context) {
-        dbHelper = new ItemListsSQLiteHelper(context);
+        databaseManager = ChoiceDatabaseManager.getInstance(context);
     }
 
     /**
-     * Open a connection to the database.
+     * Open a connection to the database by acquiring a reference to the shared connection (opening
+     * an already opened data source does nothing).
      *
      * @throws SQLException
      *             If the database cannot be opened.
      */
     public void open() throws SQLException {
-        database = dbHelper.getWritableDatabase();
-        dbHelper.onCreate(database);
+        if (database == null) {
+            database = databaseManager.acquire();
+        }
     }
 
     /**
-     * Close the database connection.
+     * Close the database connection by releasing the reference to the shared connection, which
+     * is closed when no activity or data source uses it anymore.
      */
     public void close() {
-        dbHelper.close();
+        if (database != null) {
+            database = null;
+            databaseManager.release();
+        }
     }
 
     /**
@@ -99,14 +105,14 @@ public class ItemListsDataSource {
         ItemList newItemList = null;
 
         // Add the arguments
-        values.put(ItemListsSQLiteHelper.COLUMN_LISTNAME, listName);
+        values.put(ItemListsTable.COLUMN_LISTNAME, listName);
         // Store the new valid ID value generated by the INSERT statement
         long insertId = database.insert(
-                ItemListsSQLiteHelper.TABLE_ITEMLISTS, null, values);
+                ItemListsTable.TABLE_ITEMLISTS, null, values);
         // Store the cursor belonging to the ID
         Cursor cursor = database.query(
-                ItemListsSQLiteHelper.TABLE_ITEMLISTS, allColumns,
-                ItemListsSQLiteHelper.COLUMN_ID + " = " + insertId, null,
+                ItemListsTable.TABLE_ITEMLISTS, allColumns,
+                ItemListsTable.COLUMN_ID + " = " + insertId, null,
                 null, null, null);
         if (cursor != null) {
             if (cursor.getCount() > 0) {
@@ -127,7 +133,7 @@ public class ItemListsDataSource {
         List<ItemList> itemLists = new ArrayList<>();
         // Get all item lists from the database
         Cursor cursor = database.query(
-                ItemListsSQLiteHelper.TABLE_ITEMLISTS, allColumns, null,
+                ItemListsTable.TABLE_ITEMLISTS, allColumns, null,
                 null, null, null, null);
 
         cursor.moveToFirst();
@@ -151,9 +157,11 @@ public class ItemListsDataSource {
     public void deleteItem(ItemList itemList) {
         long id = itemList.getId();
         System.out.println("Comment deleted with id: " + id);
-        database.delete(ItemListsSQLiteHelper.TABLE_ITEMLISTS,
-                ItemListsSQLiteHelper.COLUMN_ID + " = " + String.valueOf(id),
+        database.delete(ItemListsTable.TABLE_ITEMLISTS,
+                ItemListsTable.COLUMN_ID + " = " + String.valueOf(id),
                 null);
+        // The memberships and states of the item list were deleted via the foreign keys
+        ItemListsItemsDataSource.updateAllItemListsVersion();
     }
 
     /**
@@ -187,13 +195,13 @@ public class ItemListsDataSource {
      */
     public Cursor getItemListCursor(long id) {
         System.out.println("Comment get itemListCursor with id: " + id);
-        String whereClause = ItemListsSQLiteHelper.COLUMN_ID + " = ?";
+        String whereClause = ItemListsTable.COLUMN_ID + " = ?";
         String itemListID = String.valueOf(id);
         String[] whereArgs = new String[] { itemListID };
 
         // Query the database with the specific id as a search key
         Cursor cursor = database.query(
-                ItemListsSQLiteHelper.TABLE_ITEMLISTS, allColumns,
+                ItemListsTable.TABLE_ITEMLISTS, allColumns,
                 whereClause, whereArgs, null, null, null);
         // Move the cursor to the first position, just in case there was more
         // than one result
@@ -220,11 +228,11 @@ public class ItemListsDataSource {
      */
     public ItemList getItemList(String itemListName) {
         ItemList itemList = null;
-        String whereClause = ItemListsSQLiteHelper.COLUMN_LISTNAME + "='"
+        String whereClause = ItemListsTable.COLUMN_LISTNAME + "='"
                 + itemListName + "'";
         // Query the database for the specific item list
         Cursor cursor = database.query(
-                ItemListsSQLiteHelper.TABLE_ITEMLISTS, allColumns,
+                ItemListsTable.TABLE_ITEMLISTS, allColumns,
                 whereClause, null, null, null, null);
 
         cursor.moveToFirst();
@@ -279,9 +287,9 @@ public class ItemListsDataSource {
 
             // Do the database update
             database.update(
-                    ItemListsSQLiteHelper.TABLE_ITEMLISTS,
+                    ItemListsTable.TABLE_ITEMLISTS,
                     values,
-                    ItemListsSQLiteHelper.COLUMN_ID + " = "
+                    ItemListsTable.COLUMN_ID + " = "
                             + itemList.getId(), null);
         }
     }
@@ -297,10 +305,9 @@ public class ItemListsDataSource {
      * Empty the items table so that all entries are deleted.
      */
     public void emptyItemListsTable() {
-        // TODO Exchange the code so that a table is just updated and filled
-        // with null???
-        database.execSQL("DROP TABLE IF EXISTS "
-                + ItemListsSQLiteHelper.TABLE_ITEMLISTS);
-        dbHelper.onCreate(database);
+        // Delete the rows instead of dropping the table, so the foreign keys cascade and the
+        // indexes are kept
+        database.delete(ItemListsTable.TABLE_ITEMLISTS, null, null);
+        ItemListsItemsDataSource.updateAllItemListsVersion();
     }
 }
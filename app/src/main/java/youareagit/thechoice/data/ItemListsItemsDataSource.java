@@ -25,12 +25,18 @@ package youareagit.thechoice.data;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import youareagit.thechoice.random.RandomSource;
 
 /**
  * The database transformation class for mapping database values and the
@@ -46,15 +52,68 @@ public class ItemListsItemsDataSource {
     // Database fields
     /** The database to use. */
     private SQLiteDatabase database;
-    /** Database helper. */
-    private ItemListsItemsSQLiteHelper dbHelper;
+    /** The manager of the shared database connection. */
+    private ChoiceDatabaseManager databaseManager;
+
+    /** The sub query which resolves the item list id by the item list name (first parameter). */
+    private static final String SELECT_ITEMLIST_ID_BY_NAME = "(SELECT "
+            + ItemListsTable.COLUMN_ID + " FROM "
+            + ItemListsTable.TABLE_ITEMLISTS + " WHERE "
+            + ItemListsTable.COLUMN_LISTNAME + " = ?1)";
+    /**
+     * The count of the members of an item list by its name (first parameter): the item count is
+     * read or the members are counted while the count is not migrated yet.
+     */
+    private static final String SELECT_ITEM_COUNT_BY_NAME = "COALESCE((SELECT " + ItemListsTable.COLUMN_ITEM_COUNT
+            + " FROM " + ItemListsTable.TABLE_ITEMLISTS + " WHERE " + ItemListsTable.COLUMN_LISTNAME + " = ?1), (SELECT COUNT(*) FROM "
+            + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + " WHERE " + ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = "
+            + SELECT_ITEMLIST_ID_BY_NAME + "))";
+    /**
+     * The single statement which picks the name of a random item of an item list. It returns the
+     * item count of the list (first column) and the name of the item at the position
+     * <code>(random * count) >> 32</code> (second column), which is taken from the primary key
+     * index, where the second parameter is a random number in the range [0 ... 2^32 - 1]. Only the
+     * member ids are skipped, so the item name is looked up for the one picked row. The count lets
+     * the caller reject the few random numbers which would favour the lower positions.
+     */
+    private static final String PICK_ITEM_NAME_QUERY = "SELECT " + SELECT_ITEM_COUNT_BY_NAME
+            + ", (SELECT " + ItemsTable.COLUMN_NAME
+            + " FROM " + ItemsTable.TABLE_ITEMS
+            + " WHERE " + ItemsTable.COLUMN_ID + " = (SELECT " + ItemListsItemsTable.COLUMN_ITEM_ID
+            + " FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS
+            + " WHERE " + ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = " + SELECT_ITEMLIST_ID_BY_NAME
+            + " ORDER BY " + ItemListsItemsTable.COLUMN_ITEM_ID
+            + " LIMIT 1 OFFSET (?2 * " + SELECT_ITEM_COUNT_BY_NAME + ") >> 32))";
+
+    /** The separator of the attributes of an item. */
+    public static final String ATTRIBUTE_SEPARATOR = ",";
+    /**
+     * The start of the term which checks whether the attributes of an item contain the attribute
+     * of the <code>LIKE</code> pattern which follows (see <code>getAttributePattern</code>). The
+     * attributes are enclosed in separators, so every attribute is matched as a whole.
+     */
+    private static final String ATTRIBUTES_CONTAIN = "('" + ATTRIBUTE_SEPARATOR + "' || COALESCE("
+            + ItemListsItemsTable.COLUMN_ATTRIBUTES + ", '') || '" + ATTRIBUTE_SEPARATOR + "') LIKE";
+    /** The escape clause of the <code>LIKE</code> patterns. */
+    private static final String ESCAPE_BACKSLASH = " ESCAPE '\\'";
 
     /**
      * Stores all (relevant) columns of the item lists items database so they can be
      * queried.
      */
-    private String[] allColumns = { ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID,
-            ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID,};
+    private String[] allColumns = { ItemListsItemsTable.COLUMN_ITEMLIST_ID,
+            ItemListsItemsTable.COLUMN_ITEM_ID,
+            ItemListsItemsTable.COLUMN_WEIGHT,
+            ItemListsItemsTable.COLUMN_SKILL,
+            ItemListsItemsTable.COLUMN_ATTRIBUTES };
+
+    // Values for detecting changes of the item list memberships (shared by all instances)
+    /** The sequence for the membership versions. */
+    private static long versionSequence = 0;
+    /** The version of the last change of all item lists, e.g. when all entries were deleted. */
+    private static long allItemListsVersion = 0;
+    /** The version of the last change of each item list by its item list id. */
+    private static final Map<Long, Long> itemListVersions = new HashMap<>();
 
     /**
      * Constructor.
@@ -63,25 +122,152 @@ public class ItemListsItemsDataSource {
      *            The <code>Context</code> to use.
      */
     public ItemListsItemsDataSource(Context context) {
-        dbHelper = new ItemListsItemsSQLiteHelper(context);
+        databaseManager = ChoiceDatabaseManager.getInstance(context);
     }
 
     /**
-     * Open a connection to the database.
+     * Open a connection to the database by acquiring a reference to the shared connection (opening
+     * an already opened data source does nothing).
      *
      * @throws SQLException
      *             If the database cannot be opened.
      */
     public void open() throws SQLException {
-        database = dbHelper.getWritableDatabase();
-        dbHelper.onCreate(database);
+        if (database == null) {
+            database = databaseManager.acquire();
+        }
+    }
+
+    /**
+     * Picks a random item of the item list with the given name in a single statement, which
+     * transfers only the one chosen row: the item list name is resolved, the members are counted
+     * and the item at the random position is looked up via the indexes. Like
+     * <code>RandomSource.nextInt</code> the position <code>(random * count) >> 32</code> of a
+     * random 32 bit number is rejected (and the statement repeated) if the low 32 bits of the
+     * product fall below <code>2^32 mod count</code>, so every item is equally likely (this happens
+     * with a probability of less than <code>count / 2^32</code>).
+     *
+     * @param itemListName
+     *            The name of the item list.
+     * @param randomSource
+     *            The source of the random numbers.
+     *
+     * @return The name of the chosen item or <code>null</code> if the item list does not exist
+     * or has no items.
+     */
+    public String pickItemName(String itemListName, RandomSource randomSource) {
+        return pickItemName(PICK_ITEM_NAME_QUERY, new String[] { itemListName, null }, randomSource);
+    }
+
+    /**
+     * Picks a random item among the items of the item list whose attributes match the given
+     * filter, in a single statement like <code>pickItemName</code>: the matching members are
+     * counted and the one at the random position is looked up, so only the one chosen row is
+     * transferred. The attributes of an item match an attribute if the (normalized) attribute is
+     * one of its comma separated attributes.
+     *
+     * @param itemListId
+     *            The item list ID to pick an item from.
+     * @param requiredAttributes
+     *            The normalized attributes of every OR group which an item must all have.
+     * @param excludedAttributes
+     *            The normalized attributes of every OR group which an item must not have.
+     * @param randomSource
+     *            The source of the random numbers.
+     *
+     * @return The name of the chosen item or <code>null</code> if no item matches.
+     */
+    public String pickFilteredItemName(long itemListId, String[][] requiredAttributes, String[][] excludedAttributes,
+                                       RandomSource randomSource) {
+        final List<String> arguments = new ArrayList<>();
+        arguments.add(String.valueOf(itemListId));
+        arguments.add(null);
+        // One "OR" group per filter group with one "AND" term per attribute (the attributes are
+        // numbered parameters after the item list id and the random number)
+        final StringBuilder filterClause = new StringBuilder("(");
+        for (int group = 0; group < requiredAttributes.length; group++) {
+            if (group > 0) {
+                filterClause.append(" OR ");
+            }
+            filterClause.append('(');
+            boolean first = true;
+            for (String attribute : requiredAttributes[group]) {
+                filterClause.append(first ? "" : " AND ").append(ATTRIBUTES_CONTAIN).append(" ?").append(arguments.size() + 1).append(ESCAPE_BACKSLASH);
+                arguments.add(getAttributePattern(attribute));
+                first = false;
+            }
+            for (String attribute : excludedAttributes[group]) {
+                filterClause.append(first ? "NOT " : " AND NOT ").append(ATTRIBUTES_CONTAIN).append(" ?").append(arguments.size() + 1).append(ESCAPE_BACKSLASH);
+                arguments.add(getAttributePattern(attribute));
+                first = false;
+            }
+            filterClause.append(')');
+        }
+        filterClause.append(')');
+
+        final String matchingMembers = " FROM " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS
+                + " WHERE " + ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = ?1 AND " + filterClause;
+        final String countMatches = "(SELECT COUNT(*)" + matchingMembers + ")";
+        final String query = "SELECT " + countMatches
+                + ", (SELECT " + ItemsTable.COLUMN_NAME
+                + " FROM " + ItemsTable.TABLE_ITEMS
+                + " WHERE " + ItemsTable.COLUMN_ID + " = (SELECT " + ItemListsItemsTable.COLUMN_ITEM_ID
+                + matchingMembers
+                + " ORDER BY " + ItemListsItemsTable.COLUMN_ITEM_ID
+                + " LIMIT 1 OFFSET (?2 * " + countMatches + ") >> 32))";
+        return pickItemName(query, arguments.toArray(new String[arguments.size()]), randomSource);
+    }
+
+    /**
+     * Returns the <code>LIKE</code> pattern which matches the given attribute as one of the comma
+     * separated attributes (see <code>ATTRIBUTES_CONTAIN</code>).
+     */
+    private static String getAttributePattern(String attribute) {
+        return "%" + ATTRIBUTE_SEPARATOR + attribute.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_")
+                + ATTRIBUTE_SEPARATOR + "%";
+    }
+
+    /**
+     * Runs a pick statement which returns the number of candidates and the name of the one at the
+     * position <code>(random * count) >> 32</code>, where its second parameter is the random
+     * number. The biased positions are rejected like in <code>pickItemName</code>.
+     *
+     * @return The name of the chosen item or <code>null</code> if there is no candidate.
+     */
+    private String pickItemName(String query, String[] selectionArgs, RandomSource randomSource) {
+        while (true) {
+            final long random = randomSource.nextLong() >>> 32;
+            selectionArgs[1] = String.valueOf(random);
+            Cursor cursor = database.rawQuery(query, selectionArgs);
+            long count = 0;
+            String itemName = null;
+            if (cursor.moveToFirst()) {
+                count = cursor.getLong(0);
+                itemName = cursor.getString(1);
+            }
+            // Make sure to close the cursor
+            cursor.close();
+            if (count <= 0 || itemName == null) {
+                return null;
+            }
+            // Accept the position unless the random number is one of the 2^32 mod count numbers
+            // which would map one time more often onto the lower positions
+            final long product = random * count;
+            if ((product & 0xffffffffL) >= ((1L << 32) - count) % count) {
+                return itemName;
+            }
+        }
     }
 
     /**
-     * Close the database connection.
+     * Close the database connection by releasing the reference to the shared connection, which
+     * is closed when no activity or data source uses it anymore.
      */
     public void close() {
-        dbHelper.close();
+        if (database != null) {
+            database = null;
+            databaseManager.release();
+        }
     }
 
     /**
@@ -102,20 +288,50 @@ public class ItemListsItemsDataSource {
      */
     public ItemListItem createItem(long itemListId, long itemId)
             throws SQLiteConstraintException {
+        return createItem(itemListId, itemId, ItemListsItemsTable.WEIGHT_DEFAULT);
+    }
+
+    /**
+     * Creates a new <code>ItemListsItems</code> object with the given values, new
+     * id from the database and also inserts the new data into the database
+     * under the id if the item list name and item name combination did not
+     * already exist.
+     *
+     * @param itemListId
+     *            The id of the item list database entry.
+     * @param itemId
+     *            The id of the item database entry.
+     * @param weight
+     *            The weight of the item in the item list, an item is chosen
+     *            proportionally to it.
+     * @return The newly created <code>ItemListItem</code> object with the given
+     *         values or <code>null</code> if the entry already existed.
+     *
+     * @throws SQLiteConstraintException
+     *             Is thrown if the item list id and item id combination already exists.
+     * @throws IllegalArgumentException
+     *             Is thrown if the weight is negative or not a finite number.
+     */
+    public ItemListItem createItem(long itemListId, long itemId, double weight)
+            throws SQLiteConstraintException, IllegalArgumentException {
+        isWeightValid(weight);
         ContentValues values = new ContentValues();
         ItemListItem newItemListItem = null;
 
         // Add the arguments
-        values.put(ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID, itemListId);
-        values.put(ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID, itemId);
+        values.put(ItemListsItemsTable.COLUMN_ITEMLIST_ID, itemListId);
+        values.put(ItemListsItemsTable.COLUMN_ITEM_ID, itemId);
+        values.put(ItemListsItemsTable.COLUMN_WEIGHT, weight);
         // Insert the data via an INSERT statement
-       database.insert(
-                ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS, null, values);
+        database.insert(
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, null, values);
+        // The membership of the item list changed
+        updateItemListVersion(itemListId);
         // Store the cursor belonging to the item list id and item id combination
         Cursor cursor = database.query(
-                ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS, allColumns,
-                ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID + " = " + itemListId
-                        + " AND " + ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID  + " = " + itemId,
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, allColumns,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = " + itemListId
+                        + " AND " + ItemListsItemsTable.COLUMN_ITEM_ID  + " = " + itemId,
                 null, null, null, null);
         if (cursor != null) {
             if (cursor.getCount() > 0) {
@@ -139,10 +355,12 @@ public class ItemListsItemsDataSource {
         long itemId = itemListItem.getItemId();
 
         System.out.println(String.format("ListItemList deleted with listItemId: %d and itemId: %d", itemListId, itemId));
-        database.delete(ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS,
-                ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID + " = " + itemListId
-                        + " AND " + ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID  + " = " + itemId,
+        database.delete(ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = " + itemListId
+                        + " AND " + ItemListsItemsTable.COLUMN_ITEM_ID  + " = " + itemId,
                 null);
+        // The membership of the item list changed
+        updateItemListVersion(itemListId);
     }
 
     /**
@@ -180,15 +398,15 @@ public class ItemListsItemsDataSource {
      */
     public Cursor getItemListItemCursor(long itemListId, long itemId) {
         System.out.println(String.format("Comment get itemListItemCursor with listItemId: %d and itemId: %d", itemListId, itemId));
-        String whereClause = ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID + " = ? AND "
-                + ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID + " = ? ";
+        String whereClause = ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = ? AND "
+                + ItemListsItemsTable.COLUMN_ITEM_ID + " = ? ";
         String itemListID = String.valueOf(itemListId);
         String itemID = String.valueOf(itemId);
         String[] whereArgs = new String[] { itemListID, itemID };
 
         // Query the database with the specific ids as a search key
         Cursor cursor = database.query(
-                ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS, allColumns,
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, allColumns,
                 whereClause, whereArgs, null, null, null);
         // Move the cursor to the first position, just in case there was more
         // than one result
@@ -213,7 +431,7 @@ public class ItemListsItemsDataSource {
         List<ItemListItem> itemListsItems = new ArrayList<>();
         // Get all entries from the database
         Cursor cursor = database.query(
-                ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS, allColumns, null,
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, allColumns, null,
                 null, null, null, null);
 
         cursor.moveToFirst();
@@ -230,6 +448,9 @@ public class ItemListsItemsDataSource {
 
     /**
      * Returns a list of items which are stored in the database by the item list ID if it exists.
+     * Hint: This copies every row into a boxed list, for choosing items use
+     * <code>pickItemName</code> (one item) or <code>getItemCount</code> with
+     * <code>getItemIdsAtPositions</code> (several items) instead.
      *
      * @param itemListId
      *            The item list ID to search items for.
@@ -240,11 +461,11 @@ public class ItemListsItemsDataSource {
     public List<Long> getItemIds(long itemListId) {
         List<Long> items = new ArrayList<>();
         ItemListItem currentItemListItem = null;
-        String whereClause = ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID + "="
+        String whereClause = ItemListsItemsTable.COLUMN_ITEMLIST_ID + "="
                 + itemListId;
         // Query the database for the specific items of the item list
         Cursor cursor = database.query(
-                ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS, allColumns,
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, allColumns,
                 whereClause, null, null, null, null);
 
         cursor.moveToFirst();
@@ -264,6 +485,266 @@ public class ItemListsItemsDataSource {
         return items;
     }
 
+    /**
+     * Returns the number of items of the item list without loading them.
+     *
+     * @param itemListId
+     *            The item list ID to count the items of.
+     *
+     * @return The number of items of the item list (0 if the item list ID did not exist in the
+     * database).
+     */
+    public int getItemCount(long itemListId) {
+        return (int) DatabaseUtils.queryNumEntries(database, ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + "=?", new String[] { String.valueOf(itemListId) });
+    }
+
+    /**
+     * Returns the id of the item at the given position of the item list (ordered by the item ids)
+     * with a single row query (<code>LIMIT 1 OFFSET position</code>), so together with
+     * <code>getItemCount</code> an item can be chosen with constant memory regardless of the size
+     * of the item list.
+     *
+     * @param itemListId
+     *            The item list ID to search the item for.
+     * @param position
+     *            The position in the range [0 ... <code>getItemCount</code> - 1].
+     *
+     * @return The item id or -1 if the position does not exist (anymore).
+     */
+    public long getItemIdAtPosition(long itemListId, int position) {
+        long itemId = -1;
+        String whereClause = ItemListsItemsTable.COLUMN_ITEMLIST_ID + "="
+                + itemListId;
+        // Query only the one row at the position ("offset,count")
+        Cursor cursor = database.query(
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                new String[] { ItemListsItemsTable.COLUMN_ITEM_ID },
+                whereClause, null, null, null, ItemListsItemsTable.COLUMN_ITEM_ID,
+                position + ",1");
+        if (cursor.moveToFirst()) {
+            itemId = cursor.getLong(0);
+        }
+        // Make sure to close the cursor
+        cursor.close();
+        return itemId;
+    }
+
+    /**
+     * Returns the ids of the items at the given positions of the item list (ordered by the item
+     * ids) with one single row query per position (see <code>getItemIdAtPosition</code>), so the
+     * other rows are only skipped in the database and never copied into a cursor window.
+     *
+     * @param itemListId
+     *            The item list ID to search items for.
+     * @param positions
+     *            The positions in the range [0 ... <code>getItemCount</code> - 1].
+     *
+     * @return The item ids in the same order as the positions as a <code>long</code> array, a
+     * position which does not exist (anymore) is mapped to -1.
+     */
+    public long[] getItemIdsAtPositions(long itemListId, int[] positions) {
+        final long[] itemIds = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            itemIds[i] = getItemIdAtPosition(itemListId, positions[i]);
+        }
+        return itemIds;
+    }
+
+    /**
+     * Returns the ids, weights and skills of all items of the item list as primitive arrays sorted by
+     * the item ids (so an item can be found via binary search).
+     *
+     * @param itemListId
+     *            The item list ID to search items for.
+     *
+     * @return The found <code>ItemListMembers</code> (which are empty if the item list ID did not
+     * exist in the database).
+     */
+    public ItemListMembers getItemListMembers(long itemListId) {
+        // Remember the version before querying so that a concurrent change is detected later
+        final long version = getItemListVersion(itemListId);
+        String whereClause = ItemListsItemsTable.COLUMN_ITEMLIST_ID + "="
+                + itemListId;
+        // Query the database for the specific items of the item list
+        Cursor cursor = database.query(
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                new String[] { ItemListsItemsTable.COLUMN_ITEM_ID, ItemListsItemsTable.COLUMN_WEIGHT,
+                        ItemListsItemsTable.COLUMN_SKILL, ItemListsItemsTable.COLUMN_ATTRIBUTES },
+                whereClause, null, null, null, ItemListsItemsTable.COLUMN_ITEM_ID);
+
+        // Copy the values directly into primitive arrays
+        final long[] itemIds = new long[cursor.getCount()];
+        final double[] weights = new double[itemIds.length];
+        final double[] skills = new double[itemIds.length];
+        final String[] attributes = new String[itemIds.length];
+        int index = 0;
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            itemIds[index] = cursor.getLong(0);
+            weights[index] = cursor.getDouble(1);
+            skills[index] = cursor.getDouble(2);
+            attributes[index] = cursor.getString(3);
+            index++;
+            cursor.moveToNext();
+        }
+        // Make sure to close the cursor
+        cursor.close();
+        return new ItemListMembers(itemListId, version, itemIds, weights, skills, attributes);
+    }
+
+    /**
+     * Update the weight of an item in an item list.
+     *
+     * @param itemListId
+     *            The item list id of the entry to update.
+     * @param itemId
+     *            The item id of the entry to update.
+     * @param weight
+     *            The new weight of the item in the item list, an item is chosen
+     *            proportionally to it.
+     * @throws IllegalArgumentException
+     *             Is thrown if the weight is negative or not a finite number.
+     */
+    public void updateItemWeight(long itemListId, long itemId, double weight) throws IllegalArgumentException {
+        isWeightValid(weight);
+        ContentValues values = new ContentValues();
+        values.put(ItemListsItemsTable.COLUMN_WEIGHT, weight);
+
+        // Do the database update
+        database.update(
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                values,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = " + itemListId
+                        + " AND " + ItemListsItemsTable.COLUMN_ITEM_ID + " = " + itemId, null);
+        // The weights of the item list changed
+        updateItemListVersion(itemListId);
+    }
+
+    /**
+     * Update the skill of an item in an item list.
+     *
+     * @param itemListId
+     *            The item list id of the entry to update.
+     * @param itemId
+     *            The item id of the entry to update.
+     * @param skill
+     *            The new skill of the item in the item list, teams are balanced by
+     *            the sums of the skills of their members.
+     * @throws IllegalArgumentException
+     *             Is thrown if the skill is negative or not a finite number.
+     */
+    public void updateItemSkill(long itemListId, long itemId, double skill) throws IllegalArgumentException {
+        if (!(skill >= 0) || Double.isInfinite(skill)) {
+            throw new IllegalArgumentException("The skill has to be a finite number equal to or greater than zero but it was: " + skill);
+        }
+        ContentValues values = new ContentValues();
+        values.put(ItemListsItemsTable.COLUMN_SKILL, skill);
+
+        // Do the database update
+        database.update(
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                values,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = " + itemListId
+                        + " AND " + ItemListsItemsTable.COLUMN_ITEM_ID + " = " + itemId, null);
+        // The skills of the item list changed
+        updateItemListVersion(itemListId);
+    }
+
+    /**
+     * Update the attributes of an item in an item list, e.g. for filtering the items before
+     * choosing one.
+     *
+     * @param itemListId
+     *            The item list id of the entry to update.
+     * @param itemId
+     *            The item id of the entry to update.
+     * @param attributes
+     *            The new comma separated attributes of the item in the item list, e.g.
+     *            "vegetarian,cheap", or <code>null</code> for none. They are stored normalized
+     *            (see <code>normalizeAttributes</code>).
+     */
+    public void updateItemAttributes(long itemListId, long itemId, String attributes) {
+        ContentValues values = new ContentValues();
+        values.put(ItemListsItemsTable.COLUMN_ATTRIBUTES, normalizeAttributes(attributes));
+
+        // Do the database update
+        database.update(
+                ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
+                values,
+                ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = " + itemListId
+                        + " AND " + ItemListsItemsTable.COLUMN_ITEM_ID + " = " + itemId, null);
+        // The attributes of the item list changed
+        updateItemListVersion(itemListId);
+    }
+
+    /**
+     * Normalizes comma separated attributes for storing them, so they can be matched in the
+     * database as well: every attribute is trimmed and in lower case and empty attributes are
+     * left out, e.g. " Vegetarian, ,cheap" becomes "vegetarian,cheap".
+     *
+     * @param attributes
+     *            The comma separated attributes or <code>null</code>.
+     * @return The normalized attributes or <code>null</code> if there are none.
+     */
+    public static String normalizeAttributes(String attributes) {
+        if (attributes == null) {
+            return null;
+        }
+        final StringBuilder normalizedAttributes = new StringBuilder();
+        for (String attribute : attributes.split(ATTRIBUTE_SEPARATOR)) {
+            final String normalizedAttribute = attribute.trim().toLowerCase(Locale.US);
+            if (!normalizedAttribute.isEmpty()) {
+                if (normalizedAttributes.length() > 0) {
+                    normalizedAttributes.append(ATTRIBUTE_SEPARATOR);
+                }
+                normalizedAttributes.append(normalizedAttribute);
+            }
+        }
+        return normalizedAttributes.length() > 0 ? normalizedAttributes.toString() : null;
+    }
+
+    /**
+     * Returns the version of the membership (items, weights, skills and attributes) of the given item list. It changes
+     * whenever an item is added to or removed from the item list, its weight or skill changes or an item is renamed, so that
+     * structures built from the members can be cached until then.
+     *
+     * @param itemListId
+     *            The id of the item list.
+     * @return The current version as a <code>long</code>.
+     */
+    public static synchronized long getItemListVersion(long itemListId) {
+        Long itemListVersion = itemListVersions.get(itemListId);
+        // Changes of all item lists count for every single one
+        return itemListVersion == null ? allItemListsVersion : Math.max(itemListVersion, allItemListsVersion);
+    }
+
+    /**
+     * Marks the membership of the given item list as changed.
+     */
+    private static synchronized void updateItemListVersion(long itemListId) {
+        itemListVersions.put(itemListId, ++versionSequence);
+    }
+
+    /**
+     * Marks the memberships of all item lists as changed.
+     */
+    static synchronized void updateAllItemListsVersion() {
+        allItemListsVersion = ++versionSequence;
+    }
+
+    /**
+     * Checks if the given weight is valid (not negative and finite) and returns
+     * <code>true</code> or otherwise an <code>IllegalArgumentException</code> is thrown.
+     */
+    private static boolean isWeightValid(double weight) throws IllegalArgumentException {
+        if (weight >= 0 && !Double.isInfinite(weight)) {
+            return true;
+        } else {
+            throw new IllegalArgumentException("The weight has to be a finite number equal to or greater than zero but it was: " + weight);
+        }
+    }
+
     /**
      * Transforms data from a database query to a new <code>ItemListItem</code>
      * object with the query result values.
@@ -281,6 +762,9 @@ public class ItemListsItemsDataSource {
             itemListItem = new ItemListItem();
             itemListItem.setItemListId(cursor.getLong(0));
             itemListItem.setItemId(cursor.getLong(1));
+            itemListItem.setWeight(cursor.getDouble(2));
+            itemListItem.setSkill(cursor.getDouble(3));
+            itemListItem.setAttributes(cursor.getString(4));
         }
         return itemListItem;
     }
@@ -306,12 +790,14 @@ public class ItemListsItemsDataSource {
 
             // Do the database update
             database.update(
-                    ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS,
+                    ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS,
                     values,
-                    ItemListsItemsSQLiteHelper.COLUMN_ITEMLIST_ID + " = "
+                    ItemListsItemsTable.COLUMN_ITEMLIST_ID + " = "
                             + itemListItem.getItemListId() + " AND "
-                    + ItemListsItemsSQLiteHelper.COLUMN_ITEM_ID + " = "
+                    + ItemListsItemsTable.COLUMN_ITEM_ID + " = "
                     + itemListItem.getItemId(), null);
+            // The weights of the item list might have changed
+            updateItemListVersion(itemListItem.getItemListId());
         }
     }
 
@@ -326,10 +812,10 @@ public class ItemListsItemsDataSource {
      * Empty the table so that all entries are deleted.
      */
     public void emptyItemListsItemsTable() {
-        // TODO Exchange the code so that a table is just updated and filled
-        // with null???
-        database.execSQL("DROP TABLE IF EXISTS "
-                + ItemListsItemsSQLiteHelper.TABLE_ITEMLISTS_ITEMS);
-        dbHelper.onCreate(database);
+        // Delete the rows instead of dropping the table, so the foreign keys cascade and the
+        // indexes are kept
+        database.delete(ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS, null, null);
+        // The memberships of all item lists changed
+        updateAllItemListsVersion();
     }
 }
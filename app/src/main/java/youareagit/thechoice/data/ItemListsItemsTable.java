@@ -0,0 +1,71 @@
+/** The MIT License (MIT)
+
+ Copyright (c) 2015 Martin Bölter
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE. */
+
+package youareagit.thechoice.data;
+
+/**
+ * The definition of the table of the item list memberships in the <code>ChoiceSQLiteHelper</code>
+ * database. A membership is deleted together with its item list or its item.
+ */
+final class ItemListsItemsTable {
+    static final String TABLE_ITEMLISTS_ITEMS = "item_lists_items";
+    static final String COLUMN_ITEMLIST_ID = "_itemListId";
+    static final String COLUMN_ITEM_ID = "_itemId";
+    static final String COLUMN_WEIGHT = "weight";
+    /** The weight of an item in an item list if none was set. */
+    static final double WEIGHT_DEFAULT = 1.0;
+    static final String COLUMN_SKILL = "skill";
+    /** The skill of an item in an item list if none was set (all members are equally strong). */
+    static final double SKILL_DEFAULT = 0.0;
+    /** The attributes of an item in an item list, e.g. "vegetarian,cheap" (<code>NULL</code> for none). */
+    static final String COLUMN_ATTRIBUTES = "attributes";
+
+    /**
+     * The SQL statement for creating the table with a primary key on the
+     * item list id and item id combination (which also serves as the index for the item list id)
+     * and foreign keys on the item list and the item.
+     */
+    static final String DATABASE_CREATE_ITEMLISTS_ITEMS = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_ITEMLISTS_ITEMS + " ("
+            + COLUMN_ITEMLIST_ID + " INTEGER NOT NULL REFERENCES "
+            + ItemListsTable.TABLE_ITEMLISTS + " (" + ItemListsTable.COLUMN_ID + ") ON DELETE CASCADE, "
+            + COLUMN_ITEM_ID + " INTEGER NOT NULL REFERENCES "
+            + ItemsTable.TABLE_ITEMS + " (" + ItemsTable.COLUMN_ID + ") ON DELETE CASCADE, "
+            + COLUMN_WEIGHT + " REAL NOT NULL DEFAULT " + WEIGHT_DEFAULT + ", "
+            + COLUMN_SKILL + " REAL NOT NULL DEFAULT " + SKILL_DEFAULT + ", "
+            + COLUMN_ATTRIBUTES + " TEXT, " + "PRIMARY KEY ("
+            + COLUMN_ITEMLIST_ID + ", " + COLUMN_ITEM_ID + "));";
+
+    /**
+     * The SQL statement for creating the index on the item id, which is used for the joins with
+     * the items and for cascading the deletion of an item.
+     */
+    static final String DATABASE_CREATE_INDEX_ITEM_ID = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_ITEMLISTS_ITEMS + "_" + COLUMN_ITEM_ID + " ON "
+            + TABLE_ITEMLISTS_ITEMS + " (" + COLUMN_ITEM_ID + ");";
+
+    /** The name of the legacy database file which only contained this table. */
+    static final String LEGACY_DATABASE_NAME = TABLE_ITEMLISTS_ITEMS;
+
+    private ItemListsItemsTable() {
+    }
+}
@@ -0,0 +1,73 @@
+/** The MIT License (MIT)
+
+ Copyright (c) 2015 Martin Bölter
+
+ Permission is hereby granted, free of charge, to any person obtaining a copy
+ of this software and associated documentation files (the "Software"), to deal
+ in the Software without restriction, including without limitation the rights
+ to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ copies of the Software, and to permit persons to whom the Software is
+ furnished to do so, subject to the following conditions:
+
+ The above copyright notice and this permission notice shall be included in all
+ copies or substantial portions of the Software.
+
+ THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ SOFTWARE. */
+
+package youareagit.thechoice.data;
+
+/**
+ * The definition of the item lists table in the <code>ChoiceSQLiteHelper</code> database.
+ */
+final class ItemListsTable {
+    static final String TABLE_ITEMLISTS = "item_lists";
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_NAME = "name";
+    static final String COLUMN_LISTNAME = "list_name";
+    /** The number of items of the item list (since database version 2, <code>NULL</code> until it is counted). */
+    static final String COLUMN_ITEM_COUNT = "item_count";
+    /**
+     * The SQL statement for creating the table with a unique constraint on the
+     * item list name.
+     */
+    static final String DATABASE_CREATE_ITEMLISTS = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_ITEMLISTS + " (" + COLUMN_ID
+            + " integer primary key autoincrement, "
+            + COLUMN_LISTNAME + " TEXT, " + "CONSTRAINT unq UNIQUE ("
+            + COLUMN_LISTNAME + "));";
+    /**
+     * The SQL statements for creating the triggers which keep the item count of the item lists up
+     * to date (a count which is still <code>NULL</code> stays so until it is counted).
+     */
+    static final String[] DATABASE_CREATE_ITEM_COUNT_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS " + TABLE_ITEMLISTS + "_" + COLUMN_ITEM_COUNT + "_insert AFTER INSERT ON "
+                    + TABLE_ITEMLISTS + " BEGIN UPDATE " + TABLE_ITEMLISTS + " SET " + COLUMN_ITEM_COUNT
+                    + " = 0 WHERE " + COLUMN_ID + " = NEW." + COLUMN_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + "_" + COLUMN_ITEM_COUNT
+                    + "_insert AFTER INSERT ON " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + " BEGIN UPDATE "
+                    + TABLE_ITEMLISTS + " SET " + COLUMN_ITEM_COUNT + " = " + COLUMN_ITEM_COUNT + " + 1 WHERE "
+                    + COLUMN_ID + " = NEW." + ItemListsItemsTable.COLUMN_ITEMLIST_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + "_" + COLUMN_ITEM_COUNT
+                    + "_delete AFTER DELETE ON " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + " BEGIN UPDATE "
+                    + TABLE_ITEMLISTS + " SET " + COLUMN_ITEM_COUNT + " = " + COLUMN_ITEM_COUNT + " - 1 WHERE "
+                    + COLUMN_ID + " = OLD." + ItemListsItemsTable.COLUMN_ITEMLIST_ID + "; END;",
+            "CREATE TRIGGER IF NOT EXISTS " + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + "_" + COLUMN_ITEM_COUNT
+                    + "_update AFTER UPDATE OF " + ItemListsItemsTable.COLUMN_ITEMLIST_ID + " ON "
+                    + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + " BEGIN UPDATE " + TABLE_ITEMLISTS + " SET "
+                    + COLUMN_ITEM_COUNT + " = " + COLUMN_ITEM_COUNT + " - 1 WHERE " + COLUMN_ID + " = OLD."
+                    + ItemListsItemsTable.COLUMN_ITEMLIST_ID + "; UPDATE " + TABLE_ITEMLISTS + " SET "
+                    + COLUMN_ITEM_COUNT + " = " + COLUMN_ITEM_COUNT + " + 1 WHERE " + COLUMN_ID + " = NEW."
+                    + ItemListsItemsTable.COLUMN_ITEMLIST_ID + "; END;" };
+
+    /** The name of the legacy database file which only contained this table. */
+    static final String LEGACY_DATABASE_NAME = TABLE_ITEMLISTS;
+
+    private ItemListsTable() {
+    }
+}
@@ -22,7 +22,9 @@
 
 package youareagit.thechoice.data;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import android.content.ContentValues;
 import android.content.Context;
@@ -39,17 +41,20 @@ import android.database.sqlite.SQLiteDatabase;
  *
  */
 public class ItemsDataSource {
+    /** The maximum number of arguments of one query (the default limit of SQLite is 999). */
+    private static final int MAXIMUM_QUERY_ARGUMENTS = 999;
+
     // Database fields
     /** The database to use. */
     private SQLiteDatabase database;
-    /** Database helper. */
-    private ItemsSQLiteHelper dbHelper;
+    /** The manager of the shared database connection. */
+    private ChoiceDatabaseManager databaseManager;
     /**
      * Stores all (relevant) columns of the item database so they can be
      * queried.
      */
-    private String[] allColumns = { ItemsSQLiteHelper.COLUMN_ID,
-            ItemsSQLiteHelper.COLUMN_NAME};
+    private String[] allColumns = { ItemsTable.COLUMN_ID,
+            ItemsTable.COLUMN_NAME};
 
     /**
      * Constructor.
@@ -58,25 +63,31 @@ public class ItemsDataSource {
      *            The <code>Context</code> to use.
      */
     public ItemsDataSource(Context context) {
-        dbHelper = new ItemsSQLiteHelper(context);
+        databaseManager = ChoiceDatabaseManager.getInstance(context);
     }
 
     /**
-     * Open a connection to the database.
+     * Open a connection to the database by acquiring a reference to the shared connection (opening
+     * an already opened data source does nothing).
      *
      * @throws SQLException
      *             If the database cannot be opened.
      */
     public void open() throws SQLException {
-        database = dbHelper.getWritableDatabase();
-        dbHelper.onCreate(database);
+        if (database == null) {
+            database = databaseManager.acquire();
+        }
     }
 
     /**
-     * Close the database connection.
+     * Close the database connection by releasing the reference to the shared connection, which
+     * is closed when no activity or data source uses it anymore.
      */
     public void close() {
-        dbHelper.close();
+        if (database != null) {
+            database = null;
+            databaseManager.release();
+        }
     }
 
     /**
@@ -98,14 +109,14 @@ public class ItemsDataSource {
         Item newItem = null;
 
         // Add the arguments
-        values.put(ItemsSQLiteHelper.COLUMN_NAME, name);
+        values.put(ItemsTable.COLUMN_NAME, name);
         // Store the new valid ID value generated by the INSERT statement
         long insertId = database.insert(
-                ItemsSQLiteHelper.TABLE_ITEMS, null, values);
+                ItemsTable.TABLE_ITEMS, null, values);
         // Store the cursor belonging to the ID
         Cursor cursor = database.query(
-                ItemsSQLiteHelper.TABLE_ITEMS, allColumns,
-                ItemsSQLiteHelper.COLUMN_ID + " = " + insertId, null,
+                ItemsTable.TABLE_ITEMS, allColumns,
+                ItemsTable.COLUMN_ID + " = " + insertId, null,
                 null, null, null);
         if (cursor != null) {
             if (cursor.getCount() > 0) {
@@ -126,9 +137,11 @@ public class ItemsDataSource {
     public void deleteItem(Item item) {
         long id = item.getId();
         System.out.println("Comment deleted with id: " + id);
-        database.delete(ItemsSQLiteHelper.TABLE_ITEMS,
-                ItemsSQLiteHelper.COLUMN_ID + " = " + String.valueOf(id),
+        database.delete(ItemsTable.TABLE_ITEMS,
+                ItemsTable.COLUMN_ID + " = " + String.valueOf(id),
                 null);
+        // The memberships of the item were deleted via the foreign key
+        ItemListsItemsDataSource.updateAllItemListsVersion();
     }
 
     /**
@@ -162,21 +175,23 @@ public class ItemsDataSource {
      */
     public Cursor getItemCursor(long id) {
         System.out.println("Comment get itemCursor with id: " + id);
-        String whereClause = ItemsSQLiteHelper.COLUMN_ID + " = ?";
+        String whereClause = ItemsTable.COLUMN_ID + " = ?";
         String itemID = String.valueOf(id);
         String[] whereArgs = new String[] { itemID };
 
         // Query the database with the specific id as a search key
         Cursor cursor = database.query(
-                ItemsSQLiteHelper.TABLE_ITEMS, allColumns,
+                ItemsTable.TABLE_ITEMS, allColumns,
                 whereClause, whereArgs, null, null, null);
         // Move the cursor to the first position, just in case there was more
         // than one result
-        cursor.moveToFirst();
-        System.out.print("Found: ");
-        for (int i = 0; i < allColumns.length; i++) {
-            String columnName = allColumns[i];
-            System.out.println(columnName + cursor.getString(i));
+        // (only print it if there was a result, e.g. the item might have been deleted)
+        if (cursor.moveToFirst()) {
+            System.out.print("Found: ");
+            for (int i = 0; i < allColumns.length; i++) {
+                String columnName = allColumns[i];
+                System.out.println(columnName + cursor.getString(i));
+            }
         }
         // Make sure to close the cursor
         // cursor.close();
@@ -193,7 +208,7 @@ public class ItemsDataSource {
         List<Item> items = new ArrayList<>();
         // Get all items from the database
         Cursor cursor = database.query(
-                ItemsSQLiteHelper.TABLE_ITEMS, allColumns, null,
+                ItemsTable.TABLE_ITEMS, allColumns, null,
                 null, null, null, null);
 
         cursor.moveToFirst();
@@ -208,6 +223,47 @@ public class ItemsDataSource {
         return items;
     }
 
+    /**
+     * Returns the names of the items with the given ids, resolved with one batched query (per
+     * <code>MAXIMUM_QUERY_ARGUMENTS</code> ids) instead of one query per id.
+     *
+     * @param itemIds
+     *            The ids of the items.
+     * @return The names in the same order as the ids, the name of an id which does not exist in
+     *         the database is <code>null</code>.
+     */
+    public String[] getItemNames(long[] itemIds) {
+        Map<Long, String> itemNamesById = new HashMap<>();
+        for (int start = 0; start < itemIds.length; start += MAXIMUM_QUERY_ARGUMENTS) {
+            final int end = Math.min(itemIds.length, start + MAXIMUM_QUERY_ARGUMENTS);
+            // Build the "IN (?, ?, ...)" clause with one argument per id
+            StringBuilder whereClause = new StringBuilder(ItemsTable.COLUMN_ID).append(" IN (");
+            String[] whereArgs = new String[end - start];
+            for (int i = start; i < end; i++) {
+                whereClause.append(i > start ? ",?" : "?");
+                whereArgs[i - start] = String.valueOf(itemIds[i]);
+            }
+            whereClause.append(')');
+
+            Cursor cursor = database.query(
+                    ItemsTable.TABLE_ITEMS, allColumns,
+                    whereClause.toString(), whereArgs, null, null, null);
+            cursor.moveToFirst();
+            while (!cursor.isAfterLast()) {
+                itemNamesById.put(cursor.getLong(0), cursor.getString(1));
+                cursor.moveToNext();
+            }
+            // Make sure to close the cursor
+            cursor.close();
+        }
+
+        String[] itemNames = new String[itemIds.length];
+        for (int i = 0; i < itemIds.length; i++) {
+            itemNames[i] = itemNamesById.get(itemIds[i]);
+        }
+        return itemNames;
+    }
+
     /**
      * Returns a item which is stored in the database by name if it exists.
      *
@@ -218,11 +274,11 @@ public class ItemsDataSource {
      */
     public Item getItem(String itemName) {
         Item item = null;
-        String whereClause = ItemsSQLiteHelper.COLUMN_NAME + "='"
+        String whereClause = ItemsTable.COLUMN_NAME + "='"
                 + itemName + "'";
         // Query the database for the specific item
         Cursor cursor = database.query(
-                ItemsSQLiteHelper.TABLE_ITEMS, allColumns,
+                ItemsTable.TABLE_ITEMS, allColumns,
                 whereClause, null, null, null, null);
 
         cursor.moveToFirst();
@@ -277,10 +333,12 @@ public class ItemsDataSource {
 
             // Do the database update
             database.update(
-                    ItemsSQLiteHelper.TABLE_ITEMS,
+                    ItemsTable.TABLE_ITEMS,
                     values,
-                    ItemsSQLiteHelper.COLUMN_ID + " = "
+                    ItemsTable.COLUMN_ID + " = "
                             + item.getId(), null);
+            // The item names are cached together with the memberships
+            ItemListsItemsDataSource.updateAllItemListsVersion();
         }
     }
 
@@ -295,10 +353,9 @@ public class ItemsDataSource {
      * Empty the items table so that all entries are deleted.
      */
     public void emptyItemsTable() {
-        // TODO Exchange the code so that a table is just updated and filled
-        // with null???
-        database.execSQL("DROP TABLE IF EXISTS "
-                + ItemsSQLiteHelper.TABLE_ITEMS);
-        dbHelper.onCreate(database);
+        // Delete the rows instead of dropping the table, so the foreign keys cascade and the
+        // indexes are kept
+        database.delete(ItemsTable.TABLE_ITEMS, null, null);
+        ItemListsItemsDataSource.updateAllItemListsVersion();
     }
 }
@@ -22,14 +22,10 @@
 
 package youareagit.thechoice.data;
 
-import android.content.Context;
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteDatabase.CursorFactory;
-import android.database.sqlite.SQLiteOpenHelper;
-import android.util.Log;
-
-class ItemsSQLiteHelper extends SQLiteOpenHelper {
-    private static final int DATABASE_VERSION = 1;
+/**
+ * The definition of the items table in the <code>ChoiceSQLiteHelper</code> database.
+ */
+final class ItemsTable {
     static final String TABLE_ITEMS = "items";
     static final String COLUMN_ID = "_id";
     static final String COLUMN_NAME = "name";
@@ -37,33 +33,13 @@ class ItemsSQLiteHelper extends SQLiteOpenHelper {
      * The SQL statement for creating the table with a unique constraint on the
      * item name.
      */
-    private static final String DATABASE_CREATE = "CREATE TABLE IF NOT EXISTS "
+    static final String DATABASE_CREATE = "CREATE TABLE IF NOT EXISTS "
             + TABLE_ITEMS + " (" + COLUMN_ID
             + " integer primary key autoincrement, " + COLUMN_NAME + " TEXT, "
             + "CONSTRAINT unq UNIQUE (" + COLUMN_NAME + "));";
+    /** The name of the legacy database file which only contained this table. */
+    static final String LEGACY_DATABASE_NAME = TABLE_ITEMS;
 
-    public ItemsSQLiteHelper(Context context, String name,
-                                   CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
-
-    ItemsSQLiteHelper(Context context) {
-        super(context, TABLE_ITEMS, null, DATABASE_VERSION);
-    }
-
-    @Override
-    public void onCreate(SQLiteDatabase database) {
-        database.execSQL(DATABASE_CREATE);
-    }
-
-    @Override
-    public void onUpgrade(SQLiteDatabase database, int oldVersion,
-                          int newVersion) {
-        Log.w(ItemsSQLiteHelper.class.getName(),
-                "Upgrading database from version " + oldVersion + " to "
-                        + newVersion + ", which will destroy all old data");
-        // TODO Exchange the code so that a table is just updated and filled with null
-        database.execSQL("DROP TABLE IF EXISTS " + TABLE_ITEMS);
-        onCreate(database);
+    private ItemsTable() {
     }
 }
@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of the schema migrations of the <code>ChoiceSQLiteHelper</code> database, which
+ * upgrades the database to its version without losing data. Both parts have to be idempotent,
+ * because an interrupted migration is repeated on the next start.
+ */
+abstract class SchemaMigration {
+    /** The database version after this step. */
+    private final int version;
+
+    /**
+     * Constructor for the <code>SchemaMigration</code> object.
+     * @param version The database version after this step.
+     */
+    SchemaMigration(int version) {
+        this.version = version;
+    }
+
+    /**
+     * The database version after this step.
+     * @return The version as an <code>int</code>.
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Changes the schema, e.g. adds columns, indexes or triggers. It runs within the upgrade
+     * transaction while the database is opened, so it must not touch every row of a large table.
+     * @param database The database to migrate.
+     */
+    abstract void migrate(SQLiteDatabase database);
+
+    /**
+     * Migrates the next batch of rows after the schema was changed, e.g. fills a new column. It
+     * runs in the background with one transaction per batch, so the database stays usable while
+     * the rows are migrated and the rows which were not migrated yet have to be valid.
+     * @param database The database to migrate.
+     * @param batchSize The maximum number of rows to migrate.
+     * @return The number of migrated rows, <code>0</code> if all rows are migrated.
+     */
+    int migrateBatch(SQLiteDatabase database, int batchSize) {
+        return 0;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The registry of the <code>SchemaMigration</code> steps of the <code>ChoiceSQLiteHelper</code>
+ * database, ordered by their version. The schema changes are applied in one transaction per step
+ * during the upgrade, the rows of large tables are migrated afterwards in small batches on a
+ * background thread so that the first start after an update is not blocked.
+ */
+final class SchemaMigrations {
+    /** The version of the database schema created by <code>ChoiceSQLiteHelper.createTables</code>. */
+    static final int INITIAL_VERSION = 1;
+    /** The number of rows migrated in one background transaction. */
+    static final int BATCH_SIZE = 200;
+
+    /**
+     * Version 2: Keeps the number of items of every item list in the item list, so choosing from
+     * an item list does not need to count its memberships. Triggers keep the counts up to date,
+     * the counts of the existing item lists are filled in the background (until then they are
+     * <code>NULL</code> and the memberships are counted instead).
+     */
+    private static final SchemaMigration ITEM_COUNT = new SchemaMigration(2) {
+        @Override
+        void migrate(SQLiteDatabase database) {
+            if (!hasColumn(database, ItemListsTable.TABLE_ITEMLISTS, ItemListsTable.COLUMN_ITEM_COUNT)) {
+                database.execSQL("ALTER TABLE " + ItemListsTable.TABLE_ITEMLISTS
+                        + " ADD COLUMN " + ItemListsTable.COLUMN_ITEM_COUNT + " INTEGER;");
+            }
+            for (String createTrigger : ItemListsTable.DATABASE_CREATE_ITEM_COUNT_TRIGGERS) {
+                database.execSQL(createTrigger);
+            }
+        }
+
+        @Override
+        int migrateBatch(SQLiteDatabase database, int batchSize) {
+            final SQLiteStatement statement = database.compileStatement("UPDATE " + ItemListsTable.TABLE_ITEMLISTS
+                    + " SET " + ItemListsTable.COLUMN_ITEM_COUNT + " = (SELECT COUNT(*) FROM "
+                    + ItemListsItemsTable.TABLE_ITEMLISTS_ITEMS + " WHERE " + ItemListsItemsTable.COLUMN_ITEMLIST_ID
+                    + " = " + ItemListsTable.TABLE_ITEMLISTS + "." + ItemListsTable.COLUMN_ID + ") WHERE "
+                    + ItemListsTable.COLUMN_ID + " IN (SELECT " + ItemListsTable.COLUMN_ID + " FROM "
+                    + ItemListsTable.TABLE_ITEMLISTS + " WHERE " + ItemListsTable.COLUMN_ITEM_COUNT
+                    + " IS NULL LIMIT " + batchSize + ")");
+            try {
+                return statement.executeUpdateDelete();
+            } finally {
+                statement.close();
+            }
+        }
+    };
+
+    /** All migration steps in the order of their versions. */
+    private static final SchemaMigration[] MIGRATIONS = { ITEM_COUNT };
+
+    /** The background thread which migrates the rows (shared by all databases). */
+    private static final ExecutorService BATCH_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "SchemaMigrations");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    /** Whether the rows were already migrated (or are being migrated) since the start of the app. */
+    private static final AtomicBoolean batchesStarted = new AtomicBoolean(false);
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * The version of the latest migration step, which is the current database version.
+     * @return The latest version as an <code>int</code>.
+     */
+    static int getLatestVersion() {
+        return MIGRATIONS.length > 0 ? MIGRATIONS[MIGRATIONS.length - 1].getVersion() : INITIAL_VERSION;
+    }
+
+    /**
+     * Apply the schema changes of all steps after the old version up to the new version in their
+     * order, each step in its own (nested) transaction.
+     * @param database The database to migrate.
+     * @param oldVersion The current version of the database.
+     * @param newVersion The version to migrate to.
+     * @throws IllegalArgumentException If the new version is older than the old version or unknown.
+     */
+    static void migrate(SQLiteDatabase database, int oldVersion, int newVersion) throws IllegalArgumentException {
+        if (newVersion < oldVersion || newVersion > getLatestVersion()) {
+            throw new IllegalArgumentException("There is no migration from version " + oldVersion + " to " + newVersion);
+        }
+        for (SchemaMigration migration : MIGRATIONS) {
+            if (migration.getVersion() > oldVersion && migration.getVersion() <= newVersion) {
+                Log.i(SchemaMigrations.class.getName(), "Migrating the database to version " + migration.getVersion());
+                database.beginTransaction();
+                try {
+                    migration.migrate(database);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        }
+    }
+
+    /**
+     * Migrate the rows of all steps batch by batch until every row is migrated.
+     * @param database The (opened) database to migrate.
+     * @param batchSize The maximum number of rows per transaction.
+     * @return The number of migrated rows.
+     */
+    static int migrateBatches(SQLiteDatabase database, int batchSize) {
+        int migratedRows = 0;
+        for (SchemaMigration migration : MIGRATIONS) {
+            int migratedBatchRows;
+            do {
+                database.beginTransaction();
+                try {
+                    migratedBatchRows = migration.migrateBatch(database, batchSize);
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                migratedRows += migratedBatchRows;
+            } while (migratedBatchRows > 0);
+        }
+        return migratedRows;
+    }
+
+    /**
+     * Start migrating the rows in the background once per start of the app (a migration which
+     * was interrupted, e.g. because the app was closed, continues this way). The database stays
+     * open until the rows are migrated, even if it is closed in the meantime.
+     * @param database The opened database to migrate.
+     */
+    static void startBatches(final SQLiteDatabase database) {
+        if (database.isReadOnly() || !batchesStarted.compareAndSet(false, true)) {
+            return;
+        }
+        database.acquireReference();
+        BATCH_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final int migratedRows = migrateBatches(database, BATCH_SIZE);
+                    if (migratedRows > 0) {
+                        Log.i(SchemaMigrations.class.getName(), "Migrated " + migratedRows + " rows");
+                    }
+                } catch (RuntimeException rE) {
+                    // Try again on the next start, the rows which were not migrated are still valid
+                    Log.w(SchemaMigrations.class.getName(), "Migrating the rows failed", rE);
+                } finally {
+                    database.releaseReference();
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks whether the given table has the given column.
+     * @param database The database.
+     * @param table The name of the table.
+     * @param column The name of the column.
+     * @return <code>true</code> if the column exists.
+     */
+    static boolean hasColumn(SQLiteDatabase database, String table, String column) {
+        final Cursor cursor = database.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            final int columnNameIndex = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                if (column.equals(cursor.getString(columnNameIndex))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+}
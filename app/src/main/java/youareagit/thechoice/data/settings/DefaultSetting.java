@@ -31,5 +31,11 @@ package youareagit.thechoice.data.settings;
 public enum DefaultSetting {
     CUSTOM_DICE_MAXIMUM_RANGE_VALUE,
     CHOICEMETHOD_FROM_LIST_LISTNAME,
-    CHOICEMETHOD
+    CHOICEMETHOD,
+    RANDOM_SOURCE_TYPE,
+    DICE_EXPRESSION,
+    SEEDED_SESSION,
+    ITEM_LIST_PICK_COUNT,
+    NUMBER_RANGE,
+    ITEM_LIST_FILTER
 }
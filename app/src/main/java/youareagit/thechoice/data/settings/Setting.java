@@ -101,9 +101,9 @@ public class Setting {
      */
     ContentValues getAllContentValues() {
         ContentValues contentValues = new ContentValues();
-        contentValues.put(SettingsSQLiteHelper.COLUMN_ID, getId());
-        contentValues.put(SettingsSQLiteHelper.COLUMN_NAME, getName());
-        contentValues.put(SettingsSQLiteHelper.COLUMN_VALUE, getValue());
+        contentValues.put(SettingsTable.COLUMN_ID, getId());
+        contentValues.put(SettingsTable.COLUMN_NAME, getName());
+        contentValues.put(SettingsTable.COLUMN_VALUE, getValue());
         
         return contentValues;
     }
@@ -34,6 +34,8 @@ import android.database.sqlite.SQLiteDatabase;
 import java.util.ArrayList;
 import java.util.List;
 
+import youareagit.thechoice.data.ChoiceDatabaseManager;
+
 /**
  * The database transformation class for mapping database values and the
  * corresponding <code>Setting</code> object variables and vice versa.
@@ -45,15 +47,15 @@ public class SettingsDataSource {
     // Database fields
     /** The database to use. */
     private SQLiteDatabase database;
-    /** Database helper. */
-    private SettingsSQLiteHelper dbHelper;
+    /** The manager of the shared database connection. */
+    private ChoiceDatabaseManager databaseManager;
     /**
      * Stores all (relevant) columns of the setting database so they can be
      * queried.
      */
-    private String[] allColumns = { SettingsSQLiteHelper.COLUMN_ID,
-            SettingsSQLiteHelper.COLUMN_NAME,
-            SettingsSQLiteHelper.COLUMN_VALUE };
+    private String[] allColumns = { SettingsTable.COLUMN_ID,
+            SettingsTable.COLUMN_NAME,
+            SettingsTable.COLUMN_VALUE };
 
     /**
      * Constructor.
@@ -62,25 +64,31 @@ public class SettingsDataSource {
      *            The <code>Context</code> to use.
      */
     public SettingsDataSource(Context context) {
-        dbHelper = new SettingsSQLiteHelper(context);
+        databaseManager = ChoiceDatabaseManager.getInstance(context);
     }
 
     /**
-     * Open a connection to the database.
+     * Open a connection to the database by acquiring a reference to the shared connection (opening
+     * an already opened data source does nothing).
      *
      * @throws SQLException
      *             If the database cannot be opened.
      */
     public void open() throws SQLException {
-        database = dbHelper.getWritableDatabase();
-        dbHelper.onCreate(database);
+        if (database == null) {
+            database = databaseManager.acquire();
+        }
     }
 
     /**
-     * Close the database connection.
+     * Close the database connection by releasing the reference to the shared connection, which
+     * is closed when no activity or data source uses it anymore.
      */
     public void close() {
-        dbHelper.close();
+        if (database != null) {
+            database = null;
+            databaseManager.release();
+        }
     }
 
     /**
@@ -104,15 +112,15 @@ public class SettingsDataSource {
         Setting newSetting = null;
 
         // Add the arguments
-        values.put(SettingsSQLiteHelper.COLUMN_NAME, name);
-        values.put(SettingsSQLiteHelper.COLUMN_VALUE, value);
+        values.put(SettingsTable.COLUMN_NAME, name);
+        values.put(SettingsTable.COLUMN_VALUE, value);
         // Store the new valid ID value generated by the INSERT statement
         long insertId = database.insert(
-                SettingsSQLiteHelper.TABLE_SETTINGS, null, values);
+                SettingsTable.TABLE_SETTINGS, null, values);
         // Store the cursor belonging to the ID
         Cursor cursor = database.query(
-                SettingsSQLiteHelper.TABLE_SETTINGS, allColumns,
-                SettingsSQLiteHelper.COLUMN_ID + " = " + insertId, null,
+                SettingsTable.TABLE_SETTINGS, allColumns,
+                SettingsTable.COLUMN_ID + " = " + insertId, null,
                 null, null, null);
         if (cursor != null) {
             if (cursor.getCount() > 0) {
@@ -133,8 +141,8 @@ public class SettingsDataSource {
     public void deleteSetting(Setting setting) {
         long id = setting.getId();
         System.out.println("Comment deleted with id: " + id);
-        database.delete(SettingsSQLiteHelper.TABLE_SETTINGS,
-                SettingsSQLiteHelper.COLUMN_ID + " = " + String.valueOf(id),
+        database.delete(SettingsTable.TABLE_SETTINGS,
+                SettingsTable.COLUMN_ID + " = " + String.valueOf(id),
                 null);
     }
 
@@ -169,13 +177,13 @@ public class SettingsDataSource {
      */
     public Cursor getSettingCursor(long id) {
         System.out.println("Comment get settingCursor with id: " + id);
-        String whereClause = SettingsSQLiteHelper.COLUMN_ID + " = ?";
+        String whereClause = SettingsTable.COLUMN_ID + " = ?";
         String settingID = String.valueOf(id);
         String[] whereArgs = new String[] { settingID };
 
         // Query the database with the specific id as a search key
         Cursor cursor = database.query(
-                SettingsSQLiteHelper.TABLE_SETTINGS, allColumns,
+                SettingsTable.TABLE_SETTINGS, allColumns,
                 whereClause, whereArgs, null, null, null);
         // Move the cursor to the first position, just in case there was more
         // than one result
@@ -200,7 +208,7 @@ public class SettingsDataSource {
         List<Setting> settings = new ArrayList<>();
         // Get all settings from the database
         Cursor cursor = database.query(
-                SettingsSQLiteHelper.TABLE_SETTINGS, allColumns, null,
+                SettingsTable.TABLE_SETTINGS, allColumns, null,
                 null, null, null, null);
 
         cursor.moveToFirst();
@@ -226,11 +234,11 @@ public class SettingsDataSource {
      */
     public Setting getSetting(String settingName) {
         Setting setting = null;
-        String whereClause = SettingsSQLiteHelper.COLUMN_NAME + "='"
+        String whereClause = SettingsTable.COLUMN_NAME + "='"
                 + settingName + "'";
         // Query the database for the specific setting
         Cursor cursor = database.query(
-                SettingsSQLiteHelper.TABLE_SETTINGS, allColumns,
+                SettingsTable.TABLE_SETTINGS, allColumns,
                 whereClause, null, null, null, null);
 
         cursor.moveToFirst();
@@ -286,9 +294,9 @@ public class SettingsDataSource {
 
             // Do the database update
             database.update(
-                    SettingsSQLiteHelper.TABLE_SETTINGS,
+                    SettingsTable.TABLE_SETTINGS,
                     values,
-                    SettingsSQLiteHelper.COLUMN_ID + " = "
+                    SettingsTable.COLUMN_ID + " = "
                             + setting.getId(), null);
         }
     }
@@ -304,10 +312,8 @@ public class SettingsDataSource {
      * Empty the settings table so that all entries are deleted.
      */
     public void emptySettingsTable() {
-        // TODO Exchange the code so that a table is just updated and filled
-        // with null???
-        database.execSQL("DROP TABLE IF EXISTS "
-                + SettingsSQLiteHelper.TABLE_SETTINGS);
-        dbHelper.onCreate(database);
+        // Delete the rows instead of dropping the table, so the foreign keys cascade and the
+        // indexes are kept
+        database.delete(SettingsTable.TABLE_SETTINGS, null, null);
     }
 }
\ No newline at end of file
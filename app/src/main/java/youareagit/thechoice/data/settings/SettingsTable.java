@@ -24,50 +24,25 @@
 
 package youareagit.thechoice.data.settings;
 
-import android.content.Context;
-import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteDatabase.CursorFactory;
-import android.database.sqlite.SQLiteOpenHelper;
-import android.util.Log;
-
-class SettingsSQLiteHelper extends SQLiteOpenHelper {
-    private static final int DATABASE_VERSION = 1;
-    static final String TABLE_SETTINGS = "settings";
+/**
+ * The definition of the settings table in the <code>ChoiceSQLiteHelper</code> database.
+ */
+public final class SettingsTable {
+    public static final String TABLE_SETTINGS = "settings";
     static final String COLUMN_ID = "_id";
     static final String COLUMN_NAME = "name";
     static final String COLUMN_VALUE = "value";
     /**
      * The SQL statement for creating the table with a unique constraint on the
-     * item name.
+     * setting name.
      */
-    private static final String DATABASE_CREATE = "CREATE TABLE IF NOT EXISTS "
+    public static final String DATABASE_CREATE = "CREATE TABLE IF NOT EXISTS "
             + TABLE_SETTINGS + " (" + COLUMN_ID
             + " integer primary key autoincrement, " + COLUMN_NAME + " TEXT, " + COLUMN_VALUE + " TEXT,  "
             + "CONSTRAINT unq UNIQUE (" + COLUMN_NAME + ") " + ");";
+    /** The name of the legacy database file which only contained this table. */
+    public static final String LEGACY_DATABASE_NAME = TABLE_SETTINGS;
 
-    public SettingsSQLiteHelper(Context context, String name,
-                                CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
-
-    SettingsSQLiteHelper(Context context) {
-        super(context, TABLE_SETTINGS, null, DATABASE_VERSION);
-    }
-
-    @Override
-    public void onCreate(SQLiteDatabase database) {
-        database.execSQL(DATABASE_CREATE);
-    }
-
-    @Override
-    public void onUpgrade(SQLiteDatabase database, int oldVersion,
-                          int newVersion) {
-        Log.w(SettingsSQLiteHelper.class.getName(),
-                "Upgrading database from version " + oldVersion + " to "
-                        + newVersion + ", which will destroy all old data");
-        // TODO Exchange the code so that a table is just updated and filled
-        // with null
-        database.execSQL("DROP TABLE IF EXISTS " + TABLE_SETTINGS);
-        onCreate(database);
+    private SettingsTable() {
     }
 }
@@ -0,0 +1,149 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * Base class for <code>RandomSource</code> implementations which only have to provide
+ * <code>nextLong()</code>. All derived values are computed from it without allocations.
+ */
+public abstract class AbstractRandomSource implements RandomSource {
+    /** Mask for the lower 32 bits of a <code>long</code> value. */
+    private static final long LOWER_32_BITS_MASK = 0xFFFFFFFFL;
+    /** The value 2^32 as a <code>long</code>. */
+    private static final long TWO_TO_THE_POWER_OF_32 = 0x100000000L;
+
+    @Override
+    public int nextInt(int bound) throws IllegalArgumentException {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("The bound for getting a random number cannot be equal to or less than zero but it was: " + bound);
+        }
+        // Lemire's multiply-shift range reduction: the upper 32 bits of the 64 bit product of a
+        // 32 bit random value and the bound are the result, the lower 32 bits detect the (rare)
+        // biased cases which have to be rejected
+        long product = (nextLong() >>> 32) * bound;
+        long lowerBits = product & LOWER_32_BITS_MASK;
+        if (lowerBits < bound) {
+            // 2^32 mod bound is the number of values which would cause a bias
+            final long threshold = (TWO_TO_THE_POWER_OF_32 - bound) % bound;
+            while (lowerBits < threshold) {
+                product = (nextLong() >>> 32) * bound;
+                lowerBits = product & LOWER_32_BITS_MASK;
+            }
+        }
+        return (int) (product >>> 32);
+    }
+
+    @Override
+    public long nextLong(long minimum, long maximum) throws IllegalArgumentException {
+        if (maximum < minimum) {
+            throw new IllegalArgumentException("The maximum " + maximum + " cannot be less than the minimum " + minimum);
+        }
+        // The number of values as an unsigned 64 bit value, 0 stands for all 2^64 values
+        final long range = maximum - minimum + 1;
+        if (range == 0) {
+            return nextLong();
+        }
+        // Lemire's multiply-shift range reduction with 64 bit values: the upper 64 bits of the
+        // 128 bit product of a random value and the range are the result, the lower 64 bits detect
+        // the (rare) biased cases which have to be rejected
+        long value = nextLong();
+        long lowerBits = value * range;
+        if (isUnsignedLess(lowerBits, range)) {
+            // 2^64 mod range is the number of values which would cause a bias
+            final long threshold = unsignedTwoToThePowerOf64Modulo(range);
+            while (isUnsignedLess(lowerBits, threshold)) {
+                value = nextLong();
+                lowerBits = value * range;
+            }
+        }
+        return minimum + unsignedMultiplyHigh(value, range);
+    }
+
+    @Override
+    public void nextInts(int bound, int[] destination, int offset, int count) throws IllegalArgumentException {
+        for (int i = offset; i < offset + count; i++) {
+            destination[i] = nextInt(bound);
+        }
+    }
+
+    @Override
+    public void nextLongs(long[] destination, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            destination[i] = nextLong();
+        }
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        // Use the most significant bit which is the best one for all supported generators
+        return nextLong() < 0;
+    }
+
+    /**
+     * Returns the upper 64 bits of the unsigned 128 bit product of the given values (from 32 bit
+     * partial products, as <code>Math.multiplyHigh</code> is not available on all devices).
+     * @param first The first unsigned factor.
+     * @param second The second unsigned factor.
+     * @return The upper 64 bits of the product as an unsigned <code>long</code>.
+     */
+    static long unsignedMultiplyHigh(long first, long second) {
+        final long firstLower = first & LOWER_32_BITS_MASK;
+        final long firstUpper = first >>> 32;
+        final long secondLower = second & LOWER_32_BITS_MASK;
+        final long secondUpper = second >>> 32;
+        // None of the sums can overflow 64 bits
+        final long lowerProduct = firstLower * secondLower;
+        final long middle = firstUpper * secondLower + (lowerProduct >>> 32);
+        final long middleSum = (middle & LOWER_32_BITS_MASK) + firstLower * secondUpper;
+        return firstUpper * secondUpper + (middle >>> 32) + (middleSum >>> 32);
+    }
+
+    /**
+     * Returns 2^64 mod the given unsigned value without a 128 bit division.
+     * @param divisor The unsigned divisor which has to be different from 0.
+     * @return The remainder as an unsigned <code>long</code>.
+     */
+    private static long unsignedTwoToThePowerOf64Modulo(long divisor) {
+        if (divisor < 0) {
+            // The divisor is at least 2^63, so 2^64 - divisor is already less than it
+            return -divisor;
+        }
+        // 2^64 mod d = (2 * (2^63 mod d)) mod d with 2^63 mod d = ((2^63 - 1) mod d + 1) mod d
+        final long halfRemainder = (Long.MAX_VALUE % divisor + 1) % divisor;
+        final long remainder = halfRemainder << 1;
+        // The doubled remainder is less than 2 * divisor, so one subtraction is enough
+        return isUnsignedLess(remainder, divisor) ? remainder : remainder - divisor;
+    }
+
+    /**
+     * Compares the given values as unsigned 64 bit values.
+     * @param first The first value.
+     * @param second The second value.
+     * @return <code>true</code> if the first value is less than the second one.
+     */
+    private static boolean isUnsignedLess(long first, long second) {
+        return (first + Long.MIN_VALUE) < (second + Long.MIN_VALUE);
+    }
+}
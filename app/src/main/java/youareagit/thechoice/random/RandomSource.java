@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * A source of (pseudo) random numbers which is used for all random choices.<br />
+ * Implementations have to be thread-safe and must not allocate objects per drawn value, so that
+ * one instance can be held and shared for the whole lifetime of the choice logic. The plain
+ * generators are package-private, instances are created via <code>RandomSourceType</code> or
+ * <code>SeededRandomSource</code>.
+ */
+public interface RandomSource {
+    /**
+     * Returns the next uniformly distributed 64 bit value.
+     * @return The next random value as a <code>long</code>.
+     */
+    long nextLong();
+
+    /**
+     * Returns a uniformly distributed value in the range [0 ... bound - 1] without modulo bias.
+     * @param bound The exclusive upper bound which has to be greater than 0.
+     * @return The random value in the range [0 ... bound - 1] as an <code>int</code>.
+     * @throws IllegalArgumentException is thrown if the given bound is equal to or less than 0.
+     */
+    int nextInt(int bound) throws IllegalArgumentException;
+
+    /**
+     * Returns a uniformly distributed value in the range [minimum ... maximum] without bias, for
+     * any <code>long</code> bounds including negative ones and the full 64 bit range.
+     * @param minimum The inclusive lower bound.
+     * @param maximum The inclusive upper bound which has to be equal to or greater than the minimum.
+     * @return The random value in the range [minimum ... maximum] as a <code>long</code>.
+     * @throws IllegalArgumentException is thrown if the maximum is less than the minimum.
+     */
+    long nextLong(long minimum, long maximum) throws IllegalArgumentException;
+
+    /**
+     * Returns the next uniformly distributed <code>boolean</code> value.
+     * @return The next random value as a <code>boolean</code>.
+     */
+    boolean nextBoolean();
+
+    /**
+     * Fills the given part of the destination array with uniformly distributed values in the range
+     * [0 ... bound - 1] like <code>nextInt(bound)</code> would return them one by one.
+     * @param bound The exclusive upper bound which has to be greater than 0.
+     * @param destination The array to fill.
+     * @param offset The index of the first array element to fill.
+     * @param count The number of array elements to fill.
+     * @throws IllegalArgumentException is thrown if the given bound is equal to or less than 0.
+     */
+    void nextInts(int bound, int[] destination, int offset, int count) throws IllegalArgumentException;
+
+    /**
+     * Fills the given part of the destination array with uniformly distributed 64 bit values like
+     * <code>nextLong()</code> would return them one by one.
+     * @param destination The array to fill.
+     * @param offset The index of the first array element to fill.
+     * @param count The number of array elements to fill.
+     */
+    void nextLongs(long[] destination, int offset, int count);
+}
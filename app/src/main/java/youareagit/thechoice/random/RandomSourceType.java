@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * The selectable <code>RandomSource</code> implementations.
+ * Hint: You can use the <code>toString()</code> and <code>valueOf</code> methods if you want to
+ *       persist or resolve the corresponding enum value again.
+ */
+public enum RandomSourceType {
+    /** One fast xoshiro256** generator shared between all threads. */
+    XOSHIRO {
+        @Override
+        public RandomSource createRandomSource() {
+            return new SharedRandomSource();
+        }
+    },
+    /** One fast xoshiro256** generator per thread. */
+    THREAD_LOCAL {
+        @Override
+        public RandomSource createRandomSource() {
+            return new ThreadLocalRandomSource();
+        }
+    },
+    /** A cryptographically strong generator. */
+    SECURE {
+        @Override
+        public RandomSource createRandomSource() {
+            return new SecureRandomSource();
+        }
+    },
+    /** A reproducible xoshiro256** generator with a known seed (see <code>SeededRandomSource</code>). */
+    SEEDED {
+        @Override
+        public RandomSource createRandomSource() {
+            return new SeededRandomSource(SplitMix64.newSeed());
+        }
+    };
+
+    /** The random source type which is used if none was chosen yet. */
+    public static final RandomSourceType DEFAULT = XOSHIRO;
+
+    /**
+     * Creates a new thread-safe <code>RandomSource</code> of this type.
+     * @return The newly created <code>RandomSource</code>.
+     */
+    public abstract RandomSource createRandomSource();
+}
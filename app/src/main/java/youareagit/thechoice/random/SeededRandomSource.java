@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * A thread-safe and reproducible <code>RandomSource</code>: a xoshiro256** generator created from
+ * a known seed, advanced to one of its non-overlapping streams (each 2^128 values long) and to a
+ * position within that stream. The same seed, stream index and position always produce the same
+ * values, so a sequence of choices can be replayed, e.g. for proving that a choice was fair.<br />
+ * Parallel workers get independent but still reproducible values via <code>substream(int)</code>.
+ */
+public final class SeededRandomSource extends AbstractRandomSource {
+    /** The seed of the generator. */
+    private final long seed;
+    /** The index of the stream (the number of jumps by 2^128 values after seeding). */
+    private final int streamIndex;
+    /** The number of values drawn from the stream, guarded by this object's monitor. */
+    private long position;
+    /** The generator which is guarded by this object's monitor. */
+    private final XoShiRo256StarStar generator;
+
+    /**
+     * Creates a new source at the start of stream 0 of the given seed.
+     * @param seed The seed to use.
+     */
+    public SeededRandomSource(long seed) {
+        this(seed, 0, 0);
+    }
+
+    /**
+     * Creates a new source for the given seed, stream and position. Restoring a position costs
+     * O(position) because the generator has to draw all values before it.
+     * @param seed The seed to use.
+     * @param streamIndex The index of the stream.
+     * @param position The number of values which were already drawn from the stream.
+     * @throws IllegalArgumentException is thrown if the stream index or the position is negative.
+     */
+    public SeededRandomSource(long seed, int streamIndex, long position) throws IllegalArgumentException {
+        if (streamIndex < 0 || position < 0) {
+            throw new IllegalArgumentException("The stream index and the position cannot be negative but they were: " + streamIndex + " and " + position);
+        }
+        this.seed = seed;
+        this.streamIndex = streamIndex;
+        generator = new XoShiRo256StarStar(seed);
+        // Every stream starts 2^128 values after the previous one
+        for (int i = 0; i < streamIndex; i++) {
+            generator.jump();
+        }
+        for (long i = 0; i < position; i++) {
+            generator.nextLong();
+        }
+        this.position = position;
+    }
+
+    /**
+     * Creates a new source at the start of the given stream of the same seed, e.g. for one of
+     * several parallel workers. Stream 0 is normally used by the choices themselves.
+     * @param streamIndex The index of the stream.
+     * @return The new <code>SeededRandomSource</code>.
+     * @throws IllegalArgumentException is thrown if the stream index is negative.
+     */
+    public SeededRandomSource substream(int streamIndex) throws IllegalArgumentException {
+        return new SeededRandomSource(seed, streamIndex, 0);
+    }
+
+    /**
+     * The seed of the generator.
+     * @return The seed as a <code>long</code>.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * The index of the stream of the seed.
+     * @return The stream index as an <code>int</code>.
+     */
+    public int getStreamIndex() {
+        return streamIndex;
+    }
+
+    /**
+     * The number of values drawn from the stream so far.
+     * @return The position as a <code>long</code>.
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    @Override
+    public synchronized long nextLong() {
+        position++;
+        return generator.nextLong();
+    }
+
+    @Override
+    public synchronized int nextInt(int bound) throws IllegalArgumentException {
+        // Lock once so that the (possibly rejected) values of one draw are consecutive
+        return super.nextInt(bound);
+    }
+
+    @Override
+    public synchronized long nextLong(long minimum, long maximum) throws IllegalArgumentException {
+        // Lock once so that the (possibly rejected) values of one draw are consecutive
+        return super.nextLong(minimum, maximum);
+    }
+
+    @Override
+    public synchronized void nextInts(int bound, int[] destination, int offset, int count) throws IllegalArgumentException {
+        // Lock only once for the whole batch
+        super.nextInts(bound, destination, offset, count);
+    }
+
+    @Override
+    public synchronized void nextLongs(long[] destination, int offset, int count) {
+        // Lock only once for the whole batch
+        generator.nextLongs(destination, offset, count);
+        position += count;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * A thread-safe <code>RandomSource</code> which shares one fast xoshiro256** generator between all
+ * threads. The (normally uncontended) lock is the only overhead compared to the plain generator.
+ */
+final class SharedRandomSource extends AbstractRandomSource {
+    /** The shared generator which is guarded by this object's monitor. */
+    private final XoShiRo256StarStar generator = new XoShiRo256StarStar();
+
+    @Override
+    public synchronized long nextLong() {
+        return generator.nextLong();
+    }
+
+    @Override
+    public synchronized int nextInt(int bound) throws IllegalArgumentException {
+        return generator.nextInt(bound);
+    }
+
+    @Override
+    public synchronized long nextLong(long minimum, long maximum) throws IllegalArgumentException {
+        return generator.nextLong(minimum, maximum);
+    }
+
+    @Override
+    public synchronized void nextInts(int bound, int[] destination, int offset, int count) throws IllegalArgumentException {
+        // Lock only once for the whole batch
+        generator.nextInts(bound, destination, offset, count);
+    }
+
+    @Override
+    public synchronized void nextLongs(long[] destination, int offset, int count) {
+        // Lock only once for the whole batch
+        generator.nextLongs(destination, offset, count);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helper for the SplitMix64 mixing function which is used for expanding a single seed value into
+ * the state of the other generators and for creating well separated seeds.
+ */
+final class SplitMix64 {
+    /** The golden ratio increment of the SplitMix64 sequence. */
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    /** The sequence used for creating unique seeds even if they are requested at the same time. */
+    private static final AtomicLong SEED_SEQUENCE = new AtomicLong(System.currentTimeMillis());
+
+    private SplitMix64() {
+        // Only static helper methods
+    }
+
+    /**
+     * Mixes the bits of the given value (the SplitMix64 output function).
+     * @param value The value to mix.
+     * @return The mixed value as a <code>long</code>.
+     */
+    static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Creates a new seed which is well separated from all seeds created before, even if they were
+     * created within the same nanosecond.
+     * @return The new seed as a <code>long</code>.
+     */
+    static long newSeed() {
+        return mix(SEED_SEQUENCE.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * A thread-safe <code>RandomSource</code> which gives every thread its own xoshiro256**
+ * generator with a well separated seed, so that no locking is necessary at all.
+ */
+final class ThreadLocalRandomSource extends AbstractRandomSource {
+    /** The generator of the current thread which is lazily created with a new unique seed. */
+    private final ThreadLocal<XoShiRo256StarStar> generators = new ThreadLocal<XoShiRo256StarStar>() {
+        @Override
+        protected XoShiRo256StarStar initialValue() {
+            return new XoShiRo256StarStar();
+        }
+    };
+
+    @Override
+    public long nextLong() {
+        return generators.get().nextLong();
+    }
+
+    @Override
+    public int nextInt(int bound) throws IllegalArgumentException {
+        return generators.get().nextInt(bound);
+    }
+
+    @Override
+    public long nextLong(long minimum, long maximum) throws IllegalArgumentException {
+        return generators.get().nextLong(minimum, maximum);
+    }
+
+    @Override
+    public void nextInts(int bound, int[] destination, int offset, int count) throws IllegalArgumentException {
+        // Resolve the generator of the current thread only once for the whole batch
+        generators.get().nextInts(bound, destination, offset, count);
+    }
+
+    @Override
+    public void nextLongs(long[] destination, int offset, int count) {
+        // Resolve the generator of the current thread only once for the whole batch
+        generators.get().nextLongs(destination, offset, count);
+    }
+}
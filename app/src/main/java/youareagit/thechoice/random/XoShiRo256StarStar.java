@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.random;
+
+/**
+ * The xoshiro256** generator by David Blackman and Sebastiano Vigna. It is fast, has a period of
+ * 2^256 - 1 and passes all common statistical test suites.<br />
+ * Hint: This class is NOT thread-safe, so it is only used inside the thread-safe
+ * <code>RandomSource</code> implementations of this package.
+ */
+final class XoShiRo256StarStar extends AbstractRandomSource {
+    /** The polynomial for advancing the generator by 2^128 values. */
+    private static final long[] JUMP = {
+            0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL };
+    /** The polynomial for advancing the generator by 2^192 values. */
+    private static final long[] LONG_JUMP = {
+            0x76E15D3EFEFDCBBFL, 0xC5004E441C522FB3L, 0x77710069854EE241L, 0x39109BB02ACBE635L };
+
+    // The 256 bit state of the generator
+    private long state0;
+    private long state1;
+    private long state2;
+    private long state3;
+
+    /**
+     * Creates a new generator whose state is expanded from the given seed via SplitMix64.
+     * @param seed The seed to use.
+     */
+    XoShiRo256StarStar(long seed) {
+        long z = seed;
+        state0 = SplitMix64.mix(z += SplitMix64.GOLDEN_GAMMA);
+        state1 = SplitMix64.mix(z += SplitMix64.GOLDEN_GAMMA);
+        state2 = SplitMix64.mix(z += SplitMix64.GOLDEN_GAMMA);
+        state3 = SplitMix64.mix(z + SplitMix64.GOLDEN_GAMMA);
+    }
+
+    /**
+     * Creates a new generator with a new unique seed.
+     */
+    XoShiRo256StarStar() {
+        this(SplitMix64.newSeed());
+    }
+
+    /**
+     * Creates a copy of the given generator with the same state, so both produce the same values.
+     * @param generator The generator to copy.
+     */
+    XoShiRo256StarStar(XoShiRo256StarStar generator) {
+        state0 = generator.state0;
+        state1 = generator.state1;
+        state2 = generator.state2;
+        state3 = generator.state3;
+    }
+
+    /**
+     * Advances the generator by 2^128 values in constant time. It can be used for creating 2^128
+     * non-overlapping subsequences (streams) for parallel computations.
+     */
+    void jump() {
+        jump(JUMP);
+    }
+
+    /**
+     * Advances the generator by 2^192 values in constant time. It can be used for creating 2^64
+     * starting points from each of which <code>jump()</code> creates 2^64 further streams.
+     */
+    void longJump() {
+        jump(LONG_JUMP);
+    }
+
+    /**
+     * Returns a copy of this generator and advances this generator by 2^128 values, so the
+     * returned generator produces the next stream which does not overlap with the following values
+     * of this generator.
+     * @return The split off generator.
+     */
+    XoShiRo256StarStar split() {
+        final XoShiRo256StarStar splitGenerator = new XoShiRo256StarStar(this);
+        jump();
+        return splitGenerator;
+    }
+
+    /**
+     * Advances the generator by applying the given jump polynomial to its state.
+     */
+    private void jump(long[] jumpPolynomial) {
+        long jumpedState0 = 0;
+        long jumpedState1 = 0;
+        long jumpedState2 = 0;
+        long jumpedState3 = 0;
+        for (long jumpWord : jumpPolynomial) {
+            for (int bit = 0; bit < 64; bit++) {
+                if ((jumpWord & (1L << bit)) != 0) {
+                    jumpedState0 ^= state0;
+                    jumpedState1 ^= state1;
+                    jumpedState2 ^= state2;
+                    jumpedState3 ^= state3;
+                }
+                nextLong();
+            }
+        }
+        state0 = jumpedState0;
+        state1 = jumpedState1;
+        state2 = jumpedState2;
+        state3 = jumpedState3;
+    }
+
+    @Override
+    public long nextLong() {
+        final long result = Long.rotateLeft(state1 * 5, 7) * 9;
+        final long t = state1 << 17;
+
+        state2 ^= state0;
+        state3 ^= state1;
+        state1 ^= state2;
+        state0 ^= state3;
+        state2 ^= t;
+        state3 = Long.rotateLeft(state3, 45);
+
+        return result;
+    }
+}
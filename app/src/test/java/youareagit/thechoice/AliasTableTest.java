@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import youareagit.thechoice.random.SeededRandomSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for <code>AliasTable</code>: the validation of the weights and the chosen frequencies
+ * compared with the weights via the chi-square test.
+ */
+public class AliasTableTest {
+    /** The number of draws per tested table. */
+    private static final int DRAWS = 1000000;
+    /** The significance level below which a p-value fails the test. */
+    private static final double SIGNIFICANCE_LEVEL = 1e-6;
+
+    @Test
+    public void constructor_rejectsInvalidWeights() throws Exception {
+        final double[][] invalidWeights = { {}, { 0 }, { 0, 0 }, { 1, -1 }, { 1, Double.NaN },
+                { 1, Double.POSITIVE_INFINITY }, { Double.MAX_VALUE, Double.MAX_VALUE } };
+        for (double[] weights : invalidWeights) {
+            try {
+                new AliasTable(weights);
+                fail("Accepted the weights " + Arrays.toString(weights));
+            } catch (IllegalArgumentException iAE) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void next_neverChoosesZeroWeights() throws Exception {
+        final AliasTable aliasTable = new AliasTable(new double[] { 0, 3, 0, 0, 1e-300, 0 });
+        assertEquals(6, aliasTable.size());
+        final SeededRandomSource randomSource = new SeededRandomSource(1);
+        for (int i = 0; i < DRAWS; i++) {
+            final int index = aliasTable.next(randomSource);
+            assertTrue("Chose the index " + index, index == 1 || index == 4);
+        }
+        final AliasTable singleWeight = new AliasTable(new double[] { 0.5 });
+        assertEquals(0, singleWeight.next(randomSource));
+    }
+
+    @Test
+    public void next_choosesProportionallyToTheWeights() throws Exception {
+        final double[][] testedWeights = { { 1, 1, 1, 1 }, { 1, 2, 3, 4 }, { 0.001, 1000, 5, 0.5, 7 },
+                { 1e-3, 1e-3, 1e-3, 1 - 3e-3 }, { 10, 0, 1, 0, 100, 3, 3, 3 } };
+        final SeededRandomSource randomSource = new SeededRandomSource(2);
+        for (double[] weights : testedWeights) {
+            final AliasTable aliasTable = new AliasTable(weights);
+            final long[] histogram = new long[weights.length];
+            for (int i = 0; i < DRAWS; i++) {
+                histogram[aliasTable.next(randomSource)]++;
+            }
+            double sum = 0;
+            for (double weight : weights) {
+                sum += weight;
+            }
+            double chiSquare = 0;
+            int degreesOfFreedom = -1;
+            for (int i = 0; i < weights.length; i++) {
+                if (weights[i] == 0) {
+                    assertEquals(Arrays.toString(weights), 0, histogram[i]);
+                    continue;
+                }
+                final double expected = DRAWS * weights[i] / sum;
+                final double difference = histogram[i] - expected;
+                chiSquare += difference * difference / expected;
+                degreesOfFreedom++;
+            }
+            final double pValue = StatisticalTests.chiSquarePValue(chiSquare, degreesOfFreedom);
+            assertTrue(Arrays.toString(weights) + " is not chosen proportionally, p = " + pValue, pValue >= SIGNIFICANCE_LEVEL);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import youareagit.thechoice.random.RandomSourceType;
+
+import static org.junit.Assert.*;
+
+/**
+ * Statistical quality tests for the random choices of <code>ChooserLogic</code>: the samples of
+ * each tested range are drawn in parallel on all cores via fork/join, every worker accumulates its
+ * statistics locally and they are merged at the end. Then the chi-square test (uniformity), the
+ * runs test (independence of the order) and the serial correlation test (lag 1) are applied and
+ * their p-values are reported.<br />
+ * The number of samples per tested range can be set via the system property
+ * <code>thechoice.statistics.samples</code> (default 10^8, e.g. 10^9 for a release).
+ */
+public class ChooserLogicStatisticalTest {
+    /** The system property for the number of samples per tested range. */
+    private static final String SAMPLES_PROPERTY = "thechoice.statistics.samples";
+    /** The default number of samples per tested range. */
+    private static final long SAMPLES_DEFAULT = 100000000L;
+    /** The significance level below which a p-value fails a test (small because many tests are done). */
+    private static final double SIGNIFICANCE_LEVEL = 1e-6;
+    /** The maximum number of histogram bins (larger ranges are binned into equal parts). */
+    private static final int MAXIMUM_BINS = 1024;
+    /** The number of samples up to which a fork/join task draws them itself instead of splitting. */
+    private static final long LEAF_SAMPLES = 1L << 20;
+    /** The ranges which are tested, including the ones which are the worst for a modulo bias. */
+    private static final int[] TESTED_RANGES = { 1, 2, 3, 6, 7, 10, 100, 1000, 65537, 1 << 30,
+            (1 << 30) + 1, 1431655765, 3 << 29, Integer.MAX_VALUE - 1, Integer.MAX_VALUE };
+
+    /** The number of samples per tested range. */
+    private static long samples;
+    /** The ChooserLogic object to test. */
+    private static ChooserLogic chooserLogic;
+    /** The pool which runs the workers on all cores. */
+    private static ForkJoinPool forkJoinPool;
+
+    /**
+     * Draws one value in the range [0 ... range - 1] via the tested method.
+     */
+    private interface Sampler {
+        int sample();
+    }
+
+    @BeforeClass
+    public static void setUp() {
+        samples = Long.getLong(SAMPLES_PROPERTY, SAMPLES_DEFAULT);
+        chooserLogic = new ChooserLogic();
+        // Every worker thread uses its own generator, so the workers do not contend for a lock
+        chooserLogic.setRandomSourceType(RandomSourceType.THREAD_LOCAL);
+        forkJoinPool = new ForkJoinPool();
+    }
+
+    @Test
+    public void getRandomNumberInRange_isUniformAndIndependent() throws Exception {
+        for (final int range : TESTED_RANGES) {
+            assertUniformAndIndependent("getRandomNumberInRange", range, samples, new Sampler() {
+                @Override
+                public int sample() {
+                    return chooserLogic.getRandomNumberInRange(range);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void throwCoin_isUniformAndIndependent() throws Exception {
+        assertUniformAndIndependent("throwCoin", 2, samples, new Sampler() {
+            @Override
+            public int sample() {
+                return chooserLogic.throwCoin() ? 1 : 0;
+            }
+        });
+    }
+
+    @Test
+    public void ruleCustomDice_isUniformAndIndependent() throws Exception {
+        // Every result is a String, so fewer samples are drawn to stay within a few minutes
+        final long ruleCustomDiceSamples = Math.max(samples / 10, 1);
+        for (final int range : new int[] { 1, 6, 20, 100, 1431655765, Integer.MAX_VALUE }) {
+            assertUniformAndIndependent("ruleCustomDice", range, ruleCustomDiceSamples, new Sampler() {
+                @Override
+                public int sample() {
+                    return Integer.parseInt(chooserLogic.ruleCustomDice(range)) - 1;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void flipCoins_isUniformWithExpectedStreaks() throws Exception {
+        final long startTime = System.nanoTime();
+        final CoinFlips coinFlips = chooserLogic.flipCoins(samples, Runtime.getRuntime().availableProcessors());
+        final long durationInMilliseconds = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals(samples, coinFlips.getNumberOfFlips());
+        assertEquals(samples, coinFlips.getNumberOfHeads() + coinFlips.getNumberOfTails());
+        // The number of heads is binomially distributed, which is approximately normal here
+        final double z = (coinFlips.getNumberOfHeads() - samples / 2.0) / Math.sqrt(samples / 4.0);
+        final double pValue = StatisticalTests.twoSidedNormalPValue(z);
+        // The longest streak of n fair flips is about log2(n): a streak which is k flips longer has a
+        // probability of about 2^-k and one which is k flips shorter of about exp(-2^k)
+        final double expectedLongestStreak = Math.log(samples) / Math.log(2);
+        System.out.println(String.format(Locale.US,
+                "flipCoins: %d flips in %d ms, heads %d (p-value %.6f), longest streak %d (expected about %.1f)",
+                samples, durationInMilliseconds, coinFlips.getNumberOfHeads(), pValue, coinFlips.getLongestStreak(), expectedLongestStreak));
+
+        assertTrue("flipCoins is not uniform, p = " + pValue, pValue >= SIGNIFICANCE_LEVEL);
+        assertTrue("flipCoins has a too long streak: " + coinFlips.getLongestStreak(), coinFlips.getLongestStreak() <= expectedLongestStreak + 21);
+        assertTrue("flipCoins has a too short streak: " + coinFlips.getLongestStreak(), coinFlips.getLongestStreak() >= expectedLongestStreak - 5);
+    }
+
+    /**
+     * Draw the samples in parallel, apply the three tests and fail if one of them is significant.
+     */
+    private static void assertUniformAndIndependent(String methodName, int range, long numberOfSamples, Sampler sampler) {
+        final long startTime = System.nanoTime();
+        final SampleStatistics sampleStatistics = forkJoinPool.invoke(new SamplingTask(sampler, range, 0, numberOfSamples));
+        final long durationInMilliseconds = (System.nanoTime() - startTime) / 1000000;
+
+        assertEquals(methodName + "(" + range + ") returned values out of the range", 0, sampleStatistics.outOfRangeCount);
+        final double chiSquarePValue = sampleStatistics.getChiSquarePValue();
+        final double runsPValue = sampleStatistics.getRunsPValue();
+        final double serialCorrelationPValue = sampleStatistics.getSerialCorrelationPValue();
+        System.out.println(String.format(Locale.US,
+                "%s(%d): %d samples in %d ms, p-values: chi-square %.6f, runs %.6f, serial correlation %.6f",
+                methodName, range, numberOfSamples, durationInMilliseconds, chiSquarePValue, runsPValue, serialCorrelationPValue));
+
+        assertTrue(methodName + "(" + range + ") is not uniform, p = " + chiSquarePValue, chiSquarePValue >= SIGNIFICANCE_LEVEL);
+        assertTrue(methodName + "(" + range + ") failed the runs test, p = " + runsPValue, runsPValue >= SIGNIFICANCE_LEVEL);
+        assertTrue(methodName + "(" + range + ") is serially correlated, p = " + serialCorrelationPValue, serialCorrelationPValue >= SIGNIFICANCE_LEVEL);
+    }
+
+    /**
+     * Splits the samples in halves until they are few enough and draws them then.
+     */
+    private static final class SamplingTask extends RecursiveTask<SampleStatistics> {
+        private static final long serialVersionUID = 1L;
+
+        private final Sampler sampler;
+        private final int range;
+        private final long start;
+        private final long end;
+
+        SamplingTask(Sampler sampler, int range, long start, long end) {
+            this.sampler = sampler;
+            this.range = range;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected SampleStatistics compute() {
+            if (end - start <= LEAF_SAMPLES) {
+                final SampleStatistics sampleStatistics = new SampleStatistics(range);
+                sampleStatistics.draw(sampler, end - start);
+                return sampleStatistics;
+            }
+            final long middle = (start + end) >>> 1;
+            final SamplingTask left = new SamplingTask(sampler, range, start, middle);
+            left.fork();
+            final SampleStatistics rightStatistics = new SamplingTask(sampler, range, middle, end).compute();
+            return left.join().merge(rightStatistics);
+        }
+    }
+
+    /**
+     * The statistics of the samples of one or more (merged) workers. Each worker draws a contiguous
+     * sequence, so the runs and pairs are only counted within a worker's sequence.
+     */
+    private static final class SampleStatistics {
+        private final int range;
+        /** The number of bins: one per value or equal parts of the range. */
+        private final int bins;
+        private final long[] histogram;
+        private long count = 0;
+        private long outOfRangeCount = 0;
+        // The runs of values in the lower and upper half of the range
+        private long runs = 0;
+        private double expectedRuns = 0;
+        private double runsVariance = 0;
+        // The sums for the lag 1 serial correlation of the values scaled to (0, 1)
+        private double sum = 0;
+        private double sumOfSquares = 0;
+        private double sumOfProducts = 0;
+        private long pairs = 0;
+
+        SampleStatistics(int range) {
+            this.range = range;
+            this.bins = Math.min(range, MAXIMUM_BINS);
+            this.histogram = new long[bins];
+        }
+
+        /**
+         * Draw the given number of samples as one contiguous sequence.
+         */
+        void draw(Sampler sampler, long numberOfSamples) {
+            long upperCount = 0;
+            long sequenceRuns = 0;
+            boolean lastIsUpper = false;
+            double lastScaledValue = 0;
+            for (long i = 0; i < numberOfSamples; i++) {
+                final int value = sampler.sample();
+                if (value < 0 || value >= range) {
+                    outOfRangeCount++;
+                    continue;
+                }
+                histogram[bins == range ? value : (int) ((long) value * bins / range)]++;
+                final boolean isUpper = 2L * value >= range;
+                final double scaledValue = (value + 0.5) / range;
+                if (i == 0 || isUpper != lastIsUpper) {
+                    sequenceRuns++;
+                }
+                if (isUpper) {
+                    upperCount++;
+                }
+                if (i > 0) {
+                    sumOfProducts += lastScaledValue * scaledValue;
+                    pairs++;
+                }
+                sum += scaledValue;
+                sumOfSquares += scaledValue * scaledValue;
+                lastIsUpper = isUpper;
+                lastScaledValue = scaledValue;
+            }
+            count += numberOfSamples;
+            // The Wald-Wolfowitz expectation and variance of the runs of this sequence
+            final double n = numberOfSamples;
+            final double n1 = upperCount;
+            final double n2 = n - n1;
+            runs += sequenceRuns;
+            if (n > 1) {
+                final double mean = 2 * n1 * n2 / n + 1;
+                expectedRuns += mean;
+                runsVariance += (mean - 1) * (mean - 2) / (n - 1);
+            } else {
+                expectedRuns += sequenceRuns;
+            }
+        }
+
+        /**
+         * Add the statistics of another worker to these ones.
+         */
+        SampleStatistics merge(SampleStatistics other) {
+            for (int i = 0; i < bins; i++) {
+                histogram[i] += other.histogram[i];
+            }
+            count += other.count;
+            outOfRangeCount += other.outOfRangeCount;
+            runs += other.runs;
+            expectedRuns += other.expectedRuns;
+            runsVariance += other.runsVariance;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            sumOfProducts += other.sumOfProducts;
+            pairs += other.pairs;
+            return this;
+        }
+
+        /**
+         * The chi-square test of the histogram against the exact bin probabilities.
+         */
+        double getChiSquarePValue() {
+            if (bins < 2) {
+                // A single bin is always uniform
+                return 1.0;
+            }
+            double chiSquare = 0;
+            for (int i = 0; i < bins; i++) {
+                // The bin i contains the values ceil(i * range / bins) ... ceil((i + 1) * range / bins) - 1
+                final long binSize = ceilDivide((i + 1L) * range, bins) - ceilDivide((long) i * range, bins);
+                final double expected = (double) count * binSize / range;
+                final double difference = histogram[i] - expected;
+                chiSquare += difference * difference / expected;
+            }
+            return StatisticalTests.chiSquarePValue(chiSquare, bins - 1);
+        }
+
+        /**
+         * The runs test of the values in the lower and upper half of the range.
+         */
+        double getRunsPValue() {
+            if (runsVariance <= 0) {
+                // E.g. a range of 1 has only one possible sequence
+                return 1.0;
+            }
+            return StatisticalTests.twoSidedNormalPValue((runs - expectedRuns) / Math.sqrt(runsVariance));
+        }
+
+        /**
+         * The lag 1 serial correlation test, the correlation times the square root of the number
+         * of pairs is approximately standard normal distributed.
+         */
+        double getSerialCorrelationPValue() {
+            final double mean = sum / count;
+            final double variance = sumOfSquares / count - mean * mean;
+            if (pairs == 0 || variance <= 0) {
+                return 1.0;
+            }
+            final double correlation = (sumOfProducts / pairs - mean * mean) / variance;
+            return StatisticalTests.twoSidedNormalPValue(correlation * Math.sqrt(pairs));
+        }
+
+        private static long ceilDivide(long dividend, long divisor) {
+            return (dividend + divisor - 1) / divisor;
+        }
+    }
+}
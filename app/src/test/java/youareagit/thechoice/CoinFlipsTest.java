@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.Test;
+
+import youareagit.thechoice.random.AbstractRandomSource;
+import youareagit.thechoice.random.SeededRandomSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the bit-sliced counting of <code>CoinFlips</code> against counting every flip one by
+ * one, including the streaks across the 64 bit values and across merged parts.
+ */
+public class CoinFlipsTest {
+    /** The tested numbers of flips, around the borders of the values and of the draw buffer. */
+    private static final long[] TESTED_COUNTS = { 0, 1, 2, 63, 64, 65, 127, 128, 1000, 64 * 256 - 1, 64 * 256, 64 * 256 + 1, 100000 };
+
+    @Test
+    public void flip_matchesCountingEveryFlip() throws Exception {
+        for (long seed = 0; seed < 10; seed++) {
+            for (long count : TESTED_COUNTS) {
+                final long[] values = randomValues(seed, count);
+                final CoinFlips coinFlips = new CoinFlips();
+                coinFlips.flip(new ReplayRandomSource(values), count);
+                assertCounted("Seed " + seed + ", " + count + " flips", toFlips(values, count), coinFlips);
+            }
+        }
+    }
+
+    @Test
+    public void flip_findsStreaksAcrossTheValues() throws Exception {
+        final long[][] patterns = {
+                { 0 }, { -1 }, { 0xAAAAAAAAAAAAAAAAL }, { 0x5555555555555555L },
+                // A streak of tails which starts at the end of one value and continues in the next
+                { 0xF000000000000000L, 0x000000000000000FL },
+                { 0, 0, -1, -1, 0 }, { 1, Long.MIN_VALUE, 1, Long.MIN_VALUE }, { 0x00FF00FF00FF00FFL, -2 } };
+        for (long[] pattern : patterns) {
+            for (long count : new long[] { 1, 63, 64, 65, 64 * pattern.length - 1, 64 * pattern.length, 64 * 300 + 17 }) {
+                final CoinFlips coinFlips = new CoinFlips();
+                coinFlips.flip(new ReplayRandomSource(pattern), count);
+                assertCounted(pattern.length + " values, " + count + " flips", toFlips(pattern, count), coinFlips);
+            }
+        }
+    }
+
+    @Test
+    public void merge_matchesFlippingTheWholeSequence() throws Exception {
+        final long[][] firstValues = { randomValues(1, 1000), { -1, -1 }, { 0 }, { 0x8000000000000000L } };
+        final long[][] secondValues = { randomValues(2, 1000), { -1 }, { 0, 0 }, { 1 } };
+        for (int i = 0; i < firstValues.length; i++) {
+            for (long firstCount : new long[] { 0, 1, 64, 100 }) {
+                for (long secondCount : new long[] { 0, 1, 63, 128, 1000 }) {
+                    final CoinFlips coinFlips = new CoinFlips();
+                    coinFlips.flip(new ReplayRandomSource(firstValues[i]), firstCount);
+                    final CoinFlips followingCoinFlips = new CoinFlips();
+                    followingCoinFlips.flip(new ReplayRandomSource(secondValues[i]), secondCount);
+                    final boolean[] firstFlips = toFlips(firstValues[i], firstCount);
+                    final boolean[] secondFlips = toFlips(secondValues[i], secondCount);
+                    final boolean[] flips = new boolean[firstFlips.length + secondFlips.length];
+                    System.arraycopy(firstFlips, 0, flips, 0, firstFlips.length);
+                    System.arraycopy(secondFlips, 0, flips, firstFlips.length, secondFlips.length);
+                    assertCounted("Pattern " + i + ", " + firstCount + " + " + secondCount + " flips", flips, coinFlips.merge(followingCoinFlips));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void merge_ofThreePartsKeepsAStreakThroughTheMiddle() throws Exception {
+        // Tails at the end of the first part, only tails in the second and at the start of the third
+        final CoinFlips coinFlips = new CoinFlips();
+        coinFlips.flip(new ReplayRandomSource(new long[] { 0xC000000000000000L }), 64);
+        final CoinFlips middleCoinFlips = new CoinFlips();
+        middleCoinFlips.flip(new ReplayRandomSource(new long[] { -1 }), 100);
+        final CoinFlips lastCoinFlips = new CoinFlips();
+        lastCoinFlips.flip(new ReplayRandomSource(new long[] { 0x7 }), 64);
+        coinFlips.merge(middleCoinFlips).merge(lastCoinFlips);
+        assertEquals(2 + 100 + 3, coinFlips.getLongestTailsStreak());
+        assertEquals(62, coinFlips.getLongestHeadsStreak());
+        assertEquals(228, coinFlips.getNumberOfFlips());
+    }
+
+    @Test
+    public void flip_rejectsNegativeCounts() throws Exception {
+        try {
+            new CoinFlips().flip(new SeededRandomSource(1), -1);
+            fail("Accepted a negative number of flips");
+        } catch (IllegalArgumentException iAE) {
+            // Expected
+        }
+    }
+
+    /**
+     * Assert that the counted flips have the totals and streaks of the given flips.
+     */
+    private static void assertCounted(String message, boolean[] flips, CoinFlips coinFlips) {
+        long tails = 0;
+        final long[] longestStreaks = new long[2];
+        long streak = 0;
+        for (int i = 0; i < flips.length; i++) {
+            if (flips[i]) {
+                tails++;
+            }
+            streak = i > 0 && flips[i] == flips[i - 1] ? streak + 1 : 1;
+            final int result = flips[i] ? 1 : 0;
+            longestStreaks[result] = Math.max(longestStreaks[result], streak);
+        }
+        assertEquals(message, flips.length, coinFlips.getNumberOfFlips());
+        assertEquals(message, tails, coinFlips.getNumberOfTails());
+        assertEquals(message, flips.length - tails, coinFlips.getNumberOfHeads());
+        assertEquals(message, longestStreaks[0], coinFlips.getLongestHeadsStreak());
+        assertEquals(message, longestStreaks[1], coinFlips.getLongestTailsStreak());
+        assertEquals(message, Math.max(longestStreaks[0], longestStreaks[1]), coinFlips.getLongestStreak());
+    }
+
+    /**
+     * The values which are needed for the given number of flips drawn from a seeded source.
+     */
+    private static long[] randomValues(long seed, long count) {
+        final long[] values = new long[(int) Math.max(1, (count + 63) >>> 6)];
+        new SeededRandomSource(seed).nextLongs(values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * The flips of the given values (repeated if necessary), a set bit is "Tails" and the least
+     * significant bit comes first.
+     */
+    private static boolean[] toFlips(long[] values, long count) {
+        final boolean[] flips = new boolean[(int) count];
+        for (int i = 0; i < count; i++) {
+            flips[i] = ((values[(i >>> 6) % values.length] >>> (i & 63)) & 1) != 0;
+        }
+        return flips;
+    }
+
+    /**
+     * Returns the given values one after the other and starts again after the last one.
+     */
+    private static final class ReplayRandomSource extends AbstractRandomSource {
+        private final long[] values;
+        private int position = 0;
+
+        ReplayRandomSource(long[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public long nextLong() {
+            final long value = values[position];
+            position = (position + 1) % values.length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the exact distributions of <code>DiceDistribution</code> against enumerating all rolls.
+ */
+public class DiceDistributionTest {
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void of_matchesTheEnumerationOfTwoDice() throws Exception {
+        final DiceDistribution diceDistribution = DiceDistribution.of(DiceExpression.compile("2d6"));
+        assertEquals(2, diceDistribution.getMinimum());
+        assertEquals(12, diceDistribution.getMaximum());
+        for (long sum = 2; sum <= 12; sum++) {
+            assertEquals("P(" + sum + ")", (6 - Math.abs(sum - 7)) / 36.0, diceDistribution.probabilityOf(sum), DELTA);
+        }
+        assertEquals(0.0, diceDistribution.probabilityOf(1), 0.0);
+        assertEquals(0.0, diceDistribution.probabilityOf(13), 0.0);
+        assertEquals(1.0, diceDistribution.probabilityAtLeast(Long.MIN_VALUE), 0.0);
+        assertEquals(1.0, diceDistribution.probabilityAtLeast(2), DELTA);
+        assertEquals(6 / 36.0, diceDistribution.probabilityAtLeast(10), DELTA);
+        assertEquals(0.0, diceDistribution.probabilityAtLeast(13), 0.0);
+        assertEquals(0.0, diceDistribution.probabilityAtLeast(Long.MAX_VALUE), 0.0);
+    }
+
+    @Test
+    public void of_handlesConstantsAndSubtractedPools() throws Exception {
+        final DiceDistribution diceDistribution = DiceDistribution.of(DiceExpression.compile("1d6-2d4+3"));
+        // The sums range from 1 - 8 + 3 to 6 - 2 + 3
+        final long expectedMinimum = -4;
+        final double[] expectedProbabilities = new double[12];
+        for (int die = 1; die <= 6; die++) {
+            for (int first = 1; first <= 4; first++) {
+                for (int second = 1; second <= 4; second++) {
+                    expectedProbabilities[(int) (die - first - second + 3 - expectedMinimum)] += 1.0 / (6 * 4 * 4);
+                }
+            }
+        }
+        assertEquals(expectedMinimum, diceDistribution.getMinimum());
+        assertEquals(7, diceDistribution.getMaximum());
+        for (int i = 0; i < expectedProbabilities.length; i++) {
+            assertEquals("P(" + (expectedMinimum + i) + ")", expectedProbabilities[i], diceDistribution.probabilityOf(expectedMinimum + i), DELTA);
+        }
+        final DiceDistribution constant = DiceDistribution.of(DiceExpression.compile("-5"));
+        assertEquals(-5, constant.getMinimum());
+        assertEquals(-5, constant.getMaximum());
+        assertEquals(1.0, constant.probabilityOf(-5), 0.0);
+    }
+
+    @Test
+    public void of_splitsLargePoolsWithoutLosingProbability() throws Exception {
+        final DiceDistribution diceDistribution = DiceDistribution.of(DiceExpression.compile("100d20"));
+        assertEquals(100, diceDistribution.getMinimum());
+        assertEquals(2000, diceDistribution.getMaximum());
+        double sum = 0;
+        double mean = 0;
+        for (long value = 100; value <= 2000; value++) {
+            sum += diceDistribution.probabilityOf(value);
+            mean += value * diceDistribution.probabilityOf(value);
+        }
+        assertEquals(1.0, sum, 1e-9);
+        assertEquals(100 * 10.5, mean, 1e-6);
+        assertEquals(Math.pow(20, -100), diceDistribution.probabilityOf(2000), Math.pow(20, -100) * 1e-9);
+        // The distribution is symmetric around the mean
+        assertEquals(diceDistribution.probabilityOf(1000), diceDistribution.probabilityOf(1100), 1e-15);
+    }
+
+    @Test
+    public void of_explodingDieSkipsItsMaximum() throws Exception {
+        final DiceDistribution diceDistribution = DiceDistribution.of(DiceExpression.compile("1d6!"));
+        assertEquals(1, diceDistribution.getMinimum());
+        assertEquals(1 / 6.0, diceDistribution.probabilityOf(5), DELTA);
+        // A 6 is always rolled again, so 6 is impossible and 7 is a 6 followed by a 1
+        assertEquals(0.0, diceDistribution.probabilityOf(6), 0.0);
+        assertEquals(1 / 36.0, diceDistribution.probabilityOf(7), DELTA);
+        assertEquals(0.0, diceDistribution.probabilityOf(12), 0.0);
+        assertEquals(1 / 6.0, diceDistribution.probabilityAtLeast(6), DELTA);
+        double sum = 0;
+        for (long value = diceDistribution.getMinimum(); value <= diceDistribution.getMaximum(); value++) {
+            sum += diceDistribution.probabilityOf(value);
+        }
+        assertEquals(1.0, sum, 1e-12);
+    }
+
+    @Test
+    public void of_rejectsUnsupportedExpressions() throws Exception {
+        for (String expressionText : new String[] { "4d6kh3", "2d6+3d8kl1", "1000d1000", "100d100+100d100" }) {
+            try {
+                DiceDistribution.of(DiceExpression.compile(expressionText));
+                fail("Computed the distribution of " + expressionText);
+            } catch (IllegalArgumentException iAE) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void probabilityAtLeast_ofASingleDie() throws Exception {
+        assertEquals(1.0, DiceDistribution.probabilityAtLeast(20, Long.MIN_VALUE), 0.0);
+        assertEquals(1.0, DiceDistribution.probabilityAtLeast(20, 1), 0.0);
+        assertEquals(0.25, DiceDistribution.probabilityAtLeast(20, 16), 0.0);
+        assertEquals(1 / 20.0, DiceDistribution.probabilityAtLeast(20, 20), 0.0);
+        assertEquals(0.0, DiceDistribution.probabilityAtLeast(20, 21), 0.0);
+        assertEquals(1.0, DiceDistribution.probabilityAtLeast(1, 1), 0.0);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import youareagit.thechoice.random.SeededRandomSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the parser and the evaluation plan of <code>DiceExpression</code>, including the
+ * edge cases of the notation and the keep modifiers compared with sorting all dice.
+ */
+public class DiceExpressionTest {
+    /** The number of rolls per tested expression. */
+    private static final int ROLLS = 10000;
+
+    @Test
+    public void compile_normalizesTheTextAndCachesThePlan() throws Exception {
+        final DiceExpression diceExpression = DiceExpression.compile(" 4D6 KH3 + 2 ");
+        assertEquals("4d6kh3+2", diceExpression.getSource());
+        assertSame(diceExpression, DiceExpression.compile("4d6kh3+2"));
+        assertEquals(1, diceExpression.getNumberOfDicePools());
+        assertEquals(4, diceExpression.getDiceCount(0));
+        assertEquals(6, diceExpression.getDiceSides(0));
+        assertEquals(3, diceExpression.getKeepCount(0));
+        assertEquals(2, diceExpression.getConstant());
+        assertEquals(3, diceExpression.getScratchSize());
+    }
+
+    @Test
+    public void compile_parsesTheShortForms() throws Exception {
+        final DiceExpression percentile = DiceExpression.compile("d%");
+        assertEquals(1, percentile.getDiceCount(0));
+        assertEquals(100, percentile.getDiceSides(0));
+        // k is short for kh and keeping all dice is the same as no keep modifier
+        assertEquals(2, DiceExpression.compile("5d10k2").getKeepCount(0));
+        assertEquals(-2, DiceExpression.compile("5d10kl2").getKeepCount(0));
+        assertEquals(0, DiceExpression.compile("4d6kh4").getKeepCount(0));
+        // The modifiers can be given in any order
+        final DiceExpression explodingKeep = DiceExpression.compile("3d6!kl1");
+        assertTrue(explodingKeep.isExploding(0));
+        assertEquals(-1, explodingKeep.getKeepCount(0));
+        assertEquals(explodingKeep.getKeepCount(0), DiceExpression.compile("3d6kl1!").getKeepCount(0));
+    }
+
+    @Test
+    public void compile_sumsTheConstantsAndKeepsTheSigns() throws Exception {
+        final DiceExpression diceExpression = DiceExpression.compile("-3+2d4-2-d6+7");
+        assertEquals(2, diceExpression.getConstant());
+        assertEquals(2, diceExpression.getNumberOfDicePools());
+        assertEquals(1, diceExpression.getSign(0));
+        assertEquals(-1, diceExpression.getSign(1));
+        // 2 + 2 - 6 ... 2 + 8 - 1
+        assertEquals(-2, diceExpression.getMinimum());
+        assertEquals(9, diceExpression.getMaximum());
+        final DiceExpression constant = DiceExpression.compile("42");
+        assertEquals(0, constant.getNumberOfDicePools());
+        assertEquals(42, constant.getMinimum());
+        assertEquals(42, constant.getMaximum());
+    }
+
+    @Test
+    public void compile_rejectsInvalidExpressions() throws Exception {
+        final StringBuilder tooManyTerms = new StringBuilder("1");
+        for (int i = 0; i < 100; i++) {
+            tooManyTerms.append("+1");
+        }
+        final String[] invalidExpressions = { null, "", " ", "+", "d", "1d", "d6+", "--1", "2d6*3", "2x6", "0d6",
+                "1001d6", "1d0", "1d1!", "2d6!!", "4d6k1k1", "4d6k5", "4d6k0", "4d6kh", "1d6)", "2147483648",
+                "1d99999999999", "1d٦", tooManyTerms.toString() };
+        for (String invalidExpression : invalidExpressions) {
+            try {
+                DiceExpression.compile(invalidExpression);
+                fail("Accepted the dice expression " + invalidExpression);
+            } catch (IllegalArgumentException iAE) {
+                // Expected
+            }
+        }
+        // The limits themselves are valid
+        assertEquals(DiceExpression.MAXIMUM_NUMBER_OF_DICE, DiceExpression.compile("1000d1").getMinimum());
+        assertEquals(Integer.MAX_VALUE, DiceExpression.compile("2147483647").getConstant());
+        assertEquals(1, DiceExpression.compile("1d1").getMaximum());
+    }
+
+    @Test
+    public void isDiceExpression_distinguishesNumbers() throws Exception {
+        assertFalse(DiceExpression.isDiceExpression(null));
+        assertFalse(DiceExpression.isDiceExpression(""));
+        assertFalse(DiceExpression.isDiceExpression(" 20 "));
+        assertTrue(DiceExpression.isDiceExpression("d20"));
+        assertTrue(DiceExpression.isDiceExpression("-20"));
+    }
+
+    @Test
+    public void roll_staysWithinTheMinimumAndMaximum() throws Exception {
+        final SeededRandomSource randomSource = new SeededRandomSource(1);
+        for (String expressionText : new String[] { "3d1", "2d6+3", "d%-50", "4d6kh3", "5d10kl2", "2d2!", "2d4!-1d6" }) {
+            final DiceExpression diceExpression = DiceExpression.compile(expressionText);
+            final long[] scratch = new long[diceExpression.getScratchSize()];
+            long smallest = Long.MAX_VALUE;
+            long largest = Long.MIN_VALUE;
+            for (int i = 0; i < ROLLS; i++) {
+                final long result = diceExpression.roll(randomSource, scratch);
+                smallest = Math.min(smallest, result);
+                largest = Math.max(largest, result);
+            }
+            assertTrue(expressionText + " rolled " + smallest, smallest >= diceExpression.getMinimum());
+            assertTrue(expressionText + " rolled " + largest, largest <= diceExpression.getMaximum());
+            // The minimum is reached in practice (the maximum of exploding dice is not)
+            assertEquals(expressionText, diceExpression.getMinimum(), smallest);
+        }
+    }
+
+    @Test
+    public void roll_keepsTheSameDiceAsSorting() throws Exception {
+        for (String expressionText : new String[] { "7d6kh3", "7d6kl3", "12d20k1", "12d20kl11" }) {
+            final DiceExpression diceExpression = DiceExpression.compile(expressionText);
+            final int diceCount = diceExpression.getDiceCount(0);
+            final int keepCount = diceExpression.getKeepCount(0);
+            final long[] scratch = new long[diceExpression.getScratchSize()];
+            // The same seed rolls the same dice, which are sorted here instead of using the heap
+            final SeededRandomSource randomSource = new SeededRandomSource(2);
+            final SeededRandomSource sortedRandomSource = new SeededRandomSource(2);
+            final int[] dice = new int[diceCount];
+            for (int i = 0; i < ROLLS; i++) {
+                final long result = diceExpression.roll(randomSource, scratch);
+                for (int die = 0; die < diceCount; die++) {
+                    dice[die] = sortedRandomSource.nextInt(diceExpression.getDiceSides(0)) + 1;
+                }
+                Arrays.sort(dice);
+                long expectedResult = 0;
+                for (int kept = 0; kept < Math.abs(keepCount); kept++) {
+                    expectedResult += keepCount > 0 ? dice[diceCount - 1 - kept] : dice[kept];
+                }
+                assertEquals(expressionText + " roll " + i, expectedResult, result);
+            }
+        }
+    }
+}
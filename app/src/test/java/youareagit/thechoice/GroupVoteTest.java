@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import youareagit.thechoice.random.SeededRandomSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the tally of <code>GroupVote</code>: the instant-runoff eliminations (including ties),
+ * the Borda count, undoing ballots and the round trip through the packed state.
+ */
+public class GroupVoteTest {
+    private static final long A = 11;
+    private static final long B = 22;
+    private static final long C = 33;
+    /** The number of seeds (tie-break orders) every tie is tested with. */
+    private static final int SEEDS = 50;
+
+    @Test
+    public void instantRunoff_withoutBallotsHasNoWinner() throws Exception {
+        final GroupVote groupVote = GroupVote.start(new long[] { A, B, C }, new SeededRandomSource(1));
+        assertEquals(GroupVote.NO_ITEM_ID, groupVote.getInstantRunoffWinner());
+        assertEquals(GroupVote.NO_ITEM_ID, groupVote.getBordaWinner());
+        assertEquals(0, groupVote.getInstantRunoffRounds());
+    }
+
+    @Test
+    public void instantRunoff_majorityWinsInTheFirstRound() throws Exception {
+        final GroupVote groupVote = GroupVote.start(new long[] { C, A, B }, new SeededRandomSource(1));
+        groupVote.addBallot(A, B, C);
+        groupVote.addBallot(A, C);
+        groupVote.addBallot(B);
+        assertEquals(A, groupVote.getInstantRunoffWinner());
+        assertEquals(1, groupVote.getInstantRunoffRounds());
+        // 2 + 2 + 0 points for A, 1 + 0 + 2 for B and 0 + 1 + 0 for C
+        assertEquals(4, groupVote.getBordaScore(A));
+        assertEquals(3, groupVote.getBordaScore(B));
+        assertEquals(1, groupVote.getBordaScore(C));
+        assertEquals(A, groupVote.getBordaWinner());
+        assertArrayEquals(new long[] { A, B, C }, groupVote.getCandidateIds());
+    }
+
+    @Test
+    public void instantRunoff_tieOfTheLastPlacesDoesNotChangeTheWinner() throws Exception {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            final GroupVote groupVote = GroupVote.start(new long[] { A, B, C }, new SeededRandomSource(seed));
+            // A has no majority yet, B and C tie for the elimination and both transfer to A
+            groupVote.addBallot(A, B);
+            groupVote.addBallot(A, C);
+            groupVote.addBallot(B, A);
+            groupVote.addBallot(C, A);
+            assertEquals("Seed " + seed, A, groupVote.getInstantRunoffWinner());
+            assertEquals("Seed " + seed, 2, groupVote.getInstantRunoffRounds());
+        }
+    }
+
+    @Test
+    public void instantRunoff_tiesAreBrokenByTheSameOrderAsTheBordaCount() throws Exception {
+        boolean aWon = false;
+        boolean cWon = false;
+        for (long seed = 0; seed < SEEDS; seed++) {
+            final GroupVote groupVote = GroupVote.start(new long[] { A, B, C }, new SeededRandomSource(seed));
+            // B is eliminated and its ballot is exhausted, then A and C tie (also in the Borda count)
+            groupVote.addBallot(A);
+            groupVote.addBallot(A);
+            groupVote.addBallot(B);
+            groupVote.addBallot(C);
+            groupVote.addBallot(C);
+            final long winner = groupVote.getInstantRunoffWinner();
+            assertTrue("Seed " + seed, winner == A || winner == C);
+            assertEquals("Seed " + seed, 3, groupVote.getInstantRunoffRounds());
+            assertEquals("Seed " + seed, groupVote.getBordaScore(A), groupVote.getBordaScore(C));
+            assertEquals("Seed " + seed, winner, groupVote.getBordaWinner());
+            // The tie-break order is drawn once, so recounting gives the same winner
+            groupVote.addBallot(B);
+            groupVote.undoLastBallot();
+            assertEquals("Seed " + seed, winner, groupVote.getInstantRunoffWinner());
+            aWon |= winner == A;
+            cWon |= winner == C;
+        }
+        assertTrue("The tie-break order does not depend on the random source", aWon && cWon);
+    }
+
+    @Test
+    public void undoLastBallot_restoresThePreviousTally() throws Exception {
+        final GroupVote groupVote = GroupVote.start(new long[] { A, B, C }, new SeededRandomSource(7));
+        assertFalse(groupVote.undoLastBallot());
+        groupVote.addBallot(B, C);
+        groupVote.addBallot(C, A, B);
+        groupVote.addBallot(B);
+        final byte[] state = groupVote.toState();
+        final long instantRunoffWinner = groupVote.getInstantRunoffWinner();
+        final long bordaWinner = groupVote.getBordaWinner();
+
+        groupVote.addBallot(C, B);
+        groupVote.addBallot(C);
+        assertEquals(C, groupVote.getInstantRunoffWinner());
+        assertTrue(groupVote.undoLastBallot());
+        assertTrue(groupVote.undoLastBallot());
+
+        assertEquals(3, groupVote.getNumberOfBallots());
+        assertArrayEquals(state, groupVote.toState());
+        assertEquals(instantRunoffWinner, groupVote.getInstantRunoffWinner());
+        assertEquals(bordaWinner, groupVote.getBordaWinner());
+
+        while (groupVote.undoLastBallot()) {
+            // Remove all ballots
+        }
+        assertEquals(0, groupVote.getNumberOfBallots());
+        assertEquals(0, groupVote.getBordaScore(B));
+        assertEquals(GroupVote.NO_ITEM_ID, groupVote.getInstantRunoffWinner());
+    }
+
+    @Test
+    public void addBallot_rejectsInvalidBallotsWithoutChangingTheTally() throws Exception {
+        final GroupVote groupVote = GroupVote.start(new long[] { A, B, C }, new SeededRandomSource(3));
+        groupVote.addBallot(A, B);
+        final byte[] state = groupVote.toState();
+        for (long[] invalidBallot : new long[][] { {}, { A, 44 }, { B, B }, { A, B, C, A } }) {
+            try {
+                groupVote.addBallot(invalidBallot);
+                fail("Accepted the ballot " + Arrays.toString(invalidBallot));
+            } catch (IllegalArgumentException iAE) {
+                assertArrayEquals(state, groupVote.toState());
+            }
+        }
+    }
+
+    @Test
+    public void state_roundTripKeepsBallotsAndTieBreakOrder() throws Exception {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            final GroupVote groupVote = GroupVote.start(new long[] { A, B, C }, new SeededRandomSource(seed));
+            groupVote.addBallot(A);
+            groupVote.addBallot(C, B);
+            groupVote.addBallot(B, C, A);
+            groupVote.addBallot(C, A);
+            groupVote.addBallot(A, B);
+
+            final GroupVote restoredGroupVote = GroupVote.fromState(groupVote.toState());
+            assertArrayEquals(groupVote.toState(), restoredGroupVote.toState());
+            assertEquals(groupVote.getNumberOfBallots(), restoredGroupVote.getNumberOfBallots());
+            assertEquals(groupVote.getInstantRunoffWinner(), restoredGroupVote.getInstantRunoffWinner());
+            assertEquals(groupVote.getInstantRunoffRounds(), restoredGroupVote.getInstantRunoffRounds());
+            assertEquals(groupVote.getBordaWinner(), restoredGroupVote.getBordaWinner());
+            for (long itemId : groupVote.getCandidateIds()) {
+                assertEquals(groupVote.getBordaScore(itemId), restoredGroupVote.getBordaScore(itemId));
+            }
+        }
+    }
+
+    @Test
+    public void fromState_rejectsMalformedStates() throws Exception {
+        final GroupVote groupVote = GroupVote.start(new long[] { A, B }, new SeededRandomSource(5));
+        groupVote.addBallot(B, A);
+        final byte[] state = groupVote.toState();
+        // The first value is the format version, the last one the second choice of the ballot
+        final byte[] otherVersion = state.clone();
+        otherVersion[7] = 2;
+        final byte[] duplicateChoice = state.clone();
+        duplicateChoice[state.length - 1] = duplicateChoice[state.length - 9];
+        final byte[][] malformedStates = { null, new byte[0], Arrays.copyOf(state, state.length - 1),
+                Arrays.copyOf(state, state.length - 8), Arrays.copyOf(state, state.length + 8), otherVersion, duplicateChoice };
+        for (byte[] malformedState : malformedStates) {
+            try {
+                GroupVote.fromState(malformedState);
+                fail("Accepted the state " + Arrays.toString(malformedState));
+            } catch (IllegalArgumentException iAE) {
+                // Expected
+            }
+        }
+    }
+}
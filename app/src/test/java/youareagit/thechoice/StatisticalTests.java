@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+/**
+ * Helper functions for computing the p-values of the statistical tests.
+ */
+final class StatisticalTests {
+    /** The maximum number of iterations of the series and continued fraction expansions. */
+    private static final int MAXIMUM_ITERATIONS = 100000;
+    /** The relative precision of the series and continued fraction expansions. */
+    private static final double EPSILON = 1e-15;
+    /** A number near the smallest representable double for the continued fraction. */
+    private static final double TINY = 1e-300;
+
+    private StatisticalTests() {
+        // Only static helper methods
+    }
+
+    /**
+     * The p-value of a chi-square statistic: the probability of an at least as large statistic if
+     * the null hypothesis holds.
+     * @param chiSquare The chi-square statistic.
+     * @param degreesOfFreedom The degrees of freedom.
+     * @return The p-value in the range [0 ... 1].
+     */
+    static double chiSquarePValue(double chiSquare, int degreesOfFreedom) {
+        return regularizedGammaQ(degreesOfFreedom / 2.0, chiSquare / 2.0);
+    }
+
+    /**
+     * The two-sided p-value of a standard normal z-score.
+     * @param z The z-score.
+     * @return The p-value in the range [0 ... 1].
+     */
+    static double twoSidedNormalPValue(double z) {
+        // P(|Z| >= |z|) = erfc(|z| / sqrt(2)) and erfc(x) = Q(1/2, x^2)
+        return regularizedGammaQ(0.5, z * z / 2.0);
+    }
+
+    /**
+     * The regularized upper incomplete gamma function Q(a, x) = 1 - P(a, x).
+     */
+    static double regularizedGammaQ(double a, double x) {
+        if (x <= 0) {
+            return 1.0;
+        }
+        if (x < a + 1) {
+            return 1.0 - regularizedGammaPSeries(a, x);
+        }
+        return regularizedGammaQContinuedFraction(a, x);
+    }
+
+    /**
+     * P(a, x) via its series expansion which converges quickly for x &lt; a + 1.
+     */
+    private static double regularizedGammaPSeries(double a, double x) {
+        double term = 1.0 / a;
+        double sum = term;
+        for (int n = 1; n < MAXIMUM_ITERATIONS; n++) {
+            term *= x / (a + n);
+            sum += term;
+            if (Math.abs(term) < Math.abs(sum) * EPSILON) {
+                break;
+            }
+        }
+        return sum * Math.exp(-x + a * Math.log(x) - logGamma(a));
+    }
+
+    /**
+     * Q(a, x) via its continued fraction (modified Lentz) which converges quickly for x &gt;= a + 1.
+     */
+    private static double regularizedGammaQContinuedFraction(double a, double x) {
+        double b = x + 1 - a;
+        double c = 1 / TINY;
+        double d = 1 / b;
+        double fraction = d;
+        for (int n = 1; n < MAXIMUM_ITERATIONS; n++) {
+            final double an = -n * (n - a);
+            b += 2;
+            d = an * d + b;
+            if (Math.abs(d) < TINY) {
+                d = TINY;
+            }
+            c = b + an / c;
+            if (Math.abs(c) < TINY) {
+                c = TINY;
+            }
+            d = 1 / d;
+            final double delta = d * c;
+            fraction *= delta;
+            if (Math.abs(delta - 1) < EPSILON) {
+                break;
+            }
+        }
+        return Math.exp(-x + a * Math.log(x) - logGamma(a)) * fraction;
+    }
+
+    /**
+     * The natural logarithm of the gamma function via the Lanczos approximation.
+     */
+    static double logGamma(double x) {
+        final double[] coefficients = { 76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5 };
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double series = 1.000000000190015;
+        for (double coefficient : coefficients) {
+            series += coefficient / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * series / x);
+    }
+}
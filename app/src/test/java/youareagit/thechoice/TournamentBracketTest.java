@@ -0,0 +1,178 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import youareagit.thechoice.random.SeededRandomSource;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for <code>TournamentBracket</code>: the seeding with byes, playing the matches, undoing
+ * them and the round trip through the packed state.
+ */
+public class TournamentBracketTest {
+    private static final long[] ITEM_IDS = { 3, 5, 8, 13, 21 };
+    /** The number of seeds (seeding orders) every bracket is tested with. */
+    private static final int SEEDS = 50;
+
+    @Test
+    public void seed_singleItemIsTheWinner() throws Exception {
+        final TournamentBracket tournamentBracket = TournamentBracket.seed(new long[] { 42 }, new SeededRandomSource(1));
+        assertTrue(tournamentBracket.isFinished());
+        assertEquals(42, tournamentBracket.getWinner());
+        assertEquals(0, tournamentBracket.getNumberOfRounds());
+        assertEquals(0, tournamentBracket.getRound());
+        assertFalse(tournamentBracket.undo());
+    }
+
+    @Test
+    public void chooseWinner_playsEveryItemWithoutMatchesAgainstByes() throws Exception {
+        for (long seed = 0; seed < SEEDS; seed++) {
+            final TournamentBracket tournamentBracket = TournamentBracket.seed(ITEM_IDS, new SeededRandomSource(seed));
+            assertEquals(3, tournamentBracket.getNumberOfRounds());
+            final Set<Long> contenders = new HashSet<>();
+            int matches = 0;
+            int lastRound = 1;
+            while (!tournamentBracket.isFinished()) {
+                final long firstContender = tournamentBracket.getFirstContender();
+                final long secondContender = tournamentBracket.getSecondContender();
+                assertTrue("Seed " + seed, firstContender != TournamentBracket.NO_ITEM_ID && secondContender != TournamentBracket.NO_ITEM_ID);
+                assertTrue("Seed " + seed, tournamentBracket.getRound() >= lastRound);
+                lastRound = tournamentBracket.getRound();
+                contenders.add(firstContender);
+                contenders.add(secondContender);
+                // The higher item id always wins
+                tournamentBracket.chooseWinner(Math.max(firstContender, secondContender));
+                matches++;
+            }
+            // A knockout of n items needs n - 1 matches, the byes are decided without one
+            assertEquals("Seed " + seed, ITEM_IDS.length - 1, matches);
+            assertEquals("Seed " + seed, ITEM_IDS.length, contenders.size());
+            assertEquals("Seed " + seed, 21, tournamentBracket.getWinner());
+            assertEquals(TournamentBracket.NO_ITEM_ID, tournamentBracket.getFirstContender());
+        }
+    }
+
+    @Test
+    public void chooseWinner_rejectsItemsWhichAreNoContenders() throws Exception {
+        final TournamentBracket tournamentBracket = TournamentBracket.seed(new long[] { 1, 2 }, new SeededRandomSource(1));
+        final byte[] state = tournamentBracket.toState();
+        for (long itemId : new long[] { 3, TournamentBracket.NO_ITEM_ID }) {
+            try {
+                tournamentBracket.chooseWinner(itemId);
+                fail("Accepted the item " + itemId);
+            } catch (IllegalArgumentException iAE) {
+                assertArrayEquals(state, tournamentBracket.toState());
+            }
+        }
+        tournamentBracket.chooseWinner(2);
+        try {
+            tournamentBracket.chooseWinner(2);
+            fail("Accepted a match after the final");
+        } catch (IllegalArgumentException iAE) {
+            assertEquals(2, tournamentBracket.getWinner());
+        }
+    }
+
+    @Test
+    public void undo_restoresTheMatchesInReverseOrder() throws Exception {
+        final TournamentBracket tournamentBracket = TournamentBracket.seed(ITEM_IDS, new SeededRandomSource(9));
+        // The byes are no decided matches, so there is nothing to undo yet
+        assertFalse(tournamentBracket.undo());
+        final byte[][] states = new byte[ITEM_IDS.length][];
+        int matches = 0;
+        while (!tournamentBracket.isFinished()) {
+            states[matches++] = tournamentBracket.toState();
+            tournamentBracket.chooseWinner(tournamentBracket.getSecondContender());
+        }
+        while (matches > 0) {
+            assertTrue(tournamentBracket.undo());
+            assertFalse(tournamentBracket.isFinished());
+            assertEquals(TournamentBracket.NO_ITEM_ID, tournamentBracket.getWinner());
+            assertArrayEquals("After undoing match " + matches, states[--matches], tournamentBracket.toState());
+        }
+        assertFalse(tournamentBracket.undo());
+        assertEquals(1, tournamentBracket.getRound());
+    }
+
+    @Test
+    public void state_roundTripKeepsTheBracketAndItsUndoHistory() throws Exception {
+        final TournamentBracket tournamentBracket = TournamentBracket.seed(ITEM_IDS, new SeededRandomSource(4));
+        while (true) {
+            final TournamentBracket restoredTournamentBracket = TournamentBracket.fromState(tournamentBracket.toState());
+            assertArrayEquals(tournamentBracket.toState(), restoredTournamentBracket.toState());
+            assertEquals(tournamentBracket.isFinished(), restoredTournamentBracket.isFinished());
+            assertEquals(tournamentBracket.getWinner(), restoredTournamentBracket.getWinner());
+            assertEquals(tournamentBracket.getRound(), restoredTournamentBracket.getRound());
+            assertEquals(tournamentBracket.getFirstContender(), restoredTournamentBracket.getFirstContender());
+            assertEquals(tournamentBracket.getSecondContender(), restoredTournamentBracket.getSecondContender());
+            // The restored bracket can undo the same matches
+            final TournamentBracket undoneTournamentBracket = TournamentBracket.fromState(tournamentBracket.toState());
+            if (undoneTournamentBracket.undo()) {
+                final TournamentBracket expectedTournamentBracket = TournamentBracket.fromState(tournamentBracket.toState());
+                expectedTournamentBracket.undo();
+                assertArrayEquals(expectedTournamentBracket.toState(), undoneTournamentBracket.toState());
+            }
+            if (tournamentBracket.isFinished()) {
+                break;
+            }
+            tournamentBracket.chooseWinner(tournamentBracket.getFirstContender());
+        }
+    }
+
+    @Test
+    public void fromState_rejectsMalformedStates() throws Exception {
+        final TournamentBracket tournamentBracket = TournamentBracket.seed(ITEM_IDS, new SeededRandomSource(2));
+        tournamentBracket.chooseWinner(tournamentBracket.getFirstContender());
+        final byte[] state = tournamentBracket.toState();
+        // The values are the format version, the number of leaves, the cursor, the number of
+        // decided matches, the heap and the decided matches
+        final byte[] otherVersion = state.clone();
+        otherVersion[7] = 2;
+        final byte[] noPowerOfTwo = state.clone();
+        noPowerOfTwo[15] = 6;
+        final byte[] invalidCursor = state.clone();
+        invalidCursor[23] = 8;
+        final byte[] invalidMatch = state.clone();
+        invalidMatch[state.length - 1] = 0;
+        final byte[][] malformedStates = { null, new byte[0], Arrays.copyOf(state, state.length - 1),
+                Arrays.copyOf(state, state.length - 8), Arrays.copyOf(state, state.length + 8), otherVersion,
+                noPowerOfTwo, invalidCursor, invalidMatch };
+        for (byte[] malformedState : malformedStates) {
+            try {
+                TournamentBracket.fromState(malformedState);
+                fail("Accepted the state " + Arrays.toString(malformedState));
+            } catch (IllegalArgumentException iAE) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import youareagit.thechoice.random.RandomSourceType;
+
+/**
+ * Benchmarks of the single and batch draws of <code>ChooserLogic</code> for every random source
+ * type: ranges, coin throws, mass coin flips, dice of various sizes and dice notation expressions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChooserLogicBenchmark {
+    /** The number of values of the batch benchmarks. */
+    private static final int BATCH_SIZE = 1024;
+    /** The maximum number of sides for which a histogram is counted (larger ones would not fit). */
+    private static final int MAXIMUM_HISTOGRAM_SIDES = 1 << 16;
+    /** The number of coin flips of the mass flip benchmark. */
+    private static final int MASS_FLIP_COUNT = 1 << 20;
+
+    @Param({ "XOSHIRO", "THREAD_LOCAL", "SECURE", "SEEDED" })
+    public String randomSourceType;
+
+    private ChooserLogic chooserLogic;
+    private long[] bits;
+
+    /**
+     * The dice sizes, only for the benchmarks which use them.
+     */
+    @State(Scope.Thread)
+    public static class Dice {
+        @Param({ "6", "20", "1000", "2147483647" })
+        public int sides;
+
+        private int[] results;
+        /** The histogram or <code>null</code> for huge dice. */
+        private long[] histogram;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            results = new int[BATCH_SIZE];
+            histogram = sides <= MAXIMUM_HISTOGRAM_SIDES ? new long[sides] : null;
+        }
+    }
+
+    /**
+     * The dice notation expressions, only for the benchmarks which use them.
+     */
+    @State(Scope.Thread)
+    public static class Expression {
+        @Param({ "3d6", "4d6kh3+2", "100d20", "10d6!" })
+        public String diceExpressionText;
+
+        private DiceExpression diceExpression;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            diceExpression = DiceExpression.compile(diceExpressionText);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        chooserLogic = new ChooserLogic();
+        chooserLogic.setRandomSourceType(RandomSourceType.valueOf(randomSourceType));
+        bits = new long[BATCH_SIZE / 64];
+    }
+
+    @Benchmark
+    public int getRandomNumberInRange(Dice dice) {
+        return chooserLogic.getRandomNumberInRange(dice.sides);
+    }
+
+    @Benchmark
+    public boolean throwCoin() {
+        return chooserLogic.throwCoin();
+    }
+
+    @Benchmark
+    public String ruleCustomDice(Dice dice) {
+        return chooserLogic.ruleCustomDice(dice.sides);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] rollMany(Dice dice) {
+        // Without a histogram, so huge dice can be rolled as well
+        chooserLogic.rollMany(dice.sides, BATCH_SIZE, dice.results, null);
+        return dice.results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] rollManyWithHistogram(Dice dice) {
+        // Huge dice are counted without a histogram
+        chooserLogic.rollMany(dice.sides, BATCH_SIZE, dice.results, dice.histogram);
+        return dice.results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long[] flipMany() {
+        return chooserLogic.flipMany(BATCH_SIZE, bits);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MASS_FLIP_COUNT)
+    public CoinFlips flipCoins() {
+        // Counts without storing the bits, including the longest streaks
+        return chooserLogic.flipCoins(MASS_FLIP_COUNT);
+    }
+
+    @Benchmark
+    public long rollDiceExpression(Expression expression) {
+        return chooserLogic.rollDiceExpression(expression.diceExpression);
+    }
+
+    @Benchmark
+    public String ruleDiceExpression(Expression expression) {
+        // Including the lookup of the cached compiled expression
+        return chooserLogic.ruleDiceExpression(expression.diceExpressionText);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import youareagit.thechoice.data.InMemoryItemStore;
+import youareagit.thechoice.data.ItemListMembers;
+
+/**
+ * Benchmarks of the item list selection paths of <code>ChooserDatabaseHandler</code> with an
+ * in-memory item store instead of the databases: the uniform choice, the weighted choice via the
+ * alias table, the shuffle bag and the fair selector (and building their structures).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ItemListSelectionBenchmark {
+    /** The id of the benchmarked item list. */
+    private static final long ITEM_LIST_ID = 1;
+
+    @Param({ "10", "1000", "100000" })
+    public int itemListSize;
+
+    private ChooserLogic chooserLogic;
+    private InMemoryItemStore inMemoryItemStore;
+    private ItemListMembers itemListMembers;
+    private AliasTable aliasTable;
+    private ShuffleBag shuffleBag;
+    private FairSelector fairSelector;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        chooserLogic = new ChooserLogic();
+        inMemoryItemStore = new InMemoryItemStore();
+        inMemoryItemStore.addItemList(ITEM_LIST_ID, itemListSize);
+        itemListMembers = inMemoryItemStore.getItemListMembers(ITEM_LIST_ID);
+        aliasTable = new AliasTable(itemListMembers.getWeights());
+        shuffleBag = new ShuffleBag();
+        shuffleBag.merge(itemListMembers.getItemIds(), itemListMembers.getVersion());
+        fairSelector = new FairSelector(itemListMembers);
+    }
+
+    @Benchmark
+    public String chooseUniformly() {
+        // The same steps as the single statement of ItemListsItemsDataSource.pickItemName, which the
+        // uniform path of ChooserDatabaseHandler.chooseFromItemList uses
+        return inMemoryItemStore.pickItemName(ITEM_LIST_ID, chooserLogic.getRandomSource());
+    }
+
+    @Benchmark
+    public String chooseUniformlyFromAllItemIds() {
+        // The former uniform path which copied all item ids for every choice
+        final List<Long> itemIds = inMemoryItemStore.getItemIds(ITEM_LIST_ID);
+        final long itemId = itemIds.get(chooserLogic.getRandomNumberInRange(itemIds.size()));
+        return inMemoryItemStore.getItemName(itemId);
+    }
+
+    @Benchmark
+    public String chooseWeighted() {
+        final long itemId = itemListMembers.getItemIds()[aliasTable.next(chooserLogic.getRandomSource())];
+        return inMemoryItemStore.getItemName(itemId);
+    }
+
+    @Benchmark
+    public String chooseFromShuffleBag() {
+        return inMemoryItemStore.getItemName(shuffleBag.next(chooserLogic.getRandomSource()));
+    }
+
+    @Benchmark
+    public String chooseFair() {
+        return inMemoryItemStore.getItemName(fairSelector.next(chooserLogic.getRandomSource()));
+    }
+
+    @Benchmark
+    public AliasTable buildAliasTable() {
+        return new AliasTable(itemListMembers.getWeights());
+    }
+
+    @Benchmark
+    public FairSelector buildFairSelector() {
+        return new FairSelector(itemListMembers);
+    }
+
+    @Benchmark
+    public byte[] packShuffleBag() {
+        return shuffleBag.toState();
+    }
+}
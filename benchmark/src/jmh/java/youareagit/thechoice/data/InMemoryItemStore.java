@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ *  Copyright (c) 2016 Martin Bölter
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package youareagit.thechoice.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import youareagit.thechoice.random.RandomSource;
+
+/**
+ * An in-memory replacement of the item, item list and item list item databases for benchmarking
+ * the selection paths without a device. It returns the same structures as the data sources.
+ */
+public class InMemoryItemStore {
+    /** The item names by item id. */
+    private final Map<Long, String> itemNames = new HashMap<>();
+    /** The item ids of each item list by item list id. */
+    private final Map<Long, long[]> itemListItemIds = new HashMap<>();
+    /** The next item id. */
+    private long nextItemId = 1;
+
+    /**
+     * Add an item list with the given number of new items, all with the default weight.
+     * @param itemListId The id of the item list.
+     * @param numberOfItems The number of items.
+     */
+    public void addItemList(long itemListId, int numberOfItems) {
+        final long[] itemIds = new long[numberOfItems];
+        for (int i = 0; i < numberOfItems; i++) {
+            itemIds[i] = nextItemId++;
+            itemNames.put(itemIds[i], "Item " + itemIds[i]);
+        }
+        itemListItemIds.put(itemListId, itemIds);
+    }
+
+    /**
+     * Like <code>ItemListsItemsDataSource.getItemIds(long)</code>.
+     * @param itemListId The id of the item list.
+     * @return The boxed item ids or <code>null</code> if the item list has no items.
+     */
+    public List<Long> getItemIds(long itemListId) {
+        final long[] itemIds = itemListItemIds.get(itemListId);
+        if (itemIds == null || itemIds.length == 0) {
+            return null;
+        }
+        final List<Long> items = new ArrayList<>(itemIds.length);
+        for (long itemId : itemIds) {
+            items.add(itemId);
+        }
+        return items;
+    }
+
+    /**
+     * Like <code>ItemListsItemsDataSource.pickItemName(String, RandomSource)</code>: the item count
+     * is read, a random 32 bit number selects the position <code>(random * count) >> 32</code>
+     * (rejecting the biased numbers) and only the name of that item is looked up.
+     * @param itemListId The id of the item list.
+     * @param randomSource The source of the random numbers.
+     * @return The name of the chosen item or <code>null</code> if the item list has no items.
+     */
+    public String pickItemName(long itemListId, RandomSource randomSource) {
+        final long[] itemIds = itemListItemIds.get(itemListId);
+        final long count = itemIds != null ? itemIds.length : 0;
+        if (count == 0) {
+            return null;
+        }
+        while (true) {
+            final long product = (randomSource.nextLong() >>> 32) * count;
+            if ((product & 0xffffffffL) >= ((1L << 32) - count) % count) {
+                return itemNames.get(itemIds[(int) (product >>> 32)]);
+            }
+        }
+    }
+
+    /**
+     * Like <code>ItemListsItemsDataSource.getItemListMembers(long)</code>.
+     * @param itemListId The id of the item list.
+     * @return The members of the item list (empty if it does not exist).
+     */
+    public ItemListMembers getItemListMembers(long itemListId) {
+        final long[] itemIds = itemListItemIds.get(itemListId);
+        if (itemIds == null) {
+            return new ItemListMembers(itemListId, 0, new long[0], new double[0]);
+        }
+        final double[] weights = new double[itemIds.length];
+        Arrays.fill(weights, 1.0);
+        return new ItemListMembers(itemListId, 0, itemIds.clone(), weights);
+    }
+
+    /**
+     * Like <code>ItemsDataSource.getItem(long).getName()</code>.
+     * @param itemId The id of the item.
+     * @return The name of the item or <code>null</code> if it does not exist.
+     */
+    public String getItemName(long itemId) {
+        return itemNames.get(itemId);
+    }
+}